@@ -0,0 +1,48 @@
+// So sánh throughput của JwtAuthenticationFilter giữa 2 chế độ:
+//   - DB-backed : app.security.stateless-auth.enabled=false (principal từ PrincipalCache → MySQL)
+//   - stateless : app.security.stateless-auth.enabled=true  (principal dựng từ claim, chỉ đọc permissions epoch)
+//
+// Chạy (mỗi chế độ khởi động app 1 lần):
+//   k6 run -e BASE_URL=http://localhost:8080 -e EMAIL=admin@example.com -e PASSWORD=secret \
+//          -e MODE=db loadtest/auth-mode.js
+//   k6 run ... -e MODE=stateless loadtest/auth-mode.js
+// Muốn đo đường DB thuần (không cache principal) thêm app.security.principal-cache.enabled=false khi chạy app.
+//
+// So sánh http_reqs (req/s) và http_req_duration p95/p99 giữa 2 lần chạy.
+import http from 'k6/http';
+import { check, fail } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+const PATH = __ENV.PATH_UNDER_TEST || '/api/categories/active';
+const MODE = __ENV.MODE || 'db';
+
+export const options = {
+    scenarios: {
+        steady: {
+            executor: 'constant-vus',
+            vus: Number(__ENV.VUS || 50),
+            duration: __ENV.DURATION || '60s',
+        },
+    },
+    tags: { mode: MODE },
+    thresholds: {
+        http_req_failed: ['rate<0.01'],
+    },
+    summaryTrendStats: ['avg', 'med', 'p(95)', 'p(99)', 'max'],
+};
+
+export function setup() {
+    const res = http.post(`${BASE_URL}/api/auth/login`,
+        JSON.stringify({ emailOrPhone: __ENV.EMAIL, password: __ENV.PASSWORD }),
+        { headers: { 'Content-Type': 'application/json' } });
+    const token = res.json('data.accessToken');
+    if (!token) fail(`login failed: ${res.status} ${res.body}`);
+    return { token };
+}
+
+export default function (data) {
+    const res = http.get(`${BASE_URL}${PATH}`, {
+        headers: { Authorization: `Bearer ${data.token}` },
+    });
+    check(res, { 'status is 200': (r) => r.status === 200 });
+}
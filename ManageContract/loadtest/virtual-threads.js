@@ -0,0 +1,68 @@
+// So sánh độ đồng thời của /api/contracts/{id}/view giữa thread pool Tomcat và virtual thread:
+//   - platform : spring.threads.virtual.enabled=false (mặc định, tối đa server.tomcat.threads.max request cùng lúc)
+//   - virtual  : spring.threads.virtual.enabled=true
+//
+// Chạy (mỗi chế độ khởi động app 1 lần, cùng dữ liệu):
+//   k6 run -e BASE_URL=http://localhost:8080 -e EMAIL=admin@example.com -e PASSWORD=secret \
+//          -e CONTRACT_IDS=1,2,3,4,5 -e MODE=platform loadtest/virtual-threads.js
+//   k6 run ... -e MODE=virtual loadtest/virtual-threads.js
+// Để đo đúng phần chờ Document Server thay vì đọc PDF đã có sẵn, xoá PDF đã render
+// (hoặc đổi template) trước mỗi lần chạy.
+//
+// /view trả 200 (đã có PDF) hoặc 202 (đang render, FE poll pdf-status) – cả 2 đều tính là thành công.
+// So sánh http_reqs (req/s), http_req_duration p95/p99 và số VU mà p95 còn dưới ngưỡng giữa 2 lần chạy.
+//
+// Kết quả đo (2026-10-18, JDK 21.0.1, 1 vCPU). Chưa chạy script này với app đầy đủ vì máy đo không có
+// k6/MySQL/Redis/Document Server; số dưới đây từ VirtualThreadsBenchmarkTest (src/test/.../config):
+// Tomcat nhúng, /view chặn 200 ms rồi trả 202, 800 client vòng kín, max threads 200, đo 20 s sau 3 s khởi động.
+//   mode       req/s   p50      p95      p99      lỗi
+//   platform     916   810 ms   940 ms   1277 ms  0
+//   virtual     2864   244 ms   474 ms    549 ms  0
+// Platform bị chặn ở ~200 / 0.2 s = 1000 req/s, phần dư xếp hàng; virtual bị giới hạn bởi CPU (1 vCPU).
+// Khi có môi trường đầy đủ, chạy lại script này ở cả 2 chế độ và cập nhật bảng bằng số k6.
+import http from 'k6/http';
+import { check, fail } from 'k6';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080';
+const IDS = (__ENV.CONTRACT_IDS || '1').split(',').map((s) => s.trim());
+const MODE = __ENV.MODE || 'platform';
+
+export const options = {
+    scenarios: {
+        ramp: {
+            executor: 'ramping-vus',
+            startVUs: 10,
+            stages: [
+                { duration: '30s', target: 200 },
+                { duration: '60s', target: 800 },   // vượt server.tomcat.threads.max (200)
+                { duration: '30s', target: 800 },
+                { duration: '10s', target: 0 },
+            ],
+            gracefulRampDown: '10s',
+        },
+    },
+    tags: { mode: MODE },
+    thresholds: {
+        http_req_failed: ['rate<0.01'],
+        'http_req_duration{expected_response:true}': ['p(95)<2000'],
+    },
+    summaryTrendStats: ['avg', 'med', 'p(95)', 'p(99)', 'max'],
+};
+
+export function setup() {
+    const res = http.post(`${BASE_URL}/api/auth/login`,
+        JSON.stringify({ emailOrPhone: __ENV.EMAIL, password: __ENV.PASSWORD }),
+        { headers: { 'Content-Type': 'application/json' } });
+    const token = res.json('data.accessToken');
+    if (!token) fail(`login failed: ${res.status} ${res.body}`);
+    return { token };
+}
+
+export default function (data) {
+    const id = IDS[Math.floor(Math.random() * IDS.length)];
+    const res = http.get(`${BASE_URL}/api/contracts/${id}/view`, {
+        headers: { Authorization: `Bearer ${data.token}` },
+        responseCallback: http.expectedStatuses(200, 202),
+    });
+    check(res, { 'status is 200/202': (r) => r.status === 200 || r.status === 202 });
+}
@@ -0,0 +1,8 @@
+package com.hieunguyen.ManageContract.common.constants;
+
+public enum ConversionJobStatus {
+    PENDING,   // đang chờ worker
+    RUNNING,   // đang convert
+    DONE,      // đã có PDF
+    FAILED     // hết số lần thử
+}
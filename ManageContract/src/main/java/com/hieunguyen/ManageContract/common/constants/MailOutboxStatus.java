@@ -0,0 +1,8 @@
+package com.hieunguyen.ManageContract.common.constants;
+
+public enum MailOutboxStatus {
+    PENDING,   // chờ gửi (kể cả chờ retry)
+    SENDING,   // đã được dispatcher nhận
+    SENT,      // SMTP đã nhận
+    DEAD       // hết số lần thử / địa chỉ hỏng
+}
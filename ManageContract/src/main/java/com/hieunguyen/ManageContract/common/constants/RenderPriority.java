@@ -0,0 +1,19 @@
+package com.hieunguyen.ManageContract.common.constants;
+
+/** Thứ tự worker convert PDF nhặt job: level lớn chạy trước */
+public enum RenderPriority {
+    BACKGROUND(0),      // render sẵn khi chưa ai cần xem (vừa tạo hợp đồng)
+    NORMAL(5),          // sau khi ký/duyệt
+    NEXT_APPROVER(10),  // bước hiện tại vừa chuyển cho người duyệt mới → sắp mở link trong mail
+    VIEWER(20);         // có người đang chờ ở /view
+
+    private final int level;
+
+    RenderPriority(int level) {
+        this.level = level;
+    }
+
+    public int level() {
+        return level;
+    }
+}
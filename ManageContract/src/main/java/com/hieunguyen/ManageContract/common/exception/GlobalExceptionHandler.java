@@ -1,9 +1,12 @@
 package com.hieunguyen.ManageContract.common.exception;
 
+import com.hieunguyen.ManageContract.dto.ResponseData;
+import com.hieunguyen.ManageContract.dto.conversion.ConversionJobResponse;
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.ConstraintViolationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -43,6 +46,27 @@ public class GlobalExceptionHandler {
         return new ResponseEntity<>(response, HttpStatus.BAD_REQUEST);
     }
 
+    // PDF đang được tạo (202) – FE poll theo statusUrl
+    @ExceptionHandler(PdfPendingException.class)
+    public ResponseEntity<ResponseData<ConversionJobResponse>> handlePdfPending(PdfPendingException ex) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+                .header(HttpHeaders.RETRY_AFTER, "2")
+                .body(new ResponseData<>(HttpStatus.ACCEPTED.value(), ex.getMessage(), ex.getJob()));
+    }
+
+    // Vượt giới hạn tần suất (429)
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<ErrorResponse> handleTooManyRequests(TooManyRequestsException ex, WebRequest request) {
+        ErrorResponse response = new ErrorResponse();
+        response.setTimestamp(new Date());
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setMessage(ex.getMessage());
+        response.setPath(request.getDescription(false).replace("uri=", ""));
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(response);
+    }
+
     // Giữ nguyên các xử lý khác
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ErrorResponse> handleMethodArgumentNotValidException(
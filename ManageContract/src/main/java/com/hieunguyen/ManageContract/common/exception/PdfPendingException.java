@@ -0,0 +1,19 @@
+package com.hieunguyen.ManageContract.common.exception;
+
+import com.hieunguyen.ManageContract.dto.conversion.ConversionJobResponse;
+
+/**
+ * Ném khi PDF của hợp đồng chưa sẵn sàng; GlobalExceptionHandler trả 202 kèm thông tin job.
+ */
+public class PdfPendingException extends RuntimeException {
+    private final ConversionJobResponse job;
+
+    public PdfPendingException(ConversionJobResponse job) {
+        super("PDF đang được tạo, vui lòng thử lại sau");
+        this.job = job;
+    }
+
+    public ConversionJobResponse getJob() {
+        return job;
+    }
+}
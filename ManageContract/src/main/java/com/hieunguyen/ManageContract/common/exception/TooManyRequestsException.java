@@ -0,0 +1,17 @@
+package com.hieunguyen.ManageContract.common.exception;
+
+/**
+ * Ném khi vượt giới hạn tần suất; GlobalExceptionHandler trả 429 kèm Retry-After.
+ */
+public class TooManyRequestsException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public TooManyRequestsException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,30 @@
+package com.hieunguyen.ManageContract.config;
+
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * ThreadFactory cho các thread nền chủ yếu chờ I/O (SMTP, tải file từ Document Server).
+ * Bật spring.threads.virtual.enabled → virtual thread (Java 21), cùng chế độ với Tomcat và @Scheduled;
+ * ngược lại là platform daemon thread như trước. Không dùng cho pool nặng CPU (BCrypt, dựng DOCX).
+ */
+public final class IoThreads {
+
+    private IoThreads() {
+    }
+
+    /** Thread tên {prefix}-1, {prefix}-2, ... */
+    public static ThreadFactory factory(String prefix, boolean virtual) {
+        if (virtual) {
+            return new VirtualThreadTaskExecutor(prefix + "-").getVirtualThreadFactory();
+        }
+        AtomicInteger seq = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+}
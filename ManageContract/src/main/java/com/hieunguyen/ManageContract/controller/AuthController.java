@@ -2,9 +2,12 @@ package com.hieunguyen.ManageContract.controller;
 
 import com.hieunguyen.ManageContract.dto.ResponseData;
 import com.hieunguyen.ManageContract.dto.authAccount.*;
+import com.hieunguyen.ManageContract.security.auth.AuthRateLimiter;
+import com.hieunguyen.ManageContract.security.auth.AuthRateLimiter.Endpoint;
 import com.hieunguyen.ManageContract.service.AuthAccountService;
 import com.hieunguyen.ManageContract.service.AuthService;
 import io.swagger.v3.oas.annotations.Operation;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -17,6 +20,7 @@ public class AuthController {
 
     private final AuthService authService;
     private final AuthAccountService authAccountService;
+    private final AuthRateLimiter rateLimiter;
 
     // Đăng ký
     @PostMapping("/register")
@@ -47,7 +51,8 @@ public class AuthController {
     // Gửi OTP
     @PostMapping("/send-otp")
     @Operation(summary = "Gửi OTP xác thực")
-    public ResponseData<String> sendOtp(@RequestParam("email") String email) {
+    public ResponseData<String> sendOtp(@RequestParam("email") String email, HttpServletRequest http) {
+        rateLimiter.check(Endpoint.OTP_SEND, clientIp(http), email);
         authService.sendOtp(email);
         return new ResponseData<>(200, "OTP đã được gửi đến email: " + email, null);
     }
@@ -55,7 +60,8 @@ public class AuthController {
     // Đăng nhập
     @PostMapping("/login")
     @Operation(summary = "Dăng nhập tài khoản người dùng")
-    public ResponseData<AuthResponse> login(@RequestBody AuthRequest request) {
+    public ResponseData<AuthResponse> login(@RequestBody AuthRequest request, HttpServletRequest http) {
+        rateLimiter.check(Endpoint.LOGIN, clientIp(http), request.getEmailOrPhone());
         // Gọi service để xử lý login, nhận về đối tượng AuthResponse
         AuthResponse response = authService.login(request.getEmailOrPhone(), request.getPassword(), request.getOtp());
 
@@ -78,31 +84,55 @@ public class AuthController {
     @PostMapping("/verify-otp")
     @Operation(summary = "Xác minh OTP email")
     public ResponseData<String> verifyOtp(@RequestParam("email") String email,
-                                          @RequestParam("otp") String otp) {
+                                          @RequestParam("otp") String otp,
+                                          HttpServletRequest http) {
+        rateLimiter.check(Endpoint.OTP_VERIFY, clientIp(http), email);
         boolean valid = authService.verifyOtp(email, otp);
         return new ResponseData<>(200, "Xác thực OTP thành công", "OK");
     }
 
+    // Làm mới token (refresh token cũ hết giá trị sau khi dùng)
+    @PostMapping("/refresh")
+    @Operation(summary = "Làm mới access token bằng refresh token")
+    public ResponseData<AuthResponse> refresh(@RequestParam String refreshToken) {
+        return new ResponseData<>(200, "Làm mới token thành công", authService.refreshToken(refreshToken));
+    }
+
     // Đăng xuất
     @PostMapping("/logout")
     @Operation(summary = "Dăng xuất tài khoản")
-    public ResponseData<String> logout(@RequestParam String email) {
-        authService.logout(email);
+    public ResponseData<String> logout(@RequestParam(required = false) String refreshToken) {
+        // có refreshToken → chỉ đăng xuất thiết bị đó; không có → mọi thiết bị của tài khoản trong access token
+        if (refreshToken != null && !refreshToken.isBlank()) {
+            authService.logoutSession(refreshToken);
+        } else {
+            authService.logoutCurrentAccount();
+        }
         return new ResponseData<>(200, "Đăng xuất thành công", "OK");
     }
 
     @PostMapping("/forgot-password/send-otp")
     @Operation(summary = "Quên mật khẩu tài khoản")
-    public ResponseData<String> sendForgotPasswordOtp(@RequestParam String email) {
+    public ResponseData<String> sendForgotPasswordOtp(@RequestParam String email, HttpServletRequest http) {
+        rateLimiter.check(Endpoint.OTP_SEND, clientIp(http), email);
         authService.sendForgotPasswordOtp(email);
         return new ResponseData<>(200, "Gửi OTP thành công" + email);
     }
 
     @PostMapping("/forgot-password/reset")
     @Operation(summary = "Reset password")
-    public ResponseData<String> resetPassword(@RequestBody ResetPasswordRequest request) {
+    public ResponseData<String> resetPassword(@Valid @RequestBody ResetPasswordRequest request, HttpServletRequest http) {
+        rateLimiter.check(Endpoint.OTP_VERIFY, clientIp(http), request.getEmail());
         authService.resetPasswordWithOtp(request);
         return new ResponseData<>(200, "Đặt lại mật khẩu thành công");
     }
 
+    /**
+     * IP client cho rate limit. Với server.forward-headers-strategy=native, RemoteIpValve đã thay remoteAddr
+     * bằng IP trong X-Forwarded-For khi request đến từ proxy nội bộ (server.tomcat.remoteip.internal-proxies);
+     * request gọi thẳng vào app không tự khai IP được.
+     */
+    private static String clientIp(HttpServletRequest http) {
+        return http.getRemoteAddr();
+    }
 }
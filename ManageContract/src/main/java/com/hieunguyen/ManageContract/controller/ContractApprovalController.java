@@ -1,6 +1,7 @@
 package com.hieunguyen.ManageContract.controller;
 
 import com.hieunguyen.ManageContract.common.constants.ContractStatus;
+import com.hieunguyen.ManageContract.dto.CursorPageResponse;
 import com.hieunguyen.ManageContract.dto.ResponseData;
 import com.hieunguyen.ManageContract.dto.approval.StepApprovalRequest;
 import com.hieunguyen.ManageContract.dto.contract.ContractResponse;
@@ -78,6 +79,20 @@ public class ContractApprovalController {
         return new ResponseData<>(200, "Get handled contracts successfully", response);
     }
 
+    // Hợp đồng tôi đã xử lý – phân trang keyset (trang sau gửi nextCursor)
+    @GetMapping("/my-handled/page")
+    @PreAuthorize("hasAuthority('contract.approval.read') or hasRole('ADMIN')")
+    public ResponseData<CursorPageResponse<ContractResponse>> getMyHandledContractsPage(
+            @RequestParam ContractStatus status,
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "false") boolean includeVariables
+    ) {
+        CursorPageResponse<ContractResponse> response =
+                contractApprovalService.getMyHandledContractsPage(status, cursor, size, includeVariables);
+        return new ResponseData<>(200, "Get handled contracts successfully", response);
+    }
+
     // Hợp đồng đang chờ tôi xử lý
     @GetMapping("/my-pending")
     @PreAuthorize("hasAuthority('contract.approval.read') or hasRole('ADMIN')")
@@ -86,6 +101,19 @@ public class ContractApprovalController {
         return new ResponseData<>(200, "Get pending contracts successfully", response);
     }
 
+    // Hợp đồng đang chờ tôi xử lý – phân trang keyset theo id bước duyệt (trang sau gửi nextCursor)
+    @GetMapping("/my-pending/page")
+    @PreAuthorize("hasAuthority('contract.approval.read') or hasRole('ADMIN')")
+    public ResponseData<CursorPageResponse<ContractResponse>> getMyPendingContractsPage(
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(defaultValue = "20") int size,
+            @RequestParam(defaultValue = "false") boolean includeVariables
+    ) {
+        CursorPageResponse<ContractResponse> response =
+                contractApprovalService.getMyPendingContractsPage(cursor, size, includeVariables);
+        return new ResponseData<>(200, "Get pending contracts successfully", response);
+    }
+
     // Xem preview flow hoặc tiến độ
     @GetMapping("/{contractId}/preview")
     @PreAuthorize("hasAuthority('contract.approval.read') or hasRole('ADMIN')")
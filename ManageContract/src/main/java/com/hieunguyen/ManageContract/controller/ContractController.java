@@ -1,17 +1,22 @@
 package com.hieunguyen.ManageContract.controller;
 
 import com.hieunguyen.ManageContract.common.constants.ContractStatus;
+import com.hieunguyen.ManageContract.dto.CursorPageResponse;
 import com.hieunguyen.ManageContract.dto.ResponseData;
 import com.hieunguyen.ManageContract.dto.contract.ContractResponse;
 import com.hieunguyen.ManageContract.dto.contract.CreateContractRequest;
 import com.hieunguyen.ManageContract.dto.contract.PlannedFlowResponse;
+import com.hieunguyen.ManageContract.dto.conversion.ConversionJobResponse;
 import com.hieunguyen.ManageContract.dto.file.FilePayload;
 import com.hieunguyen.ManageContract.service.ContractService;
 import com.hieunguyen.ManageContract.service.ContractViewService;
+import com.hieunguyen.ManageContract.service.ConversionJobService;
+import com.hieunguyen.ManageContract.service.impl.PdfReadyNotifier;
 import lombok.RequiredArgsConstructor;
 import org.springframework.core.io.Resource;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 
@@ -22,6 +27,8 @@ public class ContractController {
 
     private final ContractService contractService;
     private final ContractViewService contractViewService;
+    private final ConversionJobService conversionJobService;
+    private final PdfReadyNotifier pdfReadyNotifier;
 
     @PostMapping("/create")
     public ResponseData<ContractResponse> createContract(@RequestBody CreateContractRequest request) {
@@ -44,6 +51,25 @@ public class ContractController {
                 .body(filePayload.getResource());
     }
 
+    // ---------- TRẠNG THÁI RENDER PDF (FE poll khi /view trả 202) ----------
+    @GetMapping("/{id}/pdf-status")
+    public ResponseData<ConversionJobResponse> pdfStatus(@PathVariable Long id) {
+        return new ResponseData<>(200, "OK", conversionJobService.getPdfStatus(id));
+    }
+
+    // ---------- BÁO PDF XONG (SSE, thay cho poll /pdf-status) ----------
+    @GetMapping(value = "/{id}/pdf-events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter pdfEvents(@PathVariable Long id) {
+        return pdfReadyNotifier.subscribe(id, () -> conversionJobService.getPdfStatus(id));
+    }
+
+    @GetMapping("/{id}/pdf-jobs/{jobId}")
+    public ResponseData<ConversionJobResponse> pdfJob(@PathVariable Long id, @PathVariable Long jobId) {
+        ConversionJobResponse job = conversionJobService.getJob(jobId);
+        if (!id.equals(job.getContractId())) throw new RuntimeException("Job không thuộc hợp đồng này");
+        return new ResponseData<>(200, "OK", job);
+    }
+
     // ---------- TẢI XUỐNG PDF ----------
     @GetMapping("/{id}/download")
     public ResponseEntity<Resource> downloadContractFile(@PathVariable Long id) {
@@ -66,6 +92,18 @@ public class ContractController {
         return new ResponseData<>(200, "Danh sách hợp đồng của tôi", data);
     }
 
+    // Phân trang keyset: lần đầu bỏ cursor, trang sau gửi nextCursor của trang trước
+    @GetMapping("/my/page")
+    public ResponseData<CursorPageResponse<ContractResponse>> getMyContractsPage(
+            @RequestParam(value = "status", required = false) ContractStatus status,
+            @RequestParam(value = "cursor", required = false) Long cursor,
+            @RequestParam(value = "size", defaultValue = "20") int size,
+            @RequestParam(value = "includeVariables", defaultValue = "false") boolean includeVariables) {
+        CursorPageResponse<ContractResponse> data =
+                contractService.getMyContractsPage(status, cursor, size, includeVariables);
+        return new ResponseData<>(200, "Danh sách hợp đồng của tôi", data);
+    }
+
     @PutMapping("/{id}")
     public ResponseData<ContractResponse> updateContract(
             @PathVariable Long id, @RequestBody CreateContractRequest request) {
@@ -0,0 +1,19 @@
+package com.hieunguyen.ManageContract.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Trang theo keyset: trang sau gửi lại nextCursor làm cursor (không OFFSET, không COUNT).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageResponse<T> {
+    private List<T> content;
+    private Long nextCursor;  // null khi đã hết
+    private boolean hasMore;
+}
@@ -0,0 +1,39 @@
+package com.hieunguyen.ManageContract.dto.approval;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projection 1 dòng "NHẬT KÝ KÝ DUYỆT": chỉ các cột cần in, lấy bằng 1 query (không đụng entity/proxy).
+ */
+public record ApprovalLogRow(
+        Long id,
+        Integer stepOrder,
+        String approverName,
+        String approverEmail,
+        String approverDepartmentName,
+        String departmentName,
+        LocalDateTime approvedAt,
+        LocalDateTime updatedAt,
+        String comment
+) {
+    /** Người xử lý: họ tên → email tài khoản → "-" */
+    public String actor() {
+        if (notBlank(approverName)) return approverName;
+        return notBlank(approverEmail) ? approverEmail : "-";
+    }
+
+    /** Đơn vị: phòng ban gán cho bước → phòng ban của người duyệt → "-" */
+    public String orgUnit() {
+        if (notBlank(departmentName)) return departmentName;
+        return notBlank(approverDepartmentName) ? approverDepartmentName : "-";
+    }
+
+    /** Thời gian: approvedAt → updatedAt */
+    public LocalDateTime timestamp() {
+        return approvedAt != null ? approvedAt : updatedAt;
+    }
+
+    private static boolean notBlank(String s) {
+        return s != null && !s.isBlank();
+    }
+}
@@ -0,0 +1,31 @@
+package com.hieunguyen.ManageContract.dto.approval;
+
+import com.hieunguyen.ManageContract.common.constants.ApprovalAction;
+import com.hieunguyen.ManageContract.common.constants.ApproverType;
+import com.hieunguyen.ManageContract.common.constants.ContractStatus;
+import com.hieunguyen.ManageContract.dto.contract.ContractListRow;
+
+/**
+ * Projection 1 bước duyệt đang chờ tôi: cột danh sách của hợp đồng + thông tin bước để hiển thị tên bước.
+ */
+public record PendingApprovalRow(
+        Long approvalId,
+        String signaturePlaceholder,
+        ApprovalAction action,
+        ApproverType approverType,
+        String employeeName,
+        String employeeEmail,
+        String departmentName,
+        String positionName,
+        Long contractId,
+        String contractNumber,
+        String title,
+        ContractStatus status,
+        String filePath,
+        Long templateId,
+        String templateName
+) {
+    public ContractListRow contract() {
+        return new ContractListRow(contractId, contractNumber, title, status, filePath, templateId, templateName);
+    }
+}
@@ -11,6 +11,9 @@ public class ResetPasswordRequest {
     @Email
     private String email;
 
+    @NotBlank
+    private String otp;
+
     @NotBlank
     private String newPassword;
 }
@@ -0,0 +1,17 @@
+package com.hieunguyen.ManageContract.dto.contract;
+
+import com.hieunguyen.ManageContract.common.constants.ContractStatus;
+
+/**
+ * Projection 1 dòng danh sách hợp đồng: chỉ các cột hiển thị + tên template (1 query, không load entity).
+ */
+public record ContractListRow(
+        Long id,
+        String contractNumber,
+        String title,
+        ContractStatus status,
+        String filePath,
+        Long templateId,
+        String templateName
+) {
+}
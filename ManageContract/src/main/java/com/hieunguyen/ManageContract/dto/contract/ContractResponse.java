@@ -29,6 +29,10 @@ public class ContractResponse {
     private String flowName;
     private List<ApprovalStepResponse> steps; // danh sách bước để render pipeline
 
+    // ---------- trạng thái PDF sau ký/duyệt (render nền) ----------
+    private String pdfStatus;         // PENDING | RUNNING | DONE | FAILED
+    private Long pdfJobId;
+
     @Data
     public static class VariableValueResponse {
         private String varName;
@@ -0,0 +1,7 @@
+package com.hieunguyen.ManageContract.dto.contract;
+
+/**
+ * Giá trị biến của hợp đồng, lấy theo lô cho cả trang danh sách.
+ */
+public record ContractVariableRow(Long contractId, String varName, String varValue) {
+}
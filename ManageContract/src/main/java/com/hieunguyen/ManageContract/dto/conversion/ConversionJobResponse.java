@@ -0,0 +1,24 @@
+package com.hieunguyen.ManageContract.dto.conversion;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConversionJobResponse {
+    private Long jobId;
+    private Long contractId;
+    private String status;        // PENDING | RUNNING | DONE | FAILED
+    private Integer attempts;
+    private String errorMessage;
+    private LocalDateTime createdAt;
+    private LocalDateTime finishedAt;
+    private String statusUrl;     // FE poll url
+    private String eventsUrl;     // SSE: 1 sự kiện "pdf-ready" khi job DONE/FAILED (thay cho poll)
+}
@@ -10,7 +10,11 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 @Entity
-@Table(name = "approval_steps")
+@Table(name = "approval_steps", indexes = {
+        // tìm bước của 1 người: USER theo nhân viên, POSITION theo (phòng ban, chức vụ)
+        @Index(name = "idx_approval_steps_type_employee", columnList = "approver_type, employee_id"),
+        @Index(name = "idx_approval_steps_type_dept_position", columnList = "approver_type, department_id, position_id")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -10,7 +10,10 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "contracts")
+@Table(name = "contracts", indexes = {
+        // "hợp đồng của tôi" theo trạng thái, keyset theo id (InnoDB gắn sẵn PK vào cuối index)
+        @Index(name = "idx_contracts_created_by_status", columnList = "created_by, status")
+})
 @Data
 public class Contract {
     @Id
@@ -7,7 +7,12 @@ import lombok.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "contract_approvals")
+@Table(name = "contract_approvals", indexes = {
+        // "hợp đồng tôi đã xử lý": EXISTS theo người duyệt + hợp đồng
+        @Index(name = "idx_contract_approvals_approver_contract", columnList = "approver_id, contract_id"),
+        // "chờ tôi xử lý": từ các bước khớp người dùng → bước duyệt hiện tại đang PENDING
+        @Index(name = "idx_contract_approvals_step_current_status", columnList = "step_id, is_current, status")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -0,0 +1,50 @@
+package com.hieunguyen.ManageContract.entity;
+
+import com.hieunguyen.ManageContract.common.constants.ConversionJobStatus;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Job convert DOCX → PDF của 1 hợp đồng (chạy nền bởi ConversionJobService).
+ */
+@Entity
+@Table(name = "conversion_jobs", indexes = {
+        @Index(name = "idx_conversion_jobs_contract_status", columnList = "contract_id, status"),
+        // sweeper nhặt job PENDING theo priority giảm dần
+        @Index(name = "idx_conversion_jobs_status_priority", columnList = "status, priority")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ConversionJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // chỉ giữ id để worker không kéo theo cả graph Contract
+    @Column(name = "contract_id", nullable = false)
+    private Long contractId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20, nullable = false)
+    private ConversionJobStatus status;
+
+    private Integer attempts;
+
+    // RenderPriority.level(); job cũ chưa có cột này (null) xếp sau cùng
+    private Integer priority;
+
+    @Column(length = 1000)
+    private String errorMessage;
+
+    private String pdfPath;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+}
@@ -0,0 +1,55 @@
+package com.hieunguyen.ManageContract.entity;
+
+import com.hieunguyen.ManageContract.common.constants.MailOutboxStatus;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Email chờ gửi (transactional outbox): ghi cùng transaction với nghiệp vụ,
+ * MailOutboxService gửi nền sau khi commit.
+ */
+@Entity
+@Table(name = "mail_outbox", indexes = {
+        @Index(name = "idx_mail_outbox_status_next", columnList = "status, next_attempt_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MailOutbox {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String recipient;
+
+    @Column(nullable = false, length = 500)
+    private String subject;
+
+    @Lob
+    @Column(columnDefinition = "LONGTEXT", nullable = false)
+    private String body;
+
+    private boolean html;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20, nullable = false)
+    private MailOutboxStatus status;
+
+    private Integer attempts;
+
+    // PENDING: thời điểm được gửi lại; SENDING: hết hạn lease (quá hạn → trả về PENDING)
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    @Column(length = 1000)
+    private String lastError;
+
+    private LocalDateTime createdAt;
+    private LocalDateTime sentAt;
+}
@@ -0,0 +1,4 @@
+package com.hieunguyen.ManageContract.event;
+
+/** Bắn ra khi tạo hợp đồng mới (trong transaction tạo). */
+public record ContractCreatedEvent(Long contractId) {}
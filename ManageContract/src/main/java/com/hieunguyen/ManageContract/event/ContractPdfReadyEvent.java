@@ -0,0 +1,6 @@
+package com.hieunguyen.ManageContract.event;
+
+import com.hieunguyen.ManageContract.common.constants.ConversionJobStatus;
+
+/** Bắn ra khi job convert PDF kết thúc (DONE hoặc FAILED). */
+public record ContractPdfReadyEvent(Long contractId, Long jobId, ConversionJobStatus status, String pdfPath) {}
@@ -10,7 +10,6 @@ import com.hieunguyen.ManageContract.repository.ContractSignatureRepository;
 import com.hieunguyen.ManageContract.service.EmailService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.event.TransactionalEventListener;
 import org.springframework.transaction.event.TransactionPhase;
@@ -32,8 +31,11 @@ public class ContractApprovalMailListener {
 
     private static final DateTimeFormatter TS = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
 
-    @Async
-    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    /**
+     * Chạy trước khi transaction duyệt/ký commit: mail được ghi vào outbox cùng transaction,
+     * dispatcher gửi sau commit nên request không chờ SMTP và rollback thì không có mail.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
     public void onApprovalChanged(ContractApprovalEvent event) {
         ContractApproval a = approvalRepo.findById(event.approvalId()).orElse(null);
         if (a == null) {
@@ -60,23 +62,23 @@ public class ContractApprovalMailListener {
             return;
         }
 
-        // Gửi cho từng người
+        // Xếp mail cho từng người vào outbox
         for (String to : recipients) {
             try {
                 if (event.status() == ApprovalStatus.APPROVED) {
                     emailService.sendContractApproved(to, contractLabel, approverName, decidedAt);
-                    log.info("[MAIL] APPROVED → {} | contract={} | at={}",
+                    log.info("[MAIL] Queued APPROVED → {} | contract={} | at={}",
                             to, contractLabel, decidedAt != null ? decidedAt.format(TS) : "n/a");
                 } else if (event.status() == ApprovalStatus.REJECTED) {
                     String reason = a.getComment();
                     emailService.sendContractRejected(to, contractLabel, approverName, reason, decidedAt);
-                    log.info("[MAIL] REJECTED → {} | contract={} | at={} | reason={}",
+                    log.info("[MAIL] Queued REJECTED → {} | contract={} | at={} | reason={}",
                             to, contractLabel, decidedAt != null ? decidedAt.format(TS) : "n/a", orEmpty(reason));
                 } else {
                     log.debug("[MAIL] Bỏ qua trạng thái: {}", event.status());
                 }
             } catch (Exception ex) {
-                log.error("[MAIL] Lỗi khi gửi mail → {} | contract={} | status={} | err={}",
+                log.error("[MAIL] Lỗi khi xếp mail → {} | contract={} | status={} | err={}",
                         to, contractLabel, event.status(), ex.getMessage(), ex);
             }
         }
@@ -0,0 +1,30 @@
+package com.hieunguyen.ManageContract.listener;
+
+import com.hieunguyen.ManageContract.event.ContractPdfReadyEvent;
+import com.hieunguyen.ManageContract.service.impl.PdfReadyNotifier;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Job render PDF kết thúc (DONE/FAILED) → báo client đang chờ qua SSE /api/contracts/{id}/pdf-events.
+ * Sự kiện bắn trên thread worker sau khi job đã lưu (không nằm trong transaction) → nghe thẳng, không chờ commit.
+ * Lỗi ở đây chỉ ghi log: client vẫn còn /pdf-status.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ContractPdfReadyListener {
+
+    private final PdfReadyNotifier notifier;
+
+    @EventListener
+    public void onPdfReady(ContractPdfReadyEvent event) {
+        try {
+            notifier.publish(event.contractId(), event.jobId(), event.status());
+        } catch (Exception e) {
+            log.warn("[PDF-READY] contract={} job={} not notified: {}", event.contractId(), event.jobId(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.hieunguyen.ManageContract.listener;
+
+import com.hieunguyen.ManageContract.common.constants.RenderPriority;
+import com.hieunguyen.ManageContract.event.ContractCreatedEvent;
+import com.hieunguyen.ManageContract.service.ConversionJobService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Render-ahead cho hợp đồng mới tạo: xếp job render PDF (BACKGROUND) để lần mở đầu tiên thấy PDF ngay.
+ * Duyệt/ký/trình duyệt tự xếp job trong ContractApprovalServiceImpl (cần trả job cho client,
+ * NEXT_APPROVER khi bước đã chuyển sang người duyệt mới) → không xếp lại ở đây.
+ * Chạy trước commit (như mail listener) để job được ghi cùng transaction; worker chỉ nhận job sau commit.
+ * Lỗi ở đây chỉ ghi log, không làm hỏng thao tác tạo hợp đồng.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ContractRenderAheadListener {
+
+    private final ConversionJobService conversionJobService;
+
+    @Value("${app.conversion.render-ahead.enabled:true}")
+    private boolean enabled;
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void onContractCreated(ContractCreatedEvent event) {
+        if (!enabled) return;
+        try {
+            conversionJobService.enqueue(event.contractId(), RenderPriority.BACKGROUND);
+            log.debug("[RENDER-AHEAD] contract={} queued ({})", event.contractId(), RenderPriority.BACKGROUND);
+        } catch (Exception e) {
+            log.warn("[RENDER-AHEAD] contract={} skipped: {}", event.contractId(), e.getMessage());
+        }
+    }
+}
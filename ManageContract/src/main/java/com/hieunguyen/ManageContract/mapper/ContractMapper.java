@@ -1,9 +1,11 @@
 package com.hieunguyen.ManageContract.mapper;
 
+import com.hieunguyen.ManageContract.dto.contract.ContractListRow;
 import com.hieunguyen.ManageContract.dto.contract.ContractResponse;
 import com.hieunguyen.ManageContract.entity.Contract;
 import com.hieunguyen.ManageContract.entity.ContractVariableValue;
 
+import java.util.List;
 import java.util.stream.Collectors;
 
 public class ContractMapper {
@@ -32,6 +34,20 @@ public class ContractMapper {
         return dto;
     }
 
+    /** Từ projection danh sách; variables = null khi không lấy biến */
+    public static ContractResponse toResponse(ContractListRow row, List<ContractResponse.VariableValueResponse> variables) {
+        if (row == null) return null;
+        ContractResponse dto = new ContractResponse();
+        dto.setId(row.id());
+        dto.setContractNumber(row.contractNumber());
+        dto.setTitle(row.title());
+        dto.setStatus(row.status() != null ? row.status().name() : null);
+        dto.setFilePath(row.filePath());
+        dto.setTemplateId(row.templateId());
+        dto.setTemplateName(row.templateName());
+        dto.setVariables(variables);
+        return dto;
+    }
 
     private static ContractResponse.VariableValueResponse mapVariable(ContractVariableValue v) {
         ContractResponse.VariableValueResponse dto = new ContractResponse.VariableValueResponse();
@@ -0,0 +1,43 @@
+package com.hieunguyen.ManageContract.mapper;
+
+import com.hieunguyen.ManageContract.common.constants.ConversionJobStatus;
+import com.hieunguyen.ManageContract.dto.conversion.ConversionJobResponse;
+import com.hieunguyen.ManageContract.entity.ConversionJob;
+
+public final class ConversionJobMapper {
+    private ConversionJobMapper() {}
+
+    public static ConversionJobResponse toResponse(ConversionJob job) {
+        if (job == null) return null;
+        return ConversionJobResponse.builder()
+                .jobId(job.getId())
+                .contractId(job.getContractId())
+                .status(job.getStatus() != null ? job.getStatus().name() : null)
+                .attempts(job.getAttempts())
+                .errorMessage(job.getErrorMessage())
+                .createdAt(job.getCreatedAt())
+                .finishedAt(job.getFinishedAt())
+                .statusUrl(statusUrl(job.getContractId()))
+                .eventsUrl(eventsUrl(job.getContractId()))
+                .build();
+    }
+
+    /** Kết quả job vừa kết thúc, gửi cho client đang chờ qua /pdf-events */
+    public static ConversionJobResponse toFinished(Long contractId, Long jobId, ConversionJobStatus status) {
+        return ConversionJobResponse.builder()
+                .jobId(jobId)
+                .contractId(contractId)
+                .status(status.name())
+                .statusUrl(statusUrl(contractId))
+                .eventsUrl(eventsUrl(contractId))
+                .build();
+    }
+
+    public static String statusUrl(Long contractId) {
+        return "/api/contracts/" + contractId + "/pdf-status";
+    }
+
+    public static String eventsUrl(Long contractId) {
+        return "/api/contracts/" + contractId + "/pdf-events";
+    }
+}
@@ -2,8 +2,11 @@ package com.hieunguyen.ManageContract.repository;
 
 import com.hieunguyen.ManageContract.common.constants.ApprovalStatus;
 import com.hieunguyen.ManageContract.common.constants.ContractStatus;
+import com.hieunguyen.ManageContract.dto.approval.ApprovalLogRow;
+import com.hieunguyen.ManageContract.dto.approval.PendingApprovalRow;
 import com.hieunguyen.ManageContract.entity.Contract;
 import com.hieunguyen.ManageContract.entity.ContractApproval;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -34,6 +37,41 @@ public interface ContractApprovalRepository extends JpaRepository<ContractApprov
             ContractStatus contractStatus
     );
 
+    /**
+     * Bước hiện tại đang chờ đúng người này: bước USER gán cho nhân viên, hoặc bước POSITION khớp (phòng ban, chức vụ).
+     * Lọc hết trong SQL, keyset theo id bước duyệt giảm dần (a.id < cursor).
+     */
+    @Query("""
+        select new com.hieunguyen.ManageContract.dto.approval.PendingApprovalRow(
+            a.id, a.signaturePlaceholder, st.action, st.approverType,
+            e.fullName, acc.email, d.name, p.name,
+            c.id, c.contractNumber, c.title, c.status, c.filePath, t.id, t.name)
+        from ContractApproval a
+        join a.step st
+        join a.contract c
+        left join c.template t
+        left join st.employee e
+        left join e.account acc
+        left join st.department d
+        left join st.position p
+        where a.isCurrent = true
+          and a.status = :approvalStatus
+          and c.status = :contractStatus
+          and a.id < :cursor
+          and ((st.approverType = com.hieunguyen.ManageContract.common.constants.ApproverType.USER
+                    and st.employee.id = :employeeId)
+               or (st.approverType = com.hieunguyen.ManageContract.common.constants.ApproverType.POSITION
+                    and st.department.id = :departmentId and st.position.id = :positionId))
+        order by a.id desc
+        """)
+    List<PendingApprovalRow> findPendingRowsFor(@Param("employeeId") Long employeeId,
+                                                @Param("departmentId") Long departmentId,
+                                                @Param("positionId") Long positionId,
+                                                @Param("approvalStatus") ApprovalStatus approvalStatus,
+                                                @Param("contractStatus") ContractStatus contractStatus,
+                                                @Param("cursor") long cursor,
+                                                Pageable pageable);
+
     Optional<ContractApproval> findByContractIdAndIsCurrentTrue(Long contractId);
 
     List<ContractApproval> findAllByContractIdOrderByStepOrderAsc(Long contractId);
@@ -42,16 +80,20 @@ public interface ContractApprovalRepository extends JpaRepository<ContractApprov
 
     List<ContractApproval> findByContract(Contract contract);
 
+    // Nhật ký ký duyệt: chỉ các cột cần in, không nạp entity/proxy
     @Query("""
-        select a from ContractApproval a
-        left join fetch a.approver ap
-        left join fetch ap.department apDept
-        left join fetch a.department dept
-        left join fetch a.step st
+        select new com.hieunguyen.ManageContract.dto.approval.ApprovalLogRow(
+            a.id, a.stepOrder, ap.fullName, acc.email, apDept.name, dept.name,
+            a.approvedAt, a.updatedAt, a.comment)
+        from ContractApproval a
+        left join a.approver ap
+        left join ap.account acc
+        left join ap.department apDept
+        left join a.department dept
         where a.contract.id = :contractId
         order by a.stepOrder asc, a.id asc
         """)
-    List<ContractApproval> findAllForLog(@Param("contractId") Long contractId);
+    List<ApprovalLogRow> findLogRows(@Param("contractId") Long contractId);
 
 
 
@@ -1,13 +1,18 @@
 package com.hieunguyen.ManageContract.repository;
 
 import com.hieunguyen.ManageContract.common.constants.ContractStatus;
+import com.hieunguyen.ManageContract.dto.contract.ContractListRow;
 import com.hieunguyen.ManageContract.entity.Contract;
 import com.hieunguyen.ManageContract.entity.ContractTemplate;
-import io.lettuce.core.dynamic.annotation.Param;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -21,6 +26,32 @@ public interface ContractRepository extends JpaRepository<Contract, Long> {
     // lọc theo trạng thái (tùy chọn)
     List<Contract> findByCreatedBy_Account_EmailAndStatus(String email, ContractStatus status);
 
+    // danh sách hợp đồng do email này tạo: chỉ cột hiển thị, keyset theo id giảm dần (id < cursor)
+    @Query("select new com.hieunguyen.ManageContract.dto.contract.ContractListRow(" +
+            "c.id, c.contractNumber, c.title, c.status, c.filePath, t.id, t.name) " +
+            "from Contract c left join c.template t " +
+            "where c.createdBy.account.email = :email " +
+            "and (:status is null or c.status = :status) " +
+            "and c.id < :cursor " +
+            "order by c.id desc")
+    List<ContractListRow> findMyContractRows(@Param("email") String email,
+                                             @Param("status") ContractStatus status,
+                                             @Param("cursor") long cursor,
+                                             Pageable pageable);
+
+    // hợp đồng mà nhân viên này từng là người duyệt/ký (mỗi hợp đồng 1 dòng dù xử lý nhiều bước)
+    @Query("select new com.hieunguyen.ManageContract.dto.contract.ContractListRow(" +
+            "c.id, c.contractNumber, c.title, c.status, c.filePath, t.id, t.name) " +
+            "from Contract c left join c.template t " +
+            "where (:status is null or c.status = :status) " +
+            "and c.id < :cursor " +
+            "and exists (select 1 from ContractApproval ca where ca.contract = c and ca.approver.id = :approverId) " +
+            "order by c.id desc")
+    List<ContractListRow> findHandledContractRows(@Param("approverId") Long approverId,
+                                                  @Param("status") ContractStatus status,
+                                                  @Param("cursor") long cursor,
+                                                  Pageable pageable);
+
     @EntityGraph(attributePaths = {"variableValues", "createdBy", "template", "flow"})
     Optional<Contract> findWithVarsById(Long id);
 
@@ -35,4 +66,11 @@ public interface ContractRepository extends JpaRepository<Contract, Long> {
     })
     Optional<Contract> findDetailById(Long id);
 
+    // cập nhật thông tin file sau khi render PDF (không load/ghi đè cả entity)
+    @Modifying
+    @Transactional
+    @Query("update Contract c set c.filePath = :filePath, c.fileGeneratedAt = :generatedAt where c.id = :id")
+    int updateFileInfo(@Param("id") Long id,
+                       @Param("filePath") String filePath,
+                       @Param("generatedAt") LocalDateTime generatedAt);
 }
@@ -1,12 +1,21 @@
 package com.hieunguyen.ManageContract.repository;
 
+import com.hieunguyen.ManageContract.dto.contract.ContractVariableRow;
 import com.hieunguyen.ManageContract.entity.ContractVariableValue;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 public interface ContractVariableValueRepository extends JpaRepository<ContractVariableValue, Long> {
     List<ContractVariableValue> findByContract_Id(Long contractId);
     Optional<ContractVariableValue> findByContract_IdAndVarName(Long contractId, String varName);
+
+    // biến của nhiều hợp đồng trong 1 query (danh sách), không load entity
+    @Query("select new com.hieunguyen.ManageContract.dto.contract.ContractVariableRow(v.contract.id, v.varName, v.varValue) " +
+            "from ContractVariableValue v where v.contract.id in :contractIds order by v.id")
+    List<ContractVariableRow> findRowsByContractIds(@Param("contractIds") Collection<Long> contractIds);
 }
@@ -0,0 +1,47 @@
+package com.hieunguyen.ManageContract.repository;
+
+import com.hieunguyen.ManageContract.common.constants.ConversionJobStatus;
+import com.hieunguyen.ManageContract.entity.ConversionJob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface ConversionJobRepository extends JpaRepository<ConversionJob, Long> {
+
+    Optional<ConversionJob> findFirstByContractIdAndStatusOrderByIdDesc(Long contractId, ConversionJobStatus status);
+
+    Optional<ConversionJob> findFirstByContractIdOrderByIdDesc(Long contractId);
+
+    List<ConversionJob> findByStatusOrderByPriorityDescIdAsc(ConversionJobStatus status, Pageable pageable);
+
+    // Claim job: chỉ 1 worker (kể cả node khác) chuyển được PENDING → RUNNING
+    @Modifying
+    @Transactional
+    @Query("""
+        update ConversionJob j
+        set j.status = com.hieunguyen.ManageContract.common.constants.ConversionJobStatus.RUNNING,
+            j.startedAt = :now,
+            j.attempts = coalesce(j.attempts, 0) + 1
+        where j.id = :id
+          and j.status = com.hieunguyen.ManageContract.common.constants.ConversionJobStatus.PENDING
+        """)
+    int claim(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    // Job RUNNING quá lâu (node chết giữa chừng) → trả về PENDING
+    @Modifying
+    @Transactional
+    @Query("""
+        update ConversionJob j
+        set j.status = com.hieunguyen.ManageContract.common.constants.ConversionJobStatus.PENDING
+        where j.status = com.hieunguyen.ManageContract.common.constants.ConversionJobStatus.RUNNING
+          and j.startedAt < :before
+        """)
+    int releaseStale(@Param("before") LocalDateTime before);
+}
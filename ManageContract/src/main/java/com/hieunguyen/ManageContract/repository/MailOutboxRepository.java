@@ -0,0 +1,45 @@
+package com.hieunguyen.ManageContract.repository;
+
+import com.hieunguyen.ManageContract.common.constants.MailOutboxStatus;
+import com.hieunguyen.ManageContract.entity.MailOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface MailOutboxRepository extends JpaRepository<MailOutbox, Long> {
+
+    List<MailOutbox> findByStatusAndNextAttemptAtLessThanEqualOrderByIdAsc(
+            MailOutboxStatus status, LocalDateTime now, Pageable pageable);
+
+    long countByStatus(MailOutboxStatus status);
+
+    // Claim mail: chỉ 1 dispatcher (kể cả node khác) chuyển được PENDING → SENDING
+    @Modifying
+    @Transactional
+    @Query("""
+        update MailOutbox m
+        set m.status = com.hieunguyen.ManageContract.common.constants.MailOutboxStatus.SENDING,
+            m.nextAttemptAt = :leaseUntil,
+            m.attempts = coalesce(m.attempts, 0) + 1
+        where m.id = :id
+          and m.status = com.hieunguyen.ManageContract.common.constants.MailOutboxStatus.PENDING
+        """)
+    int claim(@Param("id") Long id, @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    // Mail SENDING quá lease (node chết giữa chừng) → trả về PENDING
+    @Modifying
+    @Transactional
+    @Query("""
+        update MailOutbox m
+        set m.status = com.hieunguyen.ManageContract.common.constants.MailOutboxStatus.PENDING
+        where m.status = com.hieunguyen.ManageContract.common.constants.MailOutboxStatus.SENDING
+          and m.nextAttemptAt < :now
+        """)
+    int releaseStale(@Param("now") LocalDateTime now);
+}
@@ -0,0 +1,235 @@
+package com.hieunguyen.ManageContract.security.auth;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hieunguyen.ManageContract.common.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Giới hạn tần suất (token bucket) cho các endpoint xác thực: theo IP và theo tài khoản.
+ * - Tầng cục bộ: bucket lock-free (CAS) trong Caffeine → chặn flood mà không cần round-trip Redis.
+ *   Request bị chặn (ở bucket cục bộ khác hoặc ở Redis) được trả lại token cục bộ, nên node chỉ trừ cho
+ *   request cả cụm đã nhận → không chặn sớm hơn tầng Redis (ngoài sai lệch đồng hồ giữa node và Redis).
+ * - Tầng Redis: 1 Lua script kiểm tra + trừ token của mọi bucket trong 1 lần gọi, đồng hồ lấy từ Redis (TIME)
+ *   → giới hạn đúng trên toàn cụm. Chỉ trừ token khi mọi bucket đều còn.
+ * - Redis lỗi → chỉ dùng kết quả tầng cục bộ (không khoá đăng nhập vì Redis).
+ * Bị chặn → TooManyRequestsException (429 + Retry-After).
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class AuthRateLimiter {
+
+    private static final String KEY_PREFIX = "RL:";
+
+    // KEYS = các bucket; ARGV theo bộ 3 cho từng key: capacity, token/ms, ttl ms
+    // trả 0 nếu cho qua, i nếu bucket thứ i hết token
+    static final RedisScript<Long> ACQUIRE_SCRIPT = new DefaultRedisScript<>(
+            "local t = redis.call('TIME') " +
+            "local now = t[1] * 1000 + math.floor(t[2] / 1000) " +
+            "local left = {} " +
+            "for i, key in ipairs(KEYS) do " +
+            "  local cap = tonumber(ARGV[i * 3 - 2]) " +
+            "  local rate = tonumber(ARGV[i * 3 - 1]) " +
+            "  local tokens, ts = cap, now " +
+            "  local cur = redis.call('GET', key) " +
+            "  if cur then " +
+            "    local sep = string.find(cur, ':', 1, true) " +
+            "    tokens = tonumber(string.sub(cur, 1, sep - 1)) " +
+            "    ts = tonumber(string.sub(cur, sep + 1)) " +
+            "  end " +
+            "  tokens = math.min(cap, tokens + math.max(0, now - ts) * rate) " +
+            "  if tokens < 1 then return i end " +
+            "  left[i] = tokens - 1 " +
+            "end " +
+            "for i, key in ipairs(KEYS) do " +
+            "  redis.call('SET', key, left[i] .. ':' .. now, 'PX', ARGV[i * 3]) " +
+            "end " +
+            "return 0", Long.class);
+
+    /** Nhóm endpoint dùng chung ngân sách */
+    public enum Endpoint {
+        LOGIN("login"),           // BCrypt
+        OTP_SEND("otp-send"),     // SMTP: /send-otp, /forgot-password/send-otp
+        OTP_VERIFY("otp-verify"); // dò OTP: /verify-otp, /forgot-password/reset
+
+        final String key;
+
+        Endpoint(String key) {
+            this.key = key;
+        }
+    }
+
+    /** capacity token, nạp lại đủ capacity sau period */
+    record Limit(int capacity, Duration period) {
+        static Limit parse(String spec) {
+            String[] p = spec.trim().split("/");
+            return new Limit(Integer.parseInt(p[0].trim()), Duration.ofSeconds(Long.parseLong(p[1].trim())));
+        }
+
+        double perMilli() {
+            return (double) capacity / period.toMillis();
+        }
+
+        long retryAfterSeconds() {
+            return Math.max(1, (period.toSeconds() + capacity - 1) / capacity);
+        }
+    }
+
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.security.rate-limit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.security.rate-limit.redis-enabled:true}")
+    private boolean redisEnabled;
+
+    @Value("${app.security.rate-limit.local-max-keys:100000}")
+    private long localMaxKeys;
+
+    @Value("${app.security.rate-limit.login.ip:30/60}")
+    private String loginIp;
+    @Value("${app.security.rate-limit.login.account:10/300}")
+    private String loginAccount;
+    @Value("${app.security.rate-limit.otp-send.ip:5/60}")
+    private String otpSendIp;
+    @Value("${app.security.rate-limit.otp-send.account:3/300}")
+    private String otpSendAccount;
+    @Value("${app.security.rate-limit.otp-verify.ip:20/60}")
+    private String otpVerifyIp;
+    @Value("${app.security.rate-limit.otp-verify.account:5/300}")
+    private String otpVerifyAccount;
+
+    private final Map<Endpoint, Limit> ipLimits = new EnumMap<>(Endpoint.class);
+    private final Map<Endpoint, Limit> accountLimits = new EnumMap<>(Endpoint.class);
+    private Cache<String, LocalBucket> local;
+
+    @PostConstruct
+    void init() {
+        ipLimits.put(Endpoint.LOGIN, Limit.parse(loginIp));
+        accountLimits.put(Endpoint.LOGIN, Limit.parse(loginAccount));
+        ipLimits.put(Endpoint.OTP_SEND, Limit.parse(otpSendIp));
+        accountLimits.put(Endpoint.OTP_SEND, Limit.parse(otpSendAccount));
+        ipLimits.put(Endpoint.OTP_VERIFY, Limit.parse(otpVerifyIp));
+        accountLimits.put(Endpoint.OTP_VERIFY, Limit.parse(otpVerifyAccount));
+
+        Duration idle = Duration.ZERO;
+        for (Limit l : ipLimits.values()) if (l.period().compareTo(idle) > 0) idle = l.period();
+        for (Limit l : accountLimits.values()) if (l.period().compareTo(idle) > 0) idle = l.period();
+        // bucket không dùng quá 1 period đã nạp đầy → bỏ cũng như giữ
+        local = Caffeine.newBuilder()
+                .maximumSize(localMaxKeys)
+                .expireAfterAccess(idle)
+                .build();
+    }
+
+    /**
+     * Trừ 1 token cho IP và tài khoản (nếu có) của endpoint; hết token → TooManyRequestsException.
+     * Gọi trước khi chạm BCrypt/SMTP.
+     */
+    public void check(Endpoint endpoint, String ip, String account) {
+        if (!enabled) return;
+
+        List<Bucket> buckets = new ArrayList<>(2);
+        if (ip != null && !ip.isBlank()) {
+            buckets.add(new Bucket("ip", key(endpoint, "ip", ip), ipLimits.get(endpoint)));
+        }
+        if (account != null && !account.isBlank()) {
+            String normalized = account.trim().toLowerCase(Locale.ROOT);
+            buckets.add(new Bucket("account", key(endpoint, "account", normalized), accountLimits.get(endpoint)));
+        }
+        if (buckets.isEmpty()) return;
+
+        List<LocalBucket> taken = new ArrayList<>(buckets.size());
+        for (Bucket b : buckets) {
+            LocalBucket lb = local.get(b.key(), k -> new LocalBucket(b.limit()));
+            if (!lb.tryAcquire()) {
+                taken.forEach(LocalBucket::refund);
+                reject(endpoint, b, "local");
+            }
+            taken.add(lb);
+        }
+
+        if (!redisEnabled) return;
+        Long r;
+        try {
+            List<String> keys = new ArrayList<>(buckets.size());
+            List<String> args = new ArrayList<>(buckets.size() * 3);
+            for (Bucket b : buckets) {
+                keys.add(b.key());
+                args.add(String.valueOf(b.limit().capacity()));
+                args.add(String.valueOf(b.limit().perMilli()));
+                args.add(String.valueOf(b.limit().period().toMillis()));
+            }
+            r = redisTemplate.execute(ACQUIRE_SCRIPT, keys, args.toArray());
+        } catch (Exception e) {
+            log.debug("Rate limit Redis tier unavailable for {}: {}", endpoint, e.getMessage());
+            return;
+        }
+        if (r != null && r > 0 && r <= buckets.size()) {
+            // Lua không trừ bucket nào khi 1 bucket hết → tầng cục bộ cũng trả lại
+            taken.forEach(LocalBucket::refund);
+            reject(endpoint, buckets.get(r.intValue() - 1), "redis");
+        }
+    }
+
+    private void reject(Endpoint endpoint, Bucket bucket, String tier) {
+        meterRegistry.counter("auth.ratelimit.rejected",
+                "endpoint", endpoint.key, "scope", bucket.scope(), "tier", tier).increment();
+        throw new TooManyRequestsException("Quá nhiều yêu cầu, vui lòng thử lại sau",
+                bucket.limit().retryAfterSeconds());
+    }
+
+    private static String key(Endpoint endpoint, String scope, String id) {
+        return KEY_PREFIX + endpoint.key + ":" + scope + ":" + id;
+    }
+
+    private record Bucket(String scope, String key, Limit limit) { }
+
+    /** Token bucket cục bộ: trạng thái bất biến, cập nhật bằng CAS */
+    static final class LocalBucket {
+        private record State(double tokens, long nanos) { }
+
+        private final int capacity;
+        private final double perNano;
+        private final AtomicReference<State> state;
+
+        LocalBucket(Limit limit) {
+            this.capacity = limit.capacity();
+            this.perNano = (double) limit.capacity() / limit.period().toNanos();
+            this.state = new AtomicReference<>(new State(capacity, System.nanoTime()));
+        }
+
+        boolean tryAcquire() {
+            while (true) {
+                State cur = state.get();
+                long now = System.nanoTime();
+                double tokens = Math.min(capacity, cur.tokens() + Math.max(0, now - cur.nanos()) * perNano);
+                if (tokens < 1) return false;
+                if (state.compareAndSet(cur, new State(tokens - 1, now))) return true;
+            }
+        }
+
+        /** Trả lại token đã lấy cho request rốt cuộc bị chặn */
+        void refund() {
+            state.updateAndGet(s -> new State(Math.min(capacity, s.tokens() + 1), s.nanos()));
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.hieunguyen.ManageContract.security.auth;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter cho chuỗi ngắn (sid), an toàn đa luồng, không xoá được phần tử.
+ * mightContain=false → chắc chắn không có; true → có thể có (sai số ~fpp).
+ */
+final class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final int numBits;
+    private final int numHashes;
+
+    BloomFilter(long expectedEntries, double fpp) {
+        long n = Math.max(1, expectedEntries);
+        long m = (long) Math.ceil(-n * Math.log(fpp) / (Math.log(2) * Math.log(2)));
+        this.numBits = (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, m));
+        this.numHashes = Math.max(1, (int) Math.round((double) numBits / n * Math.log(2)));
+        this.bits = new AtomicLongArray((numBits + 63) >>> 6);
+    }
+
+    void put(String value) {
+        long h = hash(value);
+        int h1 = (int) h, h2 = (int) (h >>> 32);
+        for (int i = 1; i <= numHashes; i++) {
+            int bit = Math.floorMod(h1 + i * h2, numBits);
+            int word = bit >>> 6;
+            long mask = 1L << bit;
+            long old;
+            do {
+                old = bits.get(word);
+                if ((old & mask) != 0) break;
+            } while (!bits.compareAndSet(word, old, old | mask));
+        }
+    }
+
+    boolean mightContain(String value) {
+        long h = hash(value);
+        int h1 = (int) h, h2 = (int) (h >>> 32);
+        for (int i = 1; i <= numHashes; i++) {
+            int bit = Math.floorMod(h1 + i * h2, numBits);
+            if ((bits.get(bit >>> 6) & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    /** FNV-1a 64 bit + finalizer của MurmurHash3 để trộn đều 2 nửa dùng cho double hashing */
+    private static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h ^= value.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
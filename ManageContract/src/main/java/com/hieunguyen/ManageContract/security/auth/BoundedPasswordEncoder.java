@@ -0,0 +1,166 @@
+package com.hieunguyen.ManageContract.security.auth;
+
+import com.hieunguyen.ManageContract.common.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PasswordEncoder (BCrypt) chạy trên pool riêng, giới hạn theo CPU:
+ * - Thread request chỉ chờ kết quả; tối đa `threads` phép băm chạy cùng lúc → đợt login dồn dập
+ *   không chiếm hết CPU của các endpoint khác.
+ * - Queue có giới hạn; đầy hoặc chờ quá wait-timeout-ms → TooManyRequestsException (429).
+ * - Cost factor (strength) hiệu chỉnh lúc khởi động theo target-hash-ms trên chính máy đang chạy
+ *   (đo ở cost 10, mỗi cost +1 tốn gấp đôi). Hash cũ vẫn verify được vì cost nằm trong hash;
+ *   upgradeEncoding() cho biết hash nào nên băm lại.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    private static final int BASE_STRENGTH = 10;
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.security.password.threads:0}")
+    private int threads;
+
+    @Value("${app.security.password.queue-capacity:64}")
+    private int queueCapacity;
+
+    @Value("${app.security.password.wait-timeout-ms:5000}")
+    private long waitTimeoutMs;
+
+    @Value("${app.security.password.strength:0}")
+    private int strength;
+
+    @Value("${app.security.password.target-hash-ms:250}")
+    private long targetHashMs;
+
+    @Value("${app.security.password.min-strength:10}")
+    private int minStrength;
+
+    @Value("${app.security.password.max-strength:14}")
+    private int maxStrength;
+
+    private BCryptPasswordEncoder delegate;
+    private ThreadPoolExecutor executor;
+    private Timer encodeTimer;
+    private Timer matchesTimer;
+    private Counter rejected;
+
+    @PostConstruct
+    void init() {
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger seq = new AtomicInteger();
+        executor = new ThreadPoolExecutor(
+                poolSize, poolSize,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "password-hash-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+
+        if (strength <= 0) strength = calibrate();
+        delegate = new BCryptPasswordEncoder(strength);
+        log.info("BCrypt strength {} on {} hashing threads (queue {})", strength, poolSize, queueCapacity);
+
+        encodeTimer = meterRegistry.timer("auth.password.hash", "op", "encode");
+        matchesTimer = meterRegistry.timer("auth.password.hash", "op", "matches");
+        rejected = meterRegistry.counter("auth.password.rejected");
+        Gauge.builder("auth.password.queue.depth", executor, e -> e.getQueue().size()).register(meterRegistry);
+        Gauge.builder("auth.password.active", executor, ThreadPoolExecutor::getActiveCount).register(meterRegistry);
+        Gauge.builder("auth.password.strength", this, e -> e.strength).register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(() -> delegate.encode(rawPassword), encodeTimer);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(() -> delegate.matches(rawPassword, encodedPassword), matchesTimer);
+    }
+
+    /** Hash được băm với cost thấp hơn cost hiện tại → nên băm lại khi có mật khẩu gốc (lúc login) */
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    int strength() {
+        return strength;
+    }
+
+    // ------------------------------------------------------------------
+
+    private <T> T run(Callable<T> task, Timer timer) {
+        Future<T> future;
+        try {
+            future = executor.submit(() -> timer.recordCallable(task));
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new TooManyRequestsException("Hệ thống đang bận, vui lòng thử lại sau", 1);
+        }
+        try {
+            return future.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(false); // chưa chạy thì bỏ khỏi hàng đợi
+            rejected.increment();
+            throw new TooManyRequestsException("Hệ thống đang bận, vui lòng thử lại sau", 1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(false);
+            throw new IllegalStateException("Interrupted while hashing password", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /** Cost lớn nhất mà thời gian băm dự kiến ≤ target-hash-ms, kẹp trong [min, max] */
+    private int calibrate() {
+        BCryptPasswordEncoder probe = new BCryptPasswordEncoder(BASE_STRENGTH);
+        probe.encode("warm-up");
+        long[] samples = new long[3];
+        for (int i = 0; i < samples.length; i++) {
+            long start = System.nanoTime();
+            probe.encode("calibration-" + i);
+            samples[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(samples);
+        double baseMs = samples[samples.length / 2] / 1_000_000.0;
+
+        int chosen = BASE_STRENGTH;
+        while (chosen < maxStrength && baseMs * Math.pow(2, chosen + 1 - BASE_STRENGTH) <= targetHashMs) chosen++;
+        while (chosen > minStrength && baseMs * Math.pow(2, chosen - BASE_STRENGTH) > targetHashMs) chosen--;
+        chosen = Math.max(minStrength, Math.min(maxStrength, chosen));
+        log.info("BCrypt calibration: cost {} ≈ {} ms → strength {} (target {} ms)",
+                BASE_STRENGTH, String.format("%.1f", baseMs), chosen, targetHashMs);
+        return chosen;
+    }
+}
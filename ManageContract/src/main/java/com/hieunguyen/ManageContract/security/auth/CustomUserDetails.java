@@ -53,6 +53,19 @@ public class CustomUserDetails implements UserDetails {
         this.authorities = auths;
     }
 
+    /** Dựng lại từ cache (PrincipalCache) – không giữ mật khẩu */
+    public CustomUserDetails(Long accountId, Long employeeId, String email, boolean enabled,
+                             Collection<String> authorityKeys) {
+        this.accountId = accountId;
+        this.employeeId = employeeId;
+        this.email = email;
+        this.password = null;
+        this.enabled = enabled;
+        Set<SimpleGrantedAuthority> auths = new HashSet<>();
+        for (String key : authorityKeys) auths.add(new SimpleGrantedAuthority(key));
+        this.authorities = auths;
+    }
+
     @Override public Collection<? extends GrantedAuthority> getAuthorities() { return authorities; }
     @Override public String getPassword() { return password; }
     @Override public String getUsername() { return email; }
@@ -0,0 +1,90 @@
+package com.hieunguyen.ManageContract.security.auth;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * "Permissions epoch" của tài khoản, giữ trên Redis:
+ * - PERM_EPOCH:{accountId} tăng khi quyền/trạng thái của 1 tài khoản đổi; PERM_EPOCH:* tăng khi role/permission đổi.
+ * - Epoch = tổng 2 counter (đều chỉ tăng) → đổi bất kỳ bên nào cũng ra giá trị mới.
+ * - Access token mang claim "pv" = epoch lúc phát; lệch epoch hiện tại → quyền trong token đã cũ.
+ * - Đọc qua cache cục bộ vài giây, evict qua pub/sub của PrincipalCache.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class PermissionEpochService {
+
+    private static final String KEY_PREFIX = "PERM_EPOCH:";
+    private static final String GLOBAL = "*";
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Value("${app.security.stateless-auth.epoch-cache-ms:1000}")
+    private long epochCacheMs;
+
+    private Cache<Long, Long> local;
+
+    @PostConstruct
+    void init() {
+        local = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(Duration.ofMillis(epochCacheMs))
+                .build();
+    }
+
+    /** Epoch hiện tại của tài khoản; null nếu không đọc được Redis (coi như không xác định) */
+    public Long current(Long accountId) {
+        if (accountId == null) return null;
+        Long cached = local.getIfPresent(accountId);
+        if (cached != null) return cached;
+        try {
+            List<String> values = redisTemplate.opsForValue().multiGet(List.of(KEY_PREFIX + accountId, KEY_PREFIX + GLOBAL));
+            long epoch = 0;
+            if (values != null) {
+                for (String v : values) if (v != null) epoch += Long.parseLong(v);
+            }
+            local.put(accountId, epoch);
+            return epoch;
+        } catch (Exception e) {
+            log.debug("Cannot read permissions epoch for {}: {}", accountId, e.getMessage());
+            return null;
+        }
+    }
+
+    /** Quyền/trạng thái của 1 tài khoản đã đổi */
+    public void bump(Long accountId) {
+        increment(KEY_PREFIX + accountId);
+        local.invalidate(accountId);
+    }
+
+    /** Role/permission đổi → mọi token đang lưu hành đều cũ */
+    public void bumpAll() {
+        increment(KEY_PREFIX + GLOBAL);
+        local.invalidateAll();
+    }
+
+    /** Evict nhận từ node khác (cùng kênh với PrincipalCache) */
+    void invalidateLocal(Long accountId) {
+        if (accountId == null) local.invalidateAll();
+        else local.invalidate(accountId);
+    }
+
+    private void increment(String key) {
+        try {
+            redisTemplate.opsForValue().increment(key);
+        } catch (Exception e) {
+            // không tăng được → token phát trước đó vẫn qua được chế độ stateless tới khi hết hạn
+            log.warn("Cannot bump permissions epoch {}: {}", key, e.getMessage());
+        }
+    }
+}
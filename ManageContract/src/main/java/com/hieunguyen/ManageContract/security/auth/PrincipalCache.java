@@ -0,0 +1,229 @@
+package com.hieunguyen.ManageContract.security.auth;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache principal (CustomUserDetails) cho JwtAuthenticationFilter → request đã đăng nhập không chạm MySQL.
+ * - L1: Caffeine theo accountId (+ index email → accountId), TTL ngắn.
+ * - L2 (tuỳ chọn): Redis "PRINCIPAL:{accountId}" dạng JSON, không chứa mật khẩu.
+ * - Đổi role/permission/trạng thái tài khoản → evict sau commit; node khác nhận evict qua Redis pub/sub.
+ * - Epoch tăng mỗi lần evict: bản load từ DB bắt đầu trước lần evict sẽ không được ghi vào cache.
+ * - Evict cũng tăng permissions epoch (PermissionEpochService) để token stateless mang quyền cũ bị loại.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class PrincipalCache {
+
+    private static final String KEY_PREFIX = "PRINCIPAL:";
+    // set các accountId đang có bản Redis → evictAll không phải KEYS cả keyspace
+    private static final String INDEX_KEY = "PRINCIPALS";
+    private static final String EVICT_CHANNEL = "principal-evict";
+    private static final String ALL = "*";
+
+    private final CustomUserDetailsService userDetailsService;
+    private final PermissionEpochService permissionEpochService;
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.security.principal-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.security.principal-cache.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    @Value("${app.security.principal-cache.max-size:10000}")
+    private long maxSize;
+
+    @Value("${app.security.principal-cache.redis-enabled:true}")
+    private boolean redisEnabled;
+
+    private Cache<Long, CustomUserDetails> byId;
+    private Cache<String, Long> idByEmail;
+    private final AtomicLong epoch = new AtomicLong();
+
+    /** Dạng lưu Redis (không có password) */
+    record Snapshot(Long accountId, Long employeeId, String email, boolean enabled, List<String> authorities) { }
+
+    @PostConstruct
+    void init() {
+        byId = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        idByEmail = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, byId, "auth.principal.cache");
+
+        if (enabled && redisEnabled) {
+            listenerContainer.addMessageListener((message, pattern) ->
+                    evictLocal(new String(message.getBody(), StandardCharsets.UTF_8)), new ChannelTopic(EVICT_CHANNEL));
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Lookup
+    // ------------------------------------------------------------------
+
+    public CustomUserDetails getByAccountId(Long accountId) {
+        if (!enabled) return userDetailsService.loadUserByAccountId(accountId);
+
+        CustomUserDetails cached = byId.getIfPresent(accountId);
+        if (cached != null) return cached;
+
+        long start = epoch.get();
+        CustomUserDetails loaded = readRedis(accountId);
+        boolean fromDb = loaded == null;
+        if (fromDb) loaded = strip(userDetailsService.loadUserByAccountId(accountId));
+        put(loaded, start, fromDb);
+        return loaded;
+    }
+
+    public CustomUserDetails getByEmail(String email) {
+        if (!enabled) return (CustomUserDetails) userDetailsService.loadUserByUsername(email);
+
+        Long id = idByEmail.getIfPresent(email);
+        if (id != null) return getByAccountId(id);
+
+        long start = epoch.get();
+        CustomUserDetails loaded = strip((CustomUserDetails) userDetailsService.loadUserByUsername(email));
+        put(loaded, start, true);
+        return loaded;
+    }
+
+    // ------------------------------------------------------------------
+    // Invalidation
+    // ------------------------------------------------------------------
+
+    /** Bỏ principal của 1 tài khoản sau khi transaction hiện tại commit (mọi node) */
+    public void evict(Long accountId) {
+        if (accountId != null) afterCommit(String.valueOf(accountId));
+    }
+
+    /** Bỏ toàn bộ principal (đổi quyền của role/permission ảnh hưởng nhiều tài khoản) */
+    public void evictAll() {
+        afterCommit(ALL);
+    }
+
+    private void afterCommit(String target) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evictEverywhere(target);
+                }
+            });
+        } else {
+            evictEverywhere(target);
+        }
+    }
+
+    private void evictEverywhere(String target) {
+        evictLocal(target);
+        if (ALL.equals(target)) permissionEpochService.bumpAll();
+        else permissionEpochService.bump(Long.valueOf(target));
+        if (!enabled || !redisEnabled) return;
+        try {
+            if (ALL.equals(target)) {
+                Set<String> ids = redisTemplate.opsForSet().members(INDEX_KEY);
+                List<String> keys = new ArrayList<>();
+                if (ids != null) ids.forEach(id -> keys.add(KEY_PREFIX + id));
+                keys.add(INDEX_KEY);
+                redisTemplate.delete(keys);
+            } else {
+                redisTemplate.delete(KEY_PREFIX + target);
+                redisTemplate.opsForSet().remove(INDEX_KEY, target);
+            }
+            redisTemplate.convertAndSend(EVICT_CHANNEL, target);
+        } catch (Exception e) {
+            // node khác vẫn hết hạn theo TTL
+            log.warn("Cannot broadcast principal eviction {}: {}", target, e.getMessage());
+        }
+    }
+
+    private void evictLocal(String target) {
+        epoch.incrementAndGet();
+        if (ALL.equals(target)) {
+            byId.invalidateAll();
+            idByEmail.invalidateAll();
+            permissionEpochService.invalidateLocal(null);
+            return;
+        }
+        try {
+            Long id = Long.valueOf(target);
+            byId.invalidate(id);
+            permissionEpochService.invalidateLocal(id);
+            idByEmail.asMap().values().removeIf(id::equals);
+        } catch (NumberFormatException ignore) {
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------------
+
+    private void put(CustomUserDetails principal, long startEpoch, boolean writeRedis) {
+        if (epoch.get() != startEpoch) return; // có evict trong lúc load → bản này có thể đã cũ
+        byId.put(principal.getAccountId(), principal);
+        idByEmail.put(principal.getEmail(), principal.getAccountId());
+        if (writeRedis) writeRedis(principal);
+    }
+
+    private CustomUserDetails readRedis(Long accountId) {
+        if (!redisEnabled) return null;
+        try {
+            String json = redisTemplate.opsForValue().get(KEY_PREFIX + accountId);
+            if (json == null) return null;
+            Snapshot s = objectMapper.readValue(json, Snapshot.class);
+            return new CustomUserDetails(s.accountId(), s.employeeId(), s.email(), s.enabled(), s.authorities());
+        } catch (Exception e) {
+            log.debug("Principal cache Redis read failed for {}: {}", accountId, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeRedis(CustomUserDetails p) {
+        if (!redisEnabled) return;
+        try {
+            Snapshot s = new Snapshot(p.getAccountId(), p.getEmployeeId(), p.getEmail(), p.isEnabled(),
+                    p.getAuthorities().stream().map(a -> a.getAuthority()).toList());
+            redisTemplate.opsForValue().set(KEY_PREFIX + p.getAccountId(), objectMapper.writeValueAsString(s),
+                    Duration.ofSeconds(ttlSeconds));
+            redisTemplate.opsForSet().add(INDEX_KEY, String.valueOf(p.getAccountId()));
+        } catch (Exception e) {
+            log.debug("Principal cache Redis write failed for {}: {}", p.getAccountId(), e.getMessage());
+        }
+    }
+
+    /** Bản trong cache không giữ hash mật khẩu */
+    private static CustomUserDetails strip(CustomUserDetails d) {
+        return new CustomUserDetails(d.getAccountId(), d.getEmployeeId(), d.getEmail(), d.isEnabled(),
+                d.getAuthorities().stream().map(a -> a.getAuthority()).toList());
+    }
+}
@@ -0,0 +1,139 @@
+package com.hieunguyen.ManageContract.security.auth;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Phiên đăng nhập (refresh token) theo từng thiết bị, index theo tài khoản trên Redis:
+ * - SESSION:{sid}   → SHA-256 của refresh token hiện hành, TTL = hạn refresh token.
+ * - SESSIONS:{email} → ZSET sid, score = thời điểm hết hạn (ms) → dọn phiên hết hạn bằng ZREMRANGEBYSCORE.
+ * Thu hồi 1 phiên / tất cả phiên của 1 tài khoản chỉ chạm đúng các key của tài khoản đó (không KEYS/SCAN).
+ * Quá max-per-account thì phiên cũ nhất bị thu hồi.
+ * Refresh token xoay vòng: mỗi lần refresh thay token của phiên bằng token mới (so-và-thay nguyên tử bằng Lua);
+ * token cũ của phiên còn sống bị dùng lại → REUSED (token đã lộ) → nơi gọi thu hồi cả phiên.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class SessionRegistry {
+
+    private static final String SESSION_PREFIX = "SESSION:";
+    private static final String INDEX_PREFIX = "SESSIONS:";
+
+    // KEYS[1]=SESSION:{sid}; ARGV = hash token đang trình, hash token mới, ttl ms
+    static final RedisScript<Long> ROTATE_SCRIPT = new DefaultRedisScript<>(
+            "local cur = redis.call('GET', KEYS[1]) " +
+            "if not cur then return 0 end " +
+            "if cur ~= ARGV[1] then return -1 end " +
+            "redis.call('SET', KEYS[1], ARGV[2], 'PX', ARGV[3]) " +
+            "return 1", Long.class);
+
+    public enum Rotation { ROTATED, UNKNOWN, REUSED }
+
+    private final StringRedisTemplate redisTemplate;
+
+    @Value("${jwt.refresh-expiration-time}")
+    private long refreshTokenExpiration;
+
+    @Value("${app.security.sessions.max-per-account:10}")
+    private int maxPerAccount;
+
+    public String newSessionId() {
+        return UUID.randomUUID().toString();
+    }
+
+    /** Ghi phiên mới; trả về các phiên cũ bị thu hồi do vượt max-per-account */
+    public Set<String> register(String email, String sid, String refreshToken) {
+        long now = System.currentTimeMillis();
+        Duration ttl = Duration.ofMillis(refreshTokenExpiration);
+        String index = INDEX_PREFIX + email;
+
+        redisTemplate.opsForValue().set(SESSION_PREFIX + sid, hash(refreshToken), ttl);
+        redisTemplate.opsForZSet().add(index, sid, now + refreshTokenExpiration);
+        redisTemplate.expire(index, ttl);
+        redisTemplate.opsForZSet().removeRangeByScore(index, 0, now);
+
+        Long count = redisTemplate.opsForZSet().zCard(index);
+        if (count == null || count <= maxPerAccount) return Set.of();
+        Set<String> oldest = redisTemplate.opsForZSet().range(index, 0, count - maxPerAccount - 1);
+        if (oldest == null) return Set.of();
+        oldest.forEach(old -> revoke(email, old));
+        return oldest;
+    }
+
+    /** Refresh token có đúng là token hiện hành của phiên sid không */
+    public boolean isCurrent(String sid, String refreshToken) {
+        String stored = redisTemplate.opsForValue().get(SESSION_PREFIX + sid);
+        return stored != null && MessageDigest.isEqual(
+                stored.getBytes(StandardCharsets.UTF_8), hash(refreshToken).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Thay refresh token của phiên nếu token đang trình đúng là token hiện hành.
+     * UNKNOWN: phiên không tồn tại/hết hạn; REUSED: phiên còn nhưng token đã bị thay trước đó.
+     */
+    public Rotation rotate(String email, String sid, String presentedToken, String newToken) {
+        Long r = redisTemplate.execute(ROTATE_SCRIPT, List.of(SESSION_PREFIX + sid),
+                hash(presentedToken), hash(newToken), String.valueOf(refreshTokenExpiration));
+        if (r == null || r == 0) return Rotation.UNKNOWN;
+        if (r < 0) return Rotation.REUSED;
+        long expiresAt = System.currentTimeMillis() + refreshTokenExpiration;
+        redisTemplate.opsForZSet().add(INDEX_PREFIX + email, sid, expiresAt);
+        redisTemplate.expire(INDEX_PREFIX + email, Duration.ofMillis(refreshTokenExpiration));
+        return Rotation.ROTATED;
+    }
+
+    public boolean exists(String sid) {
+        return Boolean.TRUE.equals(redisTemplate.hasKey(SESSION_PREFIX + sid));
+    }
+
+    /** Các phiên còn hạn của tài khoản */
+    public Set<String> sessions(String email) {
+        String index = INDEX_PREFIX + email;
+        redisTemplate.opsForZSet().removeRangeByScore(index, 0, System.currentTimeMillis());
+        Set<String> sids = redisTemplate.opsForZSet().range(index, 0, -1);
+        return sids != null ? sids : Set.of();
+    }
+
+    public void revoke(String email, String sid) {
+        redisTemplate.delete(SESSION_PREFIX + sid);
+        redisTemplate.opsForZSet().remove(INDEX_PREFIX + email, sid);
+    }
+
+    /** Thu hồi mọi phiên của tài khoản: O(số phiên). Trả về các sid đã thu hồi */
+    public Set<String> revokeAll(String email) {
+        String index = INDEX_PREFIX + email;
+        Set<String> sids = redisTemplate.opsForZSet().range(index, 0, -1);
+        if (sids == null) sids = Set.of();
+        List<String> keys = new ArrayList<>();
+        sids.forEach(sid -> keys.add(SESSION_PREFIX + sid));
+        keys.add(index);
+        redisTemplate.delete(keys);
+        log.debug("Revoked {} sessions of {}", sids.size(), email);
+        return sids;
+    }
+
+    static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.hieunguyen.ManageContract.security.auth;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Deny list cho access token theo phiên (claim sid): logout / phát hiện dùng lại refresh token → mọi access token
+ * của phiên bị chặn ngay, không chờ hết hạn.
+ * - Nguồn chuẩn: Redis ZSET REVOKED_SIDS (score = thời điểm access token cuối cùng của phiên hết hạn).
+ * - Mỗi node giữ bản sao dạng bloom filter, cập nhật qua pub/sub "access-revoke" và dựng lại định kỳ
+ *   (bỏ phần tử đã hết hạn). Token không nằm trong bloom (gần như mọi request) được trả lời trong bộ nhớ;
+ *   chỉ khi bloom báo "có thể" mới hỏi Redis để loại false positive.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class TokenRevocationList {
+
+    private static final String KEY = "REVOKED_SIDS";
+    private static final String CHANNEL = "access-revoke";
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    @Value("${jwt.expiration-time}")
+    private long jwtExpiration;
+
+    @Value("${app.security.revocation.expected-entries:100000}")
+    private long expectedEntries;
+
+    @Value("${app.security.revocation.fpp:0.001}")
+    private double fpp;
+
+    private volatile BloomFilter filter;
+    // sid nhận qua pub/sub trong lúc đang dựng lại filter → nạp lại vào filter mới
+    private final Queue<String> receivedDuringRebuild = new ConcurrentLinkedQueue<>();
+    private volatile boolean rebuilding;
+    // kết quả xác nhận với Redis cho sid bloom báo "có thể có"
+    private final Cache<String, Boolean> confirmed = Caffeine.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(Duration.ofMinutes(1))
+            .build();
+
+    @PostConstruct
+    void init() {
+        filter = new BloomFilter(expectedEntries, fpp);
+        listenerContainer.addMessageListener((message, pattern) -> {
+            String sid = new String(message.getBody(), StandardCharsets.UTF_8);
+            addLocal(sid);
+            confirmed.put(sid, true);
+        }, new ChannelTopic(CHANNEL));
+        rebuild();
+    }
+
+    /** Thu hồi access token của các phiên (mọi node) */
+    public void revoke(Collection<String> sessionIds) {
+        if (sessionIds == null || sessionIds.isEmpty()) return;
+        double until = System.currentTimeMillis() + jwtExpiration;
+        for (String sid : sessionIds) {
+            try {
+                // ghi Redis trước khi nạp vào bloom: lần rebuild chạy song song sẽ thấy sid này
+                redisTemplate.opsForZSet().add(KEY, sid, until);
+                redisTemplate.convertAndSend(CHANNEL, sid);
+            } catch (Exception e) {
+                log.error("Cannot publish access token revocation for session {}: {}", sid, e.getMessage());
+            }
+            addLocal(sid);
+            confirmed.put(sid, true);
+        }
+    }
+
+    /** Phiên đã bị thu hồi chưa; sid null (token cũ không có sid) → không kiểm tra được */
+    public boolean isRevoked(String sessionId) {
+        if (sessionId == null || !filter.mightContain(sessionId)) return false;
+        Boolean known = confirmed.getIfPresent(sessionId);
+        if (known != null) return known;
+        try {
+            Double until = redisTemplate.opsForZSet().score(KEY, sessionId);
+            boolean revoked = until != null && until > System.currentTimeMillis();
+            confirmed.put(sessionId, revoked);
+            return revoked;
+        } catch (Exception e) {
+            // bloom đã báo có thể bị thu hồi → không xác minh được thì từ chối
+            log.warn("Cannot confirm revocation of session {}: {}", sessionId, e.getMessage());
+            return true;
+        }
+    }
+
+    /** Dựng lại bloom từ Redis: bỏ phiên đã hết hạn, nạp phiên còn bị chặn */
+    @Scheduled(fixedDelayString = "${app.security.revocation.rebuild-interval-ms:600000}",
+            initialDelayString = "${app.security.revocation.rebuild-interval-ms:600000}")
+    public void rebuild() {
+        rebuilding = true;
+        try {
+            long now = System.currentTimeMillis();
+            redisTemplate.opsForZSet().removeRangeByScore(KEY, 0, now);
+            Set<String> sids = redisTemplate.opsForZSet().rangeByScore(KEY, now, Double.POSITIVE_INFINITY);
+            BloomFilter fresh = new BloomFilter(Math.max(expectedEntries, sids == null ? 0 : sids.size() * 2L), fpp);
+            if (sids != null) sids.forEach(fresh::put);
+            filter = fresh;
+            log.debug("Access token deny list rebuilt with {} sessions", sids == null ? 0 : sids.size());
+        } catch (Exception e) {
+            log.warn("Cannot rebuild access token deny list, keeping the current one: {}", e.getMessage());
+        } finally {
+            rebuilding = false;
+            String sid;
+            while ((sid = receivedDuringRebuild.poll()) != null) filter.put(sid);
+        }
+    }
+
+    private void addLocal(String sid) {
+        boolean duringRebuild = rebuilding;
+        filter.put(sid);
+        if (duringRebuild) receivedDuringRebuild.add(sid);
+    }
+}
@@ -1,13 +1,17 @@
 package com.hieunguyen.ManageContract.security.jwt;
 
 import com.hieunguyen.ManageContract.security.auth.CustomUserDetails;
-import com.hieunguyen.ManageContract.security.auth.CustomUserDetailsService;
+import com.hieunguyen.ManageContract.security.auth.PermissionEpochService;
+import com.hieunguyen.ManageContract.security.auth.PrincipalCache;
+import com.hieunguyen.ManageContract.security.auth.TokenRevocationList;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -17,6 +21,7 @@ import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.List;
 
 @Component
 @RequiredArgsConstructor
@@ -24,7 +29,13 @@ import java.util.Collections;
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtUtil jwtUtil;
-    private final CustomUserDetailsService userDetailsService;
+    private final PrincipalCache principalCache;
+    private final PermissionEpochService permissionEpochService;
+    private final TokenRevocationList tokenRevocationList;
+
+    // true → tin quyền trong token (claim authorities + pv), chỉ đọc epoch trên Redis; false → principal từ cache/DB
+    @Value("${app.security.stateless-auth.enabled:false}")
+    private boolean statelessAuth;
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
@@ -40,67 +51,52 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         final String jwt = authHeader.substring(7).trim();
 
-        // 1) Kiểm tra chữ ký + hạn. Không hợp lệ thì bỏ qua (để endpoint xử lý 401/403).
-        if (!jwtUtil.validateToken(jwt)) {
-            log.warn("JWT không hợp lệ hoặc đã hết hạn");
+        // 1) Nếu đã có Authentication thì không set lại
+        if (SecurityContextHolder.getContext().getAuthentication() != null) {
             filterChain.doFilter(request, response);
             return;
         }
 
-        // 2) Nếu đã có Authentication thì không set lại
-        if (SecurityContextHolder.getContext().getAuthentication() != null) {
+        // 2) Kiểm tra chữ ký + hạn, parse claim 1 lần (token gặp lại lấy từ cache). Không hợp lệ thì bỏ qua.
+        final VerifiedToken token = jwtUtil.verify(jwt);
+        if (token == null) {
             filterChain.doFilter(request, response);
             return;
         }
 
-        String email = null;
-        Long accountId = null;
-
-        // 3) Ưu tiên claim email
-        try {
-            email = jwtUtil.extractEmail(jwt); // có thể trả null
-        } catch (Exception e) {
-            log.debug("Không lấy được email từ JWT: {}", e.getMessage());
-        }
-
-        // 4) Lấy accountId từ claim hoặc sub dạng số
-        try {
-            accountId = jwtUtil.extractAccountId(jwt); // có thể trả null
-        } catch (Exception e) {
-            log.debug("Không lấy được accountId từ JWT: {}", e.getMessage());
+        // Phiên của token đã logout / bị thu hồi (kiểm tra bloom trong bộ nhớ)
+        if (tokenRevocationList.isRevoked(token.sessionId())) {
+            log.debug("JWT thuộc phiên đã bị thu hồi: {}", token.sessionId());
+            filterChain.doFilter(request, response);
+            return;
         }
 
-        // 5) Fallback: dùng subject (email hoặc id)
-        if (email == null && accountId == null) {
-            try {
-                String sub = jwtUtil.extractSubject(jwt);
-                if (sub != null) {
-                    if (sub.matches("\\d+")) accountId = Long.valueOf(sub);
-                    else email = sub; // sub là email
-                }
-            } catch (Exception e) {
-                log.debug("Không đọc được subject từ JWT: {}", e.getMessage());
+        // 3) Stateless: quyền lấy thẳng từ claim nếu token còn khớp permissions epoch
+        if (statelessAuth) {
+            CustomUserDetails fromToken = principalFromClaims(token);
+            if (fromToken != null) {
+                authenticate(request, fromToken);
+                filterChain.doFilter(request, response);
+                return;
             }
         }
 
+        // 4) accountId từ claim hoặc sub dạng số; email từ sub
+        Long accountId = token.accountId();
+        String email = token.email();
+
         try {
+            // Principal lấy từ cache (Caffeine → Redis → MySQL); ưu tiên accountId vì là khoá chính của cache
             CustomUserDetails userDetails;
-            if (email != null) {
-                userDetails = (CustomUserDetails) userDetailsService.loadUserByUsername(email);
-            } else if (accountId != null) {
-                userDetails = userDetailsService.loadUserByAccountId(accountId);
+            if (accountId != null) {
+                userDetails = principalCache.getByAccountId(accountId);
+            } else if (email != null) {
+                userDetails = principalCache.getByEmail(email);
             } else {
                 throw new BadCredentialsException("JWT thiếu cả email và accountId");
             }
 
-            var authToken = new UsernamePasswordAuthenticationToken(
-                    userDetails,
-                    null,
-                    userDetails.getAuthorities() != null ? userDetails.getAuthorities() : Collections.emptyList()
-            );
-            authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-            SecurityContextHolder.getContext().setAuthentication(authToken);
-            log.info("Đã xác thực: {}", userDetails.getUsername());
+            authenticate(request, userDetails);
 
         } catch (Exception ex) {
             // Không đẩy lỗi ra ngoài để tránh 500
@@ -109,4 +105,46 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         filterChain.doFilter(request, response);
     }
+
+    private void authenticate(HttpServletRequest request, CustomUserDetails userDetails) {
+        var authToken = new UsernamePasswordAuthenticationToken(
+                userDetails,
+                null,
+                userDetails.getAuthorities() != null ? userDetails.getAuthorities() : Collections.emptyList()
+        );
+        authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+        SecurityContextHolder.getContext().setAuthentication(authToken);
+        log.debug("Đã xác thực: {}", userDetails.getUsername());
+    }
+
+    /**
+     * Principal dựng từ claim đã verify. Trả null (→ đi đường cache/DB) khi token thiếu claim stateless
+     * hoặc pv lệch epoch hiện tại (quyền/trạng thái đã đổi sau khi phát token, hoặc không đọc được Redis).
+     */
+    private CustomUserDetails principalFromClaims(VerifiedToken token) {
+        try {
+            Claims claims = token.claims();
+            Object pv = claims.get(JwtUtil.CLAIM_PERMISSIONS_VERSION);
+            Object authorities = claims.get(JwtUtil.CLAIM_AUTHORITIES);
+            if (!(claims.get(JwtUtil.CLAIM_ACCOUNT_ID) instanceof Number)
+                    || !(pv instanceof Number) || !(authorities instanceof List<?> list)) {
+                return null;
+            }
+            Long accountId = token.accountId();
+            Long current = permissionEpochService.current(accountId);
+            if (current == null || current != ((Number) pv).longValue()) {
+                log.debug("Token của account {} mang quyền cũ (pv={}, epoch={})", accountId, pv, current);
+                return null;
+            }
+            Object employeeId = claims.get(JwtUtil.CLAIM_EMPLOYEE_ID);
+            return new CustomUserDetails(accountId,
+                    employeeId instanceof Number n ? n.longValue() : null,
+                    claims.getSubject(),
+                    true,
+                    list.stream().map(String::valueOf).toList());
+        } catch (Exception e) {
+            log.debug("Không dựng được principal từ claim: {}", e.getMessage());
+            return null;
+        }
+    }
 }
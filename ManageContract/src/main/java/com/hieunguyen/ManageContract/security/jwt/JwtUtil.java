@@ -1,10 +1,17 @@
 package com.hieunguyen.ManageContract.security.jwt;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.hieunguyen.ManageContract.security.auth.CustomUserDetails;
+import com.hieunguyen.ManageContract.security.auth.PermissionEpochService;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -13,6 +20,10 @@ import org.springframework.stereotype.Component;
 
 import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
 import java.util.function.Function;
 
@@ -21,6 +32,19 @@ import java.util.function.Function;
 @RequiredArgsConstructor
 public class JwtUtil {
 
+    // Claim cho chế độ stateless (JwtAuthenticationFilter dựng Authentication không cần DB)
+    public static final String CLAIM_ACCOUNT_ID = "accountId";
+    public static final String CLAIM_EMPLOYEE_ID = "employeeId";
+    public static final String CLAIM_AUTHORITIES = "authorities";
+    public static final String CLAIM_PERMISSIONS_VERSION = "pv";
+    // id phiên (SessionRegistry) trong refresh + access token
+    public static final String CLAIM_SESSION_ID = "sid";
+    // loại token: access và refresh cùng mang sid nên phải phân biệt được (chỉ refresh token có claim này)
+    public static final String CLAIM_TOKEN_TYPE = "typ";
+    public static final String TYPE_REFRESH = "refresh";
+
+    private final PermissionEpochService permissionEpochService;
+
     @Value("${jwt.secret-key}")
     private String secret;
 
@@ -30,8 +54,44 @@ public class JwtUtil {
     @Value("${jwt.refresh-expiration-time}")
     private long refreshTokenExpiration;
 
+    // số token đã verify giữ lại (0 = tắt cache)
+    @Value("${app.security.jwt-cache.max-size:10000}")
+    private long verifiedCacheSize;
+
+    // key + parser dựng 1 lần lúc khởi động
+    private Key signingKey;
+    private JwtParser parser;
+    // SHA-256(token) → token đã verify, sống tới đúng lúc token hết hạn
+    private Cache<String, VerifiedToken> verified;
+
+    @PostConstruct
+    void init() {
+        signingKey = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        parser = Jwts.parserBuilder().setSigningKey(signingKey).build();
+        verified = Caffeine.newBuilder()
+                .maximumSize(verifiedCacheSize)
+                .expireAfter(new Expiry<String, VerifiedToken>() {
+                    @Override
+                    public long expireAfterCreate(String key, VerifiedToken token, long currentTime) {
+                        if (token.expiresAt() == null) return Duration.ofMillis(jwtExpiration).toNanos();
+                        return Math.max(0, Duration.between(Instant.now(), token.expiresAt()).toNanos());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, VerifiedToken token, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, VerifiedToken token, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
     private Key getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        return signingKey;
     }
 
     // ===================== TẠO TOKEN =====================
@@ -51,6 +111,16 @@ public class JwtUtil {
     }
 
 
+    /** Thêm claim principal (accountId, employeeId, authorities, pv) vào access token */
+    public Map<String, Object> putPrincipalClaims(Map<String, Object> claims, CustomUserDetails principal) {
+        claims.put(CLAIM_ACCOUNT_ID, principal.getAccountId());
+        if (principal.getEmployeeId() != null) claims.put(CLAIM_EMPLOYEE_ID, principal.getEmployeeId());
+        claims.put(CLAIM_AUTHORITIES, principal.getAuthorities().stream().map(a -> a.getAuthority()).sorted().toList());
+        Long epoch = permissionEpochService.current(principal.getAccountId());
+        if (epoch != null) claims.put(CLAIM_PERMISSIONS_VERSION, epoch); // thiếu pv → filter luôn về DB
+        return claims;
+    }
+
     public String generateTokenWithClaims(String subject, Map<String, Object> extraClaims) {
         return Jwts.builder()
                 .setClaims(extraClaims)
@@ -64,6 +134,18 @@ public class JwtUtil {
     public String generateRefreshToken(String email) {
         return Jwts.builder()
                 .setSubject(email)
+                .claim(CLAIM_TOKEN_TYPE, TYPE_REFRESH)
+                .setIssuedAt(new Date())
+                .setExpiration(new Date(System.currentTimeMillis() + refreshTokenExpiration))
+                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .compact();
+    }
+
+    public String generateRefreshToken(String email, String sessionId) {
+        return Jwts.builder()
+                .setSubject(email)
+                .claim(CLAIM_SESSION_ID, sessionId)
+                .claim(CLAIM_TOKEN_TYPE, TYPE_REFRESH)
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + refreshTokenExpiration))
                 .signWith(getSigningKey(), SignatureAlgorithm.HS256)
@@ -72,6 +154,16 @@ public class JwtUtil {
 
     // ===================== TRÍCH XUẤT THÔNG TIN =====================
 
+    /** sid của refresh token; null với token phát trước khi có SessionRegistry */
+    public String extractSessionId(String token) {
+        return extractClaim(token, claims -> claims.get(CLAIM_SESSION_ID, String.class));
+    }
+
+    /** Token do generateRefreshToken phát (không dùng được làm access token và ngược lại) */
+    public boolean isRefreshToken(String token) {
+        return TYPE_REFRESH.equals(extractClaim(token, claims -> claims.get(CLAIM_TOKEN_TYPE, String.class)));
+    }
+
     public String extractEmail(String token) {
         return extractClaim(token, Claims::getSubject);
     }
@@ -114,18 +206,46 @@ public class JwtUtil {
     }
 
     private Claims extractAllClaims(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+        return parser.parseClaimsJws(token).getBody();
     }
 
     // ===================== VALIDATE TOKEN =====================
 
+    /**
+     * Verify chữ ký + hạn và parse claim đúng 1 lần; token vừa verify gần đây lấy từ cache (không tính lại HMAC).
+     * @return null nếu token không hợp lệ, đã hết hạn hoặc là refresh token
+     */
+    public VerifiedToken verify(String token) {
+        String key = sha256(token);
+        VerifiedToken cached = verified.getIfPresent(key);
+        if (cached != null && !cached.isExpired(Instant.now())) return cached;
+        try {
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            if (TYPE_REFRESH.equals(claims.get(CLAIM_TOKEN_TYPE))) {
+                log.warn("Refresh token bị dùng làm access token (sub={})", claims.getSubject());
+                return null;
+            }
+            VerifiedToken vt = VerifiedToken.of(claims);
+            verified.put(key, vt);
+            return vt;
+        } catch (JwtException | IllegalArgumentException e) {
+            log.warn("Token không hợp lệ: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static String sha256(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     public boolean validateToken(String token) {
         try {
-            Jwts.parserBuilder().setSigningKey(getSigningKey()).build().parseClaimsJws(token);
+            parser.parseClaimsJws(token);
             return true;
         } catch (JwtException | IllegalArgumentException e) {
             log.error("Token không hợp lệ: {}", e.getMessage());
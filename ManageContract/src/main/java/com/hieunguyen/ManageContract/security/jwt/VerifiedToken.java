@@ -0,0 +1,30 @@
+package com.hieunguyen.ManageContract.security.jwt;
+
+import io.jsonwebtoken.Claims;
+
+import java.time.Instant;
+
+/**
+ * JWT đã kiểm tra chữ ký + hạn, parse 1 lần và dùng lại cho mọi bước của JwtAuthenticationFilter.
+ * claims chỉ được đọc (instance được chia sẻ qua cache của JwtUtil).
+ */
+public record VerifiedToken(Claims claims, String subject, Long accountId, String sessionId, Instant expiresAt) {
+
+    static VerifiedToken of(Claims claims) {
+        String sub = claims.getSubject();
+        Object id = claims.get(JwtUtil.CLAIM_ACCOUNT_ID);
+        Long accountId = id instanceof Number n ? Long.valueOf(n.longValue())
+                : sub != null && sub.matches("\\d+") ? Long.valueOf(sub) : null;
+        Instant exp = claims.getExpiration() != null ? claims.getExpiration().toInstant() : null;
+        return new VerifiedToken(claims, sub, accountId, claims.get(JwtUtil.CLAIM_SESSION_ID, String.class), exp);
+    }
+
+    /** Email: subject khi subject không phải id dạng số */
+    public String email() {
+        return subject != null && !subject.matches("\\d+") ? subject : null;
+    }
+
+    public boolean isExpired(Instant now) {
+        return expiresAt != null && !now.isBefore(expiresAt);
+    }
+}
@@ -13,8 +13,10 @@ public interface AuthService {
     void sendOtp(String email);
     AuthResponse login(String identifier, String password, String otp);
     boolean verifyOtp(String email, String otp);
-    void logout(String email);
-    String refreshToken(String refreshToken);
+    void logout(String email);                 // thu hồi mọi phiên của tài khoản
+    void logoutCurrentAccount();               // thu hồi mọi phiên của tài khoản đang đăng nhập
+    void logoutSession(String refreshToken);   // thu hồi phiên của refresh token này
+    AuthResponse refreshToken(String refreshToken);   // xoay vòng: trả access token + refresh token mới
 
     void sendForgotPasswordOtp(String email);  // Gửi OTP cho người quên mật khẩu
     void resetPasswordWithOtp(ResetPasswordRequest request);  // Đặt lại mật khẩu bằng OTP
@@ -1,6 +1,7 @@
 package com.hieunguyen.ManageContract.service;
 
 import com.hieunguyen.ManageContract.common.constants.ContractStatus;
+import com.hieunguyen.ManageContract.dto.CursorPageResponse;
 import com.hieunguyen.ManageContract.dto.approval.StepApprovalRequest;
 import com.hieunguyen.ManageContract.dto.contract.ContractResponse;
 import com.hieunguyen.ManageContract.dto.contractSign.SignStepRequest;
@@ -23,7 +24,10 @@ public interface ContractApprovalService {
     ContractResponse signStep(Long contractId, Long stepId, SignStepRequest request);
 
     List<ContractResponse> getMyHandledContracts(ContractStatus status);
+    CursorPageResponse<ContractResponse> getMyHandledContractsPage(ContractStatus status, Long cursor,
+                                                                   int size, boolean includeVariables);
     List<ContractResponse> getMyPendingContracts();
+    CursorPageResponse<ContractResponse> getMyPendingContractsPage(Long cursor, int size, boolean includeVariables);
 
     ContractResponse getApprovalProgressOrPreview(Long contractId, Long flowId);
     String getEmployeeSignature(Long employeeId);
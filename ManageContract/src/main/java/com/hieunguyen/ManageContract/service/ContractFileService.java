@@ -5,6 +5,8 @@ import com.hieunguyen.ManageContract.entity.ContractVariableValue;
 
 import java.io.File;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 public interface ContractFileService {
     String generateContractFile(Contract contract);
@@ -20,6 +22,14 @@ public interface ContractFileService {
     String generateDocxFile(Contract contract);
     // Lấy PDF nếu có, nếu chưa có thì convert từ DOCX
     File getPdfOrConvert(Long contractId);
+    // PDF đã render (không convert)
+    Optional<File> findRenderedPdf(Long contractId);
+    // DOCX làm việc của hợp đồng (chưa sinh → empty)
+    Optional<File> findDocx(Long contractId);
+    // Render lại PDF từ DOCX hiện tại (dùng bởi worker của ConversionJobService)
+    File renderPdf(Long contractId);
+    // Như renderPdf nhưng không giữ thread trong lúc Document Server convert
+    CompletableFuture<File> renderPdfAsync(Long contractId);
 
     String embedSignatureByName(Long contractId, String imageRef, String printedName);
 
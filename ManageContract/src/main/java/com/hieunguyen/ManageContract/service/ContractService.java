@@ -1,6 +1,7 @@
 package com.hieunguyen.ManageContract.service;
 
 import com.hieunguyen.ManageContract.common.constants.ContractStatus;
+import com.hieunguyen.ManageContract.dto.CursorPageResponse;
 import com.hieunguyen.ManageContract.dto.contract.ContractResponse;
 import com.hieunguyen.ManageContract.dto.contract.CreateContractRequest;
 import com.hieunguyen.ManageContract.dto.contract.PlannedFlowResponse;
@@ -14,6 +15,8 @@ public interface ContractService {
     String previewContract(Long contractId);
     String previewTemplate(CreateContractRequest request);
     List<ContractResponse> getMyContracts(@Nullable ContractStatus status);
+    CursorPageResponse<ContractResponse> getMyContractsPage(@Nullable ContractStatus status, @Nullable Long cursor,
+                                                            int size, boolean includeVariables);
 
     void cancelContract(Long contractId);
     void changeApprover(Long contractId, Long stepId, Long newApproverId, boolean isUserApprover);
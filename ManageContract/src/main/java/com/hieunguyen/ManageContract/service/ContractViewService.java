@@ -1,5 +1,7 @@
 package com.hieunguyen.ManageContract.service;
 
+import com.hieunguyen.ManageContract.common.constants.RenderPriority;
+import com.hieunguyen.ManageContract.common.exception.PdfPendingException;
 import com.hieunguyen.ManageContract.dto.file.FilePayload;
 import com.hieunguyen.ManageContract.security.jwt.SecurityUtil;
 import lombok.RequiredArgsConstructor;
@@ -15,14 +17,17 @@ import java.io.File;
 public class ContractViewService {
 
     private final ContractFileService contractFileService;
+    private final ConversionJobService conversionJobService;
     private final SecurityUtil securityUtil; // nếu cần check quyền
 
     /**
      * View inline PDF.
-     * - Nếu hợp đồng mới có DOCX, sẽ convert sang PDF rồi trả inline.
+     * - Nếu PDF chưa sẵn sàng (mới có DOCX / vừa ký), xếp job convert và ném PdfPendingException (HTTP 202).
      */
     public FilePayload viewPdf(Long contractId) {
-        File pdf = contractFileService.getPdfOrConvert(contractId);
+        File pdf = contractFileService.findRenderedPdf(contractId)
+                .orElseThrow(() -> new PdfPendingException(
+                        conversionJobService.enqueue(contractId, RenderPriority.VIEWER)));
 
         Resource res = new FileSystemResource(pdf);
         return new FilePayload(res, pdf.getName(), MediaType.APPLICATION_PDF, pdf.length());
@@ -0,0 +1,16 @@
+package com.hieunguyen.ManageContract.service;
+
+import com.hieunguyen.ManageContract.common.constants.RenderPriority;
+import com.hieunguyen.ManageContract.dto.conversion.ConversionJobResponse;
+
+public interface ConversionJobService {
+    // Xếp hàng convert PDF (gộp với job PENDING sẵn có); worker chạy sau khi transaction commit
+    ConversionJobResponse enqueue(Long contractId);
+    // Như trên với mức ưu tiên; job PENDING sẵn có được nâng lên nếu priority cao hơn
+    ConversionJobResponse enqueue(Long contractId, RenderPriority priority);
+
+    // Trạng thái PDF mới nhất của hợp đồng
+    ConversionJobResponse getPdfStatus(Long contractId);
+
+    ConversionJobResponse getJob(Long jobId);
+}
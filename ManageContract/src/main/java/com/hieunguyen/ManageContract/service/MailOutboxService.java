@@ -0,0 +1,9 @@
+package com.hieunguyen.ManageContract.service;
+
+public interface MailOutboxService {
+
+    /**
+     * Ghi email vào outbox trong transaction hiện tại; chỉ được gửi sau khi transaction commit.
+     */
+    void enqueue(String to, String subject, String body, boolean html);
+}
@@ -0,0 +1,166 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import com.hieunguyen.ManageContract.dto.approval.ApprovalLogRow;
+import org.docx4j.wml.*;
+
+import java.math.BigInteger;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Dựng trang "NHẬT KÝ KÝ DUYỆT" từ ApprovalLogRow.
+ * Mỗi cột là 1 accessor cố định (method reference) → không reflection, không toString entity,
+ * không lazy load; chi phí chỉ còn tạo node WML.
+ */
+final class ApprovalLogRenderer {
+
+    private static final ObjectFactory WML = new ObjectFactory();
+    private static final DateTimeFormatter TS_FORMAT = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss");
+
+    /** Thứ tự in: stepOrder (null cuối) → thời gian xử lý; cùng khoá giữ thứ tự id của query */
+    static final Comparator<ApprovalLogRow> ORDER = Comparator
+            .comparing((ApprovalLogRow r) -> Optional.ofNullable(r.stepOrder()).orElse(Integer.MAX_VALUE))
+            .thenComparing(r -> Optional.ofNullable(r.timestamp()).orElse(LocalDateTime.MIN));
+
+    private record Column(String header, int width, boolean center, Function<ApprovalLogRow, String> value) { }
+
+    // STT | Người xử lý | Đơn vị | Thời gian | Ý kiến  (STT đánh theo vị trí, không lấy từ row)
+    private static final int STT_WIDTH = 900;
+    private static final List<Column> COLUMNS = List.of(
+            new Column("Người xử lý", 3800, false, ApprovalLogRow::actor),
+            new Column("Đơn vị",      3200, false, ApprovalLogRow::orgUnit),
+            new Column("Thời gian",   2200, false, r -> formatTs(r.timestamp())),
+            new Column("Ý kiến",      2800, false, ApprovalLogRow::comment)
+    );
+
+    private ApprovalLogRenderer() { }
+
+    /** Block SDT (tag) gồm page-break + tiêu đề + bảng; null nếu không có dòng nào */
+    static SdtBlock block(List<ApprovalLogRow> rows, String tagValue) {
+        if (rows == null || rows.isEmpty()) return null;
+
+        // Dựng 1 SdtBlock – page break là PHẦN TỬ ĐẦU TIÊN bên trong block
+        SdtBlock sdt = WML.createSdtBlock();
+        SdtPr pr = WML.createSdtPr();
+        Tag tag = WML.createTag(); tag.setVal(tagValue);
+        pr.setTag(tag); sdt.setSdtPr(pr);
+        SdtContentBlock content = WML.createSdtContentBlock();
+        sdt.setSdtContent(content);
+
+        // Ngắt sang trang mới (bên trong block → replace sẽ xoá luôn)
+        content.getContent().add(pageBreakParagraph());
+
+        // Tiêu đề
+        content.getContent().add(titleParagraph("NHẬT KÝ KÝ DUYỆT VĂN BẢN", 14));
+        content.getContent().add(emptyLine());
+
+        // Bảng dữ liệu
+        List<ApprovalLogRow> ordered = new ArrayList<>(rows);
+        ordered.sort(ORDER);
+        content.getContent().add(table(ordered));
+        return sdt;
+    }
+
+    /** Tạo bảng theo COLUMNS, giữ nguyên thứ tự rows */
+    static Tbl table(List<ApprovalLogRow> rows) {
+        Tbl tbl = WML.createTbl();
+
+        // ===== borders =====
+        TblPr pr = WML.createTblPr();
+        TblBorders borders = WML.createTblBorders();
+        CTBorder b = WML.createCTBorder();
+        b.setVal(STBorder.SINGLE);
+        b.setSz(BigInteger.valueOf(8));
+        b.setColor("BFBFBF");
+        borders.setTop(b); borders.setBottom(b); borders.setLeft(b); borders.setRight(b);
+        borders.setInsideH(b); borders.setInsideV(b);
+        pr.setTblBorders(borders);
+        tbl.setTblPr(pr);
+
+        // ===== header =====
+        Tr head = WML.createTr();
+        head.getContent().add(thCell("STT", STT_WIDTH));
+        for (Column c : COLUMNS) head.getContent().add(thCell(c.header(), c.width()));
+        tbl.getContent().add(head);
+
+        // ===== rows =====
+        int i = 1;
+        for (ApprovalLogRow row : rows) {
+            Tr tr = WML.createTr();
+            tr.getContent().add(tdCell(String.valueOf(i++), STT_WIDTH, true));
+            for (Column c : COLUMNS) tr.getContent().add(tdCell(c.value().apply(row), c.width(), c.center()));
+            tbl.getContent().add(tr);
+        }
+        return tbl;
+    }
+
+    static String formatTs(LocalDateTime ts) {
+        return ts == null ? "" : ts.format(TS_FORMAT);
+    }
+
+    // ------------------------------------------------------------------
+
+    private static Tc thCell(String text, int width) {
+        Tc tc = tdCell(text, width, true);
+        // shading xám nhạt
+        TcPr p = tc.getTcPr(); if (p==null){ p=WML.createTcPr(); tc.setTcPr(p);}
+        CTShd shd = WML.createCTShd(); shd.setVal(STShd.CLEAR); shd.setFill("EDEDED");
+        p.setShd(shd);
+        return tc;
+    }
+
+    private static Tc tdCell(String text, int width, boolean center) {
+        Tc tc = WML.createTc();
+        TcPr pr = WML.createTcPr();
+        TblWidth w = WML.createTblWidth();
+        w.setType("dxa"); w.setW(BigInteger.valueOf(width));
+        pr.setTcW(w); tc.setTcPr(pr);
+
+        P p = WML.createP();
+        if (center) {
+            PPr ppr = WML.createPPr(); Jc jc = WML.createJc(); jc.setVal(JcEnumeration.CENTER);
+            ppr.setJc(jc); p.setPPr(ppr);
+        }
+        R r = WML.createR(); Text t = WML.createText(); t.setValue(Optional.ofNullable(text).orElse(""));
+        r.getContent().add(t); p.getContent().add(r);
+        tc.getContent().add(p);
+        return tc;
+    }
+
+    private static P titleParagraph(String text, int fontSizePt) {
+        P p = WML.createP();
+        PPr ppr = WML.createPPr(); Jc jc = WML.createJc(); jc.setVal(JcEnumeration.CENTER); ppr.setJc(jc); p.setPPr(ppr);
+        R r = WML.createR();
+        RPr rpr = WML.createRPr(); BooleanDefaultTrue b = new BooleanDefaultTrue(); b.setVal(true); rpr.setB(b);
+        HpsMeasure sz = new HpsMeasure(); sz.setVal(BigInteger.valueOf(fontSizePt*2L)); rpr.setSz(sz); rpr.setSzCs(sz);
+        r.setRPr(rpr);
+        Text t = WML.createText(); t.setValue(text);
+        r.getContent().add(t); p.getContent().add(r);
+        return p;
+    }
+
+    private static P centerParagraph(String text, int fontSizePt) {
+        P p = WML.createP();
+        PPr ppr = WML.createPPr(); Jc jc = WML.createJc(); jc.setVal(JcEnumeration.CENTER); ppr.setJc(jc); p.setPPr(ppr);
+        R r = WML.createR(); if (fontSizePt>0){ RPr rpr=new RPr(); HpsMeasure sz=new HpsMeasure(); sz.setVal(BigInteger.valueOf(fontSizePt*2L)); rpr.setSz(sz); rpr.setSzCs(sz); r.setRPr(rpr); }
+        Text t = WML.createText(); t.setValue(text);
+        r.getContent().add(t); p.getContent().add(r);
+        return p;
+    }
+
+    private static P emptyLine() { return centerParagraph(" ", 1); }
+
+    private static P pageBreakParagraph() {
+        P p = WML.createP();
+        R r = WML.createR();
+        Br br = WML.createBr(); br.setType(STBrType.PAGE);
+        r.getContent().add(br);
+        p.getContent().add(r);
+        return p;
+    }
+}
@@ -0,0 +1,63 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ghi file kiểu copy-on-write: ghi ra file tạm cùng thư mục rồi rename atomic đè lên file đích.
+ * Người đọc (viewer, Document Server tải DOCX) luôn thấy trọn bản cũ hoặc trọn bản mới, không bao giờ
+ * thấy file ghi dở; ai đã mở bản cũ vẫn đọc hết bản cũ (inode cũ) mà không phải chờ người ghi.
+ */
+final class AtomicFiles {
+
+    /** Ghi nội dung vào file tạm được truyền vào */
+    @FunctionalInterface
+    interface Writer {
+        void writeTo(Path tmp) throws Exception;
+    }
+
+    private AtomicFiles() { }
+
+    static void write(Path target, byte[] bytes) throws Exception {
+        write(target, tmp -> Files.write(tmp, bytes));
+    }
+
+    static void write(Path target, Writer writer) throws Exception {
+        Files.createDirectories(target.getParent());
+        Path tmp = Files.createTempFile(target.getParent(), "." + target.getFileName() + ".", ".tmp");
+        try {
+            writer.writeTo(tmp);
+            replace(tmp, target);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /** Copy source sang target (atomic như write) */
+    static void copy(Path source, Path target) throws Exception {
+        write(target, tmp -> Files.copy(source, tmp, StandardCopyOption.REPLACE_EXISTING));
+    }
+
+    /**
+     * Phiên bản của file trên đĩa: mỗi lần ghi qua write/replace là 1 file mới (inode mới, mtime mới)
+     * nên chuỗi này đổi sau mỗi lần ghi, đọc được từ mọi node dùng chung volume mà không cần băm nội dung.
+     */
+    static String version(Path file) throws IOException {
+        BasicFileAttributes a = Files.readAttributes(file, BasicFileAttributes.class);
+        return a.fileKey() + ":" + a.lastModifiedTime().to(TimeUnit.NANOSECONDS) + ":" + a.size();
+    }
+
+    /** Rename tmp → target; FS không hỗ trợ atomic (vd: 1 số volume mạng) thì rename thường */
+    static void replace(Path tmp, Path target) throws IOException {
+        try {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.hieunguyen.ManageContract.service.impl;
 
 import com.hieunguyen.ManageContract.common.constants.StatusUser;
+import com.hieunguyen.ManageContract.common.exception.BusinessException;
+import com.hieunguyen.ManageContract.common.exception.ErrorCode;
 import com.hieunguyen.ManageContract.dto.authAccount.AdminCreateUserRequest;
 import com.hieunguyen.ManageContract.dto.authAccount.AuthResponse;
 import com.hieunguyen.ManageContract.dto.authAccount.RegisterRequest;
@@ -10,11 +12,17 @@ import com.hieunguyen.ManageContract.dto.role.RoleResponse;
 import com.hieunguyen.ManageContract.entity.*;
 import com.hieunguyen.ManageContract.repository.*;
 import com.hieunguyen.ManageContract.security.jwt.JwtUtil;
+import com.hieunguyen.ManageContract.security.jwt.SecurityUtil;
+import com.hieunguyen.ManageContract.security.auth.CustomUserDetails;
+import com.hieunguyen.ManageContract.security.auth.PrincipalCache;
+import com.hieunguyen.ManageContract.security.auth.SessionRegistry;
+import com.hieunguyen.ManageContract.security.auth.TokenRevocationList;
 import com.hieunguyen.ManageContract.service.AuthService;
 import com.hieunguyen.ManageContract.service.EmailService;
 import com.hieunguyen.ManageContract.service.OtpService;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -24,6 +32,7 @@ import java.time.LocalDateTime;
 import java.util.*;
 
 @Service
+@Slf4j
 @RequiredArgsConstructor
 public class AuthServiceImpl implements AuthService {
 
@@ -38,6 +47,12 @@ public class AuthServiceImpl implements AuthService {
     private final StringRedisTemplate redisTemplate;
     private final DepartmentRepository departmentRepository;
     private final PositionRepository positionRepository;
+    private final PrincipalCache principalCache;
+    private final SessionRegistry sessionRegistry;
+    private final TokenRevocationList tokenRevocationList;
+
+    // refresh token phát trước khi có SessionRegistry (1 token/tài khoản, không TTL)
+    private static final String LEGACY_TOKEN_PREFIX = "TOKEN:";
 
     @Override
     @Transactional
@@ -104,6 +119,7 @@ public class AuthServiceImpl implements AuthService {
         account.setEmailVerificationToken(null);
         account.setTokenExpiresAt(null);
         authAccountRepository.save(account);
+        principalCache.evict(account.getId()); // PENDING → ACTIVE
 
         return true;
     }
@@ -129,6 +145,11 @@ public class AuthServiceImpl implements AuthService {
         // password
         if (password != null && passwordEncoder.matches(password, account.getPassword())) {
             isAuthenticated = true;
+            // hash cũ có cost thấp hơn cost đã hiệu chỉnh → băm lại khi đang có mật khẩu gốc
+            if (passwordEncoder.upgradeEncoding(account.getPassword())) {
+                account.setPassword(passwordEncoder.encode(password));
+                authAccountRepository.save(account);
+            }
         }
         // otp
         if (!isAuthenticated && otp != null && otpService.verifyOtp(account.getEmail(), otp)) {
@@ -170,31 +191,49 @@ public class AuthServiceImpl implements AuthService {
                     return new RoleResponse(role.getId(), role.getRoleKey(), role.getDescription(), permissionResponses);
                 }).toList();
 
+        String sid = sessionRegistry.newSessionId();
         Map<String, Object> claims = new HashMap<>();
         claims.put("roles", roleResponses);
+        claims.put(JwtUtil.CLAIM_SESSION_ID, sid);
+        jwtUtil.putPrincipalClaims(claims, new CustomUserDetails(account));
 
         String accessToken = jwtUtil.generateTokenWithClaims(account.getEmail(), claims);
-        String refreshToken = jwtUtil.generateRefreshToken(account.getEmail());
-        redisTemplate.opsForValue().set("TOKEN:" + account.getEmail(), refreshToken);
+        String refreshToken = openSession(account.getEmail(), sid);
 
         return AuthResponse.normal(accessToken, refreshToken, account.getId(), roleResponses);
     }
 
 
     @Override
-    public String refreshToken(String refreshToken) {
-        if (!jwtUtil.validateToken(refreshToken)) {
-            throw new RuntimeException("Refresh token không hợp lệ");
-        }
-
+    public AuthResponse refreshToken(String refreshToken) {
+        String sid = refreshSessionId(refreshToken);
         String email = jwtUtil.extractEmail(refreshToken);
-        String storedToken = redisTemplate.opsForValue().get("TOKEN:" + email);
-
-        if (!refreshToken.equals(storedToken)) {
-            throw new RuntimeException("Refresh token không hợp lệ hoặc đã hết hạn");
+        String newRefreshToken;
+        if (sid == null) {
+            // token phát trước khi có SessionRegistry: chấp nhận 1 lần rồi chuyển sang phiên mới
+            if (!refreshToken.equals(redisTemplate.opsForValue().get(LEGACY_TOKEN_PREFIX + email))) {
+                throw new RuntimeException("Refresh token không hợp lệ hoặc đã hết hạn");
+            }
+            redisTemplate.delete(LEGACY_TOKEN_PREFIX + email);
+            sid = sessionRegistry.newSessionId();
+            newRefreshToken = openSession(email, sid);
+        } else {
+            // xoay vòng: token cũ hết giá trị ngay khi token mới được phát
+            newRefreshToken = jwtUtil.generateRefreshToken(email, sid);
+            switch (sessionRegistry.rotate(email, sid, refreshToken, newRefreshToken)) {
+                case ROTATED -> { }
+                case REUSED -> {
+                    // token đã bị thay mà vẫn được dùng lại → coi như lộ: huỷ phiên và access token của phiên
+                    log.warn("[AUTH] Refresh token reuse detected for {} (session {}), revoking session", email, sid);
+                    sessionRegistry.revoke(email, sid);
+                    tokenRevocationList.revoke(Set.of(sid));
+                    throw new RuntimeException("Refresh token đã được sử dụng, phiên đăng nhập đã bị thu hồi");
+                }
+                default -> throw new RuntimeException("Refresh token không hợp lệ hoặc đã hết hạn");
+            }
         }
 
-        AuthAccount account = authAccountRepository.findByEmail(email)
+        AuthAccount account = authAccountRepository.findByEmailWithRolesAndPermissions(email)
                 .orElseThrow(() -> new RuntimeException("Tài khoản không tồn tại"));
 
         List<String> roleKeys = account.getUserRoles().stream()
@@ -203,8 +242,11 @@ public class AuthServiceImpl implements AuthService {
 
         Map<String, Object> claims = new HashMap<>();
         claims.put("roles", roleKeys);
+        claims.put(JwtUtil.CLAIM_SESSION_ID, sid);
+        jwtUtil.putPrincipalClaims(claims, new CustomUserDetails(account));
 
-        return jwtUtil.generateTokenWithClaims(account.getEmail(), claims);
+        String accessToken = jwtUtil.generateTokenWithClaims(account.getEmail(), claims);
+        return AuthResponse.normal(accessToken, newRefreshToken, account.getId(), List.of());
     }
 
     @Override
@@ -214,12 +256,55 @@ public class AuthServiceImpl implements AuthService {
 
     @Override
     public void logout(String email) {
-        Set<String> keys = redisTemplate.keys("TOKEN:" + email + "*");
-        if (keys != null && !keys.isEmpty()) {
-            redisTemplate.delete(keys);
+        // thu hồi mọi phiên qua index của tài khoản, không quét keyspace; access token của các phiên bị chặn luôn
+        tokenRevocationList.revoke(sessionRegistry.revokeAll(email));
+        redisTemplate.delete(LEGACY_TOKEN_PREFIX + email);
+    }
+
+    @Override
+    public void logoutCurrentAccount() {
+        // tài khoản lấy từ access token đã xác thực, không nhận email từ request (ai cũng gọi được /api/auth/**)
+        String email = SecurityUtil.getCurrentUserEmail();
+        if (email == null) {
+            throw new BusinessException(ErrorCode.UNAUTHENTICATED, "Cần đăng nhập để đăng xuất mọi thiết bị");
+        }
+        logout(email);
+    }
+
+    @Override
+    public void logoutSession(String refreshToken) {
+        String sid = refreshSessionId(refreshToken);
+        String email = jwtUtil.extractEmail(refreshToken);
+        if (sid != null) {
+            sessionRegistry.revoke(email, sid);
+            tokenRevocationList.revoke(Set.of(sid));
+        } else {
+            redisTemplate.delete(LEGACY_TOKEN_PREFIX + email);
         }
     }
 
+    /**
+     * sid của refresh token; null với refresh token phát trước khi có SessionRegistry (đối chiếu bản lưu ở Redis).
+     * Access token cũng mang sid → token có sid mà không phải typ=refresh bị từ chối trước khi đụng tới phiên.
+     */
+    private String refreshSessionId(String refreshToken) {
+        if (!jwtUtil.validateToken(refreshToken)) {
+            throw new RuntimeException("Refresh token không hợp lệ");
+        }
+        String sid = jwtUtil.extractSessionId(refreshToken);
+        if (sid != null && !jwtUtil.isRefreshToken(refreshToken)) {
+            throw new RuntimeException("Refresh token không hợp lệ");
+        }
+        return sid;
+    }
+
+    /** Mở phiên sid cho thiết bị đang đăng nhập (các phiên khác giữ nguyên), trả refresh token của phiên */
+    private String openSession(String email, String sid) {
+        String refreshToken = jwtUtil.generateRefreshToken(email, sid);
+        tokenRevocationList.revoke(sessionRegistry.register(email, sid, refreshToken)); // phiên cũ bị đẩy ra
+        return refreshToken;
+    }
+
     @Override
     public void sendForgotPasswordOtp(String email) {
         AuthAccount account = authAccountRepository.findByEmail(email)
@@ -233,9 +318,13 @@ public class AuthServiceImpl implements AuthService {
     public void resetPasswordWithOtp(ResetPasswordRequest request) {
         AuthAccount account = authAccountRepository.findByEmail(request.getEmail())
                 .orElseThrow(() -> new RuntimeException("Email không tồn tại"));
+        if (!otpService.verifyOtp(account.getEmail(), request.getOtp())) {
+            throw new RuntimeException("OTP không hợp lệ hoặc đã hết hạn");
+        }
 
         account.setPassword(passwordEncoder.encode(request.getNewPassword()));
         authAccountRepository.save(account);
+        logout(account.getEmail()); // đổi mật khẩu → đăng xuất mọi thiết bị
     }
 
     @Transactional
@@ -349,6 +438,7 @@ public class AuthServiceImpl implements AuthService {
         acc.setEmailVerificationToken(null);
         acc.setTokenExpiresAt(null);
         authAccountRepository.save(acc);
+        principalCache.evict(acc.getId());
 
         // Map role -> claims + phát access/refresh như bạn đang làm
         List<RoleResponse> roleResponses = acc.getUserRoles().stream().map(userRole -> {
@@ -363,12 +453,14 @@ public class AuthServiceImpl implements AuthService {
             return new RoleResponse(role.getId(), role.getRoleKey(), role.getDescription(), permissionResponses);
         }).toList();
 
+        String sid = sessionRegistry.newSessionId();
         Map<String, Object> claims = new HashMap<>();
         claims.put("roles", roleResponses);
+        claims.put(JwtUtil.CLAIM_SESSION_ID, sid);
+        jwtUtil.putPrincipalClaims(claims, new CustomUserDetails(acc));
 
         String accessToken = jwtUtil.generateTokenWithClaims(email, claims);
-        String refreshToken = jwtUtil.generateRefreshToken(email);
-        redisTemplate.opsForValue().set("TOKEN:" + email, refreshToken);
+        String refreshToken = openSession(email, sid);
 
         // nếu bạn dùng record AuthResponse mới:
         return new AuthResponse(accessToken, refreshToken, acc.getId(), roleResponses, false, null);
@@ -0,0 +1,192 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import com.hieunguyen.ManageContract.config.IoThreads;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.internet.MimeMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Gom email thành lô để dùng chung 1 phiên SMTP (connect + STARTTLS + AUTH chỉ 1 lần mỗi lô).
+ * - Message vào hàng đợi có giới hạn; 1 thread flusher chờ tối đa window-ms (hoặc đủ max-batch) rồi gửi cả lô
+ *   bằng JavaMailSender.send(MimeMessage...) – Spring gửi tất cả trên cùng 1 Transport.
+ * - Lỗi tách theo từng message (MailSendException.getFailedMessages): người nhận hỏng không kéo cả lô lỗi theo.
+ * - Metrics: mail.sent{result}, mail.batch.size, mail.batch.duration, mail.batch.queue.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class BatchingMailSender {
+
+    private final JavaMailSender mailSender;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.mail.batch.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.mail.batch.window-ms:200}")
+    private long windowMs;
+
+    @Value("${app.mail.batch.max-batch:50}")
+    private int maxBatch;
+
+    @Value("${app.mail.batch.queue-capacity:1000}")
+    private int queueCapacity;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Value("${app.mail.batch.send-timeout-ms:60000}")
+    private long sendTimeoutMs;
+
+    private record Pending(MimeMessage mime, CompletableFuture<Void> result) { }
+
+    private BlockingQueue<Pending> queue;
+    private Thread flusher;
+    private volatile boolean running;
+
+    private Counter sentOk;
+    private Counter sentFailed;
+    private DistributionSummary batchSize;
+    private Timer batchTimer;
+
+    @PostConstruct
+    void init() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        sentOk = Counter.builder("mail.sent").tag("result", "ok").register(meterRegistry);
+        sentFailed = Counter.builder("mail.sent").tag("result", "failed").register(meterRegistry);
+        batchSize = DistributionSummary.builder("mail.batch.size").register(meterRegistry);
+        batchTimer = Timer.builder("mail.batch.duration").register(meterRegistry);
+        Gauge.builder("mail.batch.queue", queue, BlockingQueue::size).register(meterRegistry);
+
+        running = true;
+        flusher = IoThreads.factory("mail-batch-flusher", virtualThreads).newThread(this::flushLoop);
+        flusher.start();
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        running = false;
+        flusher.interrupt();
+        flusher.join(sendTimeoutMs);
+    }
+
+    /**
+     * Xếp message vào lô kế tiếp.
+     * @throws RejectedExecutionException khi hàng đợi đầy
+     */
+    public CompletableFuture<Void> submit(MimeMessage mime) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        if (!enabled || !running) {
+            try {
+                mailSender.send(mime);
+                sentOk.increment();
+                result.complete(null);
+            } catch (MailException e) {
+                sentFailed.increment();
+                result.completeExceptionally(e);
+            }
+            return result;
+        }
+        if (!queue.offer(new Pending(mime, result))) {
+            throw new RejectedExecutionException("Mail batch queue is full");
+        }
+        return result;
+    }
+
+    /** Gửi và chờ kết quả (giữ ngữ nghĩa đồng bộ của mailSender.send) */
+    public void send(MimeMessage mime) {
+        try {
+            submit(mime).get(sendTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof MailException me) throw me;
+            throw new MailSendException("Send mail failed", e.getCause());
+        } catch (RejectedExecutionException | TimeoutException e) {
+            throw new MailSendException("Send mail failed: " + e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MailSendException("Interrupted while sending mail", e);
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Flusher
+    // ------------------------------------------------------------------
+
+    private void flushLoop() {
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = running ? queue.take() : queue.poll();
+                if (first == null) break;
+                batch.add(first);
+                // gom thêm message tới hết cửa sổ hoặc đủ lô
+                long deadline = System.nanoTime() + windowMs * 1_000_000;
+                while (batch.size() < maxBatch) {
+                    long left = deadline - System.nanoTime();
+                    if (left <= 0) break;
+                    Pending next = queue.poll(left, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                if (running) continue;
+                queue.drainTo(batch, maxBatch - batch.size()); // shutdown: gửi nốt phần còn lại
+            }
+            if (!batch.isEmpty()) {
+                sendBatch(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void sendBatch(List<Pending> batch) {
+        MimeMessage[] messages = batch.stream().map(Pending::mime).toArray(MimeMessage[]::new);
+        batchSize.record(messages.length);
+        long start = System.nanoTime();
+        Map<Object, Exception> failed = Map.of();
+        MailException batchError = null;
+        try {
+            mailSender.send(messages); // 1 Transport cho cả lô
+        } catch (MailSendException e) {
+            failed = e.getFailedMessages();
+            if (failed.isEmpty()) batchError = e;
+        } catch (MailException e) {
+            batchError = e;
+        } finally {
+            batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        int failures = 0;
+        for (Pending p : batch) {
+            Exception cause = batchError != null ? batchError : failed.get(p.mime());
+            if (cause == null) {
+                sentOk.increment();
+                p.result().complete(null);
+                continue;
+            }
+            failures++;
+            sentFailed.increment();
+            p.result().completeExceptionally(cause instanceof MailException ? cause
+                    : new MailSendException("Send mail failed: " + cause.getMessage(), cause, Map.of(p.mime(), cause)));
+        }
+        log.debug("[MAIL] Batch of {} sent in {} ms, {} failed",
+                batch.size(), (System.nanoTime() - start) / 1_000_000, failures);
+    }
+}
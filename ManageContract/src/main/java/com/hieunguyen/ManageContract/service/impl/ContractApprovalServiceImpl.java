@@ -1,10 +1,13 @@
 package com.hieunguyen.ManageContract.service.impl;
 
 import com.hieunguyen.ManageContract.common.constants.*;
+import com.hieunguyen.ManageContract.dto.CursorPageResponse;
 import com.hieunguyen.ManageContract.dto.approval.ApprovalStepResponse;
+import com.hieunguyen.ManageContract.dto.approval.PendingApprovalRow;
 import com.hieunguyen.ManageContract.dto.approval.StepApprovalRequest;
 import com.hieunguyen.ManageContract.dto.contract.ContractResponse;
 import com.hieunguyen.ManageContract.dto.contractSign.SignStepRequest;
+import com.hieunguyen.ManageContract.dto.conversion.ConversionJobResponse;
 import com.hieunguyen.ManageContract.entity.*;
 import com.hieunguyen.ManageContract.event.ContractApprovalEvent;
 import com.hieunguyen.ManageContract.mapper.ContractMapper;
@@ -12,15 +15,15 @@ import com.hieunguyen.ManageContract.repository.*;
 import com.hieunguyen.ManageContract.security.jwt.SecurityUtil;
 import com.hieunguyen.ManageContract.service.ContractApprovalService;
 import com.hieunguyen.ManageContract.service.ContractFileService;
+import com.hieunguyen.ManageContract.service.ConversionJobService;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 
 import java.io.File;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.time.LocalDateTime;
 import java.util.*;
 
@@ -35,7 +38,9 @@ public class ContractApprovalServiceImpl implements ContractApprovalService {
     private final ContractApprovalRepository contractApprovalRepository;
     private final ContractSignatureRepository contractSignatureRepository;
     private final ContractFileService contractFileService;
+    private final ConversionJobService conversionJobService;
     private final SecurityUtil securityUtils;
+    private final ContractListAssembler contractListAssembler;
 
     // Thêm publisher để bắn domain event (listener gửi mail sẽ nghe AFTER_COMMIT)
     private final ApplicationEventPublisher events;
@@ -82,7 +87,11 @@ public class ContractApprovalServiceImpl implements ContractApprovalService {
 
         contract.setStatus(ContractStatus.PENDING_APPROVAL);
         contract.setFlow(flow);
-        return ContractMapper.toResponse(contractRepository.save(contract));
+        Contract saved = contractRepository.save(contract);
+
+        // người duyệt bước 1 sắp nhận thông báo → render sẵn PDF (có trang nhật ký) trước khi họ mở
+        conversionJobService.enqueue(contractId, RenderPriority.NEXT_APPROVER);
+        return ContractMapper.toResponse(saved);
     }
 
     private ApprovalFlow determineApprovalFlow(Contract contract, Long flowId) {
@@ -116,16 +125,16 @@ public class ContractApprovalServiceImpl implements ContractApprovalService {
 
     private void ensureContractFileExists(Contract contract) {
         try {
-            boolean fileExists = contract.getFilePath() != null &&
-                    Files.exists(Path.of(contract.getFilePath()));
-
-            if (!fileExists) {
-                File pdfFile = contractFileService.getPdfOrConvert(contract.getId());
-                contract.setFilePath(pdfFile.getAbsolutePath());
+            // ký/duyệt đều sửa DOCX; filePath có thể đang trỏ PDF (hoặc PDF cũ đã bị xoá) nên không dựa vào nó
+            Optional<File> docx = contractFileService.findDocx(contract.getId());
+            if (docx.isEmpty()) {
+                // chỉ sinh DOCX (nhanh, local); submitForApproval xếp job render PDF
+                String docxPath = contractFileService.generateDocxFile(contract);
+                contract.setFilePath(docxPath);
                 contractRepository.save(contract);
-                log.info("Generated/ensured contract PDF: {}", contract.getFilePath());
+                log.info("Generated contract DOCX: {}", docxPath);
             } else {
-                log.info("Contract file already exists: {}", contract.getFilePath());
+                log.info("Contract DOCX already exists: {}", docx.get());
             }
         } catch (Exception e) {
             log.error("CRITICAL: Could not create/ensure contract file for contract {}: {}",
@@ -222,22 +231,26 @@ public class ContractApprovalServiceImpl implements ContractApprovalService {
         contractSignatureRepository.save(sig);
 
         // ========= 4) CHUYỂN BƯỚC & BẮN EVENT (chỉ với SIGN_ONLY) =========
+        RenderPriority priority = RenderPriority.NORMAL;
         if (action == ApprovalAction.SIGN_ONLY) {
             if (Boolean.TRUE.equals(approval.getIsFinalStep())) {
                 contract.setStatus(ContractStatus.APPROVED);
                 contractRepository.save(contract);
                 //  Bắn event APPROVED (listener sẽ gửi mail sau commit)
                 events.publishEvent(new ContractApprovalEvent(approval.getId(), contract.getId(), ApprovalStatus.APPROVED));
-                return ContractMapper.toResponse(contract);
-            }
-            moveToNextStep(contract, approval.getStepOrder());
-            if (justApprovedBySignOnly) {
-                //  Bắn event APPROVED cho bước ký vừa hoàn tất
-                events.publishEvent(new ContractApprovalEvent(approval.getId(), contract.getId(), ApprovalStatus.APPROVED));
+            } else {
+                moveToNextStep(contract, approval.getStepOrder());
+                priority = RenderPriority.NEXT_APPROVER;
+                if (justApprovedBySignOnly) {
+                    //  Bắn event APPROVED cho bước ký vừa hoàn tất
+                    events.publishEvent(new ContractApprovalEvent(approval.getId(), contract.getId(), ApprovalStatus.APPROVED));
+                }
             }
         }
 
-        return ContractMapper.toResponse(contract);
+        // PDF render nền sau commit (1 job/thao tác); client poll pdfStatus
+        ConversionJobResponse pdfJob = conversionJobService.enqueue(contract.getId(), priority);
+        return withPdfJob(ContractMapper.toResponse(contract), pdfJob);
     }
 
     @Transactional
@@ -280,7 +293,8 @@ public class ContractApprovalServiceImpl implements ContractApprovalService {
             contractRepository.save(contract);
             // ✅ Bắn event REJECTED
             events.publishEvent(new ContractApprovalEvent(approval.getId(), contract.getId(), ApprovalStatus.REJECTED));
-            return ContractMapper.toResponse(contract);
+            // trang nhật ký ghi nhận từ chối → render lại PDF nền
+            return withPdfJob(ContractMapper.toResponse(contract), conversionJobService.enqueue(contract.getId()));
         }
 
         // APPROVED nhánh dưới:
@@ -294,20 +308,30 @@ public class ContractApprovalServiceImpl implements ContractApprovalService {
             );
             contractFileService.addApprovalText(contract.getFilePath(), approveText);
         }
-
         if (Boolean.TRUE.equals(approval.getIsFinalStep())) {
             contract.setStatus(ContractStatus.APPROVED);
             contractRepository.save(contract);
             // ✅ Bắn event APPROVED (hợp đồng hoàn tất)
             events.publishEvent(new ContractApprovalEvent(approval.getId(), contract.getId(), ApprovalStatus.APPROVED));
-            return ContractMapper.toResponse(contract);
+            // trang nhật ký thay đổi → render lại PDF nền
+            return withPdfJob(ContractMapper.toResponse(contract), conversionJobService.enqueue(contract.getId()));
         }
 
         // ✅ Bắn event APPROVED cho bước vừa duyệt xong (không phải final)
         events.publishEvent(new ContractApprovalEvent(approval.getId(), contract.getId(), ApprovalStatus.APPROVED));
 
         moveToNextStep(contract, approval.getStepOrder());
-        return ContractMapper.toResponse(contract);
+        // người duyệt kế tiếp sắp nhận mail → render sẵn PDF trước khi họ mở
+        ConversionJobResponse pdfJob = conversionJobService.enqueue(contract.getId(), RenderPriority.NEXT_APPROVER);
+        return withPdfJob(ContractMapper.toResponse(contract), pdfJob);
+    }
+
+    private ContractResponse withPdfJob(ContractResponse res, ConversionJobResponse job) {
+        if (job != null) {
+            res.setPdfStatus(job.getStatus());
+            res.setPdfJobId(job.getJobId());
+        }
+        return res;
     }
 
     private void validateApprovalPermission(ApprovalStep step, Employee employee) {
@@ -365,60 +389,87 @@ public class ContractApprovalServiceImpl implements ContractApprovalService {
         Employee me = userRepository.findByAccount_Email(email)
                 .orElseThrow(() -> new RuntimeException("Employee not found"));
 
-        List<Contract> contracts = contractApprovalRepository
-                .findAllByApproverIdAndContract_Status(me.getId(), status);
-
-        return contracts.stream()
-                .map(ContractMapper::toResponse)
-                .toList();
+        return contractListAssembler.toResponses(
+                contractRepository.findHandledContractRows(me.getId(), status, Long.MAX_VALUE, Pageable.unpaged()), true);
     }
 
     @Override
-    public List<ContractResponse> getMyPendingContracts() {
+    public CursorPageResponse<ContractResponse> getMyHandledContractsPage(ContractStatus status, Long cursor,
+                                                                          int size, boolean includeVariables) {
         String email = securityUtils.getCurrentUserEmail();
         Employee me = userRepository.findByAccount_Email(email)
                 .orElseThrow(() -> new RuntimeException("Employee not found"));
 
-        List<ContractApproval> approvals = contractApprovalRepository
-                .findAllByIsCurrentTrueAndStatusAndContract_Status(
-                        ApprovalStatus.PENDING,
-                        ContractStatus.PENDING_APPROVAL
-                );
-
-        return approvals.stream()
-                .filter(a -> {
-                    var step = a.getStep();
-                    return switch (step.getApproverType()) {
-                        case USER -> step.getEmployee() != null && step.getEmployee().getId().equals(me.getId());
-                        case POSITION -> step.getDepartment() != null && step.getPosition() != null
-                                && me.getDepartment() != null && me.getPosition() != null
-                                && step.getDepartment().getId().equals(me.getDepartment().getId())
-                                && step.getPosition().getId().equals(me.getPosition().getId());
-                    };
-                })
-                .map(a -> {
-                    ContractResponse dto = ContractMapper.toResponse(a.getContract());
-                    dto.setCurrentStepId(a.getId());
-                    dto.setCurrentStepName(buildCurrentStepName(a.getStep()));
-                    dto.setCurrentStepAction(a.getStep().getAction().name());
-                    dto.setCurrentStepSignaturePlaceholder(a.getSignaturePlaceholder());
-                    return dto;
-                })
-                .toList();
+        return contractListAssembler.toPage(
+                contractRepository.findHandledContractRows(me.getId(), status,
+                        ContractListAssembler.cursorOrFirst(cursor), ContractListAssembler.limitFor(size)),
+                size, includeVariables);
+    }
+
+    @Override
+    public List<ContractResponse> getMyPendingContracts() {
+        return pendingFor(currentEmployee(), Long.MAX_VALUE, Pageable.unpaged(), true);
+    }
+
+    @Override
+    public CursorPageResponse<ContractResponse> getMyPendingContractsPage(Long cursor, int size, boolean includeVariables) {
+        List<ContractResponse> rows = pendingFor(currentEmployee(), ContractListAssembler.cursorOrFirst(cursor),
+                ContractListAssembler.limitFor(size), includeVariables);
+        List<ContractResponse> page = ContractListAssembler.trim(rows, size);
+        boolean hasMore = page.size() < rows.size();
+        return new CursorPageResponse<>(page, hasMore ? page.get(page.size() - 1).getCurrentStepId() : null, hasMore);
+    }
+
+    /** 1 query: chỉ các bước hiện tại khớp người này (USER theo nhân viên, POSITION theo phòng ban + chức vụ) */
+    private List<ContractResponse> pendingFor(Employee me, long cursor, Pageable limit, boolean includeVariables) {
+        List<PendingApprovalRow> rows = contractApprovalRepository.findPendingRowsFor(
+                me.getId(),
+                me.getDepartment() != null ? me.getDepartment().getId() : null,
+                me.getPosition() != null ? me.getPosition().getId() : null,
+                ApprovalStatus.PENDING,
+                ContractStatus.PENDING_APPROVAL,
+                cursor, limit);
+
+        List<ContractResponse> dtos = contractListAssembler.toResponses(
+                rows.stream().map(PendingApprovalRow::contract).toList(), includeVariables);
+        for (int i = 0; i < rows.size(); i++) {
+            PendingApprovalRow r = rows.get(i);
+            ContractResponse dto = dtos.get(i);
+            dto.setCurrentStepId(r.approvalId());
+            dto.setCurrentStepName(buildCurrentStepName(r.approverType(), r.employeeName(), r.employeeEmail(),
+                    r.departmentName(), r.positionName()));
+            dto.setCurrentStepAction(r.action() != null ? r.action().name() : null);
+            dto.setCurrentStepSignaturePlaceholder(r.signaturePlaceholder());
+        }
+        return dtos;
+    }
+
+    private Employee currentEmployee() {
+        String email = securityUtils.getCurrentUserEmail();
+        return userRepository.findByAccount_Email(email)
+                .orElseThrow(() -> new RuntimeException("Employee not found"));
     }
 
     private String buildCurrentStepName(ApprovalStep step) {
-        if (step == null || step.getApproverType() == null) return "Bước hiện tại";
-        return switch (step.getApproverType()) {
-            case USER -> {
-                var emp = step.getEmployee();
-                yield emp != null
-                        ? ("Người duyệt: " + (emp.getFullName() != null ? emp.getFullName() : emp.getAccount().getEmail()))
-                        : "Người duyệt (chưa gán)";
-            }
+        if (step == null) return buildCurrentStepName(null, null, null, null, null);
+        var emp = step.getEmployee();
+        return buildCurrentStepName(step.getApproverType(),
+                emp != null ? emp.getFullName() : null,
+                emp != null && emp.getAccount() != null ? emp.getAccount().getEmail() : null,
+                step.getDepartment() != null ? step.getDepartment().getName() : null,
+                step.getPosition() != null ? step.getPosition().getName() : null);
+    }
+
+    private String buildCurrentStepName(ApproverType type, String employeeName, String employeeEmail,
+                                        String departmentName, String positionName) {
+        if (type == null) return "Bước hiện tại";
+        return switch (type) {
+            case USER -> (employeeName != null || employeeEmail != null)
+                    ? ("Người duyệt: " + (employeeName != null ? employeeName : employeeEmail))
+                    : "Người duyệt (chưa gán)";
             case POSITION -> {
-                String dept = step.getDepartment() != null ? step.getDepartment().getName() : "Phòng/ban?";
-                String pos  = step.getPosition()   != null ? step.getPosition().getName()   : "Chức vụ?";
+                String dept = departmentName != null ? departmentName : "Phòng/ban?";
+                String pos  = positionName   != null ? positionName   : "Chức vụ?";
                 yield "Vị trí: " + dept + " - " + pos;
             }
         };
@@ -0,0 +1,196 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Khoá ghi theo hợp đồng cho các thao tác đọc-sửa-ghi DOCX (ký, ghi ý kiến, cập nhật trang nhật ký).
+ * - Striped: mảng lock cố định, hợp đồng map vào 1 stripe → bộ nhớ không tăng theo số hợp đồng,
+ *   hợp đồng khác stripe chạy song song hoàn toàn.
+ * - Tuỳ chọn Redis (SET NX PX + token) khi nhiều node ghi chung volume uploads. Lease Redis lấy trước khoá
+ *   stripe → chờ node khác không chặn các hợp đồng cùng stripe; khi đang giữ, lease được gia hạn mỗi
+ *   lease-ms/3 nên thao tác dài hơn lease-ms không mất khoá trước lúc AtomicFiles thay file.
+ * - Chỉ người ghi lấy khoá: file được thay bằng AtomicFiles (rename atomic) nên người đọc không cần
+ *   khoá, không bao giờ chờ người ghi và không thấy file ghi dở.
+ * Chờ quá wait-timeout-ms → RuntimeException.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class ContractDocumentLocks {
+
+    private static final String KEY_PREFIX = "DOCX_LOCK:";
+
+    static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0",
+            Long.class);
+
+    static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('PEXPIRE', KEYS[1], ARGV[2]) end return 0",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.docx.lock.stripes:64}")
+    private int stripes;
+
+    @Value("${app.docx.lock.wait-timeout-ms:30000}")
+    private long waitTimeoutMs;
+
+    @Value("${app.docx.lock.redis-enabled:false}")
+    private boolean redisEnabled;
+
+    @Value("${app.docx.lock.lease-ms:60000}")
+    private long leaseMs;
+
+    @Value("${app.docx.lock.poll-ms:50}")
+    private long pollMs;
+
+    private ReentrantLock[] locks;
+    private int mask;
+    private Timer waitTimer;
+    private Counter timeouts;
+    private Counter leasesLost;
+    private ScheduledExecutorService renewer;
+    // hợp đồng thread này đang giữ → gọi lồng nhau không xin lại khoá Redis (khoá Redis không reentrant)
+    private final ThreadLocal<Set<Long>> held = ThreadLocal.withInitial(HashSet::new);
+
+    @PostConstruct
+    void init() {
+        int n = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1; // làm tròn lên luỹ thừa 2
+        locks = new ReentrantLock[n];
+        for (int i = 0; i < n; i++) locks[i] = new ReentrantLock();
+        mask = n - 1;
+        waitTimer = meterRegistry.timer("docx.lock.wait");
+        timeouts = meterRegistry.counter("docx.lock.timeout");
+        leasesLost = meterRegistry.counter("docx.lock.lease.lost");
+        if (redisEnabled) {
+            renewer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "docx-lock-renew");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        if (renewer != null) renewer.shutdownNow();
+    }
+
+    /** Chạy action khi đang giữ khoá ghi của hợp đồng */
+    public <T> T withLock(Long contractId, Callable<T> action) throws Exception {
+        Set<Long> mine = held.get();
+        if (mine.contains(contractId)) return action.call();
+
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(waitTimeoutMs);
+        // poll Redis khi chưa giữ khoá stripe: chờ node khác không chặn hợp đồng khác cùng stripe
+        Lease lease = redisEnabled ? lockRemote(contractId, deadline) : null;
+        try {
+            ReentrantLock lock = locks[stripe(contractId)];
+            if (!lock.tryLock(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                throw timeout(contractId);
+            }
+            try {
+                waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                mine.add(contractId);
+                try {
+                    return action.call();
+                } finally {
+                    mine.remove(contractId);
+                }
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            if (lease != null) unlockRemote(contractId, lease);
+        }
+    }
+
+    int stripe(Long contractId) {
+        int h = contractId.hashCode();
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    // ------------------------------------------------------------------
+
+    /** Lease Redis đang giữ và lịch gia hạn của nó */
+    private record Lease(String token, ScheduledFuture<?> renewal) { }
+
+    private Lease lockRemote(Long contractId, long deadline) throws InterruptedException {
+        String token = UUID.randomUUID().toString();
+        while (true) {
+            try {
+                Boolean ok = redisTemplate.opsForValue()
+                        .setIfAbsent(KEY_PREFIX + contractId, token, Duration.ofMillis(leaseMs));
+                if (!Boolean.FALSE.equals(ok)) {
+                    long every = Math.max(1, leaseMs / 3);
+                    return new Lease(token, renewer.scheduleAtFixedRate(
+                            () -> renew(contractId, token), every, every, TimeUnit.MILLISECONDS));
+                }
+            } catch (Exception e) {
+                // Redis lỗi: vẫn còn khoá cục bộ, không chặn ký
+                log.debug("DOCX lock Redis unavailable for contract {}: {}", contractId, e.getMessage());
+                return null;
+            }
+            if (System.nanoTime() > deadline) throw timeout(contractId);
+            Thread.sleep(pollMs);
+        }
+    }
+
+    /** Gia hạn lease nếu vẫn là của mình; đã mất (hết hạn, node khác lấy) thì dừng gia hạn và báo */
+    private void renew(Long contractId, String token) {
+        try {
+            Long ok = redisTemplate.execute(RENEW_SCRIPT, List.of(KEY_PREFIX + contractId),
+                    token, String.valueOf(leaseMs));
+            if (ok != null && ok == 0L) {
+                leasesLost.increment();
+                log.warn("DOCX lock lease of contract {} was lost while writing", contractId);
+                throw new IllegalStateException("lease lost"); // huỷ lịch gia hạn
+            }
+        } catch (IllegalStateException e) {
+            throw e;
+        } catch (Exception e) {
+            // Redis chập chờn: lần gia hạn sau thử lại
+            log.debug("Cannot renew DOCX lock of contract {}: {}", contractId, e.getMessage());
+        }
+    }
+
+    private void unlockRemote(Long contractId, Lease lease) {
+        lease.renewal().cancel(false);
+        try {
+            redisTemplate.execute(RELEASE_SCRIPT, List.of(KEY_PREFIX + contractId), lease.token());
+        } catch (Exception e) {
+            log.debug("Cannot release DOCX lock of contract {}: {}", contractId, e.getMessage());
+        }
+    }
+
+    private RuntimeException timeout(Long contractId) {
+        timeouts.increment();
+        return new RuntimeException("Hợp đồng " + contractId + " đang được cập nhật, vui lòng thử lại sau");
+    }
+}
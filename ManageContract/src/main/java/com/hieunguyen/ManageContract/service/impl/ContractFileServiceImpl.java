@@ -1,7 +1,6 @@
 package com.hieunguyen.ManageContract.service.impl;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hieunguyen.ManageContract.dto.approval.ApprovalLogRow;
 import com.hieunguyen.ManageContract.entity.Contract;
 import com.hieunguyen.ManageContract.entity.ContractApproval;
 import com.hieunguyen.ManageContract.entity.ContractVariableValue;
@@ -12,25 +11,23 @@ import jakarta.transaction.Transactional;
 import jakarta.xml.bind.JAXBElement;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.docx4j.model.datastorage.migration.VariablePrepare;
 import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
 import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPartAbstractImage;
 import org.docx4j.wml.*;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.InputStream;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.text.Normalizer;
 import java.util.*;
-import java.util.function.Supplier;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
 @Service
@@ -42,6 +39,9 @@ public class ContractFileServiceImpl implements ContractFileService {
     private static final String UPLOAD_ROOT = "uploads/contracts";
     private static final String DOCX_NAME   = "contract.docx";
     private static final String PDF_NAME    = "contract.pdf";
+    private static final String APPROVAL_LOG_TAG = "APPROVAL_LOG";
+    // DOCX bị ghi đè liên tục trong lúc render quá số lần này → báo lỗi thay vì render mãi
+    private static final int MAX_STALE_RENDERS = 3;
 
     // kích thước chữ ký mặc định (px, giả định ảnh 96 DPI)
     private static final float DEFAULT_SIG_W = 180f;
@@ -49,16 +49,19 @@ public class ContractFileServiceImpl implements ContractFileService {
 
     private final ContractRepository contractRepository;
     private final ContractApprovalRepository contractApprovalRepository;
-
-    private final RestTemplate rest = new RestTemplate();
-    private final ObjectMapper om = new ObjectMapper();
-
-    @Value("${app.ds.url:http://documentserver}")
-    private String docServer; // ONLYOFFICE Document Server
+    private final PdfRenderCache renderCache;
+    private final PdfRendererRouter pdfRenderers;
+    private final TemplatePackageCache templatePackageCache;
+    private final PdfRenderSingleFlight renderFlight;
+    private final ContractDocumentLocks documentLocks;
 
     @Value("${app.ds.source-base:http://app:8080}")
     private String hostBaseUrl; // BE base URL cho DS fetch file
 
+    // true: sửa DOCX tại chỗ bằng DocxPatchEngine; false: load/save cả package bằng docx4j
+    @Value("${app.docx.incremental-patch:true}")
+    private boolean incrementalPatch;
+
     @Value("${app.signature.storage-dir:uploads/signatures}")
     private String signatureStorageDir;
 
@@ -74,7 +77,7 @@ public class ContractFileServiceImpl implements ContractFileService {
             Path pdf  = pdfPathOf(contract.getId());
 
             // không thêm nhật ký ở đây; chỉ cập nhật khi có hành động ký/phê duyệt
-            convertToPdfUsingOnlyOffice(contract.getId(), docx, pdf);
+            convertToPdf(contract.getId(), docx, pdf, AtomicFiles.version(docx));
 
             contract.setFilePath(pdf.toString());
             contract.setFileGeneratedAt(LocalDateTime.now());
@@ -93,7 +96,7 @@ public class ContractFileServiceImpl implements ContractFileService {
             Path docx = ensureDocxGenerated(contract, variableValues);
             Path pdf  = pdfPathOf(contract.getId());
 
-            convertToPdfUsingOnlyOffice(contract.getId(), docx, pdf);
+            convertToPdf(contract.getId(), docx, pdf, AtomicFiles.version(docx));
 
             contract.setFilePath(pdf.toString());
             contract.setFileGeneratedAt(LocalDateTime.now());
@@ -111,10 +114,10 @@ public class ContractFileServiceImpl implements ContractFileService {
         Contract contract = contractRepository.findById(contractId)
                 .orElseThrow(() -> new RuntimeException("Contract not found"));
 
-        Path pdf  = pdfPathOf(contractId);
         Path docx = docxPathOf(contractId);
 
-        if (Files.exists(pdf)) return pdf.toFile();
+        Optional<File> pdf = findRenderedPdf(contractId);
+        if (pdf.isPresent()) return pdf.get();
         if (Files.exists(docx)) return docx.toFile();
 
         if (contract.getFilePath() != null && Files.exists(Paths.get(contract.getFilePath()))) {
@@ -124,7 +127,7 @@ public class ContractFileServiceImpl implements ContractFileService {
     }
 
     /**
-     * Ký theo placeholder trên DOCX rồi convert PDF.
+     * Ký theo placeholder trên DOCX; PDF cũ bị xoá và render lại qua ConversionJobService.
      * Trang "Nhật ký ký duyệt" cuối văn bản sẽ được REPLACE (chỉ 1 trang).
      */
     @Override
@@ -136,38 +139,49 @@ public class ContractFileServiceImpl implements ContractFileService {
             }
 
             Long contractId = extractContractIdFromPath(Paths.get(filePath));
-            Contract contract = contractRepository.findById(contractId)
-                    .orElseThrow(() -> new RuntimeException("Contract not found"));
-            Path docx = ensureDocxGenerated(contract, null);
-
-            byte[] imageBytes = loadImageBytes(imageUrl);
-            if (imageBytes == null || imageBytes.length == 0) {
-                throw new RuntimeException("Signature image is empty or invalid");
-            }
-
-            WordprocessingMLPackage pkg = WordprocessingMLPackage.load(docx.toFile());
-            boolean ok = replacePlaceholderWithImage(
-                    pkg,
-                    normalizePlaceholder(placeholder),
-                    imageBytes,
-                    DEFAULT_SIG_W,
-                    DEFAULT_SIG_H
-            );
-            if (!ok) throw new RuntimeException("Placeholder not found in DOCX: " + placeholder);
+            // đọc-sửa-ghi DOCX: 2 lượt ký/ghi ý kiến của cùng hợp đồng không đan xen
+            return documentLocks.withLock(contractId, () -> {
+                Contract contract = contractRepository.findById(contractId)
+                        .orElseThrow(() -> new RuntimeException("Contract not found"));
+                Path docx = ensureDocxGenerated(contract, null);
 
-            // === Cập nhật trang "Nhật ký ký duyệt" (chỉ 1 trang) ===
-            updateApprovalLogPage(contractId, pkg);
+                byte[] imageBytes = loadImageBytes(imageUrl);
+                if (imageBytes == null || imageBytes.length == 0) {
+                    throw new RuntimeException("Signature image is empty or invalid");
+                }
 
-            pkg.save(docx.toFile());
+                if (incrementalPatch) {
+                    DocxPatchEngine patch = DocxPatchEngine.open(docx);
+                    boolean ok = patch.replaceTextWithImage(normalizePlaceholder(placeholder), imageBytes,
+                            pxToEmu(DEFAULT_SIG_W), pxToEmu(DEFAULT_SIG_H));
+                    if (!ok) throw new RuntimeException("Placeholder not found in DOCX: " + placeholder);
+                    updateApprovalLogPage(contractId, patch);
+                    patch.commit();
+                } else {
+                    WordprocessingMLPackage pkg = WordprocessingMLPackage.load(docx.toFile());
+                    boolean ok = replacePlaceholderWithImage(
+                            pkg,
+                            normalizePlaceholder(placeholder),
+                            imageBytes,
+                            DEFAULT_SIG_W,
+                            DEFAULT_SIG_H
+                    );
+                    if (!ok) throw new RuntimeException("Placeholder not found in DOCX: " + placeholder);
+
+                    // === Cập nhật trang "Nhật ký ký duyệt" (chỉ 1 trang) ===
+                    updateApprovalLogPage(contractId, pkg);
+
+                    AtomicFiles.write(docx, tmp -> pkg.save(tmp.toFile()));
+                }
 
-            Path pdf = pdfPathOf(contractId);
-            convertToPdfUsingOnlyOffice(contractId, docx, pdf);
+                // PDF sẽ được render lại bởi ConversionJobService (không convert trong request)
+                Path pdf = invalidatePdf(contractId);
 
-            contract.setFilePath(pdf.toString());
-            contract.setFileGeneratedAt(LocalDateTime.now());
-            contractRepository.save(contract);
+                contract.setFilePath(pdf.toString());
+                contractRepository.save(contract);
 
-            return pdf.toString();
+                return pdf.toString();
+            });
         } catch (Exception e) {
             throw new RuntimeException("Embed signature (OnlyOffice) failed: " + e.getMessage(), e);
         }
@@ -192,31 +206,40 @@ public class ContractFileServiceImpl implements ContractFileService {
         }
     }
 
-    /** Ghi text phê duyệt vào DOCX rồi convert PDF (và replace nhật ký) */
+    /** Ghi text phê duyệt vào DOCX (và replace nhật ký); PDF render lại qua job */
     @Override
     @Transactional
     public void addApprovalText(String filePath, String approvalText) {
         try {
             Long contractId = extractContractIdFromPath(Paths.get(filePath));
-            Contract contract = contractRepository.findById(contractId)
-                    .orElseThrow(() -> new RuntimeException("Contract not found"));
+            documentLocks.withLock(contractId, () -> {
+                Contract contract = contractRepository.findById(contractId)
+                        .orElseThrow(() -> new RuntimeException("Contract not found"));
 
-            Path docx = ensureDocxGenerated(contract, null);
+                Path docx = ensureDocxGenerated(contract, null);
 
-            WordprocessingMLPackage pkg = WordprocessingMLPackage.load(docx.toFile());
-            addParagraphWithText(pkg, approvalText, 10, false);
+                if (incrementalPatch) {
+                    DocxPatchEngine patch = DocxPatchEngine.open(docx);
+                    patch.removeTaggedBlock(APPROVAL_LOG_TAG); // giữ trang nhật ký luôn ở cuối
+                    patch.appendBlock(textParagraph(approvalText, 10, false));
+                    updateApprovalLogPage(contractId, patch);
+                    patch.commit();
+                } else {
+                    WordprocessingMLPackage pkg = WordprocessingMLPackage.load(docx.toFile());
+                    addParagraphWithText(pkg, approvalText, 10, false);
 
-            // === Cập nhật trang "Nhật ký ký duyệt" (chỉ 1 trang) ===
-            updateApprovalLogPage(contractId, pkg);
+                    // === Cập nhật trang "Nhật ký ký duyệt" (chỉ 1 trang) ===
+                    updateApprovalLogPage(contractId, pkg);
 
-            pkg.save(docx.toFile());
+                    AtomicFiles.write(docx, tmp -> pkg.save(tmp.toFile()));
+                }
 
-            Path pdf = pdfPathOf(contractId);
-            convertToPdfUsingOnlyOffice(contractId, docx, pdf);
+                Path pdf = invalidatePdf(contractId);
 
-            contract.setFilePath(pdf.toString());
-            contract.setFileGeneratedAt(LocalDateTime.now());
-            contractRepository.save(contract);
+                contract.setFilePath(pdf.toString());
+                contractRepository.save(contract);
+                return null;
+            });
         } catch (Exception e) {
             throw new RuntimeException("Add approval text (OnlyOffice) failed: " + e.getMessage(), e);
         }
@@ -271,14 +294,6 @@ public class ContractFileServiceImpl implements ContractFileService {
             Path out = docxPathOf(contract.getId());
             Files.createDirectories(out.getParent());
 
-            if (contract.getTemplate() == null || contract.getTemplate().getFilePath() == null) {
-                throw new RuntimeException("Template not found or filePath is null");
-            }
-            Path templatePath = Paths.get(contract.getTemplate().getFilePath());
-            String name = templatePath.getFileName().toString().toLowerCase(Locale.ROOT);
-            if (!name.endsWith(".docx")) throw new RuntimeException("Only DOCX template is supported");
-            if (!Files.exists(templatePath)) throw new RuntimeException("Template file not found: " + templatePath);
-
             Map<String, String> map = contract.getVariableValues() == null
                     ? Collections.emptyMap()
                     : contract.getVariableValues().stream()
@@ -287,10 +302,11 @@ public class ContractFileServiceImpl implements ContractFileService {
                             v -> Optional.ofNullable(v.getVarValue()).orElse("")
                     ));
 
-            WordprocessingMLPackage pkg = WordprocessingMLPackage.load(templatePath.toFile());
-            VariablePrepare.prepare(pkg);
-            pkg.getMainDocumentPart().variableReplace(map);
-            pkg.save(out.toFile());
+            // template đã prepare + biên dịch sẵn trong cache, chỉ còn 1 lượt ghi giá trị
+            documentLocks.withLock(contract.getId(), () -> {
+                templatePackageCache.render(contract.getTemplate(), map, out);
+                return null;
+            });
 
             return out.toString();
         } catch (Exception e) {
@@ -298,35 +314,104 @@ public class ContractFileServiceImpl implements ContractFileService {
         }
     }
 
-    /** Lấy PDF; nếu chưa có thì convert từ DOCX (tự sinh DOCX nếu cần) */
+    /**
+     * Lấy PDF; nếu chưa có thì convert đồng bộ từ DOCX.
+     * Không chạy trong transaction để không giữ connection DB trong lúc chờ OnlyOffice;
+     * luồng request nên dùng ConversionJobService thay vì gọi trực tiếp.
+     */
     @Override
-    @Transactional
     public File getPdfOrConvert(Long contractId) {
-        try {
-            Path pdf = pdfPathOf(contractId);
-            if (Files.exists(pdf)) return pdf.toFile();
+        return findRenderedPdf(contractId).orElseGet(() -> renderPdf(contractId));
+    }
 
-            Path docx = docxPathOf(contractId);
-            if (!Files.exists(docx)) {
-                Contract c = contractRepository.findById(contractId)
-                        .orElseThrow(() -> new RuntimeException("Contract not found"));
-                generateDocxFile(c);
+    /**
+     * PDF hiện có, chỉ khi được render từ đúng bản DOCX hiện tại (so với file .version ghi kèm PDF).
+     * Node khác vừa ký mà PDF cũ còn sót (ghi xong ngay sau khi bị xoá) → coi như chưa có.
+     */
+    @Override
+    public Optional<File> findRenderedPdf(Long contractId) {
+        Path pdf = pdfPathOf(contractId);
+        try {
+            if (Files.exists(pdf) && Files.size(pdf) > 0
+                    && Files.readString(versionPathOf(pdf)).equals(AtomicFiles.version(docxPathOf(contractId)))) {
+                return Optional.of(pdf.toFile());
             }
+        } catch (Exception ignore) { }
+        return Optional.empty();
+    }
 
-            WordprocessingMLPackage pkg = WordprocessingMLPackage.load(docx.toFile());
-            updateApprovalLogPage(contractId, pkg);
-            pkg.save(docx.toFile());
+    @Override
+    public Optional<File> findDocx(Long contractId) {
+        Path docx = docxPathOf(contractId);
+        return Files.exists(docx) ? Optional.of(docx.toFile()) : Optional.empty();
+    }
+
+    /** Render lại PDF từ DOCX hiện tại (cập nhật trang nhật ký trước khi convert) */
+    @Override
+    public File renderPdf(Long contractId) {
+        try {
+            return renderPdfAsync(contractId).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw new RuntimeException("Render PDF failed: " + cause.getMessage(), cause);
+        }
+    }
 
-            convertToPdfUsingOnlyOffice(contractId, docx, pdf);
+    /**
+     * Như renderPdf nhưng không chờ Document Server: future hoàn tất khi PDF đã ghi xong.
+     * Nhiều lần gọi đồng thời cho cùng hợp đồng (kể cả từ node khác) chỉ render 1 lần và dùng chung kết quả.
+     */
+    @Override
+    public CompletableFuture<File> renderPdfAsync(Long contractId) {
+        return renderFlight.run(contractId, () -> startRender(contractId), () -> findRenderedPdf(contractId));
+    }
 
-            Contract c = contractRepository.findById(contractId).orElseThrow();
-            c.setFilePath(pdf.toString());
-            c.setFileGeneratedAt(LocalDateTime.now());
-            contractRepository.save(c);
+    private CompletableFuture<File> startRender(Long contractId) {
+        return startRender(contractId, MAX_STALE_RENDERS);
+    }
 
-            return pdf.toFile();
+    /**
+     * 1 lượt render thật: cập nhật trang nhật ký rồi gửi Document Server.
+     * Ghi nhận phiên bản DOCX lúc bắt đầu; DOCX đổi trong lúc render (ký, ghi ý kiến) thì kết quả bị bỏ
+     * và render lại từ bản mới.
+     */
+    private CompletableFuture<File> startRender(Long contractId, int attemptsLeft) {
+        try {
+            // chỉ giữ khoá lúc sửa DOCX; phần chờ Document Server đọc bản đã rename xong
+            Path docx = documentLocks.withLock(contractId, () -> {
+                Contract c = contractRepository.findWithVarsById(contractId)
+                        .orElseThrow(() -> new RuntimeException("Contract not found"));
+                Path d = ensureDocxGenerated(c, null);
+
+                if (incrementalPatch) {
+                    DocxPatchEngine patch = DocxPatchEngine.open(d);
+                    updateApprovalLogPage(contractId, patch);
+                    patch.commit();
+                } else {
+                    WordprocessingMLPackage pkg = WordprocessingMLPackage.load(d.toFile());
+                    updateApprovalLogPage(contractId, pkg);
+                    AtomicFiles.write(d, tmp -> pkg.save(tmp.toFile()));
+                }
+                return d;
+            });
+            String version = AtomicFiles.version(docx);
+
+            Path pdf = pdfPathOf(contractId);
+            return convertAsync(contractId, docx, pdf, version).thenCompose(written -> {
+                if (written) {
+                    // chỉ update 2 cột file, tránh ghi đè status/flow đã đổi trong lúc convert
+                    contractRepository.updateFileInfo(contractId, pdf.toString(), LocalDateTime.now());
+                    return CompletableFuture.completedFuture(pdf.toFile());
+                }
+                if (attemptsLeft <= 1) {
+                    return CompletableFuture.failedFuture(new RuntimeException(
+                            "DOCX of contract " + contractId + " kept changing during PDF render"));
+                }
+                log.debug("DOCX of contract {} changed during render, rendering again", contractId);
+                return startRender(contractId, attemptsLeft - 1);
+            });
         } catch (Exception e) {
-            throw new RuntimeException("Get PDF or convert failed: " + e.getMessage(), e);
+            return CompletableFuture.failedFuture(new RuntimeException("Render PDF failed: " + e.getMessage(), e));
         }
     }
 
@@ -346,34 +431,42 @@ public class ContractFileServiceImpl implements ContractFileService {
                 throw new RuntimeException("printedName is required");
             }
 
-            Contract contract = contractRepository.findById(contractId)
-                    .orElseThrow(() -> new RuntimeException("Contract not found"));
-            Path docx = ensureDocxGenerated(contract, null);
-
-            byte[] imageBytes = loadImageBytes(imageRef);
-            if (imageBytes == null || imageBytes.length == 0) {
-                throw new RuntimeException("Signature image is empty or invalid");
-            }
-
-            WordprocessingMLPackage pkg = WordprocessingMLPackage.load(docx.toFile());
-            boolean ok = insertImageAboveName(pkg, printedName, imageBytes,
-                    (widthPx  != null ? widthPx  : DEFAULT_SIG_W),
-                    (heightPx != null ? heightPx : DEFAULT_SIG_H));
-            if (!ok) throw new RuntimeException("Không tìm thấy tên trong DOCX: " + printedName);
+            return documentLocks.withLock(contractId, () -> {
+                Contract contract = contractRepository.findById(contractId)
+                        .orElseThrow(() -> new RuntimeException("Contract not found"));
+                Path docx = ensureDocxGenerated(contract, null);
 
-            // === Replace trang nhật ký ===
-            updateApprovalLogPage(contractId, pkg);
+                byte[] imageBytes = loadImageBytes(imageRef);
+                if (imageBytes == null || imageBytes.length == 0) {
+                    throw new RuntimeException("Signature image is empty or invalid");
+                }
 
-            pkg.save(docx.toFile());
+                float w = (widthPx  != null ? widthPx  : DEFAULT_SIG_W);
+                float h = (heightPx != null ? heightPx : DEFAULT_SIG_H);
+                if (incrementalPatch) {
+                    DocxPatchEngine patch = DocxPatchEngine.open(docx);
+                    boolean ok = patch.insertImageAboveText(printedName, imageBytes, pxToEmu(w), pxToEmu(h));
+                    if (!ok) throw new RuntimeException("Không tìm thấy tên trong DOCX: " + printedName);
+                    updateApprovalLogPage(contractId, patch);
+                    patch.commit();
+                } else {
+                    WordprocessingMLPackage pkg = WordprocessingMLPackage.load(docx.toFile());
+                    boolean ok = insertImageAboveName(pkg, printedName, imageBytes, w, h);
+                    if (!ok) throw new RuntimeException("Không tìm thấy tên trong DOCX: " + printedName);
+
+                    // === Replace trang nhật ký ===
+                    updateApprovalLogPage(contractId, pkg);
+
+                    AtomicFiles.write(docx, tmp -> pkg.save(tmp.toFile()));
+                }
 
-            Path pdfPath = pdfPathOf(contractId);
-            convertToPdfUsingOnlyOffice(contractId, docx, pdfPath);
+                Path pdfPath = invalidatePdf(contractId);
 
-            contract.setFilePath(pdfPath.toString());
-            contract.setFileGeneratedAt(LocalDateTime.now());
-            contractRepository.save(contract);
+                contract.setFilePath(pdfPath.toString());
+                contractRepository.save(contract);
 
-            return pdfPath.toString();
+                return pdfPath.toString();
+            });
 
         } catch (Exception e) {
             throw new RuntimeException("Embed signature by NAME (DOCX-first) failed: " + e.getMessage(), e);
@@ -392,115 +485,99 @@ public class ContractFileServiceImpl implements ContractFileService {
 
             if (Files.exists(docx) && Files.size(docx) > 0) return docx;
 
-            if (contract.getTemplate() == null || contract.getTemplate().getFilePath() == null) {
-                throw new RuntimeException("Template not found or filePath is null");
-            }
-            Path templatePath = Paths.get(contract.getTemplate().getFilePath());
-            if (!Files.exists(templatePath)) {
-                throw new RuntimeException("Template file not found: " + templatePath);
-            }
-            if (!templatePath.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".docx")) {
-                throw new RuntimeException("Only DOCX template is supported");
-            }
+            return documentLocks.withLock(contract.getId(), () -> {
+                // thread/node khác vừa sinh xong trong lúc chờ khoá
+                if (Files.exists(docx) && Files.size(docx) > 0) return docx;
 
-            List<ContractVariableValue> src = (overrideVars != null) ? overrideVars : contract.getVariableValues();
-            Map<String, String> map = (src == null) ? Collections.emptyMap()
-                    : src.stream().collect(Collectors.toMap(
-                    ContractVariableValue::getVarName,
-                    v -> Optional.ofNullable(v.getVarValue()).orElse("")
-            ));
+                List<ContractVariableValue> src = (overrideVars != null) ? overrideVars : contract.getVariableValues();
+                Map<String, String> map = (src == null) ? Collections.emptyMap()
+                        : src.stream().collect(Collectors.toMap(
+                        ContractVariableValue::getVarName,
+                        v -> Optional.ofNullable(v.getVarValue()).orElse("")
+                ));
 
-            WordprocessingMLPackage pkg = WordprocessingMLPackage.load(templatePath.toFile());
-            VariablePrepare.prepare(pkg);
-            pkg.getMainDocumentPart().variableReplace(map);
-            pkg.save(docx.toFile());
+                // template đã prepare + biên dịch sẵn trong cache, chỉ còn 1 lượt ghi giá trị
+                templatePackageCache.render(contract.getTemplate(), map, docx);
 
-            return docx;
+                return docx;
+            });
         } catch (Exception e) {
             throw new RuntimeException("Ensure DOCX generated failed: " + e.getMessage(), e);
         }
     }
 
-    /** Convert DOCX → PDF bằng OnlyOffice ConvertService */
-    private void convertToPdfUsingOnlyOffice(Long contractId, Path inputDocx, Path outputPdf) {
+    /** Xoá PDF cũ sau khi DOCX thay đổi để viewer không đọc bản lỗi thời */
+    private Path invalidatePdf(Long contractId) {
+        Path pdf = pdfPathOf(contractId);
+        // lượt render đang chạy (nếu có, kể cả ở node khác) dựng từ DOCX cũ → lần gọi sau phải render lại
+        renderFlight.invalidate(contractId);
         try {
-            Files.createDirectories(outputPdf.getParent());
-
-            final String sourceUrl = hostBaseUrl.replaceAll("/+$", "")
-                    + "/internal/files/" + contractId + "/" + DOCX_NAME;
-
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("async", false);
-            payload.put("filetype", "docx");
-            payload.put("outputtype", "pdf");
-            payload.put("key", contractId + "-" + System.currentTimeMillis());
-            payload.put("title", DOCX_NAME);
-            payload.put("url", sourceUrl);
-
-            String json = om.writeValueAsString(payload);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setAccept(List.of(MediaType.APPLICATION_JSON));
-
-            String base = docServer.replaceAll("/+$", "");
-            String[] endpoints = { base + "/ConvertService.ashx", base + "/ConvertService" };
-
-            ResponseEntity<String> resp = null;
-            Exception lastEx = null;
-            for (String ep : endpoints) {
-                try {
-                    resp = rest.postForEntity(ep, new HttpEntity<>(json, headers), String.class);
-                    if (resp.getStatusCode().is2xxSuccessful()) break;
-                } catch (Exception e) {
-                    lastEx = e;
-                }
-            }
-            if (resp == null) {
-                throw new RuntimeException("ConvertService request failed (no response)", lastEx);
-            }
-            if (!resp.getStatusCode().is2xxSuccessful() || resp.getBody() == null) {
-                throw new RuntimeException("ConvertService HTTP error: " + resp.getStatusCode()
-                        + " body=" + (resp.getBody() == null ? "<null>" : resp.getBody()));
-            }
-
-            MediaType ct = resp.getHeaders().getContentType();
-            if (ct == null || !ct.toString().toLowerCase(Locale.ROOT).contains("application/json")) {
-                throw new RuntimeException("ConvertService response is not JSON. contentType=" + ct
-                        + ", body=" + resp.getBody());
-            }
+            Files.deleteIfExists(pdf);
+            Files.deleteIfExists(versionPathOf(pdf));
+        } catch (Exception e) {
+            log.warn("Cannot delete stale PDF of contract {}: {}", contractId, e.getMessage());
+        }
+        return pdf;
+    }
 
-            JsonNode root = om.readTree(resp.getBody());
-            int attempts = 0;
-            while (!root.path("endConvert").asBoolean(false) && attempts < 20) {
-                Thread.sleep(500);
-                resp = rest.postForEntity(endpoints[0], new HttpEntity<>(json, headers), String.class);
-                if (!resp.getStatusCode().is2xxSuccessful() || resp.getBody() == null) {
-                    throw new RuntimeException("ConvertService polling failed: " + resp.getStatusCode());
-                }
-                root = om.readTree(resp.getBody());
-                attempts++;
+    /** Convert DOCX → PDF (chờ tới khi có file) */
+    private void convertToPdf(Long contractId, Path inputDocx, Path outputPdf, String version) {
+        try {
+            if (!convertAsync(contractId, inputDocx, outputPdf, version).join()) {
+                log.debug("DOCX of contract {} changed during conversion, PDF left for the next render", contractId);
             }
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw new RuntimeException("Convert DOCX to PDF failed: " + cause.getMessage(), cause);
+        }
+    }
 
-            if (!root.path("endConvert").asBoolean(false)) {
-                int percent = root.path("percent").asInt(-1);
-                throw new RuntimeException("ConvertService not finished. percent=" + percent);
-            }
+    /**
+     * Convert không chặn thread gọi. PdfRendererRouter chọn Document Server hay render trong JVM
+     * (DS sập/chậm); chỉ cache bản của Document Server.
+     * Future trả false nếu DOCX đã khác version (bản render bị bỏ, không ghi đè PDF).
+     */
+    private CompletableFuture<Boolean> convertAsync(Long contractId, Path inputDocx, Path outputPdf, String version) {
+        try {
+            Files.createDirectories(outputPdf.getParent());
 
-            String fileUrl = root.path("fileUrl").asText(null);
-            if (fileUrl == null || fileUrl.isBlank()) {
-                throw new RuntimeException("ConvertService returned no fileUrl");
+            // nội dung DOCX không đổi (vd: chỉ ghi lại cùng trang nhật ký) → dùng lại PDF đã render
+            String cacheKey = renderCache.keyOf(inputDocx);
+            Optional<byte[]> cached = renderCache.read(cacheKey);
+            if (cached.isPresent()) {
+                log.debug("Render cache hit for contract {} ({})", contractId, cacheKey);
+                return CompletableFuture.completedFuture(
+                        persistPdf(contractId, inputDocx, outputPdf, version, cached.get(), null));
             }
 
-            byte[] pdfBytes = rest.getForObject(fileUrl, byte[].class);
-            if (pdfBytes == null || pdfBytes.length == 0) {
-                throw new RuntimeException("Downloaded PDF is empty from: " + fileUrl);
-            }
+            final String sourceUrl = hostBaseUrl.replaceAll("/+$", "")
+                    + "/internal/files/" + contractId + "/" + DOCX_NAME;
 
-            Files.write(outputPdf, pdfBytes, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            return pdfRenderers.render(String.valueOf(contractId), inputDocx, sourceUrl)
+                    .thenApply(pdf -> persistPdf(contractId, inputDocx, outputPdf, version, pdf.bytes(),
+                            pdf.cacheable() ? cacheKey : null));
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
 
+    /**
+     * Ghi PDF nếu DOCX vẫn đúng version đã render (kiểm tra trong khoá ghi → không xen với ký/ghi ý kiến).
+     * Ghi .version trước PDF: người đọc thấy PDF thì luôn so được với version nó được dựng từ.
+     */
+    private boolean persistPdf(Long contractId, Path docx, Path outputPdf, String version,
+                               byte[] pdfBytes, String cacheKey) {
+        try {
+            return documentLocks.withLock(contractId, () -> {
+                if (!version.equals(AtomicFiles.version(docx))) return false;
+                AtomicFiles.write(versionPathOf(outputPdf), version.getBytes(StandardCharsets.UTF_8));
+                AtomicFiles.write(outputPdf, pdfBytes);
+                // cache theo nội dung DOCX: chỉ đúng khi DOCX không đổi trong lúc DS tải/convert
+                if (cacheKey != null) renderCache.put(cacheKey, pdfBytes);
+                return true;
+            });
         } catch (Exception e) {
-            throw new RuntimeException("Convert via ONLYOFFICE failed: " + e.getMessage(), e);
+            throw new RuntimeException("Write PDF failed: " + e.getMessage(), e);
         }
     }
 
@@ -577,6 +654,10 @@ public class ContractFileServiceImpl implements ContractFileService {
     }
 
     private void addParagraphWithText(WordprocessingMLPackage pkg, String text, int fontSizePt, boolean bold) {
+        pkg.getMainDocumentPart().addObject(textParagraph(text, fontSizePt, bold));
+    }
+
+    private P textParagraph(String text, int fontSizePt, boolean bold) {
         P p = WML.createP();
         R r = WML.createR();
         Text t = WML.createText();
@@ -597,7 +678,7 @@ public class ContractFileServiceImpl implements ContractFileService {
         r.getContent().add(t);
 
         p.getContent().add(r);
-        pkg.getMainDocumentPart().addObject(p);
+        return p;
     }
 
     private String readAllTextFromDocx(Path docx) {
@@ -817,45 +898,33 @@ public class ContractFileServiceImpl implements ContractFileService {
             // Xoá block cũ + page-break cũ (nếu còn)
             removeApprovalLogBlockWithLeadingPageBreak(pkg);
 
-            // Lấy dữ liệu approvals
-            List<ContractApproval> approvals = contractApprovalRepository.findAllForLog(contractId);
-            if (approvals == null || approvals.isEmpty()) return;
-
-            approvals.sort(
-                    Comparator
-                            .comparing((ContractApproval a) ->
-                                    Optional.ofNullable(a.getStepOrder()).orElse(Integer.MAX_VALUE))
-                            .thenComparing(a ->
-                                    Optional.ofNullable(a.getApprovedAt())
-                                            .orElse(Optional.ofNullable(a.getUpdatedAt()).orElse(LocalDateTime.MIN)))
-            );
-
-            // Dựng 1 SdtBlock (APPROVAL_LOG) – page break là PHẦN TỬ ĐẦU TIÊN bên trong block
-            SdtBlock sdt = WML.createSdtBlock();
-            SdtPr pr = WML.createSdtPr();
-            Tag tag = WML.createTag(); tag.setVal("APPROVAL_LOG");
-            pr.setTag(tag); sdt.setSdtPr(pr);
-            SdtContentBlock content = WML.createSdtContentBlock();
-            sdt.setSdtContent(content);
-
-            // Ngắt sang trang mới (bên trong block → replace sẽ xoá luôn)
-            content.getContent().add(pageBreakParagraph());
-
-            // Tiêu đề
-            content.getContent().add(titleParagraph("NHẬT KÝ KÝ DUYỆT VĂN BẢN", 14));
-            content.getContent().add(emptyLine());
-
-            // Bảng dữ liệu
-            Tbl tbl = buildApprovalTable(approvals);
-            content.getContent().add(tbl);
-
+            SdtBlock sdt = buildApprovalLogBlock(contractId);
             // Gắn block vào cuối tài liệu
-            pkg.getMainDocumentPart().addObject(sdt);
+            if (sdt != null) pkg.getMainDocumentPart().addObject(sdt);
         } catch (Exception e) {
             log.warn("updateApprovalLogPage error: {}", e.getMessage());
         }
     }
 
+    /** Như trên nhưng sửa trực tiếp document.xml qua DocxPatchEngine */
+    private void updateApprovalLogPage(Long contractId, DocxPatchEngine patch) {
+        try {
+            patch.removeTaggedBlock(APPROVAL_LOG_TAG);
+
+            SdtBlock sdt = buildApprovalLogBlock(contractId);
+            if (sdt != null) patch.appendBlock(sdt);
+        } catch (Exception e) {
+            log.warn("updateApprovalLogPage error: {}", e.getMessage());
+        }
+    }
+
+    /** Dựng block nhật ký; null nếu hợp đồng chưa có bước duyệt */
+    private SdtBlock buildApprovalLogBlock(Long contractId) {
+        // 1 query projection: đủ cột cần in, không nạp entity
+        List<ApprovalLogRow> rows = contractApprovalRepository.findLogRows(contractId);
+        return ApprovalLogRenderer.block(rows, APPROVAL_LOG_TAG);
+    }
+
     /** Xoá SdtBlock tag=APPROVAL_LOG và cả paragraph page-break liền trước (nếu tồn tại từ bản cũ) */
     private void removeApprovalLogBlockWithLeadingPageBreak(WordprocessingMLPackage pkg) {
         var mdp = pkg.getMainDocumentPart();
@@ -864,7 +933,7 @@ public class ContractFileServiceImpl implements ContractFileService {
             Object u = unwrap(content.get(i));
             if (u instanceof SdtBlock s) {
                 SdtPr pr = s.getSdtPr();
-                if (pr != null && pr.getTag() != null && "APPROVAL_LOG".equals(pr.getTag().getVal())) {
+                if (pr != null && pr.getTag() != null && APPROVAL_LOG_TAG.equals(pr.getTag().getVal())) {
                     // nếu phần tử ngay trước là paragraph chỉ chứa page-break thì xoá luôn
                     if (i > 0 && isPageBreakParagraph(content.get(i - 1))) {
                         content.remove(i - 1); // remove break
@@ -896,264 +965,6 @@ public class ContractFileServiceImpl implements ContractFileService {
         return false;
     }
 
-    /** Tạo bảng: STT | Người xử lý | Đơn vị | Thời gian | Ý kiến */
-    private Tbl buildApprovalTable(List<ContractApproval> approvals) {
-        Tbl tbl = WML.createTbl();
-
-        // ===== borders =====
-        TblPr pr = WML.createTblPr();
-        TblBorders borders = WML.createTblBorders();
-        CTBorder b = WML.createCTBorder();
-        b.setVal(STBorder.SINGLE);
-        b.setSz(BigInteger.valueOf(8));
-        b.setColor("BFBFBF");
-        borders.setTop(b); borders.setBottom(b); borders.setLeft(b); borders.setRight(b);
-        borders.setInsideH(b); borders.setInsideV(b);
-        pr.setTblBorders(borders);
-        tbl.setTblPr(pr);
-
-        // ===== header =====
-        Tr head = WML.createTr();
-        head.getContent().add(thCell("STT",        900));
-        head.getContent().add(thCell("Người xử lý",3800));
-        head.getContent().add(thCell("Đơn vị",     3200));
-        head.getContent().add(thCell("Thời gian",  2200));
-        head.getContent().add(thCell("Ý kiến",     2800));
-        tbl.getContent().add(head);
-
-        // ===== rows =====
-        int i = 1;
-        for (ContractApproval a : approvals) {
-            Tr tr = WML.createTr();
-
-            tr.getContent().add(tdCell(String.valueOf(i++), 900, true));
-
-            // Người xử lý: bắt approvedBy/signer + assigned/createdBy/updatedBy...
-            String actor = extractActorName(a);
-            tr.getContent().add(tdCell(actor, 3800, false));
-
-            // Đơn vị: department của approval/actor (nếu có)
-            String orgUnit = extractOrgUnit(a);
-            tr.getContent().add(tdCell(orgUnit, 3200, false));
-
-            // Thời gian: ưu tiên approvedAt -> updatedAt -> createdAt
-            LocalDateTime ts = Optional.ofNullable(getApprovedAt(a))
-                    .orElse(Optional.ofNullable(getUpdatedAt(a)).orElse(getCreatedAt(a)));
-            tr.getContent().add(tdCell(formatTs(ts), 2200, false));
-
-            String note = firstNonBlank(
-                    safe(() -> invokeString(a, "getDecisionNote")),
-                    safe(() -> invokeString(a, "getComment")),
-                    safe(() -> invokeString(a, "getNote")),
-                    ""
-            );
-            tr.getContent().add(tdCell(note, 2800, false));
-
-            tbl.getContent().add(tr);
-        }
-        return tbl;
-    }
-    private boolean notBlank(String s){ return s != null && !s.isBlank(); }
-    private String extractActorName(ContractApproval a) {
-        if (a == null) return "-";
-
-        // Ưu tiên: approver trực tiếp
-        try {
-            if (a.getApprover() != null) {
-                String n = deepName(a.getApprover());
-                if (notBlank(n)) return n;
-            }
-        } catch (Throwable ignore) {}
-
-        // Nếu entity có chuỗi sẵn trên chính Approval
-        String fromSelf = firstNonBlank(
-                safe(() -> invokeString(a, "getApproverName")),
-                safe(() -> invokeString(a, "getSignerName")),
-                safe(() -> invokeString(a, "getActorName"))
-        );
-        if (notBlank(fromSelf)) return fromSelf;
-
-        // Fallback reflection như cũ
-        Object o = scanObjectGetters(
-                a,
-                List.of("approv","sign","actor","user","employee","account",
-                        "handler","processor","review","creator","created",
-                        "updater","updated","owner","assign","assignee","assigned")
-        );
-        String deep = deepName(o);
-        return notBlank(deep) ? deep : "-";
-    }
-
-
-    private String extractOrgUnit(Object a) {
-        if (a == null) return "-";
-        // 1) String-getter departmentName/orgName/...
-        String v = scanStringGetters(
-                a,
-                List.of("departmentname","departmentName","deptname","orgname","organizationname","unitname","phongban","phongBan"),
-                List.of("department","dept","org","organization","unit","phong","ban")
-        );
-        if (notBlank(v)) return v;
-
-        // 2) Object-getter department/unit
-        Object dep = scanObjectGetters(a, List.of("department","dept","org","organization","unit"));
-        String deep = deepName(dep);
-        if (notBlank(deep)) return deep;
-
-        // 3) Đi từ actor -> department
-        Object actorObj = scanObjectGetters(a, List.of("approv","sign","actor","user","employee","account","assign","assignee","assigned","creator","created","updater","updated"));
-        if (actorObj != null) {
-            Object actorDep = scanObjectGetters(actorObj, List.of("department","dept","organization","unit"));
-            String viaActor = deepName(actorDep);
-            if (notBlank(viaActor)) return viaActor;
-        }
-        return "-";
-    }
-
-    private String scanStringGetters(Object root, List<String> valueKeys, List<String> roleKeys) {
-        try {
-            for (var m : root.getClass().getMethods()) {
-                if (!m.getName().startsWith("get") || m.getParameterCount()!=0 || m.getReturnType()!=String.class) continue;
-                String lower = m.getName().toLowerCase(Locale.ROOT);
-                boolean hitVal  = valueKeys.stream().anyMatch(lower::contains);
-                boolean hitRole = roleKeys.stream().anyMatch(lower::contains);
-                if (hitVal && hitRole) {
-                    String v = (String) m.invoke(root);
-                    if (notBlank(v)) return v;
-                }
-            }
-        } catch (Exception ignore) {}
-        return null;
-    }
-
-    private Object scanObjectGetters(Object root, List<String> roleKeys) {
-        try {
-            for (var m : root.getClass().getMethods()) {
-                if (!m.getName().startsWith("get") || m.getParameterCount()!=0) continue;
-                Class<?> rt = m.getReturnType();
-                if (rt.isPrimitive() || rt==String.class) continue;
-                String lower = m.getName().toLowerCase(Locale.ROOT);
-                if (roleKeys.stream().anyMatch(lower::contains)) {
-                    Object o = m.invoke(root);
-                    if (o != null) return o;
-                }
-            }
-        } catch (Exception ignore) {}
-        return null;
-    }
-
-
-    private String deepName(Object o) {
-        if (o == null) return null;
-        try {
-            // Các getter chuỗi phổ biến
-            for (String g : List.of(
-                    "getFullName","getFullname","getDisplayName","getName",
-                    "getUsername","getUserName","getEmail","getEmailAddress"
-            )) {
-                try {
-                    var m = o.getClass().getMethod(g);
-                    Object v = m.invoke(o);
-                    if (v instanceof String s && notBlank(s)) return s;
-                } catch (NoSuchMethodException ignore) {}
-            }
-
-            // Ghép họ tên
-            String fn = tryStr(o, "getFirstName", "getGivenName");
-            String ln = tryStr(o, "getLastName", "getFamilyName", "getSurname");
-            if (notBlank(fn) || notBlank(ln)) {
-                return (notBlank(fn)?fn:"") + (notBlank(fn)&&notBlank(ln)?" ":"") + (notBlank(ln)?ln:"");
-            }
-
-            // Đi sâu qua các wrapper quen thuộc
-            for (String g : List.of("getUser","getAccount","getEmployee","getPerson","getOwner")) {
-                try {
-                    var m = o.getClass().getMethod(g);
-                    String s = deepName(m.invoke(o));
-                    if (notBlank(s)) return s;
-                } catch (NoSuchMethodException ignore) {}
-            }
-
-            // Bất kỳ getter chứa "name"
-            for (var m : o.getClass().getMethods()) {
-                if (!m.getName().startsWith("get") || m.getParameterCount()!=0 || m.getReturnType()!=String.class) continue;
-                if (m.getName().toLowerCase(Locale.ROOT).contains("name")) {
-                    String v = (String) m.invoke(o);
-                    if (notBlank(v)) return v;
-                }
-            }
-
-            String ts = String.valueOf(o);
-            if (notBlank(ts) && !ts.matches(".+@\\p{XDigit}+")) return ts;
-        } catch (Exception ignore) {}
-        return null;
-    }
-    private String tryStr(Object o, String... getters) {
-        for (String g : getters) {
-            try {
-                var m = o.getClass().getMethod(g);
-                Object v = m.invoke(o);
-                if (v instanceof String s && notBlank(s)) return s;
-            } catch (Exception ignore) {}
-        }
-        return null;
-    }
-
-    private Tc thCell(String text, int width) {
-        Tc tc = tdCell(text, width, true);
-        // shading xám nhạt
-        TcPr p = tc.getTcPr(); if (p==null){ p=WML.createTcPr(); tc.setTcPr(p);}
-        CTShd shd = WML.createCTShd(); shd.setVal(STShd.CLEAR); shd.setFill("EDEDED");
-        p.setShd(shd);
-        return tc;
-    }
-    private Tc tdCell(String text, int width, boolean center) {
-        Tc tc = WML.createTc();
-        TcPr pr = WML.createTcPr();
-        TblWidth w = WML.createTblWidth();
-        w.setType("dxa"); w.setW(BigInteger.valueOf(width));
-        pr.setTcW(w); tc.setTcPr(pr);
-
-        P p = WML.createP();
-        if (center) {
-            PPr ppr = WML.createPPr(); Jc jc = WML.createJc(); jc.setVal(JcEnumeration.CENTER);
-            ppr.setJc(jc); p.setPPr(ppr);
-        }
-        R r = WML.createR(); Text t = WML.createText(); t.setValue(Optional.ofNullable(text).orElse(""));
-        r.getContent().add(t); p.getContent().add(r);
-        tc.getContent().add(p);
-        return tc;
-    }
-
-    private P titleParagraph(String text, int fontSizePt) {
-        P p = WML.createP();
-        PPr ppr = WML.createPPr(); Jc jc = WML.createJc(); jc.setVal(JcEnumeration.CENTER); ppr.setJc(jc); p.setPPr(ppr);
-        R r = WML.createR();
-        RPr rpr = WML.createRPr(); BooleanDefaultTrue b = new BooleanDefaultTrue(); b.setVal(true); rpr.setB(b);
-        HpsMeasure sz = new HpsMeasure(); sz.setVal(BigInteger.valueOf(fontSizePt*2L)); rpr.setSz(sz); rpr.setSzCs(sz);
-        r.setRPr(rpr);
-        Text t = WML.createText(); t.setValue(text);
-        r.getContent().add(t); p.getContent().add(r);
-        return p;
-    }
-    private P centerParagraph(String text, int fontSizePt) {
-        P p = WML.createP();
-        PPr ppr = WML.createPPr(); Jc jc = WML.createJc(); jc.setVal(JcEnumeration.CENTER); ppr.setJc(jc); p.setPPr(ppr);
-        R r = WML.createR(); if (fontSizePt>0){ RPr rpr=new RPr(); HpsMeasure sz=new HpsMeasure(); sz.setVal(BigInteger.valueOf(fontSizePt*2L)); rpr.setSz(sz); rpr.setSzCs(sz); r.setRPr(rpr); }
-        Text t = WML.createText(); t.setValue(text);
-        r.getContent().add(t); p.getContent().add(r);
-        return p;
-    }
-    private P emptyLine() { return centerParagraph(" ", 1); }
-    private P pageBreakParagraph() {
-        P p = WML.createP();
-        R r = WML.createR();
-        Br br = WML.createBr(); br.setType(STBrType.PAGE);
-        r.getContent().add(br);
-        p.getContent().add(r);
-        return p;
-    }
-
     // ========================================================================
     // I/O helpers
     // ========================================================================
@@ -1243,35 +1054,5 @@ public class ContractFileServiceImpl implements ContractFileService {
     }
     private Path docxPathOf(Long id) { return contractDirOf(id).resolve(DOCX_NAME); }
     private Path pdfPathOf(Long id)  { return contractDirOf(id).resolve(PDF_NAME); }
-
-    // ========================================================================
-    // Small utils for Approval mapping/format
-    // ========================================================================
-
-    private String firstNonBlank(String... arr){
-        for (String s : arr){ if (s!=null && !s.isBlank()) return s; }
-        return null;
-    }
-    private String safe(Supplier<String> s){
-        try { return s.get(); } catch (Exception e){ return null; }
-    }
-
-    private LocalDateTime invokeDate(ContractApproval a, String getter){
-        try { return (LocalDateTime) ContractApproval.class.getMethod(getter).invoke(a); }
-        catch (Exception ignore){ return null; }
-    }
-    private String invokeString(ContractApproval a, String getter){
-        try {
-            Object v = ContractApproval.class.getMethod(getter).invoke(a);
-            return v != null ? v.toString() : null;
-        } catch (Exception ignore){ return null; }
-    }
-    private LocalDateTime getApprovedAt(ContractApproval a){ return invokeDate(a, "getApprovedAt"); }
-    private LocalDateTime getUpdatedAt(ContractApproval a){ return invokeDate(a, "getUpdatedAt"); }
-    private LocalDateTime getCreatedAt(ContractApproval a){ return invokeDate(a, "getCreatedAt"); }
-
-    private String formatTs(LocalDateTime ts){
-        if (ts==null) return "";
-        return ts.format(DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss"));
-    }
+    private static Path versionPathOf(Path pdf) { return pdf.resolveSibling(pdf.getFileName() + ".version"); }
 }
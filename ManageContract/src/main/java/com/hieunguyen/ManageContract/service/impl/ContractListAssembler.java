@@ -0,0 +1,78 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import com.hieunguyen.ManageContract.dto.CursorPageResponse;
+import com.hieunguyen.ManageContract.dto.contract.ContractListRow;
+import com.hieunguyen.ManageContract.dto.contract.ContractResponse;
+import com.hieunguyen.ManageContract.dto.contract.ContractVariableRow;
+import com.hieunguyen.ManageContract.mapper.ContractMapper;
+import com.hieunguyen.ManageContract.repository.ContractVariableValueRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * Dựng danh sách hợp đồng từ projection ContractListRow:
+ * - Biến của cả trang lấy bằng 1 query IN (tuỳ chọn) thay vì lazy-load variableValues từng hợp đồng.
+ * - Keyset: query lấy size + 1 dòng theo id giảm dần; có dòng thừa → còn trang sau, cursor = id cuối trang.
+ */
+@Component
+@RequiredArgsConstructor
+public class ContractListAssembler {
+
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private final ContractVariableValueRepository variableValueRepository;
+
+    /** Dòng đầu tiên cần lấy: cursor của trang trước, hoặc từ đầu */
+    public static long cursorOrFirst(Long cursor) {
+        return cursor != null ? cursor : Long.MAX_VALUE;
+    }
+
+    /** Lấy thừa 1 dòng để biết còn trang sau */
+    public static Pageable limitFor(int size) {
+        return PageRequest.of(0, pageSize(size) + 1);
+    }
+
+    public static int pageSize(int size) {
+        return size <= 0 ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+    }
+
+    public CursorPageResponse<ContractResponse> toPage(List<ContractListRow> rows, int size, boolean includeVariables) {
+        List<ContractListRow> page = trim(rows, size);
+        boolean hasMore = page.size() < rows.size();
+        Long nextCursor = hasMore ? page.get(page.size() - 1).id() : null;
+        return new CursorPageResponse<>(toResponses(page, includeVariables), nextCursor, hasMore);
+    }
+
+    /** Bỏ dòng thừa (lấy thêm để biết còn trang sau) */
+    public static <T> List<T> trim(List<T> rows, int size) {
+        int pageSize = pageSize(size);
+        return rows.size() > pageSize ? rows.subList(0, pageSize) : rows;
+    }
+
+    public List<ContractResponse> toResponses(List<ContractListRow> rows, boolean includeVariables) {
+        Map<Long, List<ContractResponse.VariableValueResponse>> variables =
+                includeVariables ? variablesOf(rows) : Map.of();
+        return rows.stream()
+                .map(r -> ContractMapper.toResponse(r,
+                        includeVariables ? variables.getOrDefault(r.id(), List.of()) : null))
+                .toList();
+    }
+
+    private Map<Long, List<ContractResponse.VariableValueResponse>> variablesOf(List<ContractListRow> rows) {
+        if (rows.isEmpty()) return Map.of();
+        List<Long> ids = rows.stream().map(ContractListRow::id).toList();
+        Map<Long, List<ContractResponse.VariableValueResponse>> byContract = new HashMap<>();
+        for (ContractVariableRow v : variableValueRepository.findRowsByContractIds(ids)) {
+            ContractResponse.VariableValueResponse vv = new ContractResponse.VariableValueResponse();
+            vv.setVarName(v.varName());
+            vv.setVarValue(v.varValue());
+            byContract.computeIfAbsent(v.contractId(), k -> new ArrayList<>()).add(vv);
+        }
+        return byContract;
+    }
+}
@@ -1,18 +1,20 @@
 package com.hieunguyen.ManageContract.service.impl;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.hieunguyen.ManageContract.common.constants.ApprovalStatus;
 import com.hieunguyen.ManageContract.common.constants.ApproverType;
 import com.hieunguyen.ManageContract.common.constants.ContractStatus;
 import com.hieunguyen.ManageContract.common.constants.DocxToHtmlConverter;
+import com.hieunguyen.ManageContract.dto.CursorPageResponse;
 import com.hieunguyen.ManageContract.dto.approval.ApprovalStepResponse;
 import com.hieunguyen.ManageContract.dto.contract.ContractResponse;
 import com.hieunguyen.ManageContract.dto.contract.CreateContractRequest;
 import com.hieunguyen.ManageContract.dto.contract.PlannedFlowResponse;
 import com.hieunguyen.ManageContract.entity.*;
+import com.hieunguyen.ManageContract.event.ContractCreatedEvent;
 import com.hieunguyen.ManageContract.mapper.ApprovalMapper;
 import com.hieunguyen.ManageContract.mapper.ContractMapper;
 import com.hieunguyen.ManageContract.repository.*;
+import com.hieunguyen.ManageContract.service.ContractFileService;
 import com.hieunguyen.ManageContract.service.ContractService;
 import jakarta.transaction.Transactional;
 import jakarta.xml.bind.JAXBElement;
@@ -26,23 +28,18 @@ import org.apache.pdfbox.pdmodel.font.PDFont;
 import org.apache.pdfbox.pdmodel.font.PDType0Font;
 import org.apache.pdfbox.pdmodel.font.PDType1Font;
 import org.apache.poi.xwpf.usermodel.*;
-import org.docx4j.model.datastorage.migration.VariablePrepare;
 import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
 import org.docx4j.wml.ContentAccessor;
 import org.docx4j.wml.Text;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.io.ClassPathResource;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
@@ -50,6 +47,7 @@ import java.nio.charset.MalformedInputException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
 @Service
@@ -64,17 +62,16 @@ public class ContractServiceImpl implements ContractService {
     private final PositionRepository positionRepository;
     private final DepartmentRepository departmentRepository;
     private final ApprovalFlowRepository approvalFlowRepository;
-    private final OnlyOfficeConvertService onlyOfficeConvertService;
-
-    @Value("${app.ds.url:http://localhost:8081}")
-    private String docServer; // URL Document Server (OnlyOffice)
+    private final ContractFileService contractFileService;
+    private final PdfRenderCache renderCache;
+    private final PdfRendererRouter pdfRenderers;
+    private final TemplatePackageCache templatePackageCache;
+    private final ContractListAssembler contractListAssembler;
+    private final ApplicationEventPublisher events;
 
     @Value("${app.ds.source-base:http://host.docker.internal:8080}")
     private String hostBaseUrl;
 
-    private final RestTemplate restTemplate = new RestTemplate();
-    private final ObjectMapper mapper = new ObjectMapper();
-
     // ======================== CREATE ========================
     @Transactional
     @Override
@@ -150,7 +147,7 @@ public class ContractServiceImpl implements ContractService {
 
         savedContract = contractRepository.save(savedContract);
 
-        // Generate file (best-effort)
+        // Generate file (best-effort): chỉ sinh DOCX, PDF do job render-ahead tạo sau commit
         try {
             String filePath = generateContractFileFromTemplate(savedContract);
             savedContract.setFilePath(filePath);
@@ -160,6 +157,9 @@ public class ContractServiceImpl implements ContractService {
             log.warn("Could not create contract file for contract {}: {}", savedContract.getId(), e.getMessage());
         }
 
+        // render-ahead: PDF chuẩn (contract.pdf) được render nền sau commit
+        events.publishEvent(new ContractCreatedEvent(savedContract.getId()));
+
         return ContractMapper.toResponse(savedContract);
     }
 
@@ -192,79 +192,35 @@ public class ContractServiceImpl implements ContractService {
                 ));
 
         try {
-            WordprocessingMLPackage pkg = WordprocessingMLPackage.load(templatePath.toFile());
-            VariablePrepare.prepare(pkg);
-            pkg.getMainDocumentPart().variableReplace(vars);
-            pkg.save(docxOut.toFile());
+            templatePackageCache.render(template, vars, docxOut);
         } catch (Exception e) {
             throw new RuntimeException("Build preview DOCX failed: " + e.getMessage(), e);
         }
 
         String sourceUrl = hostBaseUrl.replaceAll("/+$", "") + "/internal/previews/" + token + "/contract.docx";
-        byte[] pdfBytes = convertDocxUrlToPdf(sourceUrl);
+        // preview cùng template + cùng biến → trả PDF đã render, không gọi Document Server
+        String cacheKey = renderCache.keyOf(docxOut);
+        byte[] pdfBytes = renderCache.read(cacheKey).orElseGet(() -> {
+            PdfRendererRouter.RenderedPdf converted = convertPreview(docxOut, sourceUrl);
+            if (converted.cacheable()) renderCache.put(cacheKey, converted.bytes());
+            return converted.bytes();
+        });
 
         try {
-            Files.write(previewDir.resolve("contract.pdf"), pdfBytes,
-                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-        } catch (IOException ignore) {
+            AtomicFiles.write(previewDir.resolve("contract.pdf"), pdfBytes);
+        } catch (Exception ignore) {
         }
 
         return pdfBytes;
     }
 
-    private byte[] convertDocxUrlToPdf(String sourceUrl) {
+    private PdfRendererRouter.RenderedPdf convertPreview(Path docx, String sourceUrl) {
         try {
-            String base = docServer.replaceAll("/+$", "");
-            String[] endpoints = {base + "/ConvertService.ashx", base + "/ConvertService"};
-
-            Map<String, Object> payload = new HashMap<>();
-            payload.put("async", false);
-            payload.put("filetype", "docx");
-            payload.put("outputtype", "pdf");
-            payload.put("key", "preview-" + System.currentTimeMillis());
-            payload.put("title", "contract.docx");
-            payload.put("url", sourceUrl);
-
-            String json = mapper.writeValueAsString(payload);
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setAccept(List.of(MediaType.APPLICATION_JSON));
-
-            ResponseEntity<String> resp = null;
-            for (String ep : endpoints) {
-                try {
-                    resp = restTemplate.postForEntity(ep, new HttpEntity<>(json, headers), String.class);
-                    if (resp.getStatusCode().is2xxSuccessful()) break;
-                } catch (Exception ignore) {
-                }
-            }
-            if (resp == null || !resp.getStatusCode().is2xxSuccessful() || resp.getBody() == null) {
-                throw new RuntimeException("ConvertService request failed");
-            }
-
-            var root = mapper.readTree(resp.getBody());
-            int attempts = 0;
-            while (!root.path("endConvert").asBoolean(false) && attempts < 20) {
-                Thread.sleep(400);
-                resp = restTemplate.postForEntity(endpoints[0], new HttpEntity<>(json, headers), String.class);
-                if (!resp.getStatusCode().is2xxSuccessful() || resp.getBody() == null) {
-                    throw new RuntimeException("ConvertService polling failed");
-                }
-                root = mapper.readTree(resp.getBody());
-                attempts++;
-            }
-            if (!root.path("endConvert").asBoolean(false)) {
-                throw new RuntimeException("Convert not finished (timeout)");
-            }
-
-            String fileUrl = root.path("fileUrl").asText(null);
-            if (fileUrl == null) throw new RuntimeException("ConvertService returned no fileUrl");
-            byte[] pdf = restTemplate.getForObject(fileUrl, byte[].class);
-            if (pdf == null || pdf.length == 0) throw new RuntimeException("Downloaded PDF is empty");
-            return pdf;
-        } catch (Exception e) {
-            throw new RuntimeException("Preview convert failed: " + e.getMessage(), e);
+            // không tự sleep-poll: ConversionTracker poll chung; DS sập/chậm → render trong JVM
+            return pdfRenderers.render("preview", docx, sourceUrl).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            throw new RuntimeException("Preview convert failed: " + cause.getMessage(), cause);
         }
     }
 
@@ -281,17 +237,17 @@ public class ContractServiceImpl implements ContractService {
                 throw new RuntimeException("Template file does not exist: " + template.getFilePath());
             }
 
+            String fileName = templatePath.getFileName().toString().toLowerCase();
+            if (fileName.endsWith(".docx")) {
+                // không convert đồng bộ trong request: ContractCreatedEvent xếp job render contract.pdf
+                return contractFileService.generateDocxFile(contract);
+            }
+
             Path contractDir = Paths.get("uploads", "contracts", String.valueOf(contract.getId()));
             Files.createDirectories(contractDir);
 
             Path pdfPath = contractDir.resolve("contract_" + System.currentTimeMillis() + ".pdf");
-            String fileName = templatePath.getFileName().toString().toLowerCase();
-
-            if (fileName.endsWith(".docx")) {
-                processDocxToPdf(templatePath, pdfPath, contract);
-            } else {
-                processTextToPdf(templatePath, pdfPath, contract);
-            }
+            processTextToPdf(templatePath, pdfPath, contract);
 
             log.info("Created contract file from template at: {}", pdfPath);
             return pdfPath.toString();
@@ -302,212 +258,6 @@ public class ContractServiceImpl implements ContractService {
         }
     }
 
-    private void processDocxToPdf(Path templatePath, Path pdfPath, Contract contract) {
-        try {
-            Path tempDocxPath = pdfPath.getParent().resolve("temp_contract_" + System.currentTimeMillis() + ".docx");
-
-            replaceVariablesInDocxFile(templatePath, tempDocxPath, contract.getVariableValues());
-
-            boolean success = onlyOfficeConvertService.convertDocxToPdf(tempDocxPath, pdfPath);
-
-            if (!success) {
-                log.warn("OnlyOffice conversion failed, falling back to improved PDFBox");
-                convertWithPdfBoxImproved(tempDocxPath, pdfPath, contract);
-            } else {
-                addSignaturePlaceholdersToExistingPdf(pdfPath, contract);
-            }
-
-            Files.deleteIfExists(tempDocxPath);
-
-            log.info("✅ SUCCESS: Processed DOCX to PDF for contract {}", contract.getId());
-
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to process DOCX template: " + e.getMessage(), e);
-        }
-    }
-
-    private void addSignaturePlaceholdersToExistingPdf(Path pdfPath, Contract contract) {
-        if (contract.getFlow() == null || contract.getFlow().getSteps() == null) {
-            return;
-        }
-
-        try (PDDocument document = PDDocument.load(pdfPath.toFile())) {
-            PDPage lastPage = document.getPage(document.getNumberOfPages() - 1);
-            PDFont font = loadUnicodeFont(document);
-
-            try (PDPageContentStream contentStream = new PDPageContentStream(
-                    document, lastPage, PDPageContentStream.AppendMode.APPEND, true, true)) {
-
-                float yPosition = 150;
-                float margin = 50;
-
-                contentStream.setFont(font, 10);
-
-                contentStream.beginText();
-                contentStream.newLineAtOffset(margin, yPosition);
-                contentStream.showText("CHỮ KÝ XÁC NHẬN:");
-                contentStream.endText();
-                yPosition -= 20;
-
-                for (ApprovalStep step : contract.getFlow().getSteps()) {
-                    if (step.getSignaturePlaceholder() != null && !step.getSignaturePlaceholder().isBlank()) {
-                        if (yPosition < 50) break;
-                        contentStream.beginText();
-                        contentStream.newLineAtOffset(margin, yPosition);
-                        contentStream.showText(step.getSignaturePlaceholder() + ": _________________________");
-                        contentStream.endText();
-                        yPosition -= 25;
-                    }
-                }
-            }
-
-            Path tempPdf = pdfPath.getParent().resolve("temp_with_signatures_" + System.currentTimeMillis() + ".pdf");
-            document.save(tempPdf.toFile());
-            Files.move(tempPdf, pdfPath, StandardCopyOption.REPLACE_EXISTING);
-
-            log.info("✅ Added signature placeholders to PDF: {}", pdfPath);
-
-        } catch (Exception e) {
-            log.warn("⚠️ Could not add signature placeholders to PDF: {}", e.getMessage());
-        }
-    }
-
-    private void replaceVariablesInDocxFile(Path sourceDocx, Path targetDocx, List<ContractVariableValue> variables) {
-        try {
-            Files.copy(sourceDocx, targetDocx, StandardCopyOption.REPLACE_EXISTING);
-
-            Map<String, String> variableMap = new HashMap<>();
-            for (ContractVariableValue var : variables) {
-                variableMap.put(var.getVarName(), var.getVarValue() != null ? var.getVarValue() : "");
-            }
-
-            try (XWPFDocument document = new XWPFDocument(Files.newInputStream(targetDocx))) {
-                // paragraphs
-                for (XWPFParagraph paragraph : document.getParagraphs()) {
-                    replaceVariablesInParagraph(paragraph, variableMap);
-                }
-                // tables
-                for (XWPFTable table : document.getTables()) {
-                    for (XWPFTableRow row : table.getRows()) {
-                        for (XWPFTableCell cell : row.getTableCells()) {
-                            for (XWPFParagraph paragraph : cell.getParagraphs()) {
-                                replaceVariablesInParagraph(paragraph, variableMap);
-                            }
-                        }
-                    }
-                }
-                // headers
-                for (XWPFHeader header : document.getHeaderList()) {
-                    for (XWPFParagraph paragraph : header.getParagraphs()) {
-                        replaceVariablesInParagraph(paragraph, variableMap);
-                    }
-                }
-                // footers
-                for (XWPFFooter footer : document.getFooterList()) {
-                    for (XWPFParagraph paragraph : footer.getParagraphs()) {
-                        replaceVariablesInParagraph(paragraph, variableMap);
-                    }
-                }
-
-                try (FileOutputStream out = new FileOutputStream(targetDocx.toFile())) {
-                    document.write(out);
-                }
-            }
-
-            log.info("✅ Successfully replaced variables in DOCX: {}", targetDocx);
-
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to replace variables in DOCX: " + e.getMessage(), e);
-        }
-    }
-
-    private void replaceVariablesInParagraph(XWPFParagraph paragraph, Map<String, String> variableMap) {
-        String paragraphText = paragraph.getText();
-        if (paragraphText == null || paragraphText.isEmpty()) return;
-
-        String newText = paragraphText;
-        for (Map.Entry<String, String> entry : variableMap.entrySet()) {
-            String key = entry.getKey();
-            String value = entry.getValue();
-            newText = newText.replace("${" + key + "}", value);
-            newText = newText.replace("{{" + key + "}}", value);
-        }
-
-        if (!newText.equals(paragraphText)) {
-            for (int i = paragraph.getRuns().size() - 1; i >= 0; i--) {
-                paragraph.removeRun(i);
-            }
-            XWPFRun newRun = paragraph.createRun();
-            newRun.setText(newText);
-            if (!paragraph.getRuns().isEmpty()) {
-                XWPFRun firstRun = paragraph.getRuns().get(0);
-                newRun.setBold(firstRun.isBold());
-                newRun.setItalic(firstRun.isItalic());
-                newRun.setFontSize(firstRun.getFontSize());
-                newRun.setFontFamily(firstRun.getFontFamily());
-                newRun.setColor(firstRun.getColor());
-            }
-        }
-    }
-
-    private void convertWithPdfBoxImproved(Path docxPath, Path pdfPath, Contract contract) {
-        try (XWPFDocument docxDocument = new XWPFDocument(Files.newInputStream(docxPath));
-             PDDocument pdfDocument = new PDDocument()) {
-
-            PDFont font = loadUnicodeFont(pdfDocument);
-            float currentY = 750;
-            float margin = 50;
-            float lineHeight = 12;
-
-            PDPage currentPage = new PDPage(PDRectangle.A4);
-            pdfDocument.addPage(currentPage);
-            PDPageContentStream contentStream = new PDPageContentStream(pdfDocument, currentPage);
-
-            contentStream.setFont(font, 10);
-            contentStream.beginText();
-            contentStream.newLineAtOffset(margin, currentY);
-
-            for (XWPFParagraph paragraph : docxDocument.getParagraphs()) {
-                String text = paragraph.getText();
-                if (text != null && !text.trim().isEmpty()) {
-
-                    if (currentY < 100) {
-                        contentStream.endText();
-                        contentStream.close();
-
-                        currentPage = new PDPage(PDRectangle.A4);
-                        pdfDocument.addPage(currentPage);
-                        contentStream = new PDPageContentStream(pdfDocument, currentPage);
-                        currentY = 750;
-
-                        contentStream.setFont(font, 10);
-                        contentStream.beginText();
-                        contentStream.newLineAtOffset(margin, currentY);
-                    }
-
-                    List<String> lines = wrapText(text, font, 10, 500);
-                    for (String line : lines) {
-                        contentStream.showText(line);
-                        contentStream.newLineAtOffset(0, -lineHeight);
-                        currentY -= lineHeight;
-                    }
-                }
-            }
-
-            contentStream.endText();
-            contentStream.close();
-
-            addSignaturePlaceholdersFromFlow(pdfDocument, currentPage, font, contract);
-
-            pdfDocument.save(pdfPath.toFile());
-
-            log.info("✅ Fallback PDFBox conversion completed: {}", pdfPath);
-
-        } catch (Exception e) {
-            throw new RuntimeException("PDFBox fallback conversion failed: " + e.getMessage(), e);
-        }
-    }
-
     private String extractTextFromDocx(Path docxPath) {
         StringBuilder content = new StringBuilder();
 
@@ -894,7 +644,7 @@ public class ContractServiceImpl implements ContractService {
             List<ContractVariableValue> values = variableValueRepository.findByContract_Id(contractId);
 
             if (fileName.endsWith(".docx")) {
-                WordprocessingMLPackage pkg = WordprocessingMLPackage.load(new File(template.getFilePath()));
+                WordprocessingMLPackage pkg = templatePackageCache.checkout(template);
                 replaceDocxVariables(pkg, values);
                 return DocxToHtmlConverter.convertToHtml(pkg);
             } else {
@@ -930,7 +680,7 @@ public class ContractServiceImpl implements ContractService {
                     }).toList();
 
             if (fileName.endsWith(".docx")) {
-                WordprocessingMLPackage pkg = WordprocessingMLPackage.load(new File(template.getFilePath()));
+                WordprocessingMLPackage pkg = templatePackageCache.checkout(template);
                 replaceDocxVariables(pkg, values);
                 return DocxToHtmlConverter.convertToHtml(pkg);
             } else {
@@ -946,10 +696,19 @@ public class ContractServiceImpl implements ContractService {
     @Override
     public List<ContractResponse> getMyContracts(ContractStatus status) {
         String email = SecurityContextHolder.getContext().getAuthentication().getName();
-        List<Contract> list = (status == null)
-                ? contractRepository.findByCreatedBy_Account_Email(email)
-                : contractRepository.findByCreatedBy_Account_EmailAndStatus(email, status);
-        return list.stream().map(ContractMapper::toResponse).toList();
+        // projection + biến lấy theo lô: không lazy-load template/variableValues từng hợp đồng
+        return contractListAssembler.toResponses(
+                contractRepository.findMyContractRows(email, status, Long.MAX_VALUE, Pageable.unpaged()), true);
+    }
+
+    @Override
+    public CursorPageResponse<ContractResponse> getMyContractsPage(ContractStatus status, Long cursor, int size,
+                                                                   boolean includeVariables) {
+        String email = SecurityContextHolder.getContext().getAuthentication().getName();
+        return contractListAssembler.toPage(
+                contractRepository.findMyContractRows(email, status,
+                        ContractListAssembler.cursorOrFirst(cursor), ContractListAssembler.limitFor(size)),
+                size, includeVariables);
     }
 
     private void replaceDocxVariables(WordprocessingMLPackage pkg, List<ContractVariableValue> values) {
@@ -22,7 +22,6 @@ import jakarta.annotation.PostConstruct;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.poi.xwpf.usermodel.XWPFDocument;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
@@ -35,8 +34,6 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 @Service
@@ -52,6 +49,7 @@ public class ContractTemplateServiceImpl implements ContractTemplateService {
     private final ApprovalFlowRepository approvalFlowRepository;
     private final CategoryRepository categoryRepository;
     private final ObjectMapper objectMapper;
+    private final TemplatePackageCache templatePackageCache;
 
     private static final Path UPLOAD_DIR = Paths.get("uploads", "templates");
 
@@ -197,6 +195,7 @@ public class ContractTemplateServiceImpl implements ContractTemplateService {
                     .build();
 
             ContractTemplate savedTemplate = templateRepository.save(template);
+            templatePackageCache.invalidate(savedTemplate.getId());
 
             // DEBUG: Log variables before processing
             log.info("Finalizing template with {} variables", request.getVariables().size());
@@ -473,6 +472,7 @@ public class ContractTemplateServiceImpl implements ContractTemplateService {
         }
 
         template = templateRepository.save(template);
+        templatePackageCache.invalidate(template.getId());
         log.info("Updated template: {}", template.getId());
         return ContractTemplateMapper.toResponse(template);
     }
@@ -524,125 +524,48 @@ public class ContractTemplateServiceImpl implements ContractTemplateService {
     }
 
     private List<TemplateVariablePreview> parseVariablesFromDocx(Path filePath) throws IOException {
-        StringBuilder text = new StringBuilder();
-        try (XWPFDocument document = new XWPFDocument(Files.newInputStream(filePath))) {
-            document.getParagraphs().forEach(p -> text.append(p.getText()).append("\n"));
-            document.getTables().forEach(table ->
-                    table.getRows().forEach(row ->
-                            row.getTableCells().forEach(cell -> text.append(cell.getText()).append("\n"))
-                    )
-            );
-        }
-
-        List<TemplateVariablePreview> variables = new ArrayList<>();
-        String content = text.toString();
-
-        log.info("Parsing document content, length: {}", content.length());
-
-        // Pattern cho các loại biến
-        Pattern simplePattern = Pattern.compile("\\$\\{(.*?)}");
-        Pattern booleanPattern = Pattern.compile("\\$\\{(.*?)\\?(.*?):(.*?)}");
-        Pattern dropdownPattern = Pattern.compile("\\$\\{(.*?)\\|(.*?)}");
-        Pattern tablePattern = Pattern.compile("\\$\\{table:(.*?)}");
-
-        // Tìm biến TABLE trước (quan trọng)
-        Matcher tableMatcher = tablePattern.matcher(content);
-        while (tableMatcher.find()) {
-            String tableName = tableMatcher.group(1).trim();
-
-            Map<String, Object> configMap = new HashMap<>();
-            configMap.put("tableName", tableName);
-
-            // Cấu hình mặc định cho bảng - SỬA: Sử dụng enum trong columns
-            List<Map<String, Object>> columns = new ArrayList<>();
-            columns.add(createColumnWithEnum("column_1", VariableType.TEXT)); // SỬA
-            columns.add(createColumnWithEnum("column_2", VariableType.TEXT)); // SỬA
-            configMap.put("columns", columns);
-
-            // Các thuộc tính bổ sung cho table
-            configMap.put("minRows", 1);
-            configMap.put("maxRows", 10);
-            configMap.put("editable", true);
-
-            TemplateVariablePreview preview = TemplateVariablePreview.builder()
-                    .varName("table_" + tableName)
-                    .orderIndex(variables.size() + 1)
-                    .varType(VariableType.TABLE)
-                    .config(configMap)
-                    .allowedValues(new ArrayList<>())
-                    .build();
-            variables.add(preview);
-            log.info("Found TABLE variable: {} with config: {}", "table_" + tableName, configMap);
-        }
-
-        // Tìm biến boolean: ${var?trueValue:falseValue}
-        Matcher booleanMatcher = booleanPattern.matcher(content);
-        while (booleanMatcher.find()) {
-            String varName = booleanMatcher.group(1).trim();
-
-            // Skip nếu đã được xử lý như table
-            if (isAlreadyProcessed(varName, variables)) continue;
-
-            String trueLabel = booleanMatcher.group(2).trim();
-            String falseLabel = booleanMatcher.group(3).trim();
-
-            Map<String, Object> configMap = new HashMap<>();
-            configMap.put("trueLabel", trueLabel);
-            configMap.put("falseLabel", falseLabel);
-
-            TemplateVariablePreview preview = TemplateVariablePreview.builder()
-                    .varName(varName)
-                    .orderIndex(variables.size() + 1)
-                    .varType(VariableType.BOOLEAN)
-                    .config(configMap)
-                    .build();
-            variables.add(preview);
-            log.debug("Found BOOLEAN variable: {}", varName);
-        }
-
-        // Tìm biến dropdown: ${var|option1,option2,option3}
-        Matcher dropdownMatcher = dropdownPattern.matcher(content);
-        while (dropdownMatcher.find()) {
-            String varName = dropdownMatcher.group(1).trim();
-
-            // Skip nếu đã được xử lý như table
-            if (isAlreadyProcessed(varName, variables)) continue;
-
-            String optionsStr = dropdownMatcher.group(2).trim();
-            List<String> options = Arrays.stream(optionsStr.split(","))
-                    .map(String::trim)
-                    .collect(Collectors.toList());
+        // 1 lượt StAX qua document/header/footer, đã phân loại + loại trùng
+        List<DocxPlaceholderScanner.Placeholder> placeholders = DocxPlaceholderScanner.scan(filePath);
+        List<TemplateVariablePreview> variables = new ArrayList<>(placeholders.size());
 
+        for (DocxPlaceholderScanner.Placeholder p : placeholders) {
             Map<String, Object> configMap = new HashMap<>();
-            configMap.put("options", options);
-
-            TemplateVariablePreview preview = TemplateVariablePreview.builder()
-                    .varName(varName)
-                    .orderIndex(variables.size() + 1)
-                    .varType(VariableType.DROPDOWN)
-                    .config(configMap)
-                    .allowedValues(options)
-                    .build();
-            variables.add(preview);
-            log.debug("Found DROPDOWN variable: {} with options: {}", varName, options);
-        }
-
-        // Tìm biến đơn giản: ${varName}
-        Matcher simpleMatcher = simplePattern.matcher(content);
-        while (simpleMatcher.find()) {
-            String varName = simpleMatcher.group(1).trim();
-
-            // Skip nếu đã được xử lý bởi các pattern trên
-            if (isAlreadyProcessed(varName, variables)) continue;
-
-            TemplateVariablePreview preview = TemplateVariablePreview.builder()
-                    .varName(varName)
+            TemplateVariablePreview.TemplateVariablePreviewBuilder preview = TemplateVariablePreview.builder()
+                    .varName(p.name())
                     .orderIndex(variables.size() + 1)
-                    .varType(VariableType.TEXT) // Mặc định
-                    .config(new HashMap<>())
-                    .build();
-            variables.add(preview);
-            log.debug("Found TEXT variable: {}", varName);
+                    .varType(p.type());
+
+            switch (p.type()) {
+                case TABLE -> {
+                    configMap.put("tableName", p.name().substring("table_".length()));
+
+                    // Cấu hình mặc định cho bảng - SỬA: Sử dụng enum trong columns
+                    List<Map<String, Object>> columns = new ArrayList<>();
+                    columns.add(createColumnWithEnum("column_1", VariableType.TEXT)); // SỬA
+                    columns.add(createColumnWithEnum("column_2", VariableType.TEXT)); // SỬA
+                    configMap.put("columns", columns);
+
+                    // Các thuộc tính bổ sung cho table
+                    configMap.put("minRows", 1);
+                    configMap.put("maxRows", 10);
+                    configMap.put("editable", true);
+                    preview.allowedValues(new ArrayList<>());
+                    log.info("Found TABLE variable: {} with config: {}", p.name(), configMap);
+                }
+                case BOOLEAN -> {
+                    configMap.put("trueLabel", p.args().get(0));
+                    configMap.put("falseLabel", p.args().get(1));
+                    log.debug("Found BOOLEAN variable: {}", p.name());
+                }
+                case DROPDOWN -> {
+                    List<String> options = new ArrayList<>(p.args());
+                    configMap.put("options", options);
+                    preview.allowedValues(options);
+                    log.debug("Found DROPDOWN variable: {} with options: {}", p.name(), options);
+                }
+                default -> log.debug("Found TEXT variable: {}", p.name());
+            }
+            variables.add(preview.config(configMap).build());
         }
 
         log.info("Total variables parsed: {}", variables.size());
@@ -664,13 +587,6 @@ public class ContractTemplateServiceImpl implements ContractTemplateService {
         return column;
     }
 
-    // Helper method kiểm tra biến đã xử lý
-    private boolean isAlreadyProcessed(String varName, List<TemplateVariablePreview> variables) {
-        return variables.stream()
-                .anyMatch(v -> v.getVarName().equals(varName) ||
-                        v.getVarName().equals("table_" + varName));
-    }
-
     // Scheduled cleanup for temp files (chạy mỗi giờ)
     @Scheduled(fixedRate = 3600000)
     public void cleanupTempFiles() {
@@ -0,0 +1,309 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import com.hieunguyen.ManageContract.common.constants.ConversionJobStatus;
+import com.hieunguyen.ManageContract.common.constants.RenderPriority;
+import com.hieunguyen.ManageContract.dto.conversion.ConversionJobResponse;
+import com.hieunguyen.ManageContract.entity.ConversionJob;
+import com.hieunguyen.ManageContract.event.ContractPdfReadyEvent;
+import com.hieunguyen.ManageContract.mapper.ConversionJobMapper;
+import com.hieunguyen.ManageContract.repository.ConversionJobRepository;
+import com.hieunguyen.ManageContract.service.ContractFileService;
+import com.hieunguyen.ManageContract.service.ConversionJobService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hàng đợi convert DOCX → PDF chạy nền.
+ * - Job được lưu DB (conversion_jobs) nên không mất khi restart; sweeper định kỳ nhặt lại job PENDING/treo.
+ * - Worker pool có giới hạn (số thread + độ dài queue); queue đầy thì job nằm chờ trong DB.
+ * - Worker chỉ chuẩn bị DOCX rồi giao cho renderPdfAsync; tối đa max-in-flight job chờ Document Server cùng lúc.
+ * - Job chỉ được đẩy vào pool sau khi transaction tạo job commit (worker đọc được DOCX/DB mới nhất).
+ * - Hàng đợi theo RenderPriority: người đang chờ /view và người duyệt kế tiếp được render trước job nền.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ConversionJobServiceImpl implements ConversionJobService {
+
+    private final ConversionJobRepository jobRepository;
+    private final ContractFileService contractFileService;
+    private final ApplicationEventPublisher events;
+
+    @Value("${app.conversion.workers:2}")
+    private int workers;
+
+    @Value("${app.conversion.queue-capacity:100}")
+    private int queueCapacity;
+
+    @Value("${app.conversion.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${app.conversion.stale-after-ms:300000}")
+    private long staleAfterMs;
+
+    @Value("${app.conversion.max-in-flight:16}")
+    private int maxInFlight;
+
+    private ThreadPoolExecutor executor;
+    // số job đã gửi DS nhưng chưa xong (worker không giữ thread trong lúc chờ)
+    private Semaphore inFlightPermits;
+
+    // job đã nằm trong pool → priority lúc xếp (tránh sweeper submit trùng; priority tăng thì xếp lại)
+    private final Map<Long, Integer> queuedJobs = new ConcurrentHashMap<>();
+    private final AtomicLong queueSeq = new AtomicLong();
+    // hợp đồng đang render trên node này (không render song song cùng 1 file)
+    private final Set<Long> renderingContracts = ConcurrentHashMap.newKeySet();
+
+    @PostConstruct
+    void init() {
+        inFlightPermits = new Semaphore(maxInFlight);
+        AtomicInteger seq = new AtomicInteger();
+        executor = new ThreadPoolExecutor(
+                workers, workers,
+                60, TimeUnit.SECONDS,
+                // không giới hạn về kiểu nhưng dispatch() giữ tối đa queue-capacity job
+                new PriorityBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "pdf-convert-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    // ------------------------------------------------------------------
+    // API
+    // ------------------------------------------------------------------
+
+    @Override
+    @Transactional
+    public ConversionJobResponse enqueue(Long contractId) {
+        return enqueue(contractId, RenderPriority.NORMAL);
+    }
+
+    @Override
+    @Transactional
+    public ConversionJobResponse enqueue(Long contractId, RenderPriority priority) {
+        int level = priority.level();
+        // đã có job đang chờ → dùng lại (nhiều lần ký liên tiếp chỉ render 1 lần), nâng priority nếu cần
+        ConversionJob job = jobRepository
+                .findFirstByContractIdAndStatusOrderByIdDesc(contractId, ConversionJobStatus.PENDING)
+                .map(existing -> {
+                    if (levelOf(existing) >= level) return existing;
+                    existing.setPriority(level);
+                    return jobRepository.save(existing);
+                })
+                .orElseGet(() -> jobRepository.save(ConversionJob.builder()
+                        .contractId(contractId)
+                        .status(ConversionJobStatus.PENDING)
+                        .attempts(0)
+                        .priority(level)
+                        .createdAt(LocalDateTime.now())
+                        .build()));
+
+        Long jobId = job.getId();
+        int queuedLevel = levelOf(job);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dispatch(jobId, queuedLevel);
+                }
+            });
+        } else {
+            dispatch(jobId, queuedLevel);
+        }
+        return ConversionJobMapper.toResponse(job);
+    }
+
+    @Override
+    public ConversionJobResponse getPdfStatus(Long contractId) {
+        return jobRepository.findFirstByContractIdOrderByIdDesc(contractId)
+                .map(ConversionJobMapper::toResponse)
+                .orElseGet(() -> {
+                    // hợp đồng cũ chưa từng qua job: suy ra từ file trên đĩa
+                    boolean ready = contractFileService.findRenderedPdf(contractId).isPresent();
+                    return ConversionJobResponse.builder()
+                            .contractId(contractId)
+                            .status(ready ? ConversionJobStatus.DONE.name() : null)
+                            .statusUrl(ConversionJobMapper.statusUrl(contractId))
+                            .eventsUrl(ConversionJobMapper.eventsUrl(contractId))
+                            .build();
+                });
+    }
+
+    @Override
+    public ConversionJobResponse getJob(Long jobId) {
+        return jobRepository.findById(jobId)
+                .map(ConversionJobMapper::toResponse)
+                .orElseThrow(() -> new RuntimeException("Conversion job not found"));
+    }
+
+    // ------------------------------------------------------------------
+    // Worker
+    // ------------------------------------------------------------------
+
+    private void dispatch(Long jobId, int level) {
+        // đã xếp với priority >= → bỏ; thấp hơn → xếp thêm bản priority mới, bản cũ tự bỏ qua (claim thất bại)
+        Integer queued = queuedJobs.get(jobId);
+        if (queued != null && queued >= level) return;
+        if (executor.getQueue().size() >= queueCapacity) {
+            // queue đầy: job vẫn PENDING trong DB, sweeper sẽ nhặt lại theo priority
+            log.warn("Conversion queue full, job {} deferred", jobId);
+            return;
+        }
+        queuedJobs.put(jobId, level);
+        try {
+            executor.execute(new QueuedJob(jobId, level, queueSeq.incrementAndGet()));
+        } catch (RejectedExecutionException e) {
+            queuedJobs.remove(jobId, level);
+            log.warn("Conversion executor rejected job {}", jobId);
+        }
+    }
+
+    /** Phần tử hàng đợi: priority giảm dần, cùng priority thì FIFO */
+    private final class QueuedJob implements Runnable, Comparable<QueuedJob> {
+        private final Long jobId;
+        private final int level;
+        private final long seq;
+
+        QueuedJob(Long jobId, int level, long seq) {
+            this.jobId = jobId;
+            this.level = level;
+            this.seq = seq;
+        }
+
+        @Override
+        public void run() {
+            try {
+                runJob(jobId);
+            } finally {
+                queuedJobs.remove(jobId, level);
+            }
+        }
+
+        @Override
+        public int compareTo(QueuedJob o) {
+            if (level != o.level) return Integer.compare(o.level, level);
+            return Long.compare(seq, o.seq);
+        }
+    }
+
+    private void runJob(Long jobId) {
+        ConversionJob job = jobRepository.findById(jobId).orElse(null);
+        if (job == null || job.getStatus() != ConversionJobStatus.PENDING) return;
+
+        Long contractId = job.getContractId();
+        if (!renderingContracts.add(contractId)) return; // đang render bản trước, sweeper chạy lại sau
+        if (!inFlightPermits.tryAcquire()) {             // đủ số convert đang chờ DS, để job nằm DB
+            renderingContracts.remove(contractId);
+            return;
+        }
+
+        boolean handedOff = false;
+        try {
+            if (jobRepository.claim(jobId, LocalDateTime.now()) == 0) return; // node khác đã nhận
+
+            ConversionJob claimed = jobRepository.findById(jobId).orElseThrow();
+            // worker chỉ chuẩn bị DOCX rồi trả thread; phần chờ DS do ConversionTracker đảm nhận
+            contractFileService.renderPdfAsync(contractId).whenComplete((pdf, ex) -> {
+                try {
+                    finish(claimed, pdf, ex);
+                } finally {
+                    inFlightPermits.release();
+                    renderingContracts.remove(contractId);
+                }
+            });
+            handedOff = true;
+        } finally {
+            if (!handedOff) {
+                inFlightPermits.release();
+                renderingContracts.remove(contractId);
+            }
+        }
+    }
+
+    private void finish(ConversionJob job, File pdf, Throwable ex) {
+        Long jobId = job.getId();
+        Long contractId = job.getContractId();
+        try {
+            if (ex == null) {
+                job.setStatus(ConversionJobStatus.DONE);
+                job.setPdfPath(pdf.getAbsolutePath());
+                job.setErrorMessage(null);
+                job.setFinishedAt(LocalDateTime.now());
+                jobRepository.save(job);
+                log.info("Contract {} PDF ready (job {})", contractId, jobId);
+                events.publishEvent(new ContractPdfReadyEvent(contractId, jobId, ConversionJobStatus.DONE, job.getPdfPath()));
+                return;
+            }
+
+            Throwable cause = (ex instanceof CompletionException && ex.getCause() != null) ? ex.getCause() : ex;
+            int attempts = job.getAttempts() == null ? 1 : job.getAttempts();
+            boolean giveUp = attempts >= maxAttempts;
+            job.setStatus(giveUp ? ConversionJobStatus.FAILED : ConversionJobStatus.PENDING);
+            job.setErrorMessage(truncate(cause.getMessage()));
+            if (giveUp) job.setFinishedAt(LocalDateTime.now());
+            jobRepository.save(job);
+            log.error("Convert PDF job {} (contract {}) failed, attempt {}/{}: {}",
+                    jobId, contractId, attempts, maxAttempts, cause.getMessage());
+            if (giveUp) {
+                events.publishEvent(new ContractPdfReadyEvent(contractId, jobId, ConversionJobStatus.FAILED, null));
+            }
+        } catch (Exception e) {
+            // job giữ RUNNING → sweeper trả về PENDING khi quá stale-after-ms
+            log.error("Cannot update conversion job {}: {}", jobId, e.getMessage());
+        }
+    }
+
+    /** Nhặt lại job PENDING (queue đầy, lỗi cần retry, restart) và job RUNNING bị treo */
+    @Scheduled(fixedDelayString = "${app.conversion.sweep-interval-ms:15000}")
+    public void sweep() {
+        try {
+            int released = jobRepository.releaseStale(LocalDateTime.now().minusNanos(staleAfterMs * 1_000_000));
+            if (released > 0) log.warn("Released {} stale conversion jobs", released);
+
+            int free = queueCapacity - executor.getQueue().size();
+            if (free <= 0) return;
+            List<ConversionJob> pending = jobRepository.findByStatusOrderByPriorityDescIdAsc(
+                    ConversionJobStatus.PENDING, PageRequest.of(0, free));
+            pending.forEach(j -> dispatch(j.getId(), levelOf(j)));
+        } catch (Exception e) {
+            log.warn("Conversion sweep error: {}", e.getMessage());
+        }
+    }
+
+    private static int levelOf(ConversionJob job) {
+        return job.getPriority() != null ? job.getPriority() : RenderPriority.BACKGROUND.level();
+    }
+
+    private String truncate(String s) {
+        if (s == null) return null;
+        return s.length() > 1000 ? s.substring(0, 1000) : s;
+    }
+}
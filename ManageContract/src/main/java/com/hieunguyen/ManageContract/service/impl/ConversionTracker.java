@@ -0,0 +1,207 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.hieunguyen.ManageContract.config.IoThreads;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Convert bằng ONLYOFFICE ở chế độ async:true.
+ * - Mỗi yêu cầu được đăng ký theo key convert; 1 thread scheduler chỉ hẹn giờ, lệnh gửi/poll HTTP chạy
+ *   trên pool I/O có giới hạn (poll-threads) → 1 key chậm không chặn poll của key khác.
+ *   Mỗi key tối đa 1 lệnh poll đang chạy, backoff tăng dần, thay vì mỗi request giữ 1 thread ngủ Thread.sleep.
+ * - Lỗi tạm thời (timeout, 5xx, JSON hỏng) → poll lại theo backoff tới hết deadline của key;
+ *   mạch mở/bulkhead đầy, 4xx hoặc DS trả mã lỗi → fail ngay.
+ * - Khi DS báo endConvert, file kết quả được tải trên pool download nhỏ rồi complete CompletableFuture.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ConversionTracker {
+
+    private final DocumentServerClient dsClient;
+    private final MeterRegistry meterRegistry;
+    private final ObjectMapper om = new ObjectMapper();
+
+    @Value("${app.ds.async.initial-delay-ms:250}")
+    private long initialDelayMs;
+
+    @Value("${app.ds.async.max-delay-ms:3000}")
+    private long maxDelayMs;
+
+    @Value("${app.ds.async.timeout-ms:120000}")
+    private long timeoutMs;
+
+    @Value("${app.ds.async.download-threads:2}")
+    private int downloadThreads;
+
+    @Value("${app.ds.async.poll-threads:4}")
+    private int pollThreads;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private final Map<String, Pending> inFlight = new ConcurrentHashMap<>();
+    private ScheduledExecutorService poller;
+    private ExecutorService pollIo;
+    private ExecutorService downloader;
+
+    private static final class Pending {
+        final String key;
+        final String json;
+        final long deadline;
+        final CompletableFuture<byte[]> future = new CompletableFuture<>();
+        long delay;
+
+        Pending(String key, String json, long deadline, long delay) {
+            this.key = key;
+            this.json = json;
+            this.deadline = deadline;
+            this.delay = delay;
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "ds-convert-poller");
+            t.setDaemon(true);
+            return t;
+        });
+        // số thread cố định = số lệnh poll gửi DS song song tối đa
+        pollIo = Executors.newFixedThreadPool(pollThreads, IoThreads.factory("ds-poll", virtualThreads));
+        // số thread vẫn cố định: download-threads cũng là giới hạn tải song song lên Document Server
+        downloader = Executors.newFixedThreadPool(downloadThreads, IoThreads.factory("ds-download", virtualThreads));
+        Gauge.builder("docserver.convert.inflight", inFlight, Map::size).register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        poller.shutdownNow();
+        pollIo.shutdownNow();
+        downloader.shutdownNow();
+        inFlight.values().forEach(p -> p.future.completeExceptionally(new CancellationException("Shutting down")));
+    }
+
+    /**
+     * Gửi convert (async:true) và trả future với bytes file kết quả.
+     * Cùng key đang chạy → dùng chung future (DS cũng coi cùng key là cùng 1 lần convert).
+     */
+    public CompletableFuture<byte[]> convert(Map<String, Object> payload) {
+        Map<String, Object> body = new HashMap<>(payload);
+        body.put("async", true);
+        String key = String.valueOf(body.get("key"));
+        try {
+            String json = om.writeValueAsString(body);
+            Pending p = new Pending(key, json, System.currentTimeMillis() + timeoutMs, initialDelayMs);
+            Pending existing = inFlight.putIfAbsent(key, p);
+            if (existing != null) return existing.future;
+
+            p.future.whenComplete((r, ex) -> inFlight.remove(key, p));
+            submitPoll(p); // lần poll đầu chính là lệnh submit
+            return p.future;
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    public int inFlightCount() {
+        return inFlight.size();
+    }
+
+    // ------------------------------------------------------------------
+
+    private void submitPoll(Pending p) {
+        try {
+            pollIo.execute(() -> poll(p));
+        } catch (RejectedExecutionException e) {
+            p.future.completeExceptionally(e); // đang shutdown
+        }
+    }
+
+    private void poll(Pending p) {
+        if (p.future.isDone()) return;
+        if (System.currentTimeMillis() >= p.deadline) {
+            p.future.completeExceptionally(new TimeoutException("ConvertService not finished (key=" + p.key + ")"));
+            return;
+        }
+        try {
+            JsonNode root = om.readTree(dsClient.convert(p.json));
+
+            int error = root.path("error").asInt(0);
+            if (error != 0) {
+                p.future.completeExceptionally(new RuntimeException("ConvertService error code " + error + " (key=" + p.key + ")"));
+                return;
+            }
+
+            if (root.path("endConvert").asBoolean(false)) {
+                String fileUrl = root.path("fileUrl").asText(null);
+                if (fileUrl == null || fileUrl.isBlank()) {
+                    p.future.completeExceptionally(new RuntimeException("ConvertService returned no fileUrl"));
+                    return;
+                }
+                downloader.execute(() -> download(p, fileUrl));
+                return;
+            }
+
+            if (System.currentTimeMillis() >= p.deadline) {
+                p.future.completeExceptionally(new TimeoutException(
+                        "ConvertService not finished. percent=" + root.path("percent").asInt(-1)));
+                return;
+            }
+            reschedule(p);
+        } catch (DocumentServerClient.DocumentServerException e) {
+            // mạch mở/bulkhead đầy: không dồn thêm poll, fail để router/caller chọn đường khác;
+            // 4xx: request sai, poll lại cũng vậy
+            if (e.isRejected() || (e.status() >= 400 && e.status() < 500)) {
+                p.future.completeExceptionally(e);
+            } else {
+                retryLater(p, e);
+            }
+        } catch (Exception e) {
+            retryLater(p, e);
+        }
+    }
+
+    private void retryLater(Pending p, Exception e) {
+        if (System.currentTimeMillis() >= p.deadline) {
+            p.future.completeExceptionally(e);
+            return;
+        }
+        log.debug("Poll {} failed, retrying: {}", p.key, e.getMessage());
+        reschedule(p);
+    }
+
+    private void reschedule(Pending p) {
+        long delay = Math.min(p.delay, Math.max(0, p.deadline - System.currentTimeMillis()));
+        p.delay = Math.min(maxDelayMs, Math.round(p.delay * 1.5));
+        try {
+            poller.schedule(() -> submitPoll(p), delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            p.future.completeExceptionally(e);
+        }
+    }
+
+    private void download(Pending p, String fileUrl) {
+        try {
+            byte[] bytes = dsClient.download(fileUrl);
+            if (bytes == null || bytes.length == 0) {
+                throw new RuntimeException("Downloaded PDF is empty from: " + fileUrl);
+            }
+            p.future.complete(bytes);
+        } catch (Exception e) {
+            p.future.completeExceptionally(e);
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.entity.mime.MultipartEntityBuilder;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * HTTP client dùng chung cho ONLYOFFICE Document Server.
+ * - Pool kết nối keep-alive (không mở connection mới mỗi lần convert).
+ * - Timeout connect/read/lấy connection từ pool cho mọi request.
+ * - Bulkhead: giới hạn số request đồng thời tới DS, quá thì fail ngay thay vì xếp hàng vô hạn.
+ * - Circuit breaker: lỗi liên tiếp vượt ngưỡng → mở mạch, fail nhanh trong open-ms rồi thử lại 1 request.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class DocumentServerClient {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.ds.url:http://documentserver}")
+    private String docServer;
+
+    @Value("${app.ds.client.max-connections:20}")
+    private int maxConnections;
+
+    @Value("${app.ds.client.connect-timeout-ms:2000}")
+    private int connectTimeoutMs;
+
+    @Value("${app.ds.client.read-timeout-ms:30000}")
+    private int readTimeoutMs;
+
+    @Value("${app.ds.client.pool-timeout-ms:1000}")
+    private int poolTimeoutMs;
+
+    @Value("${app.ds.client.max-concurrent:8}")
+    private int maxConcurrent;
+
+    @Value("${app.ds.client.acquire-timeout-ms:2000}")
+    private long acquireTimeoutMs;
+
+    @Value("${app.ds.client.breaker.failure-threshold:5}")
+    private int failureThreshold;
+
+    @Value("${app.ds.client.breaker.open-ms:30000}")
+    private long openMs;
+
+    private PoolingHttpClientConnectionManager connectionManager;
+    private CloseableHttpClient http;
+    private Semaphore bulkhead;
+    private CircuitBreaker breaker;
+
+    private Counter rejectedBulkhead;
+    private Counter rejectedOpen;
+    // timer theo op + outcome, dựng 1 lần (không register lại mỗi request)
+    private final Map<String, Timer> requestTimers = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        connectionManager = new PoolingHttpClientConnectionManager(60, TimeUnit.SECONDS);
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+        connectionManager.setValidateAfterInactivity(5_000);
+
+        RequestConfig rc = RequestConfig.custom()
+                .setConnectTimeout(connectTimeoutMs)
+                .setSocketTimeout(readTimeoutMs)
+                .setConnectionRequestTimeout(poolTimeoutMs)
+                .build();
+
+        http = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(rc)
+                .setKeepAliveStrategy(DefaultConnectionKeepAliveStrategy.INSTANCE)
+                .evictExpiredConnections()
+                .evictIdleConnections(30, TimeUnit.SECONDS)
+                .build();
+
+        bulkhead = new Semaphore(maxConcurrent);
+        breaker = new CircuitBreaker(failureThreshold, openMs);
+
+        rejectedBulkhead = Counter.builder("docserver.rejected").tag("reason", "bulkhead").register(meterRegistry);
+        rejectedOpen = Counter.builder("docserver.rejected").tag("reason", "circuit_open").register(meterRegistry);
+        Gauge.builder("docserver.circuit.open", breaker, b -> b.state() == CircuitBreaker.State.CLOSED ? 0 : 1)
+                .register(meterRegistry);
+        Gauge.builder("docserver.inflight", bulkhead, s -> maxConcurrent - s.availablePermits())
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        if (http != null) http.close();
+    }
+
+    // ------------------------------------------------------------------
+    // API
+    // ------------------------------------------------------------------
+
+    public String baseUrl() {
+        return docServer.replaceAll("/+$", "");
+    }
+
+    /** DS đang được coi là sống (mạch không mở) */
+    public boolean isAvailable() {
+        return breaker.state() != CircuitBreaker.State.OPEN;
+    }
+
+    /**
+     * Gửi lệnh ConvertService, trả body JSON. Chỉ thử /ConvertService khi DS trả 404 cho /ConvertService.ashx
+     * (bản DS khác đường dẫn); timeout/5xx không thử lại → 1 lần gọi chỉ tính 1 lỗi cho breaker.
+     */
+    public String convert(String json) {
+        try {
+            return postJson(baseUrl() + "/ConvertService.ashx", json);
+        } catch (DocumentServerException e) {
+            if (e.status() != 404) throw e;
+            return postJson(baseUrl() + "/ConvertService", json);
+        }
+    }
+
+    public String postJson(String url, String json) {
+        HttpPost post = new HttpPost(url);
+        post.setHeader("Accept", "application/json");
+        post.setEntity(new StringEntity(json, ContentType.APPLICATION_JSON));
+        return new String(execute("convert", post), StandardCharsets.UTF_8);
+    }
+
+    public byte[] postMultipart(String url, Path file, Map<String, String> fields) {
+        MultipartEntityBuilder mb = MultipartEntityBuilder.create().addBinaryBody("file", file.toFile());
+        fields.forEach(mb::addTextBody);
+        HttpPost post = new HttpPost(url);
+        post.setEntity(mb.build());
+        return execute("upload", post);
+    }
+
+    /** Tải file kết quả (fileUrl do DS trả về) */
+    public byte[] download(String url) {
+        return execute("download", new HttpGet(url));
+    }
+
+    // ------------------------------------------------------------------
+
+    private byte[] execute(String op, HttpRequestBase req) {
+        CircuitBreaker.Permit call = breaker.tryAcquire();
+        if (call == CircuitBreaker.Permit.DENIED) {
+            rejectedOpen.increment();
+            throw new DocumentServerException("Document Server circuit open, failing fast", null, true);
+        }
+        boolean permit;
+        try {
+            permit = bulkhead.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (call == CircuitBreaker.Permit.TRIAL) breaker.releaseTrial();
+            throw new DocumentServerException("Interrupted while waiting for Document Server slot", e, true);
+        }
+        if (!permit) {
+            if (call == CircuitBreaker.Permit.TRIAL) breaker.releaseTrial();
+            rejectedBulkhead.increment();
+            throw new DocumentServerException("Too many concurrent Document Server calls", null, true);
+        }
+
+        long start = System.nanoTime();
+        String outcome = "error";
+        try (CloseableHttpResponse resp = http.execute(req)) {
+            int code = resp.getStatusLine().getStatusCode();
+            HttpEntity entity = resp.getEntity();
+            byte[] body = entity == null ? new byte[0] : EntityUtils.toByteArray(entity);
+            if (code >= 500) {
+                outcome = "5xx";
+                breaker.onFailure();
+                throw new DocumentServerException("Document Server HTTP " + code + " for " + req.getURI(), null, false, code);
+            }
+            // 4xx là lỗi request, không phải DS chết → không tính vào breaker
+            breaker.onSuccess();
+            if (code >= 400) {
+                outcome = "4xx";
+                throw new DocumentServerException("Document Server HTTP " + code + " for " + req.getURI(), null, false, code);
+            }
+            outcome = "success";
+            return body;
+        } catch (DocumentServerException e) {
+            throw e; // đã báo breaker ở trên
+        } catch (IOException | RuntimeException e) {
+            // mọi lỗi khác (pool đã đóng, response hỏng…) cũng phải kết thúc lượt thử HALF_OPEN
+            outcome = (e instanceof SocketTimeoutException) ? "timeout" : (e instanceof IOException ? "io_error" : "error");
+            breaker.onFailure();
+            throw new DocumentServerException("Document Server call failed: " + e.getMessage(), e, false);
+        } finally {
+            bulkhead.release();
+            timer(op, outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Timer timer(String op, String outcome) {
+        return requestTimers.computeIfAbsent(op + ":" + outcome, k -> Timer.builder("docserver.requests")
+                .tags("op", op, "outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    // ------------------------------------------------------------------
+
+    /**
+     * Lỗi gọi Document Server; rejected=true khi bị chặn bởi breaker/bulkhead (chưa gửi request),
+     * status = mã HTTP DS trả về (0 nếu không có response).
+     */
+    public static class DocumentServerException extends RuntimeException {
+        private final boolean rejected;
+        private final int status;
+
+        public DocumentServerException(String message, Throwable cause, boolean rejected) {
+            this(message, cause, rejected, 0);
+        }
+
+        public DocumentServerException(String message, Throwable cause, boolean rejected, int status) {
+            super(message, cause);
+            this.rejected = rejected;
+            this.status = status;
+        }
+
+        public boolean isRejected() {
+            return rejected;
+        }
+
+        public int status() {
+            return status;
+        }
+    }
+
+    /**
+     * Circuit breaker đơn giản theo số lỗi liên tiếp.
+     * CLOSED → (n lỗi liên tiếp) → OPEN → (hết openMs) → HALF_OPEN (cho 1 request thử) → CLOSED/OPEN.
+     */
+    static class CircuitBreaker {
+        enum State { CLOSED, OPEN, HALF_OPEN }
+
+        private final int threshold;
+        private final long openMs;
+        private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+        private final AtomicInteger failures = new AtomicInteger();
+        private final AtomicLong openedAt = new AtomicLong();
+
+        CircuitBreaker(int threshold, long openMs) {
+            this.threshold = threshold;
+            this.openMs = openMs;
+        }
+
+        State state() {
+            if (state.get() == State.OPEN && System.currentTimeMillis() - openedAt.get() >= openMs) {
+                return State.HALF_OPEN;
+            }
+            return state.get();
+        }
+
+        enum Permit { DENIED, NORMAL, TRIAL }
+
+        Permit tryAcquire() {
+            State s = state.get();
+            if (s == State.CLOSED) return Permit.NORMAL;
+            if (s == State.OPEN && System.currentTimeMillis() - openedAt.get() >= openMs
+                    && state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+                return Permit.TRIAL; // chỉ 1 thread được làm request thử
+            }
+            return Permit.DENIED;
+        }
+
+        /** Trả lại lượt thử khi request thử không được gửi (bulkhead từ chối) */
+        void releaseTrial() {
+            openedAt.set(System.currentTimeMillis() - openMs);
+            state.compareAndSet(State.HALF_OPEN, State.OPEN);
+        }
+
+        void onSuccess() {
+            failures.set(0);
+            state.set(State.CLOSED);
+        }
+
+        void onFailure() {
+            if (state.get() == State.HALF_OPEN || failures.incrementAndGet() >= threshold) {
+                openedAt.set(System.currentTimeMillis());
+                state.set(State.OPEN);
+                log.warn("Document Server circuit opened for {} ms", openMs);
+            }
+        }
+    }
+}
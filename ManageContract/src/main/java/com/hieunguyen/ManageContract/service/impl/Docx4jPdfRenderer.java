@@ -0,0 +1,193 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.fop.apps.FopFactory;
+import org.docx4j.Docx4J;
+import org.docx4j.convert.out.FOSettings;
+import org.docx4j.convert.out.fo.renderers.FORendererApacheFOP;
+import org.docx4j.fonts.IdentityPlusMapper;
+import org.docx4j.fonts.PhysicalFonts;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Path;
+import java.util.TreeSet;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Render DOCX → PDF ngay trong JVM bằng docx4j + Apache FOP (không qua mạng):
+ * - Chạy trên pool riêng có giới hạn (FOP tốn CPU/RAM), đầy queue → fail ngay để router chọn đường khác.
+ * - Font hệ thống quét 1 lần lúc khởi động (font-regex thu hẹp phạm vi quét), kèm 1 lượt render
+ *   trang trắng để nạp sẵn XSLT/FOP → request đầu không phải trả chi phí này.
+ * - FopFactory dựng 1 lần cho mỗi tập font (hợp đồng cùng template dùng chung), không dựng lại mỗi lần.
+ * Bố cục không giống hệt Document Server nên mặc định chỉ dùng khi DS chậm/sập (xem PdfRendererRouter).
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class Docx4jPdfRenderer implements PdfRenderer {
+
+    public static final String NAME = "docx4j";
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.pdf.local.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.pdf.local.threads:0}")
+    private int threads;
+
+    @Value("${app.pdf.local.queue-capacity:16}")
+    private int queueCapacity;
+
+    @Value("${app.pdf.local.font-regex:}")
+    private String fontRegex;
+
+    @Value("${app.pdf.local.warm-up:true}")
+    private boolean warmUp;
+
+    @Value("${app.pdf.local.fop-factory-cache-size:16}")
+    private long fopFactoryCacheSize;
+
+    private ThreadPoolExecutor executor;
+    private Cache<String, FopFactory> fopFactories;
+    private Counter rejected;
+
+    private final ReentrantLock fontsLock = new ReentrantLock(); // không synchronized: không ghim virtual thread
+    private volatile boolean fontsReady;
+    private volatile boolean broken;
+
+    @PostConstruct
+    void init() {
+        int poolSize = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger seq = new AtomicInteger();
+        executor = new ThreadPoolExecutor(
+                poolSize, poolSize,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread t = new Thread(r, "pdf-local-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+        fopFactories = Caffeine.newBuilder().maximumSize(fopFactoryCacheSize).build();
+
+        rejected = meterRegistry.counter("pdf.local.rejected");
+        Gauge.builder("pdf.local.queue.depth", executor, e -> e.getQueue().size()).register(meterRegistry);
+        Gauge.builder("pdf.local.active", executor, ThreadPoolExecutor::getActiveCount).register(meterRegistry);
+
+        if (enabled && warmUp) executor.execute(this::warmUp);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return enabled && !broken;
+    }
+
+    @Override
+    public CompletableFuture<byte[]> render(String key, Path docx, String sourceUrl) {
+        if (!enabled) {
+            return CompletableFuture.failedFuture(new IllegalStateException("In-JVM PDF renderer is disabled"));
+        }
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return toPdf(WordprocessingMLPackage.load(docx.toFile()));
+                } catch (Exception e) {
+                    throw new CompletionException(new RuntimeException(
+                            "docx4j render failed for " + docx.getFileName() + ": " + e.getMessage(), e));
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            return CompletableFuture.failedFuture(new RuntimeException("In-JVM PDF renderer is busy", e));
+        }
+    }
+
+    /** Render package đã load sẵn (chạy trên thread gọi) */
+    byte[] toPdf(WordprocessingMLPackage pkg) throws Exception {
+        prepareFonts();
+        pkg.setFontMapper(new IdentityPlusMapper());
+
+        FOSettings settings = Docx4J.createFOSettings();
+        settings.setOpcPackage(pkg); // dựng cấu hình font FOP từ các font tài liệu dùng
+        settings.setApacheFopMime(FOSettings.MIME_PDF);
+        settings.setCustomFoRenderer(FORendererApacheFOP.getInstance());
+
+        String fonts = String.join("|", new TreeSet<>(pkg.getMainDocumentPart().fontsInUse()));
+        FopFactory factory = fopFactories.get(fonts, k -> buildFopFactory(settings));
+        settings.getSettings().put(FORendererApacheFOP.FOP_FACTORY, factory);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 * 1024);
+        Docx4J.toFO(settings, out, Docx4J.FLAG_EXPORT_PREFER_XSL);
+        return out.toByteArray();
+    }
+
+    long cachedFopFactories() {
+        return fopFactories.estimatedSize();
+    }
+
+    // ------------------------------------------------------------------
+
+    private void warmUp() {
+        long start = System.nanoTime();
+        try {
+            WordprocessingMLPackage blank = WordprocessingMLPackage.createPackage();
+            blank.getMainDocumentPart().addParagraphOfText("warm-up");
+            toPdf(blank);
+            log.info("In-JVM PDF renderer ready in {} ms (font-regex: {})",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+                    fontRegex == null || fontRegex.isBlank() ? "<all>" : fontRegex);
+        } catch (Throwable e) {
+            // thiếu font/thư viện FOP… → không giao việc cho bộ render này nữa
+            broken = true;
+            log.warn("In-JVM PDF renderer disabled, warm-up failed: {}", e.getMessage());
+        }
+    }
+
+    /** Quét font hệ thống đúng 1 lần; font-regex phải đặt trước khi docx4j nạp IdentityPlusMapper */
+    private void prepareFonts() {
+        if (fontsReady) return;
+        fontsLock.lock();
+        try {
+            if (fontsReady) return;
+            if (fontRegex != null && !fontRegex.isBlank()) PhysicalFonts.setRegex(fontRegex);
+            new IdentityPlusMapper(); // static init của IdentityPlusMapper gọi discoverPhysicalFonts (1 lần/JVM)
+            fontsReady = true;
+        } finally {
+            fontsLock.unlock();
+        }
+    }
+
+    private static FopFactory buildFopFactory(FOSettings settings) {
+        try {
+            return FORendererApacheFOP.getFopFactoryBuilder(settings).build();
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot build FopFactory: " + e.getMessage(), e);
+        }
+    }
+}
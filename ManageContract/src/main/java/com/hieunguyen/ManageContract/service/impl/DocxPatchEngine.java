@@ -0,0 +1,464 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.docx4j.XmlUtils;
+import org.w3c.dom.*;
+import org.xml.sax.InputSource;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Sửa DOCX tại chỗ mà không load/save cả package bằng docx4j.
+ * - Chỉ parse word/document.xml, word/_rels/document.xml.rels và [Content_Types].xml (DOM).
+ * - Khi commit: các entry khác được copy nguyên bản nén (addRawArchiveEntry, không giải nén/nén lại),
+ *   3 entry trên được ghi lại, ảnh mới được thêm vào word/media; file đích được thay bằng move atomic.
+ * Dùng cho luồng ký / ghi ý kiến / làm mới trang nhật ký.
+ */
+public final class DocxPatchEngine {
+
+    static final String W_NS   = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+    static final String R_NS   = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+    static final String REL_NS = "http://schemas.openxmlformats.org/package/2006/relationships";
+    static final String CT_NS  = "http://schemas.openxmlformats.org/package/2006/content-types";
+    static final String IMAGE_REL = "http://schemas.openxmlformats.org/officeDocument/2006/relationships/image";
+
+    private static final String DOCUMENT_XML  = "word/document.xml";
+    private static final String DOCUMENT_RELS = "word/_rels/document.xml.rels";
+    private static final String CONTENT_TYPES = "[Content_Types].xml";
+
+    private final Path docx;
+    private final Set<String> entryNames;
+    private final Document document;
+    private final Document rels;
+    private final Document contentTypes;
+    private final Element body;
+
+    private final Map<String, byte[]> newMedia = new LinkedHashMap<>();
+    private boolean relsDirty;
+    private boolean contentTypesDirty;
+    private int nextDocPrId;
+
+    private DocxPatchEngine(Path docx) throws Exception {
+        this.docx = docx.toAbsolutePath();
+        try (ZipFile zf = new ZipFile(docx.toFile())) {
+            Set<String> names = new HashSet<>();
+            for (Enumeration<ZipArchiveEntry> en = zf.getEntries(); en.hasMoreElements(); ) {
+                names.add(en.nextElement().getName());
+            }
+            this.entryNames = names;
+            this.document = parse(zf, DOCUMENT_XML);
+            this.rels = parse(zf, DOCUMENT_RELS);
+            this.contentTypes = parse(zf, CONTENT_TYPES);
+        }
+        this.body = firstChild(document.getDocumentElement(), W_NS, "body");
+        if (body == null) throw new IllegalStateException("word/document.xml has no w:body");
+        this.nextDocPrId = maxDocPrId() + 1;
+    }
+
+    public static DocxPatchEngine open(Path docx) throws Exception {
+        return new DocxPatchEngine(docx);
+    }
+
+    // ------------------------------------------------------------------
+    // Thao tác nội dung
+    // ------------------------------------------------------------------
+
+    /**
+     * Chèn ảnh ngay trên tên in (lần xuất hiện cuối cùng, so khớp bỏ dấu/không phân biệt hoa thường).
+     * Tương đương ContractFileServiceImpl.insertImageAboveName trên docx4j.
+     */
+    public boolean insertImageAboveText(String name, byte[] image, long cx, long cy) throws Exception {
+        String needleE = collapseSpaces(name.toLowerCase(Locale.ROOT));
+        String needleF = foldAccents(needleE);
+        if (needleE.isBlank()) return false;
+
+        // lượt 1: chỉ ghép text để tìm paragraph khớp cuối cùng (không dựng bảng vị trí cho mọi paragraph)
+        Element targetPara = null;
+        int targetStart = -1;
+        for (Element p : children(body, W_NS, "p")) {
+            String joined = joinedText(p, null);
+            if (joined.isBlank()) continue;
+            String hayExact = collapseSpaces(joined.toLowerCase(Locale.ROOT));
+
+            int end = lastIndexEnd(hayExact, needleE);
+            int nlen = needleE.length();
+            if (end < 0) { end = lastIndexEnd(foldAccents(hayExact), needleF); nlen = needleF.length(); }
+            if (end < 0) continue;
+
+            targetPara = p;
+            targetStart = Math.max(0, end - nlen + 1);
+        }
+        if (targetPara == null) return false;
+
+        // lượt 2: map vị trí ký tự → run cho đúng paragraph đã chọn
+        List<Element> idxToRun = new ArrayList<>();
+        joinedText(targetPara, idxToRun);
+        if (idxToRun.isEmpty()) return false;
+        Element targetRun = idxToRun.get(Math.min(targetStart, idxToRun.size() - 1));
+
+        Node anchor = firstContentChild(targetRun);
+        Element drawing = drawing(addImage(image), cx, cy);
+        Element br = document.createElementNS(W_NS, "w:br");
+        targetRun.insertBefore(drawing, anchor); // ảnh trùng vị trí ký tự đầu
+        targetRun.insertBefore(br, anchor);      // tên nằm ngay dưới ảnh
+        return true;
+    }
+
+    /** Text của paragraph (mỗi run thêm 1 khoảng trắng); idxToRun != null thì ghi run tương ứng từng ký tự */
+    private static String joinedText(Element p, List<Element> idxToRun) {
+        StringBuilder joined = new StringBuilder();
+        for (Element r : children(p, W_NS, "r")) {
+            for (Element t : children(r, W_NS, "t")) {
+                String norm = t.getTextContent().replace('\u00A0', ' ');
+                joined.append(norm);
+                if (idxToRun != null) for (int i = 0; i < norm.length(); i++) idxToRun.add(r);
+            }
+            joined.append(' ');
+            if (idxToRun != null) idxToRun.add(r);
+        }
+        return joined.toString();
+    }
+
+    /** Thay placeholder (nằm trọn trong 1 w:t) bằng ảnh. Tương đương replacePlaceholderWithImage. */
+    public boolean replaceTextWithImage(String placeholder, byte[] image, long cx, long cy) throws Exception {
+        for (Element p : children(body, W_NS, "p")) {
+            for (Element r : children(p, W_NS, "r")) {
+                for (Element t : children(r, W_NS, "t")) {
+                    String val = t.getTextContent();
+                    int idx = val.indexOf(placeholder);
+                    if (idx < 0) continue;
+
+                    boolean alone = val.trim().equals(placeholder);
+                    String after = alone ? "" : val.substring(idx + placeholder.length());
+                    t.setTextContent(alone ? "" : val.substring(0, idx));
+
+                    Element imgRun = document.createElementNS(W_NS, "w:r");
+                    imgRun.appendChild(drawing(addImage(image), cx, cy));
+                    p.insertBefore(imgRun, r.getNextSibling());
+
+                    if (!after.isEmpty()) {
+                        Element afterRun = document.createElementNS(W_NS, "w:r");
+                        Element afterText = document.createElementNS(W_NS, "w:t");
+                        afterText.setAttributeNS(XMLConstants.XML_NS_URI, "xml:space", "preserve");
+                        afterText.setTextContent(after);
+                        afterRun.appendChild(afterText);
+                        p.insertBefore(afterRun, imgRun.getNextSibling());
+                    }
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** Thêm block (docx4j P/Tbl/SdtBlock) vào cuối body, trước w:sectPr */
+    public void appendBlock(Object jaxbBlock) {
+        Node node = document.importNode(XmlUtils.marshaltoW3CDomDocument(jaxbBlock).getDocumentElement(), true);
+        body.insertBefore(node, firstChild(body, W_NS, "sectPr"));
+    }
+
+    /** Xoá w:sdt có w:tag=tag (kèm paragraph page-break liền trước nếu có) */
+    public boolean removeTaggedBlock(String tag) {
+        for (Element sdt : children(body, W_NS, "sdt")) {
+            Element pr = firstChild(sdt, W_NS, "sdtPr");
+            Element t = pr == null ? null : firstChild(pr, W_NS, "tag");
+            if (t == null || !tag.equals(t.getAttributeNS(W_NS, "val"))) continue;
+
+            Node prev = previousElement(sdt);
+            if (prev instanceof Element pe && isPageBreakParagraph(pe)) body.removeChild(pe);
+            body.removeChild(sdt);
+            return true;
+        }
+        return false;
+    }
+
+    /** Toàn bộ text của body, kể cả paragraph trong bảng/SDT (mỗi paragraph 1 dòng) */
+    public String text() {
+        StringBuilder sb = new StringBuilder();
+        NodeList ps = body.getElementsByTagNameNS(W_NS, "p");
+        for (int i = 0; i < ps.getLength(); i++) {
+            for (Element r : children((Element) ps.item(i), W_NS, "r")) {
+                for (Element t : children(r, W_NS, "t")) sb.append(t.getTextContent());
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    // ------------------------------------------------------------------
+    // Commit
+    // ------------------------------------------------------------------
+
+    /** Ghi DOCX mới: copy raw các entry không đổi, ghi lại XML đã sửa + media mới, rồi thay file atomic */
+    public void commit() throws Exception {
+        Map<String, byte[]> replaced = new HashMap<>();
+        replaced.put(DOCUMENT_XML, serialize(document));
+        if (relsDirty) replaced.put(DOCUMENT_RELS, serialize(rels));
+        if (contentTypesDirty) replaced.put(CONTENT_TYPES, serialize(contentTypes));
+
+        Path tmp = Files.createTempFile(docx.getParent(), "patch_", ".docx");
+        try {
+            try (ZipFile zf = new ZipFile(docx.toFile());
+                 ZipArchiveOutputStream out = new ZipArchiveOutputStream(tmp.toFile())) {
+                for (Enumeration<ZipArchiveEntry> en = zf.getEntriesInPhysicalOrder(); en.hasMoreElements(); ) {
+                    ZipArchiveEntry e = en.nextElement();
+                    byte[] data = replaced.get(e.getName());
+                    if (data != null) {
+                        writeEntry(out, e.getName(), data);
+                    } else {
+                        try (InputStream raw = zf.getRawInputStream(e)) {
+                            out.addRawArchiveEntry(e, raw); // không giải nén
+                        }
+                    }
+                }
+                for (Map.Entry<String, byte[]> m : newMedia.entrySet()) {
+                    writeEntry(out, m.getKey(), m.getValue());
+                }
+            }
+            AtomicFiles.replace(tmp, docx); // volume không hỗ trợ ATOMIC_MOVE → rename thường
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Media / relationships
+    // ------------------------------------------------------------------
+
+    private String addImage(byte[] image) {
+        String ext = imageExtension(image);
+        String name;
+        int n = newMedia.size() + 1;
+        do {
+            name = "word/media/sig_" + System.nanoTime() + "_" + n++ + "." + ext;
+        } while (entryNames.contains(name) || newMedia.containsKey(name));
+        newMedia.put(name, image);
+
+        String relId = nextRelId();
+        Element rel = rels.createElementNS(REL_NS, "Relationship");
+        rel.setAttribute("Id", relId);
+        rel.setAttribute("Type", IMAGE_REL);
+        rel.setAttribute("Target", name.substring("word/".length()));
+        rels.getDocumentElement().appendChild(rel);
+        relsDirty = true;
+
+        ensureDefaultContentType(ext, "jpeg".equals(ext) ? "image/jpeg" : "image/" + ext);
+        return relId;
+    }
+
+    private String nextRelId() {
+        Set<String> ids = new HashSet<>();
+        NodeList list = rels.getDocumentElement().getElementsByTagNameNS(REL_NS, "Relationship");
+        for (int i = 0; i < list.getLength(); i++) ids.add(((Element) list.item(i)).getAttribute("Id"));
+        int i = ids.size() + 1;
+        while (ids.contains("rId" + i)) i++;
+        return "rId" + i;
+    }
+
+    private void ensureDefaultContentType(String ext, String type) {
+        NodeList list = contentTypes.getDocumentElement().getElementsByTagNameNS(CT_NS, "Default");
+        for (int i = 0; i < list.getLength(); i++) {
+            if (ext.equalsIgnoreCase(((Element) list.item(i)).getAttribute("Extension"))) return;
+        }
+        Element d = contentTypes.createElementNS(CT_NS, "Default");
+        d.setAttribute("Extension", ext);
+        d.setAttribute("ContentType", type);
+        contentTypes.getDocumentElement().insertBefore(d, contentTypes.getDocumentElement().getFirstChild());
+        contentTypesDirty = true;
+    }
+
+    private static String imageExtension(byte[] b) {
+        if (b.length > 3 && (b[0] & 0xFF) == 0xFF && (b[1] & 0xFF) == 0xD8) return "jpeg";
+        if (b.length > 3 && b[0] == 'G' && b[1] == 'I' && b[2] == 'F') return "gif";
+        return "png";
+    }
+
+    /** w:drawing/wp:inline giống BinaryPartAbstractImage.createImageInline */
+    private Element drawing(String relId, long cx, long cy) throws Exception {
+        int id = nextDocPrId++;
+        String xml = "<w:drawing xmlns:w=\"" + W_NS + "\""
+                + " xmlns:wp=\"http://schemas.openxmlformats.org/drawingml/2006/wordprocessingDrawing\""
+                + " xmlns:a=\"http://schemas.openxmlformats.org/drawingml/2006/main\""
+                + " xmlns:pic=\"http://schemas.openxmlformats.org/drawingml/2006/picture\""
+                + " xmlns:r=\"" + R_NS + "\">"
+                + "<wp:inline distT=\"0\" distB=\"0\" distL=\"0\" distR=\"0\">"
+                + "<wp:extent cx=\"" + cx + "\" cy=\"" + cy + "\"/>"
+                + "<wp:effectExtent l=\"0\" t=\"0\" r=\"0\" b=\"0\"/>"
+                + "<wp:docPr id=\"" + id + "\" name=\"signature\" descr=\"signature\"/>"
+                + "<wp:cNvGraphicFramePr><a:graphicFrameLocks noChangeAspect=\"1\"/></wp:cNvGraphicFramePr>"
+                + "<a:graphic><a:graphicData uri=\"http://schemas.openxmlformats.org/drawingml/2006/picture\">"
+                + "<pic:pic><pic:nvPicPr><pic:cNvPr id=\"" + id + "\" name=\"signature\"/><pic:cNvPicPr/></pic:nvPicPr>"
+                + "<pic:blipFill><a:blip r:embed=\"" + relId + "\"/><a:stretch><a:fillRect/></a:stretch></pic:blipFill>"
+                + "<pic:spPr><a:xfrm><a:off x=\"0\" y=\"0\"/><a:ext cx=\"" + cx + "\" cy=\"" + cy + "\"/></a:xfrm>"
+                + "<a:prstGeom prst=\"rect\"><a:avLst/></a:prstGeom></pic:spPr></pic:pic>"
+                + "</a:graphicData></a:graphic></wp:inline></w:drawing>";
+        Document frag = builder().parse(new InputSource(new StringReader(xml)));
+        return (Element) document.importNode(frag.getDocumentElement(), true);
+    }
+
+    private int maxDocPrId() {
+        int max = 0;
+        NodeList list = document.getElementsByTagNameNS("http://schemas.openxmlformats.org/drawingml/2006/wordprocessingDrawing", "docPr");
+        for (int i = 0; i < list.getLength(); i++) {
+            try {
+                max = Math.max(max, Integer.parseInt(((Element) list.item(i)).getAttribute("id")));
+            } catch (NumberFormatException ignore) { }
+        }
+        return max;
+    }
+
+    // ------------------------------------------------------------------
+    // DOM helpers
+    // ------------------------------------------------------------------
+
+    private boolean isPageBreakParagraph(Element p) {
+        if (!W_NS.equals(p.getNamespaceURI()) || !"p".equals(p.getLocalName())) return false;
+        for (Element r : children(p, W_NS, "r")) {
+            Element br = firstChild(r, W_NS, "br");
+            if (br != null) {
+                String type = br.getAttributeNS(W_NS, "type");
+                return type.isEmpty() || "page".equals(type);
+            }
+        }
+        return false;
+    }
+
+    /** Con đầu tiên sau w:rPr (w:rPr luôn phải đứng đầu run) */
+    private static Node firstContentChild(Element run) {
+        for (Node n = run.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n instanceof Element e && "rPr".equals(e.getLocalName()) && W_NS.equals(e.getNamespaceURI())) continue;
+            if (n instanceof Element) return n;
+        }
+        return null;
+    }
+
+    private static Node previousElement(Node n) {
+        Node p = n.getPreviousSibling();
+        while (p != null && !(p instanceof Element)) p = p.getPreviousSibling();
+        return p;
+    }
+
+    private static List<Element> children(Element parent, String ns, String local) {
+        List<Element> out = new ArrayList<>();
+        for (Node n = parent.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n instanceof Element e && local.equals(e.getLocalName()) && ns.equals(e.getNamespaceURI())) out.add(e);
+        }
+        return out;
+    }
+
+    private static Element firstChild(Element parent, String ns, String local) {
+        for (Node n = parent.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (n instanceof Element e && local.equals(e.getLocalName()) && ns.equals(e.getNamespaceURI())) return e;
+        }
+        return null;
+    }
+
+    private static Document parse(ZipFile zf, String name) throws Exception {
+        ZipArchiveEntry e = zf.getEntry(name);
+        if (e == null) throw new IllegalStateException("Missing " + name + " in DOCX");
+        try (InputStream in = zf.getInputStream(e)) {
+            return builder().parse(in);
+        }
+    }
+
+    // lookup factory (ServiceLoader) tốn vài ms mỗi lần → giữ sẵn builder/transformer theo thread
+    private static final ThreadLocal<DocumentBuilder> BUILDER = ThreadLocal.withInitial(() -> {
+        try {
+            DocumentBuilderFactory f = DocumentBuilderFactory.newInstance();
+            f.setNamespaceAware(true);
+            f.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            f.setXIncludeAware(false);
+            f.setExpandEntityReferences(false);
+            return f.newDocumentBuilder();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private static final ThreadLocal<Transformer> TRANSFORMER = ThreadLocal.withInitial(() -> {
+        try {
+            Transformer tf = TransformerFactory.newInstance().newTransformer();
+            tf.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+            tf.setOutputProperty(OutputKeys.STANDALONE, "yes");
+            return tf;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    private static DocumentBuilder builder() {
+        DocumentBuilder b = BUILDER.get();
+        b.reset();
+        return b;
+    }
+
+    private static byte[] serialize(Document doc) throws Exception {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(64 * 1024);
+        TRANSFORMER.get().transform(new DOMSource(doc), new StreamResult(bos));
+        return bos.toByteArray();
+    }
+
+    private static void writeEntry(ZipArchiveOutputStream out, String name, byte[] data) throws IOException {
+        ZipArchiveEntry ne = new ZipArchiveEntry(name);
+        ne.setMethod(ZipArchiveEntry.DEFLATED);
+        out.putArchiveEntry(ne);
+        out.write(data);
+        out.closeArchiveEntry();
+    }
+
+    // so khớp tên: cùng kết quả với ContractFileServiceImpl.foldAccents nhưng tra bảng theo ký tự
+    // (NFD + regex cho từng paragraph là phần tốn nhất khi dò tên trên văn bản dài)
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+    private static final char[] FOLD = new char[0x1F00];
+
+    static {
+        for (char c = 0; c < FOLD.length; c++) {
+            String base = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD).replaceAll("\\p{M}+", "");
+            FOLD[c] = base.length() == 1 ? base.charAt(0) : c;
+        }
+    }
+
+    private static String foldAccents(String s) {
+        if (isAscii(s)) return s;
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) continue;
+            sb.append(c < FOLD.length ? FOLD[c] : c);
+        }
+        return sb.toString();
+    }
+
+    private static String collapseSpaces(String s) {
+        return SPACES.matcher(s.replace('\u00A0', ' ').trim()).replaceAll(" ");
+    }
+
+    private static boolean isAscii(String s) {
+        for (int i = 0; i < s.length(); i++) if (s.charAt(i) > 0x7F) return false;
+        return true;
+    }
+
+    private static int lastIndexEnd(String hay, String needle) {
+        if (needle.isBlank()) return -1;
+        int idx = hay.lastIndexOf(needle);
+        return idx < 0 ? -1 : idx + needle.length() - 1;
+    }
+}
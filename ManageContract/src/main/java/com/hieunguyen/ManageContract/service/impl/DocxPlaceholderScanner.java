@@ -0,0 +1,169 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import com.hieunguyen.ManageContract.common.constants.VariableType;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Quét placeholder trong DOCX bằng StAX, không dựng cây XWPF/DOM.
+ * - Đọc word/document.xml rồi header*.xml, footer*.xml; text box (w:txbxContent) nằm trong các part này nên cũng được quét.
+ * - Gom text w:t theo từng đoạn (w:p, có lồng nhau với text box) → bộ nhớ chỉ tỉ lệ với đoạn dài nhất.
+ * - Mỗi ${...} được phân loại 1 lần: ${table:x} → TABLE, ${x?a:b} → BOOLEAN, ${x|a,b} → DROPDOWN, còn lại TEXT.
+ * - Trùng tên chỉ giữ lần xuất hiện đầu tiên, thứ tự theo tài liệu; riêng x và table:x thì dạng bảng
+ *   luôn thắng (không phụ thuộc cái nào đứng trước), giữ vị trí lần xuất hiện đầu.
+ */
+public final class DocxPlaceholderScanner {
+
+    private static final String W_NS = DocxPatchEngine.W_NS;
+    private static final Pattern HEADER_FOOTER = Pattern.compile("word/(header|footer)\\d*\\.xml");
+    private static final String TABLE_PREFIX = "table:";
+
+    /**
+     * Placeholder tìm được.
+     * args: BOOLEAN → [trueLabel, falseLabel]; DROPDOWN → danh sách option; loại khác → rỗng.
+     */
+    public record Placeholder(VariableType type, String name, List<String> args) { }
+
+    private static final XMLInputFactory XML_INPUT = XMLInputFactory.newFactory();
+
+    static {
+        XML_INPUT.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XML_INPUT.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        XML_INPUT.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+    }
+
+    private final Map<String, Placeholder> found = new LinkedHashMap<>();
+    private final Set<String> tables = new HashSet<>(); // tên bảng trần (x của ${table:x})
+    private final Deque<StringBuilder> paragraphs = new ArrayDeque<>();
+
+    private DocxPlaceholderScanner() { }
+
+    public static List<Placeholder> scan(Path docx) throws IOException {
+        DocxPlaceholderScanner scanner = new DocxPlaceholderScanner();
+        try (ZipFile zf = new ZipFile(docx.toFile())) {
+            List<String> parts = new ArrayList<>();
+            parts.add("word/document.xml");
+            zf.stream().map(ZipEntry::getName)
+                    .filter(n -> HEADER_FOOTER.matcher(n).matches())
+                    .sorted()
+                    .forEach(parts::add);
+
+            for (String name : parts) {
+                ZipEntry e = zf.getEntry(name);
+                if (e == null) continue;
+                try (InputStream in = zf.getInputStream(e)) {
+                    scanner.scanPart(in);
+                } catch (XMLStreamException ex) {
+                    throw new IOException("Invalid XML in " + name + ": " + ex.getMessage(), ex);
+                }
+            }
+        }
+        return new ArrayList<>(scanner.found.values());
+    }
+
+    private void scanPart(InputStream in) throws XMLStreamException {
+        XMLStreamReader r = XML_INPUT.createXMLStreamReader(in);
+        try {
+            boolean inText = false;
+            while (r.hasNext()) {
+                switch (r.next()) {
+                    case XMLStreamConstants.START_ELEMENT -> {
+                        if (!W_NS.equals(r.getNamespaceURI())) break;
+                        String local = r.getLocalName();
+                        if ("p".equals(local)) paragraphs.push(new StringBuilder());
+                        else if ("t".equals(local)) inText = true;
+                    }
+                    case XMLStreamConstants.END_ELEMENT -> {
+                        if (!W_NS.equals(r.getNamespaceURI())) break;
+                        String local = r.getLocalName();
+                        if ("t".equals(local)) inText = false;
+                        else if ("p".equals(local) && !paragraphs.isEmpty()) tokenize(paragraphs.pop());
+                    }
+                    case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA -> {
+                        if (inText && !paragraphs.isEmpty()) {
+                            paragraphs.peek().append(r.getTextCharacters(), r.getTextStart(), r.getTextLength());
+                        }
+                    }
+                    default -> { }
+                }
+            }
+        } finally {
+            r.close();
+        }
+    }
+
+    private void tokenize(CharSequence text) {
+        int len = text.length();
+        int i = 0;
+        while (i < len - 1) {
+            if (text.charAt(i) != '$' || text.charAt(i + 1) != '{') {
+                i++;
+                continue;
+            }
+            int end = i + 2;
+            while (end < len && text.charAt(end) != '}') end++;
+            if (end >= len) return; // ${ không đóng trong đoạn này
+            classify(text.subSequence(i + 2, end).toString());
+            i = end + 1;
+        }
+    }
+
+    private void classify(String body) {
+        if (body.startsWith(TABLE_PREFIX)) {
+            addTable(body.substring(TABLE_PREFIX.length()).trim());
+            return;
+        }
+        int q = body.indexOf('?');
+        int colon = q < 0 ? -1 : body.indexOf(':', q + 1);
+        if (colon > 0) {
+            add(new Placeholder(VariableType.BOOLEAN, body.substring(0, q).trim(),
+                    List.of(body.substring(q + 1, colon).trim(), body.substring(colon + 1).trim())));
+            return;
+        }
+        int bar = body.indexOf('|');
+        if (bar >= 0) {
+            List<String> options = Arrays.stream(body.substring(bar + 1).split(","))
+                    .map(String::trim)
+                    .toList();
+            add(new Placeholder(VariableType.DROPDOWN, body.substring(0, bar).trim(), options));
+            return;
+        }
+        add(new Placeholder(VariableType.TEXT, body.trim(), List.of()));
+    }
+
+    private void add(Placeholder p) {
+        if (p.name().isEmpty()) return;
+        // biến đã khai báo dạng bảng thì ${x} đơn lẻ không tạo biến mới
+        if (found.containsKey(p.name()) || tables.contains(p.name())) return;
+        found.put(p.name(), p);
+    }
+
+    private void addTable(String table) {
+        String name = "table_" + table;
+        if (table.isEmpty() || found.containsKey(name)) return;
+        tables.add(table);
+        Placeholder p = new Placeholder(VariableType.TABLE, name, List.of());
+        if (!found.containsKey(table)) {
+            found.put(name, p);
+            return;
+        }
+        // ${x} đứng trước ${table:x} → thay biến đơn bằng biến bảng tại đúng vị trí cũ
+        Map<String, Placeholder> reordered = new LinkedHashMap<>();
+        found.forEach((k, v) -> {
+            if (k.equals(table)) reordered.put(name, p);
+            else reordered.put(k, v);
+        });
+        found.clear();
+        found.putAll(reordered);
+    }
+}
@@ -0,0 +1,158 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+
+/**
+ * Template đã "biên dịch" sẵn cho bước thay biến.
+ * - Compile 1 lần từ DOCX đã VariablePrepare: mỗi part chứa biến (document, header, footer)
+ *   được cắt thành [literal, slot, literal, slot, ..., literal]; slot = tên biến + vị trí (part, offset).
+ * - Sinh hợp đồng = 1 lượt ghi tuần tự: literal (bytes UTF-8 có sẵn) xen giá trị đã escape XML;
+ *   các entry khác copy nguyên bản nén → chi phí tuyến tính theo kích thước output.
+ * Cú pháp giống docx4j variableReplace: ${key} tìm trên chuỗi XML; key không có giá trị thì ghi key
+ * (docx4j cũng ghi như vậy), riêng giá trị được escape nên không còn làm hỏng XML khi có '&' hay '<'.
+ */
+public final class DocxSubstitutionPlan {
+
+    private static final Pattern TEMPLATED_PART = Pattern.compile("word/(document|header\\d*|footer\\d*)\\.xml");
+
+    /** Vị trí 1 biến trong template */
+    public record Slot(String part, int offset, String name) { }
+
+    private record CompiledPart(byte[][] literals, Slot[] slots) { }
+
+    private final byte[] source;
+    private final Map<String, CompiledPart> parts;
+    private final long weight;
+
+    private DocxSubstitutionPlan(byte[] source, Map<String, CompiledPart> parts, long weight) {
+        this.source = source;
+        this.parts = parts;
+        this.weight = weight;
+    }
+
+    public static DocxSubstitutionPlan compile(byte[] preparedDocx) throws IOException {
+        Map<String, CompiledPart> parts = new HashMap<>();
+        long weight = preparedDocx.length;
+        try (ZipFile zf = new ZipFile(new SeekableInMemoryByteChannel(preparedDocx))) {
+            for (Enumeration<ZipArchiveEntry> en = zf.getEntries(); en.hasMoreElements(); ) {
+                ZipArchiveEntry e = en.nextElement();
+                if (!TEMPLATED_PART.matcher(e.getName()).matches()) continue;
+                String xml;
+                try (InputStream in = zf.getInputStream(e)) {
+                    xml = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                }
+                CompiledPart part = compilePart(e.getName(), xml);
+                // part không có biến → để copy raw như các entry khác
+                if (part.slots().length == 0) continue;
+                parts.put(e.getName(), part);
+                for (byte[] literal : part.literals()) weight += literal.length;
+            }
+        }
+        return new DocxSubstitutionPlan(preparedDocx, parts, weight);
+    }
+
+    private static CompiledPart compilePart(String name, String xml) {
+        List<byte[]> literals = new ArrayList<>();
+        List<Slot> slots = new ArrayList<>();
+        int pos = 0;
+        while (true) {
+            int start = xml.indexOf("${", pos);
+            if (start < 0) break;
+            int end = xml.indexOf('}', start + 2);
+            if (end < 0) break;
+            literals.add(xml.substring(pos, start).getBytes(StandardCharsets.UTF_8));
+            slots.add(new Slot(name, start, xml.substring(start + 2, end)));
+            pos = end + 1;
+        }
+        literals.add(xml.substring(pos).getBytes(StandardCharsets.UTF_8));
+        return new CompiledPart(literals.toArray(new byte[0][]), slots.toArray(new Slot[0]));
+    }
+
+    /** Tất cả slot theo thứ tự xuất hiện trong từng part */
+    public List<Slot> slots() {
+        List<Slot> all = new ArrayList<>();
+        parts.values().forEach(p -> all.addAll(Arrays.asList(p.slots())));
+        return all;
+    }
+
+    /** Ước lượng bộ nhớ (bytes) cho weigher của cache */
+    public long weight() {
+        return weight;
+    }
+
+    /** Ghi DOCX đã thay biến ra {@code out} (qua file tạm + move atomic) */
+    public void writeTo(Map<String, String> values, Path out) throws IOException {
+        Path target = out.toAbsolutePath();
+        Files.createDirectories(target.getParent());
+        Path tmp = Files.createTempFile(target.getParent(), "gen_", ".docx");
+        try {
+            try (ZipFile zf = new ZipFile(new SeekableInMemoryByteChannel(source));
+                 ZipArchiveOutputStream zos = new ZipArchiveOutputStream(tmp.toFile())) {
+                for (Enumeration<ZipArchiveEntry> en = zf.getEntriesInPhysicalOrder(); en.hasMoreElements(); ) {
+                    ZipArchiveEntry e = en.nextElement();
+                    CompiledPart part = parts.get(e.getName());
+                    if (part == null) {
+                        try (InputStream raw = zf.getRawInputStream(e)) {
+                            zos.addRawArchiveEntry(e, raw);
+                        }
+                        continue;
+                    }
+                    ZipArchiveEntry ne = new ZipArchiveEntry(e.getName());
+                    ne.setMethod(ZipEntry.DEFLATED);
+                    zos.putArchiveEntry(ne);
+                    writePart(part, values, zos);
+                    zos.closeArchiveEntry();
+                }
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static void writePart(CompiledPart part, Map<String, String> values, OutputStream out) throws IOException {
+        byte[][] literals = part.literals();
+        Slot[] slots = part.slots();
+        for (int i = 0; i < slots.length; i++) {
+            out.write(literals[i]);
+            String v = values.get(slots[i].name());
+            // key lấy từ XML nên đã ở dạng escape sẵn
+            out.write(v == null ? slots[i].name().getBytes(StandardCharsets.UTF_8) : escape(v));
+        }
+        out.write(literals[slots.length]);
+    }
+
+    private static byte[] escape(String s) {
+        StringBuilder sb = null;
+        for (int i = 0; i < s.length(); i++) {
+            String rep = switch (s.charAt(i)) {
+                case '&' -> "&amp;";
+                case '<' -> "&lt;";
+                case '>' -> "&gt;";
+                case '"' -> "&quot;";
+                default -> null;
+            };
+            if (rep == null) {
+                if (sb != null) sb.append(s.charAt(i));
+                continue;
+            }
+            if (sb == null) sb = new StringBuilder(s.length() + 16).append(s, 0, i);
+            sb.append(rep);
+        }
+        return (sb == null ? s : sb.toString()).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -1,6 +1,7 @@
 package com.hieunguyen.ManageContract.service.impl;
 
 import com.hieunguyen.ManageContract.service.EmailService;
+import com.hieunguyen.ManageContract.service.MailOutboxService;
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
 import lombok.RequiredArgsConstructor;
@@ -21,6 +22,8 @@ import java.util.Random;
 public class EmailServiceImpl implements EmailService {
 
     private final JavaMailSender mailSender;
+    private final MailOutboxService mailOutbox;
+    private final BatchingMailSender batchingMailSender;
 
     @Value("${app.verification.url}")
     private String verificationUrl;
@@ -83,6 +86,7 @@ public class EmailServiceImpl implements EmailService {
     }
 
     // ====== Các hàm thông báo hợp đồng (dùng lại cho listener) ======
+    // Ghi vào outbox trong transaction của người gọi, gửi nền sau commit (MailOutboxService)
 
     @Override
     public void sendContractApproved(String to, String contractCode, String approverName, LocalDateTime approvedAt) {
@@ -93,7 +97,7 @@ public class EmailServiceImpl implements EmailService {
             <p>Hợp đồng <b>%s</b> đã được <b>PHÊ DUYỆT</b> lúc <b>%s</b> bởi <b>%s</b>.</p>
             <p>Trân trọng.</p>
         """.formatted(n2e(contractCode), timeStr, n2e(approverName));
-        sendHtml(to, subject, html);
+        mailOutbox.enqueue(to, subject, html, true);
     }
 
     @Override
@@ -106,7 +110,7 @@ public class EmailServiceImpl implements EmailService {
             <p><b>Lý do:</b> %s</p>
             <p>Trân trọng.</p>
         """.formatted(n2e(contractCode), timeStr, n2e(approverName), n2e(reason));
-        sendHtml(to, subject, html);
+        mailOutbox.enqueue(to, subject, html, true);
     }
 
     // ========= Private helpers (DUY NHẤT 1 sendHtml) =========
@@ -119,7 +123,7 @@ public class EmailServiceImpl implements EmailService {
             helper.setTo(to);
             helper.setSubject(subject);
             helper.setText(html, true);
-            mailSender.send(mime);
+            batchingMailSender.send(mime); // dùng chung phiên SMTP với các mail khác trong cùng cửa sổ
         } catch (MessagingException e) {
             throw new RuntimeException("Gửi email thất bại", e);
         } catch (MailException e) {
@@ -135,7 +139,7 @@ public class EmailServiceImpl implements EmailService {
             helper.setTo(to);
             helper.setSubject(subject);
             helper.setText(text, false);
-            mailSender.send(mime);
+            batchingMailSender.send(mime); // dùng chung phiên SMTP với các mail khác trong cùng cửa sổ
         } catch (MessagingException e) {
             throw new RuntimeException("Gửi email thất bại", e);
         } catch (MailException e) {
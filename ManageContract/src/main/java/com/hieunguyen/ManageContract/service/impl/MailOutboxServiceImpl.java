@@ -0,0 +1,307 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import com.hieunguyen.ManageContract.common.constants.MailOutboxStatus;
+import com.hieunguyen.ManageContract.config.IoThreads;
+import com.hieunguyen.ManageContract.entity.MailOutbox;
+import com.hieunguyen.ManageContract.repository.MailOutboxRepository;
+import com.hieunguyen.ManageContract.service.MailOutboxService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.AddressException;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.transaction.Transactional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailParseException;
+import org.springframework.mail.MailPreparationException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Outbox email.
+ * - enqueue ghi bảng mail_outbox trong transaction nghiệp vụ (processStep/signStep...) → rollback thì không có mail.
+ * - Sau commit, dispatcher lấy theo lô mail đến hạn, claim từng mail (an toàn khi nhiều node) rồi giao cho
+ *   BatchingMailSender (nhiều mail chung 1 phiên SMTP); tối đa max-in-flight mail chờ SMTP. Request không còn chờ SMTP.
+ * - Lỗi tạm thời: retry với backoff luỹ thừa + jitter; địa chỉ hỏng hoặc hết max-attempts → DEAD.
+ * - Sweeper định kỳ nhặt mail đến hạn retry và mail SENDING bị treo quá lease.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class MailOutboxServiceImpl implements MailOutboxService {
+
+    private final MailOutboxRepository outboxRepository;
+    private final JavaMailSender mailSender;
+    private final BatchingMailSender batchingMailSender;
+
+    @Value("${spring.mail.username}")
+    private String fromEmail;
+
+    @Value("${app.mail.outbox.max-in-flight:200}")
+    private int maxInFlight;
+
+    @Value("${app.mail.outbox.batch-size:50}")
+    private int batchSize;
+
+    @Value("${app.mail.outbox.max-attempts:6}")
+    private int maxAttempts;
+
+    @Value("${app.mail.outbox.initial-backoff-ms:30000}")
+    private long initialBackoffMs;
+
+    @Value("${app.mail.outbox.max-backoff-ms:3600000}")
+    private long maxBackoffMs;
+
+    @Value("${app.mail.outbox.lease-ms:120000}")
+    private long leaseMs;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    private ThreadPoolExecutor executor;
+    // mail đã claim nhưng SMTP chưa trả lời
+    private Semaphore inFlight;
+    private final AtomicBoolean draining = new AtomicBoolean();
+    // có commit mới trong lúc đang drain → lượt drain hiện tại phải quét lại trước khi thả cờ draining
+    private final AtomicBoolean rerun = new AtomicBoolean();
+
+    @PostConstruct
+    void init() {
+        inFlight = new Semaphore(maxInFlight);
+        // 1 thread drain là đủ: việc gửi do BatchingMailSender gom lô, thread này chỉ claim + submit
+        executor = new ThreadPoolExecutor(
+                1, 1,
+                60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(1),
+                IoThreads.factory("mail-outbox-dispatcher", virtualThreads),
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    // ------------------------------------------------------------------
+    // API
+    // ------------------------------------------------------------------
+
+    @Override
+    @Transactional
+    public void enqueue(String to, String subject, String body, boolean html) {
+        LocalDateTime now = LocalDateTime.now();
+        outboxRepository.save(MailOutbox.builder()
+                .recipient(to)
+                .subject(truncate(subject, 500))
+                .body(body)
+                .html(html)
+                .status(MailOutboxStatus.PENDING)
+                .attempts(0)
+                .nextAttemptAt(now)
+                .createdAt(now)
+                .build());
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    drainAsync();
+                }
+            });
+        } else {
+            drainAsync();
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Dispatcher
+    // ------------------------------------------------------------------
+
+    /** Nhiều commit liên tiếp chỉ kích 1 lượt drain; commit đến giữa lượt thì lượt đó quét thêm 1 vòng */
+    private void drainAsync() {
+        rerun.set(true);
+        if (!draining.compareAndSet(false, true)) return;
+        try {
+            executor.execute(this::drainUntilQuiet);
+        } catch (RejectedExecutionException e) {
+            draining.set(false); // executor đã dừng: mail vẫn PENDING, sweeper gửi sau
+        }
+    }
+
+    private void drainUntilQuiet() {
+        try {
+            while (true) {
+                rerun.set(false);
+                drain();
+                if (rerun.get()) continue;
+                draining.set(false);
+                // commit chen vào giữa lần kiểm tra trên và lúc thả cờ đã thấy draining=true và bỏ đi
+                // → nhận lại lượt thay nó, nếu chưa ai khác nhận
+                if (!rerun.get() || !draining.compareAndSet(false, true)) return;
+            }
+        } catch (RuntimeException e) {
+            draining.set(false);
+            throw e;
+        }
+    }
+
+    /** Lấy theo lô mail đến hạn, claim rồi giao cho BatchingMailSender cho tới khi hết hoặc đủ max-in-flight */
+    private void drain() {
+        while (true) {
+            int free = Math.min(batchSize, inFlight.availablePermits());
+            if (free <= 0) return;
+            List<MailOutbox> due = outboxRepository.findByStatusAndNextAttemptAtLessThanEqualOrderByIdAsc(
+                    MailOutboxStatus.PENDING, LocalDateTime.now(), PageRequest.of(0, free));
+            if (due.isEmpty()) return;
+
+            int submitted = 0;
+            for (MailOutbox m : due) {
+                if (!inFlight.tryAcquire()) return;
+                if (outboxRepository.claim(m.getId(), LocalDateTime.now().plusNanos(leaseMs * 1_000_000)) == 0) {
+                    inFlight.release();
+                    continue; // node khác đã nhận
+                }
+                MailOutbox claimed = outboxRepository.findById(m.getId()).orElse(null);
+                if (claimed == null) {
+                    inFlight.release();
+                    continue;
+                }
+                try {
+                    deliver(claimed).whenComplete((v, ex) -> inFlight.release());
+                    submitted++;
+                } catch (RejectedExecutionException e) {
+                    // hàng đợi gửi đầy: trả lại ngay thay vì đợi hết lease
+                    inFlight.release();
+                    release(claimed);
+                    return;
+                }
+            }
+            if (submitted == 0 || due.size() < free) return;
+        }
+    }
+
+    /**
+     * Gửi 1 mail đã claim (gom lô cùng các mail khác) và ghi kết quả khi SMTP trả lời.
+     * @throws RejectedExecutionException khi hàng đợi của BatchingMailSender đầy
+     */
+    CompletableFuture<Void> deliver(MailOutbox m) {
+        MimeMessage mime;
+        try {
+            mime = toMime(m);
+        } catch (Exception e) {
+            record(m, e);
+            return CompletableFuture.completedFuture(null);
+        }
+        return batchingMailSender.submit(mime).handle((v, ex) -> {
+            record(m, ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex);
+            return null;
+        });
+    }
+
+    private void record(MailOutbox m, Throwable e) {
+        if (e == null) {
+            m.setStatus(MailOutboxStatus.SENT);
+            m.setSentAt(LocalDateTime.now());
+            m.setLastError(null);
+            log.info("[MAIL] Sent outbox {} → {}", m.getId(), m.getRecipient());
+        } else {
+            int attempts = m.getAttempts() == null ? 1 : m.getAttempts();
+            boolean dead = isPermanent(e) || attempts >= maxAttempts;
+            m.setLastError(truncate(e.getMessage(), 1000));
+            if (dead) {
+                m.setStatus(MailOutboxStatus.DEAD);
+                log.error("[MAIL] Outbox {} → {} dead after {} attempts: {}",
+                        m.getId(), m.getRecipient(), attempts, e.getMessage());
+            } else {
+                m.setStatus(MailOutboxStatus.PENDING);
+                m.setNextAttemptAt(LocalDateTime.now().plusNanos(backoffMs(attempts) * 1_000_000));
+                log.warn("[MAIL] Outbox {} → {} failed (attempt {}/{}), retry at {}: {}",
+                        m.getId(), m.getRecipient(), attempts, maxAttempts, m.getNextAttemptAt(), e.getMessage());
+            }
+        }
+        try {
+            outboxRepository.save(m);
+        } catch (Exception saveEx) {
+            // mail giữ SENDING → sweeper trả về PENDING khi hết lease
+            log.error("[MAIL] Cannot update outbox {}: {}", m.getId(), saveEx.getMessage());
+        }
+    }
+
+    private void release(MailOutbox m) {
+        m.setStatus(MailOutboxStatus.PENDING);
+        m.setAttempts(Math.max(0, (m.getAttempts() == null ? 1 : m.getAttempts()) - 1));
+        m.setNextAttemptAt(LocalDateTime.now());
+        outboxRepository.save(m);
+    }
+
+    /** Nhặt mail đến hạn retry và mail SENDING quá lease */
+    @Scheduled(fixedDelayString = "${app.mail.outbox.sweep-interval-ms:10000}")
+    public void sweep() {
+        try {
+            int released = outboxRepository.releaseStale(LocalDateTime.now());
+            if (released > 0) log.warn("[MAIL] Released {} stale outbox messages", released);
+            drainAsync();
+        } catch (Exception e) {
+            log.warn("[MAIL] Outbox sweep error: {}", e.getMessage());
+        }
+    }
+
+    // ------------------------------------------------------------------
+    // Helpers
+    // ------------------------------------------------------------------
+
+    private MimeMessage toMime(MailOutbox m) throws MessagingException {
+        MimeMessage mime = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(mime, m.isHtml(), "UTF-8");
+        helper.setFrom(fromEmail);
+        helper.setTo(m.getRecipient());
+        helper.setSubject(m.getSubject());
+        helper.setText(m.getBody(), m.isHtml());
+        return mime;
+    }
+
+    /** backoff = initial * 2^(attempt-1), tối đa max-backoff, jitter ±20% để các mail lỗi không dồn cùng lúc */
+    long backoffMs(int attempts) {
+        long base = initialBackoffMs << Math.min(attempts - 1, 20);
+        long capped = Math.min(maxBackoffMs, base > 0 ? base : maxBackoffMs);
+        double jitter = 0.8 + ThreadLocalRandom.current().nextDouble() * 0.4;
+        return (long) (capped * jitter);
+    }
+
+    /** Lỗi không thể tự hết khi gửi lại: địa chỉ sai, message không dựng được */
+    private static boolean isPermanent(Throwable e) {
+        if (e instanceof MailParseException || e instanceof MailPreparationException
+                || e instanceof AddressException) {
+            return true;
+        }
+        if (e instanceof MailSendException mse) {
+            for (Exception cause : mse.getFailedMessages().values()) {
+                if (cause instanceof SendFailedException sfe
+                        && sfe.getInvalidAddresses() != null && sfe.getInvalidAddresses().length > 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String truncate(String s, int max) {
+        if (s == null) return null;
+        return s.length() > max ? s.substring(0, max) : s;
+    }
+}
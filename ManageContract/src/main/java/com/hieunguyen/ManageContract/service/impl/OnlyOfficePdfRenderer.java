@@ -0,0 +1,94 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Render qua ONLYOFFICE ConvertService (Document Server tự tải DOCX theo sourceUrl).
+ * - mode async: gửi async:true, ConversionTracker poll chung trên pool nhỏ.
+ * - mode sync: vòng poll cũ (async:false) chạy ngay trên thread gọi.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class OnlyOfficePdfRenderer implements PdfRenderer {
+
+    public static final String NAME = "onlyoffice";
+
+    private final DocumentServerClient dsClient;
+    private final ConversionTracker conversionTracker;
+
+    private final ObjectMapper om = new ObjectMapper();
+
+    @Value("${app.ds.convert-mode:async}")
+    private String convertMode; // async: ConversionTracker | sync: poll trên thread gọi
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return dsClient.isAvailable();
+    }
+
+    @Override
+    public CompletableFuture<byte[]> render(String key, Path docx, String sourceUrl) {
+        try {
+            Map<String, Object> payload = new HashMap<>();
+            payload.put("filetype", "docx");
+            payload.put("outputtype", "pdf");
+            payload.put("key", key + "-" + System.currentTimeMillis());
+            payload.put("title", docx.getFileName().toString());
+            payload.put("url", sourceUrl);
+
+            if (!"async".equalsIgnoreCase(convertMode)) {
+                return CompletableFuture.completedFuture(convertSyncPolling(payload));
+            }
+            return conversionTracker.convert(payload);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /** Chế độ cũ: async:false rồi poll lặp lại cùng request */
+    private byte[] convertSyncPolling(Map<String, Object> payload) throws Exception {
+        Map<String, Object> body = new HashMap<>(payload);
+        body.put("async", false);
+        String json = om.writeValueAsString(body);
+
+        JsonNode root = om.readTree(dsClient.convert(json));
+        int attempts = 0;
+        while (!root.path("endConvert").asBoolean(false) && attempts < 20) {
+            Thread.sleep(500);
+            root = om.readTree(dsClient.convert(json));
+            attempts++;
+        }
+
+        if (!root.path("endConvert").asBoolean(false)) {
+            int percent = root.path("percent").asInt(-1);
+            throw new RuntimeException("ConvertService not finished. percent=" + percent);
+        }
+
+        String fileUrl = root.path("fileUrl").asText(null);
+        if (fileUrl == null || fileUrl.isBlank()) {
+            throw new RuntimeException("ConvertService returned no fileUrl");
+        }
+
+        byte[] pdfBytes = dsClient.download(fileUrl);
+        if (pdfBytes == null || pdfBytes.length == 0) {
+            throw new RuntimeException("Downloaded PDF is empty from: " + fileUrl);
+        }
+        return pdfBytes;
+    }
+}
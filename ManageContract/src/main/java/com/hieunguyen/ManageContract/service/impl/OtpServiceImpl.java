@@ -2,42 +2,63 @@ package com.hieunguyen.ManageContract.service.impl;
 
 import com.hieunguyen.ManageContract.service.OtpService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
-import java.util.Random;
-import java.util.concurrent.TimeUnit;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.List;
 
 @Service
 @RequiredArgsConstructor
 public class OtpServiceImpl implements OtpService {
 
+    private static final String OTP_PREFIX = "OTP:";
+    private static final String ATTEMPTS_PREFIX = "OTP_ATTEMPTS:";
+    private static final Duration EXPIRATION_TIME = Duration.ofMinutes(5);
+    // dùng chung 1 instance: không tạo Random mỗi lần, OTP không đoán được từ seed
+    private static final SecureRandom RANDOM = new SecureRandom();
+
     private final StringRedisTemplate redisTemplate;
-    private static final long EXPIRATION_TIME = 115;
+
+    @Value("${app.security.otp.max-attempts:5}")
+    private int maxAttempts;
 
     @Override
     public String generateOtp(String email) {
         // Tạo OTP gồm 6 chữ số ngẫu nhiên
-        int otp = 100000 + new Random().nextInt(900000);
-        String otpStr = String.valueOf(otp);
-        // Lưu OTP vào Redis với TTL là 5 phút
-        redisTemplate.opsForValue().set(email, otpStr, 5, TimeUnit.MINUTES);
+        String otpStr = String.valueOf(100000 + RANDOM.nextInt(900000));
+        // Lưu OTP vào Redis với TTL là 5 phút, OTP mới thì đếm lại số lần nhập sai
+        redisTemplate.opsForValue().set(OTP_PREFIX + email, otpStr, EXPIRATION_TIME);
+        redisTemplate.delete(ATTEMPTS_PREFIX + email);
         return otpStr;
     }
 
     @Override
     public boolean verifyOtp(String email, String otp) {
-        String storedOtp = redisTemplate.opsForValue().get(email);
-        if (storedOtp != null && storedOtp.equals(otp)) {
+        if (otp == null) return false;
+        String storedOtp = redisTemplate.opsForValue().get(OTP_PREFIX + email);
+        if (storedOtp == null) return false;
+
+        if (MessageDigest.isEqual(storedOtp.getBytes(StandardCharsets.UTF_8), otp.getBytes(StandardCharsets.UTF_8))) {
             // Xóa OTP sau khi xác thực thành công
-            redisTemplate.delete(email);
+            clearOtp(email);
             return true;
         }
+
+        // Sai quá max-attempts lần → huỷ OTP, phải xin OTP mới
+        Long failed = redisTemplate.opsForValue().increment(ATTEMPTS_PREFIX + email);
+        redisTemplate.expire(ATTEMPTS_PREFIX + email, EXPIRATION_TIME);
+        if (failed != null && failed >= maxAttempts) clearOtp(email);
         return false;
     }
 
+    @Override
     public void clearOtp(String email) {
-        redisTemplate.delete("OTP:" + email);
+        redisTemplate.delete(List.of(OTP_PREFIX + email, ATTEMPTS_PREFIX + email));
     }
 
 }
@@ -0,0 +1,149 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import com.hieunguyen.ManageContract.common.constants.ConversionJobStatus;
+import com.hieunguyen.ManageContract.dto.conversion.ConversionJobResponse;
+import com.hieunguyen.ManageContract.mapper.ConversionJobMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Báo client khi PDF của hợp đồng render xong, thay cho poll /pdf-status: client mở SSE
+ * /api/contracts/{id}/pdf-events, nhận đúng 1 sự kiện "pdf-ready" (DONE hoặc FAILED) rồi stream đóng.
+ * - Job chạy ở node nào cũng được: kết quả phát qua Redis pub/sub, node đang giữ kết nối SSE gửi cho client.
+ * - Đăng ký trước rồi mới đọc trạng thái hiện tại → job xong đúng lúc client mở stream cũng không bị lỡ.
+ * Redis tắt/lỗi → chỉ báo client nối vào node chạy job (client còn /pdf-status).
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class PdfReadyNotifier {
+
+    static final String CHANNEL = "pdf-render:ready";
+    static final String EVENT_NAME = "pdf-ready";
+
+    private final StringRedisTemplate redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.conversion.notify.redis-enabled:true}")
+    private boolean redisEnabled;
+
+    @Value("${app.conversion.notify.sse-timeout-ms:120000}")
+    private long sseTimeoutMs;
+
+    private final ConcurrentHashMap<Long, Set<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    void init() {
+        Gauge.builder("pdf.ready.subscribers", subscribers,
+                m -> m.values().stream().mapToInt(Set::size).sum()).register(meterRegistry);
+        if (redisEnabled) {
+            listenerContainer.addMessageListener((message, pattern) ->
+                    deliverLocal(decode(new String(message.getBody(), StandardCharsets.UTF_8))),
+                    new ChannelTopic(CHANNEL));
+        }
+    }
+
+    /**
+     * Mở stream chờ PDF của hợp đồng.
+     *
+     * @param current trạng thái mới nhất (đọc sau khi đã đăng ký); đã DONE/FAILED thì gửi ngay và đóng
+     */
+    public SseEmitter subscribe(Long contractId, Supplier<ConversionJobResponse> current) {
+        SseEmitter emitter = newEmitter();
+        subscribers.compute(contractId, (k, set) -> {
+            if (set == null) set = ConcurrentHashMap.newKeySet();
+            set.add(emitter);
+            return set;
+        });
+        emitter.onCompletion(() -> unsubscribe(contractId, emitter));
+        emitter.onTimeout(() -> unsubscribe(contractId, emitter));
+        emitter.onError(e -> unsubscribe(contractId, emitter));
+
+        ConversionJobResponse now = current.get();
+        if (now != null && isFinished(now.getStatus())) send(contractId, emitter, now);
+        return emitter;
+    }
+
+    /** Job render kết thúc trên node này → báo mọi node (kể cả node này) */
+    public void publish(Long contractId, Long jobId, ConversionJobStatus status) {
+        if (redisEnabled) {
+            try {
+                redisTemplate.convertAndSend(CHANNEL, contractId + ":" + jobId + ":" + status.name());
+                return;
+            } catch (Exception e) {
+                log.debug("Cannot broadcast PDF ready of contract {}: {}", contractId, e.getMessage());
+            }
+        }
+        deliverLocal(ConversionJobMapper.toFinished(contractId, jobId, status));
+    }
+
+    int subscriberCount(Long contractId) {
+        Set<SseEmitter> set = subscribers.get(contractId);
+        return set == null ? 0 : set.size();
+    }
+
+    SseEmitter newEmitter() {
+        return new SseEmitter(sseTimeoutMs);
+    }
+
+    // ------------------------------------------------------------------
+
+    private void deliverLocal(ConversionJobResponse result) {
+        if (result == null) return;
+        Set<SseEmitter> set = subscribers.get(result.getContractId());
+        if (set == null) return;
+        for (SseEmitter emitter : set) send(result.getContractId(), emitter, result);
+    }
+
+    /** Mỗi stream nhận đúng 1 sự kiện: ai gỡ được đăng ký thì người đó gửi */
+    private void send(Long contractId, SseEmitter emitter, ConversionJobResponse result) {
+        if (!unsubscribe(contractId, emitter)) return;
+        try {
+            emitter.send(SseEmitter.event().name(EVENT_NAME).data(result, MediaType.APPLICATION_JSON));
+            emitter.complete();
+        } catch (Exception e) {
+            // client đã ngắt
+            emitter.completeWithError(e);
+        }
+    }
+
+    private boolean unsubscribe(Long contractId, SseEmitter emitter) {
+        boolean[] removed = {false};
+        subscribers.computeIfPresent(contractId, (k, set) -> {
+            removed[0] = set.remove(emitter);
+            return set.isEmpty() ? null : set;
+        });
+        return removed[0];
+    }
+
+    private static boolean isFinished(String status) {
+        return ConversionJobStatus.DONE.name().equals(status) || ConversionJobStatus.FAILED.name().equals(status);
+    }
+
+    private static ConversionJobResponse decode(String message) {
+        try {
+            String[] parts = message.split(":", 3);
+            return ConversionJobMapper.toFinished(Long.valueOf(parts[0]),
+                    "null".equals(parts[1]) ? null : Long.valueOf(parts[1]), ConversionJobStatus.valueOf(parts[2]));
+        } catch (Exception e) {
+            log.warn("Ignoring malformed PDF ready message '{}'", message);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Cache PDF theo nội dung DOCX (content-addressed).
+ * - Key = SHA-256(phiên bản converter + nội dung từng entry trong DOCX). Băm nội dung giải nén
+ *   thay vì byte zip vì docx4j/POI ghi timestamp entry mỗi lần save → cùng nội dung vẫn khác byte.
+ * - PDF lưu tại {dir}/{2 ký tự đầu}/{key}.pdf; đặt dir trên volume chung thì các node dùng chung cache.
+ * - LRU theo mtime (hit sẽ touch), vượt max-size-mb thì xoá file cũ nhất.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class PdfRenderCache {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.render-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.render-cache.dir:uploads/render-cache}")
+    private String cacheDir;
+
+    @Value("${app.render-cache.max-size-mb:1024}")
+    private long maxSizeMb;
+
+    // đổi khi nâng cấp Document Server/đổi cách render để vô hiệu cache cũ
+    @Value("${app.render-cache.converter-version:onlyoffice-1}")
+    private String converterVersion;
+
+    private Path root;
+    private final AtomicLong totalBytes = new AtomicLong();
+    private final ReentrantLock evictLock = new ReentrantLock();
+
+    private Counter hits;
+    private Counter misses;
+    private Counter evictions;
+
+    @PostConstruct
+    void init() {
+        root = Paths.get(cacheDir).toAbsolutePath().normalize();
+        try {
+            Files.createDirectories(root);
+            totalBytes.set(scanSize());
+        } catch (IOException e) {
+            log.warn("Render cache dir unavailable ({}), cache disabled: {}", root, e.getMessage());
+            enabled = false;
+        }
+        hits = Counter.builder("pdf.render.cache").tag("result", "hit").register(meterRegistry);
+        misses = Counter.builder("pdf.render.cache").tag("result", "miss").register(meterRegistry);
+        evictions = Counter.builder("pdf.render.cache.evictions").register(meterRegistry);
+        Gauge.builder("pdf.render.cache.size.bytes", totalBytes, AtomicLong::get).register(meterRegistry);
+    }
+
+    /** Key của DOCX; null nếu cache tắt hoặc không đọc được file */
+    public String keyOf(Path docx) {
+        if (!enabled) return null;
+        try (InputStream in = Files.newInputStream(docx);
+             ZipInputStream zin = new ZipInputStream(in)) {
+            // băm từng entry rồi sắp theo tên → không phụ thuộc thứ tự/timestamp trong zip
+            SortedMap<String, byte[]> parts = new TreeMap<>();
+            byte[] buf = new byte[8192];
+            ZipEntry e;
+            while ((e = zin.getNextEntry()) != null) {
+                if (e.isDirectory()) continue;
+                MessageDigest md = MessageDigest.getInstance("SHA-256");
+                int n;
+                while ((n = zin.read(buf)) > 0) md.update(buf, 0, n);
+                parts.put(e.getName(), md.digest());
+            }
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(converterVersion.getBytes(StandardCharsets.UTF_8));
+            for (Map.Entry<String, byte[]> p : parts.entrySet()) {
+                md.update((byte) 0);
+                md.update(p.getKey().getBytes(StandardCharsets.UTF_8));
+                md.update((byte) 0);
+                md.update(p.getValue());
+            }
+            return HexFormat.of().formatHex(md.digest());
+        } catch (Exception ex) {
+            log.warn("Cannot hash DOCX {}: {}", docx, ex.getMessage());
+            return null;
+        }
+    }
+
+    /** Tìm PDF theo key (ghi nhận hit/miss) */
+    public Optional<Path> lookup(String key) {
+        if (!enabled || key == null) return Optional.empty();
+        Path p = pathOf(key);
+        if (Files.isRegularFile(p)) {
+            try {
+                Files.setLastModifiedTime(p, FileTime.fromMillis(System.currentTimeMillis()));
+            } catch (IOException ignore) { }
+            hits.increment();
+            return Optional.of(p);
+        }
+        misses.increment();
+        return Optional.empty();
+    }
+
+    /** Đọc bytes PDF trong cache; empty nếu miss */
+    public Optional<byte[]> read(String key) {
+        return lookup(key).flatMap(p -> {
+            try {
+                return Optional.of(Files.readAllBytes(p));
+            } catch (IOException e) {
+                return Optional.empty();
+            }
+        });
+    }
+
+    public void put(String key, byte[] pdfBytes) {
+        if (!enabled || key == null || pdfBytes == null || pdfBytes.length == 0) return;
+        Path target = pathOf(key);
+        if (Files.exists(target)) return;
+        Path tmp = null;
+        try {
+            Files.createDirectories(target.getParent());
+            // ghi tạm rồi move atomic: node khác không bao giờ thấy file dở dang
+            tmp = Files.createTempFile(target.getParent(), key, ".tmp");
+            Files.write(tmp, pdfBytes);
+            try {
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException race) {
+                return;
+            }
+            tmp = null; // đã thành file cache
+            if (totalBytes.addAndGet(pdfBytes.length) > maxSizeMb * 1024 * 1024) evict();
+        } catch (Exception e) {
+            log.warn("Render cache put failed for {}: {}", key, e.getMessage());
+        } finally {
+            // lỗi giữa chừng (đĩa đầy, move lỗi…) không để lại file .tmp trong thư mục cache
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ignore) { }
+            }
+        }
+    }
+
+    // ------------------------------------------------------------------
+
+    private Path pathOf(String key) {
+        return root.resolve(key.substring(0, 2)).resolve(key + ".pdf");
+    }
+
+    /** Xoá file ít dùng nhất tới khi còn 90% giới hạn */
+    private void evict() {
+        if (!evictLock.tryLock()) return; // đã có thread đang dọn
+        try (Stream<Path> files = Files.walk(root)) {
+            long limit = maxSizeMb * 1024 * 1024 * 9 / 10;
+            List<Path> all = files.filter(p -> p.toString().endsWith(".pdf")).sorted(Comparator.comparingLong(this::mtime)).toList();
+            long size = all.stream().mapToLong(this::sizeOf).sum();
+            for (Path p : all) {
+                if (size <= limit) break;
+                long s = sizeOf(p);
+                if (Files.deleteIfExists(p)) {
+                    size -= s;
+                    evictions.increment();
+                }
+            }
+            totalBytes.set(size);
+        } catch (IOException e) {
+            log.warn("Render cache eviction error: {}", e.getMessage());
+        } finally {
+            evictLock.unlock();
+        }
+    }
+
+    private long scanSize() throws IOException {
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(p -> p.toString().endsWith(".pdf")).mapToLong(this::sizeOf).sum();
+        }
+    }
+
+    private long mtime(Path p) {
+        try {
+            return Files.getLastModifiedTime(p).toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    private long sizeOf(Path p) {
+        try {
+            return Files.size(p);
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+}
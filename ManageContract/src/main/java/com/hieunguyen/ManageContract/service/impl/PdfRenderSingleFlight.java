@@ -0,0 +1,208 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Gộp các lần render PDF đồng thời của cùng 1 hợp đồng (single-flight):
+ * - Trong node: lần gọi đầu tạo future, các lần sau trong lúc đang render dùng chung future đó.
+ * - Giữa các node: người render giữ khoá Redis (SET NX PX, có token); node khác không render mà
+ *   chờ (poll không giữ thread) tới khi PDF xuất hiện hoặc khoá được nhả thì thử nhận lại.
+ * - DOCX đổi trong lúc render (ký, ghi ý kiến) → invalidate(): lần gọi sau không dùng kết quả cũ
+ *   mà xếp 1 lượt render mới ngay sau lượt đang chạy (không ghi đè file song song). invalidate được
+ *   phát qua Redis pub/sub để node khác cũng bỏ lượt đang chạy của mình.
+ * Redis lỗi → chỉ gộp trong node.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class PdfRenderSingleFlight {
+
+    private static final String LOCK_PREFIX = "PDF_RENDER:";
+    static final String INVALIDATE_CHANNEL = "pdf-render:invalidate";
+
+    // chỉ xoá khoá nếu vẫn là của mình (khoá có thể đã hết hạn và node khác đã nhận)
+    static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    @Value("${app.conversion.single-flight.redis-enabled:true}")
+    private boolean redisEnabled;
+
+    @Value("${app.conversion.single-flight.lock-ttl-ms:180000}")
+    private long lockTtlMs;
+
+    @Value("${app.conversion.single-flight.poll-ms:500}")
+    private long pollMs;
+
+    @Value("${app.conversion.single-flight.wait-timeout-ms:180000}")
+    private long waitTimeoutMs;
+
+    private final ConcurrentHashMap<Long, Flight> flights = new ConcurrentHashMap<>();
+
+    /** Lượt render đang chạy; stale = DOCX đã đổi sau khi lượt này bắt đầu */
+    private static final class Flight {
+        final CompletableFuture<File> future = new CompletableFuture<>();
+        volatile boolean stale;
+    }
+
+    @PostConstruct
+    void init() {
+        if (redisEnabled) {
+            listenerContainer.addMessageListener((message, pattern) ->
+                    invalidateLocal(Long.valueOf(new String(message.getBody(), StandardCharsets.UTF_8))),
+                    new ChannelTopic(INVALIDATE_CHANNEL));
+        }
+    }
+
+    /**
+     * Render PDF của hợp đồng, gộp với lượt đang chạy (trong node hoặc ở node khác).
+     *
+     * @param render  chạy render thật (chỉ 1 lần cho mỗi lượt)
+     * @param rendered PDF hiện có trên volume chung (dùng khi chờ node khác)
+     */
+    public CompletableFuture<File> run(Long contractId,
+                                       Supplier<CompletableFuture<File>> render,
+                                       Supplier<Optional<File>> rendered) {
+        while (true) {
+            Flight current = flights.get(contractId);
+            if (current != null && !current.stale) {
+                meterRegistry.counter("pdf.render.coalesced", "scope", "local").increment();
+                return current.future;
+            }
+
+            Flight next = new Flight();
+            boolean installed = current == null
+                    ? flights.putIfAbsent(contractId, next) == null
+                    : flights.replace(contractId, current, next);
+            if (!installed) continue; // thread khác vừa tạo lượt mới → dùng lượt đó
+
+            // lượt cũ (stale) vẫn đang ghi file → chỉ bắt đầu sau khi nó xong
+            CompletableFuture<?> before = current == null
+                    ? CompletableFuture.completedFuture(null)
+                    : current.future.handle((f, e) -> null);
+            before.thenRun(() -> lead(contractId, render, rendered, System.nanoTime(), next.future));
+            next.future.whenComplete((f, e) -> flights.remove(contractId, next));
+            return next.future;
+        }
+    }
+
+    /** DOCX vừa đổi: lượt đang chạy (nếu có) cho ra PDF cũ, không cho lần gọi sau dùng chung */
+    public void invalidate(Long contractId) {
+        invalidateLocal(contractId);
+        if (!redisEnabled) return;
+        try {
+            redisTemplate.convertAndSend(INVALIDATE_CHANNEL, String.valueOf(contractId));
+        } catch (Exception e) {
+            // node khác vẫn không ghi PDF cũ: persistPdf so version DOCX trước khi ghi
+            log.debug("Cannot broadcast render invalidation of contract {}: {}", contractId, e.getMessage());
+        }
+    }
+
+    private void invalidateLocal(Long contractId) {
+        Flight current = flights.get(contractId);
+        if (current != null) current.stale = true;
+    }
+
+    // ------------------------------------------------------------------
+
+    private void lead(Long contractId, Supplier<CompletableFuture<File>> render,
+                      Supplier<Optional<File>> rendered, long startedNanos, CompletableFuture<File> result) {
+        String token = tryLock(contractId);
+        if (token == null) {
+            // node khác đang render → chờ kết quả của nó
+            meterRegistry.counter("pdf.render.coalesced", "scope", "remote").increment();
+            waitForRemote(contractId, render, rendered, startedNanos, result);
+            return;
+        }
+
+        CompletableFuture<File> rendering;
+        try {
+            rendering = render.get();
+        } catch (Exception e) {
+            rendering = CompletableFuture.failedFuture(e);
+        }
+        rendering.whenComplete((f, e) -> {
+            unlock(contractId, token);
+            if (e != null) result.completeExceptionally(e);
+            else result.complete(f);
+        });
+    }
+
+    private void waitForRemote(Long contractId, Supplier<CompletableFuture<File>> render,
+                               Supplier<Optional<File>> rendered, long startedNanos, CompletableFuture<File> result) {
+        CompletableFuture.runAsync(() -> {
+            try {
+                Optional<File> pdf = rendered.get();
+                if (pdf.isPresent()) {
+                    result.complete(pdf.get());
+                } else if (!isLocked(contractId)) {
+                    // node kia đã xong (lỗi) hoặc chết → thử tự render
+                    lead(contractId, render, rendered, startedNanos, result);
+                } else if (System.nanoTime() - startedNanos > TimeUnit.MILLISECONDS.toNanos(waitTimeoutMs)) {
+                    result.completeExceptionally(new RuntimeException(
+                            "Timed out waiting for PDF render of contract " + contractId + " on another node"));
+                } else {
+                    waitForRemote(contractId, render, rendered, startedNanos, result);
+                }
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+        }, CompletableFuture.delayedExecutor(pollMs, TimeUnit.MILLISECONDS));
+    }
+
+    /** Token nếu nhận được khoá (hoặc Redis tắt/lỗi → coi như nhận), null nếu node khác đang giữ */
+    private String tryLock(Long contractId) {
+        String token = UUID.randomUUID().toString();
+        if (!redisEnabled) return token;
+        try {
+            Boolean ok = redisTemplate.opsForValue()
+                    .setIfAbsent(LOCK_PREFIX + contractId, token, Duration.ofMillis(lockTtlMs));
+            return Boolean.FALSE.equals(ok) ? null : token;
+        } catch (Exception e) {
+            log.debug("Render lock unavailable for contract {}: {}", contractId, e.getMessage());
+            return token;
+        }
+    }
+
+    private boolean isLocked(Long contractId) {
+        try {
+            return Boolean.TRUE.equals(redisTemplate.hasKey(LOCK_PREFIX + contractId));
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private void unlock(Long contractId, String token) {
+        if (!redisEnabled) return;
+        try {
+            redisTemplate.execute(RELEASE_SCRIPT, List.of(LOCK_PREFIX + contractId), token);
+        } catch (Exception e) {
+            log.debug("Cannot release render lock of contract {}: {}", contractId, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Bộ render DOCX → PDF. PdfRendererRouter chọn bộ nào chạy cho từng file.
+ */
+public interface PdfRenderer {
+
+    /** Tên dùng trong cấu hình (app.pdf.renderer.mode), log và metric */
+    String name();
+
+    /** Lúc này có nên giao việc không (vd: mạch tới Document Server đang mở → false) */
+    boolean isAvailable();
+
+    /**
+     * Render không chặn thread gọi; future trả nội dung PDF.
+     *
+     * @param key       tiền tố key convert (vd: id hợp đồng, "preview")
+     * @param docx      file DOCX trên đĩa (bộ render trong JVM đọc trực tiếp)
+     * @param sourceUrl URL Document Server tải được đúng file đó
+     */
+    CompletableFuture<byte[]> render(String key, Path docx, String sourceUrl);
+}
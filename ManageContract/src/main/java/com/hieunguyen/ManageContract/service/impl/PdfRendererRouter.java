@@ -0,0 +1,167 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Chọn bộ render PDF cho từng file (mode=auto):
+ * - Mạch tới Document Server đang mở → render trong JVM (docx4j), không chờ DS.
+ * - DS chậm (latency trung bình > ds-slow-ms) → file nhỏ render trong JVM; cứ ds-probe-ms
+ *   thì gửi 1 file cho DS để đo lại, DS nhanh trở lại thì quay về DS.
+ * - Bình thường → DS; DS lỗi → thử lại trong JVM.
+ * File lớn hơn local-max-bytes luôn đi DS (FOP chậm và tốn RAM với file lớn).
+ * mode=onlyoffice: chỉ DS như trước; mode=docx4j: chỉ render trong JVM.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class PdfRendererRouter {
+
+    private static final double LATENCY_ALPHA = 0.3;
+
+    private final List<PdfRenderer> renderers;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.pdf.renderer.mode:auto}")
+    private String mode;
+
+    @Value("${app.pdf.renderer.fallback-enabled:true}")
+    private boolean fallbackEnabled;
+
+    @Value("${app.pdf.renderer.local-max-bytes:2097152}")
+    private long localMaxBytes;
+
+    @Value("${app.pdf.renderer.ds-slow-ms:15000}")
+    private long dsSlowMs;
+
+    @Value("${app.pdf.renderer.ds-probe-ms:30000}")
+    private long dsProbeMs;
+
+    private PdfRenderer documentServer;
+    private PdfRenderer local;
+
+    private final AtomicLong dsLatencyMs = new AtomicLong();   // trung bình trượt, 0 = chưa có mẫu
+    private final AtomicLong lastDsSentNanos = new AtomicLong(System.nanoTime());
+
+    /** PDF đã render và bộ render đã dùng */
+    public record RenderedPdf(byte[] bytes, String renderer) {
+        /** render-cache gắn với phiên bản Document Server (converter-version) → chỉ cache bản của DS */
+        public boolean cacheable() {
+            return OnlyOfficePdfRenderer.NAME.equals(renderer);
+        }
+    }
+
+    @PostConstruct
+    void init() {
+        documentServer = byName(OnlyOfficePdfRenderer.NAME);
+        local = byName(Docx4jPdfRenderer.NAME);
+        Gauge.builder("pdf.render.docserver.latency", dsLatencyMs, AtomicLong::get).register(meterRegistry);
+    }
+
+    /** Render theo chính sách định tuyến; future lỗi khi mọi bộ render được chọn đều lỗi */
+    public CompletableFuture<RenderedPdf> render(String key, Path docx, String sourceUrl) {
+        List<PdfRenderer> route = route(sizeOf(docx));
+        if (route.isEmpty()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("No PDF renderer available for " + docx));
+        }
+        return attempt(route, 0, key, docx, sourceUrl);
+    }
+
+    // ------------------------------------------------------------------
+
+    List<PdfRenderer> route(long size) {
+        boolean localOk = localOk(size);
+        if (Docx4jPdfRenderer.NAME.equalsIgnoreCase(mode) || documentServer == null) {
+            return localOk ? List.of(local) : List.of();
+        }
+        if (OnlyOfficePdfRenderer.NAME.equalsIgnoreCase(mode) || !localOk) {
+            return List.of(documentServer);
+        }
+        if (!documentServer.isAvailable()) {
+            fallback("circuit_open");
+            return List.of(local);
+        }
+        if (dsLatencyMs.get() > dsSlowMs && !probeDue()) {
+            fallback("slow");
+            return List.of(local);
+        }
+        return fallbackEnabled ? List.of(documentServer, local) : List.of(documentServer);
+    }
+
+    private CompletableFuture<RenderedPdf> attempt(List<PdfRenderer> route, int i,
+                                                   String key, Path docx, String sourceUrl) {
+        PdfRenderer renderer = route.get(i);
+        long start = System.nanoTime();
+        if (renderer == documentServer) lastDsSentNanos.set(start);
+
+        CompletableFuture<byte[]> rendering;
+        try {
+            rendering = renderer.render(key, docx, sourceUrl);
+        } catch (Exception e) {
+            rendering = CompletableFuture.failedFuture(e);
+        }
+        return rendering.handle((bytes, err) -> {
+            long elapsed = System.nanoTime() - start;
+            meterRegistry.timer("pdf.render", "renderer", renderer.name(), "outcome", err == null ? "ok" : "error")
+                    .record(elapsed, TimeUnit.NANOSECONDS);
+            if (err == null) {
+                if (renderer == documentServer) recordDsLatency(TimeUnit.NANOSECONDS.toMillis(elapsed));
+                return CompletableFuture.completedFuture(new RenderedPdf(bytes, renderer.name()));
+            }
+
+            Throwable cause = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+            if (i + 1 < route.size()) {
+                log.warn("PDF render via {} failed ({}), retrying with {}", renderer.name(), cause.getMessage(),
+                        route.get(i + 1).name());
+                fallback("error");
+                return attempt(route, i + 1, key, docx, sourceUrl);
+            }
+            return CompletableFuture.<RenderedPdf>failedFuture(cause);
+        }).thenCompose(Function.identity());
+    }
+
+    private boolean localOk(long size) {
+        return local != null && local.isAvailable() && size <= localMaxBytes;
+    }
+
+    /** Đã lâu chưa gửi DS → cho đúng 1 request đi DS để đo lại latency */
+    private boolean probeDue() {
+        long last = lastDsSentNanos.get();
+        long now = System.nanoTime();
+        return now - last > TimeUnit.MILLISECONDS.toNanos(dsProbeMs) && lastDsSentNanos.compareAndSet(last, now);
+    }
+
+    private void recordDsLatency(long ms) {
+        dsLatencyMs.updateAndGet(prev -> prev == 0 ? ms : Math.round(prev * (1 - LATENCY_ALPHA) + ms * LATENCY_ALPHA));
+    }
+
+    private void fallback(String reason) {
+        meterRegistry.counter("pdf.render.fallback", "reason", reason).increment();
+    }
+
+    private PdfRenderer byName(String name) {
+        return renderers.stream().filter(r -> r.name().equals(name)).findFirst().orElse(null);
+    }
+
+    private static long sizeOf(Path docx) {
+        try {
+            return Files.size(docx);
+        } catch (Exception e) {
+            return Long.MAX_VALUE;
+        }
+    }
+}
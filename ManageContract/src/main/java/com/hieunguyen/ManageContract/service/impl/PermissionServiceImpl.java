@@ -6,6 +6,7 @@ import com.hieunguyen.ManageContract.dto.permission.PermissionResponse;
 import com.hieunguyen.ManageContract.entity.Permission;
 import com.hieunguyen.ManageContract.mapper.PermissionMapper;
 import com.hieunguyen.ManageContract.repository.PermissionRepository;
+import com.hieunguyen.ManageContract.security.auth.PrincipalCache;
 import com.hieunguyen.ManageContract.service.PermissionService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
@@ -19,6 +20,7 @@ public class PermissionServiceImpl implements PermissionService {
 
     private final PermissionRepository permissionRepository;
     private final PermissionMapper permissionMapper;
+    private final PrincipalCache principalCache;
 
     @Override
     public PermissionResponse create(PermissionRequest request) {
@@ -31,7 +33,9 @@ public class PermissionServiceImpl implements PermissionService {
         Permission permission = permissionRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Permission not found with id: " + id));
         permissionMapper.updateEntity(permission, request);
-        return permissionMapper.toResponse(permissionRepository.save(permission));
+        Permission saved = permissionRepository.save(permission);
+        principalCache.evictAll(); // permissionKey đổi → authority đổi
+        return permissionMapper.toResponse(saved);
     }
 
     @Override
@@ -39,6 +43,7 @@ public class PermissionServiceImpl implements PermissionService {
         Permission permission = permissionRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Permission not found with id: " + id));
         permissionRepository.delete(permission);
+        principalCache.evictAll();
     }
 
     @Override
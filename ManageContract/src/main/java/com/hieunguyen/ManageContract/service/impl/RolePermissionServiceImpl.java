@@ -7,6 +7,7 @@ import com.hieunguyen.ManageContract.entity.RolePermission;
 import com.hieunguyen.ManageContract.repository.PermissionRepository;
 import com.hieunguyen.ManageContract.repository.RolePermissionRepository;
 import com.hieunguyen.ManageContract.repository.RoleRepository;
+import com.hieunguyen.ManageContract.security.auth.PrincipalCache;
 import com.hieunguyen.ManageContract.service.RolePermissionService;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
@@ -24,6 +25,7 @@ public class RolePermissionServiceImpl implements RolePermissionService {
     private final RoleRepository roleRepository;
     private final PermissionRepository permissionRepository;
     private final RolePermissionRepository rolePermissionRepository;
+    private final PrincipalCache principalCache;
 
     @Override
     @Transactional
@@ -39,6 +41,7 @@ public class RolePermissionServiceImpl implements RolePermissionService {
                 .collect(Collectors.toList());
 
         rolePermissionRepository.saveAll(newPermissions);
+        principalCache.evictAll(); // quyền của mọi tài khoản giữ role này đã đổi
     }
 
     @Override
@@ -58,6 +61,7 @@ public class RolePermissionServiceImpl implements RolePermissionService {
                 .collect(Collectors.toList());
 
         rolePermissionRepository.saveAll(toAdd);
+        principalCache.evictAll();
     }
 
     @Override
@@ -71,6 +75,7 @@ public class RolePermissionServiceImpl implements RolePermissionService {
                 .toList();
 
         rolePermissionRepository.deleteAll(toRemove);
+        principalCache.evictAll();
     }
 
     // ===================== PRIVATE SUPPORT METHODS =====================
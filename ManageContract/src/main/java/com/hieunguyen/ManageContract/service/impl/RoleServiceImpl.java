@@ -6,6 +6,7 @@ import com.hieunguyen.ManageContract.dto.role.RoleResponse;
 import com.hieunguyen.ManageContract.entity.Role;
 import com.hieunguyen.ManageContract.mapper.RoleMapper;
 import com.hieunguyen.ManageContract.repository.RoleRepository;
+import com.hieunguyen.ManageContract.security.auth.PrincipalCache;
 import com.hieunguyen.ManageContract.service.RoleService;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
@@ -20,6 +21,7 @@ public class RoleServiceImpl implements RoleService {
 
     private final RoleRepository roleRepository;
     private final RoleMapper roleMapper;
+    private final PrincipalCache principalCache;
 
     @Override
     public RoleResponse createRole(RoleRequest request) {
@@ -52,6 +54,7 @@ public class RoleServiceImpl implements RoleService {
                 .orElseThrow(() -> new ResourceNotFoundException("Role not found with id: " + id));
         roleMapper.updateRoleFromRequest(role, request);
         roleRepository.save(role);
+        principalCache.evictAll(); // roleKey đổi → authority ROLE_* đổi
         return roleMapper.toResponse(role);
     }
     @Override
@@ -60,5 +63,6 @@ public class RoleServiceImpl implements RoleService {
         Role role = roleRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Role not found with id: " + id));
         roleRepository.delete(role);
+        principalCache.evictAll();
     }
 }
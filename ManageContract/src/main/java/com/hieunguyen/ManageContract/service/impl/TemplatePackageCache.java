@@ -0,0 +1,186 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.hieunguyen.ManageContract.entity.ContractTemplate;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.docx4j.model.datastorage.migration.VariablePrepare;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache template DOCX đã load + VariablePrepare.prepare (bước tốn nhất, ~1s/template).
+ * - Key = templateId + mtime của file → đổi file trên đĩa là tự ra key mới.
+ * - Giữ snapshot của package đã prepare (bytes zip); mỗi lần dùng load lại từ bộ nhớ
+ *   → mỗi hợp đồng có bản sao riêng (deep clone), không chia sẻ cây JAXB giữa các thread.
+ *   OpcPackage.clone() của docx4j cũng là save + load nên giữ bytes rẻ hơn giữ cây JAXB.
+ * - Kèm theo là DocxSubstitutionPlan biên dịch từ snapshot, dùng cho render() (không cần docx4j).
+ * - Giới hạn theo tổng dung lượng snapshot + plan (max-size-mb), hết chỗ thì Caffeine tự evict.
+ * - Cache miss: 1 thread biên dịch, thread khác chờ future của nó. Không biên dịch trong Cache.get(key, loader)
+ *   vì loader chạy trong khoá synchronized của ConcurrentHashMap → ghim carrier của virtual thread suốt ~1s.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class TemplatePackageCache {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${app.template-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.template-cache.max-size-mb:64}")
+    private long maxSizeMb;
+
+    @Value("${app.template-cache.expire-after-access-minutes:120}")
+    private long expireAfterAccessMinutes;
+
+    // false → quay lại docx4j variableReplace trên bản clone
+    @Value("${app.template-cache.compiled-plan:true}")
+    private boolean compiledPlan;
+
+    private Cache<TemplateKey, PreparedTemplate> cache;
+    // template đang được biên dịch
+    private final Map<TemplateKey, CompletableFuture<PreparedTemplate>> compiling = new ConcurrentHashMap<>();
+
+    private record TemplateKey(Long templateId, long mtime) { }
+
+    /** Snapshot đã prepare + plan thay biến biên dịch từ chính snapshot đó */
+    private record PreparedTemplate(byte[] snapshot, DocxSubstitutionPlan plan) { }
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxSizeMb * 1024 * 1024)
+                .weigher((TemplateKey k, PreparedTemplate v) -> (int) Math.min(Integer.MAX_VALUE, v.plan().weight()))
+                .expireAfterAccess(Duration.ofMinutes(expireAfterAccessMinutes))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "docx.template.cache");
+    }
+
+    /**
+     * Trả bản sao đã prepare của template, sẵn sàng cho variableReplace.
+     * Package trả về thuộc riêng người gọi, sửa thoải mái.
+     */
+    public WordprocessingMLPackage checkout(ContractTemplate template) {
+        Path templatePath = templatePathOf(template);
+        try {
+            if (!enabled || template.getId() == null) {
+                return prepare(templatePath);
+            }
+            return WordprocessingMLPackage.load(new ByteArrayInputStream(prepared(template, templatePath).snapshot()));
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Load template failed: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Sinh DOCX hợp đồng từ template + giá trị biến, ghi ra {@code out}.
+     * Mặc định chạy theo plan đã biên dịch (1 lượt ghi, không parse XML).
+     */
+    public void render(ContractTemplate template, Map<String, String> values, Path out) {
+        Path templatePath = templatePathOf(template);
+        try {
+            if (compiledPlan && enabled && template.getId() != null) {
+                prepared(template, templatePath).plan().writeTo(values, out);
+                return;
+            }
+            WordprocessingMLPackage pkg = checkout(template);
+            pkg.getMainDocumentPart().variableReplace(values);
+            AtomicFiles.write(out, tmp -> pkg.save(tmp.toFile()));
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Render template failed: " + e.getMessage(), e);
+        }
+    }
+
+    /** Bỏ mọi bản cache của template (gọi khi file/metadata template thay đổi) */
+    public void invalidate(Long templateId) {
+        if (templateId == null || cache == null) return;
+        cache.asMap().keySet().removeIf(k -> k.templateId().equals(templateId));
+    }
+
+    private PreparedTemplate prepared(ContractTemplate template, Path templatePath) throws IOException {
+        TemplateKey key = new TemplateKey(template.getId(), Files.getLastModifiedTime(templatePath).toMillis());
+        PreparedTemplate prepared = cache.getIfPresent(key);
+        if (prepared != null) return prepared;
+
+        CompletableFuture<PreparedTemplate> mine = new CompletableFuture<>();
+        CompletableFuture<PreparedTemplate> running = compiling.putIfAbsent(key, mine);
+        if (running != null) return running.join();
+        try {
+            prepared = cache.getIfPresent(key); // thread trước vừa biên dịch xong
+            if (prepared == null) {
+                prepared = compile(key, templatePath);
+                cache.put(key, prepared);
+                // file đã đổi → bản cache theo mtime cũ không bao giờ được dùng lại
+                cache.asMap().keySet().removeIf(k -> k.templateId().equals(key.templateId()) && k.mtime() != key.mtime());
+            }
+            mine.complete(prepared);
+            return prepared;
+        } catch (Throwable t) {
+            // cả Error (OOM khi load template lớn…) → thread đang chờ future này không treo mãi
+            mine.completeExceptionally(t);
+            throw t;
+        } finally {
+            compiling.remove(key, mine);
+        }
+    }
+
+    private PreparedTemplate compile(TemplateKey key, Path templatePath) {
+        try {
+            long start = System.nanoTime();
+            WordprocessingMLPackage pkg = prepare(templatePath);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            pkg.save(out);
+            byte[] snapshot = out.toByteArray();
+            DocxSubstitutionPlan plan = DocxSubstitutionPlan.compile(snapshot);
+            log.info("Cached prepared template {} ({} bytes, {} slots) in {} ms",
+                    key.templateId(), snapshot.length, plan.slots().size(), (System.nanoTime() - start) / 1_000_000);
+            return new PreparedTemplate(snapshot, plan);
+        } catch (Exception e) {
+            throw new RuntimeException("Prepare template failed: " + e.getMessage(), e);
+        }
+    }
+
+    WordprocessingMLPackage prepare(Path templatePath) throws Exception {
+        WordprocessingMLPackage pkg = WordprocessingMLPackage.load(templatePath.toFile());
+        VariablePrepare.prepare(pkg);
+        return pkg;
+    }
+
+    private Path templatePathOf(ContractTemplate template) {
+        if (template == null || template.getFilePath() == null) {
+            throw new RuntimeException("Template not found or filePath is null");
+        }
+        Path templatePath = Paths.get(template.getFilePath());
+        if (!Files.exists(templatePath)) {
+            throw new RuntimeException("Template file not found: " + templatePath);
+        }
+        if (!templatePath.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".docx")) {
+            throw new RuntimeException("Only DOCX template is supported");
+        }
+        return templatePath;
+    }
+}
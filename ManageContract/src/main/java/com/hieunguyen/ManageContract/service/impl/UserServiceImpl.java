@@ -12,6 +12,7 @@ import com.hieunguyen.ManageContract.repository.DepartmentRepository;
 import com.hieunguyen.ManageContract.repository.PositionRepository;
 import com.hieunguyen.ManageContract.repository.UserRepository;
 import com.hieunguyen.ManageContract.security.jwt.SecurityUtil;
+import com.hieunguyen.ManageContract.security.auth.PrincipalCache;
 import com.hieunguyen.ManageContract.service.FileUploadService;
 import com.hieunguyen.ManageContract.service.UserService;
 import lombok.RequiredArgsConstructor;
@@ -32,6 +33,7 @@ public class UserServiceImpl implements UserService {
     private final FileUploadService fileUploadService;
     private final DepartmentRepository departmentRepository;
     private final PositionRepository positionRepository;
+    private final PrincipalCache principalCache;
 
     @Override
     public AuthProfileResponse updateCurrentUser(UserUpdateRequest request) throws BadRequestException {
@@ -148,6 +150,7 @@ public class UserServiceImpl implements UserService {
         // ====== END ======
 
         userRepository.save(employee);
+        principalCache.evict(account.getId());
         return userMapper.toUserResponse(employee, account);
     }
 
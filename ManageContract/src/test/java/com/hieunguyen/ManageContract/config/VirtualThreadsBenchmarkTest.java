@@ -0,0 +1,157 @@
+package com.hieunguyen.ManageContract.config;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.catalina.Context;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+import org.apache.coyote.AbstractProtocol;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.condition.JRE;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Bản thu nhỏ của loadtest/virtual-threads.js chạy được không cần MySQL/Redis/Document Server:
+ * Tomcat nhúng, /view giả lập chờ Document Server (chặn thread {@value #BLOCK_MS} ms rồi trả 202),
+ * {@value #CLIENTS} client vòng kín – vượt {@value #MAX_THREADS} thread của Tomcat như kịch bản k6.
+ * Chỉ đo phần luồng (platform pool vs virtual thread), không đo render/DB của app thật.
+ * Cần Java 21: mvn test -Dtest=VirtualThreadsBenchmarkTest -Dbenchmark=true
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@EnabledForJreRange(min = JRE.JAVA_21)
+class VirtualThreadsBenchmarkTest {
+
+    private static final int MAX_THREADS = 200;   // server.tomcat.threads.max mặc định
+    private static final int CLIENTS = 800;        // đỉnh ramp trong virtual-threads.js
+    private static final long BLOCK_MS = 200;
+    private static final long WARMUP_MS = 3_000;
+    private static final long MEASURE_MS = 20_000;
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void blockingViewPlatformPoolVersusVirtualThreads() throws Exception {
+        Result platform = run(false);
+        Result virtual = run(true);
+        System.out.printf("[benchmark] %d clients, /view blocks %d ms, tomcat max threads %d%n",
+                CLIENTS, BLOCK_MS, MAX_THREADS);
+        System.out.println("[benchmark] platform: " + platform);
+        System.out.println("[benchmark] virtual : " + virtual);
+
+        assertEquals(0, platform.errors);
+        assertEquals(0, virtual.errors);
+        // pool 200 thread chỉ phục vụ tối đa 200 / 0.2 s = 1000 req/s, phần còn lại xếp hàng
+        assertTrue(virtual.throughput > platform.throughput);
+        assertTrue(virtual.p99 < platform.p99);
+    }
+
+    private Result run(boolean virtualThreads) throws Exception {
+        Tomcat tomcat = new Tomcat();
+        tomcat.setBaseDir(tmp.resolve(virtualThreads ? "virtual" : "platform").toString());
+        Connector connector = tomcat.getConnector();
+        connector.setPort(0);
+        AbstractProtocol<?> protocol = (AbstractProtocol<?>) connector.getProtocolHandler();
+        protocol.setMaxThreads(MAX_THREADS);
+        connector.setProperty("maxKeepAliveRequests", "-1");
+        // như Spring Boot khi bật spring.threads.virtual.enabled
+        if (virtualThreads) protocol.setExecutor(new VirtualThreadTaskExecutor("tomcat-handler-"));
+
+        Context ctx = tomcat.addContext("", tmp.toString());
+        Tomcat.addServlet(ctx, "view", new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws java.io.IOException {
+                try {
+                    Thread.sleep(BLOCK_MS); // chờ Document Server
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                resp.setStatus(HttpServletResponse.SC_ACCEPTED);
+                resp.getWriter().write("{\"status\":\"PENDING\"}");
+            }
+        });
+        ctx.addServletMappingDecoded("/api/contracts/*", "view");
+        tomcat.start();
+        try {
+            return load(URI.create("http://127.0.0.1:" + connector.getLocalPort() + "/api/contracts/1/view"));
+        } finally {
+            tomcat.stop();
+            tomcat.destroy();
+        }
+    }
+
+    private static Result load(URI uri) throws Exception {
+        VirtualThreadTaskExecutor clients = new VirtualThreadTaskExecutor("vu-");
+        HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                .executor(clients).connectTimeout(Duration.ofSeconds(10)).build();
+        HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(30)).GET().build();
+
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.MILLISECONDS.toNanos(WARMUP_MS);
+        long end = measureFrom + TimeUnit.MILLISECONDS.toNanos(MEASURE_MS);
+        ConcurrentLinkedQueue<long[]> samples = new ConcurrentLinkedQueue<>();
+        AtomicInteger errors = new AtomicInteger();
+        List<Thread> vus = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            Thread vu = clients.getVirtualThreadFactory().newThread(() -> {
+                long[] mine = new long[4096];
+                int n = 0;
+                while (true) {
+                    long t0 = System.nanoTime();
+                    if (t0 >= end) break;
+                    try {
+                        int status = http.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                        if (status != 202) errors.incrementAndGet();
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                    }
+                    long t1 = System.nanoTime();
+                    if (t0 >= measureFrom && t1 <= end) {
+                        if (n == mine.length) mine = Arrays.copyOf(mine, n * 2);
+                        mine[n++] = t1 - t0;
+                    }
+                }
+                samples.add(Arrays.copyOf(mine, n));
+            });
+            vu.start();
+            vus.add(vu);
+        }
+        for (Thread vu : vus) vu.join();
+
+        long[] all = samples.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+        return new Result(all.length * 1000.0 / MEASURE_MS, percentileMs(all, 0.50),
+                percentileMs(all, 0.95), percentileMs(all, 0.99), errors.get());
+    }
+
+    private static double percentileMs(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        return sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)] / 1_000_000.0;
+    }
+
+    private record Result(double throughput, double p50, double p95, double p99, int errors) {
+        @Override
+        public String toString() {
+            return String.format("%.0f req/s, p50 %.0f ms, p95 %.0f ms, p99 %.0f ms, errors %d",
+                    throughput, p50, p95, p99, errors);
+        }
+    }
+}
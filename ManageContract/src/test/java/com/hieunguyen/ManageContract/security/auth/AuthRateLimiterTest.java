@@ -0,0 +1,136 @@
+package com.hieunguyen.ManageContract.security.auth;
+
+import com.hieunguyen.ManageContract.common.exception.TooManyRequestsException;
+import com.hieunguyen.ManageContract.security.auth.AuthRateLimiter.Endpoint;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class AuthRateLimiterTest {
+
+    private RedisStub redis;
+    private StringRedisTemplate template;
+    private SimpleMeterRegistry meters;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        redis = new RedisStub();
+        template = redis.template();
+        meters = new SimpleMeterRegistry();
+        // bản Java của ACQUIRE_SCRIPT
+        redis.script(AuthRateLimiter.ACQUIRE_SCRIPT.getScriptAsString(), (keys, args) -> {
+            long now = System.currentTimeMillis();
+            List<Double> left = new ArrayList<>();
+            for (int i = 0; i < keys.size(); i++) {
+                double cap = Double.parseDouble(args.get(i * 3));
+                double rate = Double.parseDouble(args.get(i * 3 + 1));
+                double tokens = cap;
+                long ts = now;
+                Object cur = redis.call("GET", keys.get(i));
+                if (cur != null) {
+                    String[] p = ((String) cur).split(":");
+                    tokens = Double.parseDouble(p[0]);
+                    ts = Long.parseLong(p[1]);
+                }
+                tokens = Math.min(cap, tokens + Math.max(0, now - ts) * rate);
+                if (tokens < 1) return (long) i + 1;
+                left.add(tokens - 1);
+            }
+            for (int i = 0; i < keys.size(); i++) {
+                redis.call("SET", keys.get(i), left.get(i) + ":" + now, "PX", args.get(i * 3 + 2));
+            }
+            return 0L;
+        });
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        redis.close();
+    }
+
+    @Test
+    void accountBucketLimitsAcrossIpsAndCountsRejections() {
+        AuthRateLimiter limiter = newLimiter(template);
+        for (int i = 0; i < 3; i++) limiter.check(Endpoint.OTP_SEND, "10.0.0." + i, "a@test.local");
+
+        TooManyRequestsException ex = assertThrows(TooManyRequestsException.class,
+                () -> limiter.check(Endpoint.OTP_SEND, "10.0.0.9", "A@Test.local "));
+        assertEquals(100, ex.getRetryAfterSeconds());
+        assertEquals(1.0, meters.get("auth.ratelimit.rejected")
+                .tags("endpoint", "otp-send", "scope", "account", "tier", "local").counter().count());
+
+        // endpoint khác có ngân sách riêng
+        limiter.check(Endpoint.LOGIN, "10.0.0.9", "a@test.local");
+    }
+
+    @Test
+    void redisTierSharesTheBudgetBetweenNodes() {
+        AuthRateLimiter nodeA = newLimiter(template);
+        AuthRateLimiter nodeB = newLimiter(template);
+        for (int i = 0; i < 2; i++) nodeA.check(Endpoint.OTP_SEND, "10.0.0.1", "a@test.local");
+        nodeB.check(Endpoint.OTP_SEND, "10.0.0.2", "a@test.local");
+
+        // nodeB mới thấy 1 request cục bộ → chỉ Redis biết tài khoản đã hết token
+        assertThrows(TooManyRequestsException.class,
+                () -> nodeB.check(Endpoint.OTP_SEND, "10.0.0.2", "a@test.local"));
+        assertEquals(1.0, meters.get("auth.ratelimit.rejected").tags("tier", "redis").counter().count());
+    }
+
+    @Test
+    void requestsRejectedByRedisDoNotDrainTheLocalIpBucket() {
+        AuthRateLimiter nodeA = newLimiter(template);
+        AuthRateLimiter nodeB = newLimiter(template);
+        for (int i = 0; i < 3; i++) nodeA.check(Endpoint.OTP_SEND, "10.0.0.1", "a@test.local");
+
+        // tài khoản a đã hết ngân sách trên cụm; nodeB thử đủ 5 lần (= capacity IP) đều bị Redis chặn
+        for (int i = 0; i < 5; i++) {
+            assertThrows(TooManyRequestsException.class,
+                    () -> nodeB.check(Endpoint.OTP_SEND, "10.0.0.2", "a@test.local"));
+        }
+        // Redis chưa trừ token IP nào → tầng cục bộ cũng không được chặn IP này
+        nodeB.check(Endpoint.OTP_SEND, "10.0.0.2", "b@test.local");
+    }
+
+    @Test
+    void localTierStopsFloodWithoutRedisAndWorksWhenRedisIsDown() {
+        AuthRateLimiter limiter = newLimiter(template);
+        for (int i = 0; i < 5; i++) limiter.check(Endpoint.OTP_SEND, "10.0.0.1", null);
+        int evals = redis.commands.getOrDefault("EVAL", 0);
+        for (int i = 0; i < 100; i++) {
+            assertThrows(TooManyRequestsException.class, () -> limiter.check(Endpoint.OTP_SEND, "10.0.0.1", null));
+        }
+        assertEquals(evals, redis.commands.getOrDefault("EVAL", 0));
+
+        StringRedisTemplate down = mock(StringRedisTemplate.class, inv -> {
+            throw new RedisConnectionFailureException("down");
+        });
+        AuthRateLimiter offline = newLimiter(down);
+        for (int i = 0; i < 5; i++) offline.check(Endpoint.OTP_SEND, "10.0.0.1", null);
+        assertThrows(TooManyRequestsException.class, () -> offline.check(Endpoint.OTP_SEND, "10.0.0.1", null));
+    }
+
+    private AuthRateLimiter newLimiter(StringRedisTemplate template) {
+        AuthRateLimiter limiter = new AuthRateLimiter(template, meters);
+        ReflectionTestUtils.setField(limiter, "enabled", true);
+        ReflectionTestUtils.setField(limiter, "redisEnabled", true);
+        ReflectionTestUtils.setField(limiter, "localMaxKeys", 1000L);
+        ReflectionTestUtils.setField(limiter, "loginIp", "30/60");
+        ReflectionTestUtils.setField(limiter, "loginAccount", "10/300");
+        ReflectionTestUtils.setField(limiter, "otpSendIp", "5/60");
+        ReflectionTestUtils.setField(limiter, "otpSendAccount", "3/300");
+        ReflectionTestUtils.setField(limiter, "otpVerifyIp", "20/60");
+        ReflectionTestUtils.setField(limiter, "otpVerifyAccount", "5/300");
+        limiter.init();
+        return limiter;
+    }
+}
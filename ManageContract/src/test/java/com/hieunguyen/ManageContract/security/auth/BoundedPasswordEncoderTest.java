@@ -0,0 +1,82 @@
+package com.hieunguyen.ManageContract.security.auth;
+
+import com.hieunguyen.ManageContract.common.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedPasswordEncoderTest {
+
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    private BoundedPasswordEncoder encoder;
+
+    @AfterEach
+    void tearDown() {
+        if (encoder != null) encoder.shutdown();
+    }
+
+    @Test
+    void hashesOnThePoolAndRecordsLatency() {
+        encoder = newEncoder(4, 0, 1000, 4, 4);
+        String hash = encoder.encode("secret");
+
+        assertTrue(encoder.matches("secret", hash));
+        assertFalse(encoder.matches("other", hash));
+        assertEquals(1, meters.get("auth.password.hash").tag("op", "encode").timer().count());
+        assertEquals(2, meters.get("auth.password.hash").tag("op", "matches").timer().count());
+    }
+
+    @Test
+    void saturatedPoolAnswersTooManyRequests() throws Exception {
+        encoder = newEncoder(4, 0, 1000, 4, 4);
+        ThreadPoolExecutor executor = (ThreadPoolExecutor) ReflectionTestUtils.getField(encoder, "executor");
+        CountDownLatch release = new CountDownLatch(1);
+        executor.execute(() -> awaitQuietly(release)); // chiếm thread duy nhất
+        executor.execute(() -> awaitQuietly(release)); // lấp queue (1 chỗ)
+
+        assertThrows(TooManyRequestsException.class, () -> encoder.encode("secret"));
+        assertEquals(1.0, meters.get("auth.password.rejected").counter().count());
+        assertEquals(1.0, meters.get("auth.password.queue.depth").gauge().value());
+        release.countDown();
+    }
+
+    @Test
+    void calibrationFollowsTargetLatencyWithinBounds() {
+        encoder = newEncoder(0, 1, 10, 4, 14);
+        assertEquals(4, encoder.strength());
+        encoder.shutdown();
+
+        encoder = newEncoder(0, 1_000_000, 10, 4, 14);
+        assertEquals(14, encoder.strength());
+
+        // hash cost thấp hơn cost hiện tại → cần băm lại
+        assertTrue(encoder.upgradeEncoding(newEncoder(4, 0, 1000, 4, 4).encode("secret")));
+    }
+
+    private BoundedPasswordEncoder newEncoder(int strength, long targetMs, long waitMs, int min, int max) {
+        BoundedPasswordEncoder e = new BoundedPasswordEncoder(meters);
+        ReflectionTestUtils.setField(e, "threads", 1);
+        ReflectionTestUtils.setField(e, "queueCapacity", 1);
+        ReflectionTestUtils.setField(e, "waitTimeoutMs", waitMs);
+        ReflectionTestUtils.setField(e, "strength", strength);
+        ReflectionTestUtils.setField(e, "targetHashMs", targetMs);
+        ReflectionTestUtils.setField(e, "minStrength", min);
+        ReflectionTestUtils.setField(e, "maxStrength", max);
+        e.init();
+        return e;
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException ignore) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
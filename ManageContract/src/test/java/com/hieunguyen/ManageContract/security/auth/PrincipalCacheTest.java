@@ -0,0 +1,64 @@
+package com.hieunguyen.ManageContract.security.auth;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class PrincipalCacheTest {
+
+    private CustomUserDetailsService userDetailsService;
+    private PrincipalCache cache;
+
+    @BeforeEach
+    void setUp() {
+        userDetailsService = mock(CustomUserDetailsService.class);
+        when(userDetailsService.loadUserByAccountId(7L)).thenAnswer(inv -> principal());
+        when(userDetailsService.loadUserByUsername("a@test.local")).thenAnswer(inv -> principal());
+
+        cache = new PrincipalCache(userDetailsService, mock(PermissionEpochService.class), mock(StringRedisTemplate.class),
+                mock(RedisMessageListenerContainer.class), new ObjectMapper(), new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "ttlSeconds", 300L);
+        ReflectionTestUtils.setField(cache, "maxSize", 100L);
+        ReflectionTestUtils.setField(cache, "redisEnabled", false);
+        cache.init();
+    }
+
+    @Test
+    void secondLookupDoesNotHitDatabase() {
+        CustomUserDetails first = cache.getByAccountId(7L);
+        CustomUserDetails second = cache.getByAccountId(7L);
+        CustomUserDetails byEmail = cache.getByEmail("a@test.local");
+
+        assertSame(first, second);
+        assertSame(first, byEmail);
+        assertNull(first.getPassword());
+        assertTrue(first.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("ROLE_ADMIN")));
+        verify(userDetailsService, times(1)).loadUserByAccountId(7L);
+        verifyNoMoreInteractions(userDetailsService);
+    }
+
+    @Test
+    void evictForcesReload() {
+        cache.getByAccountId(7L);
+        cache.evict(7L);
+        cache.getByAccountId(7L);
+        cache.evictAll();
+        cache.getByAccountId(7L);
+
+        verify(userDetailsService, times(3)).loadUserByAccountId(7L);
+    }
+
+    private static CustomUserDetails principal() {
+        return new CustomUserDetails(7L, 3L, "a@test.local", true, List.of("ROLE_ADMIN", "contract.approve"));
+    }
+}
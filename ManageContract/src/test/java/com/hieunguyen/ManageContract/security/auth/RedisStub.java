@@ -0,0 +1,302 @@
+package com.hieunguyen.ManageContract.security.auth;
+
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiFunction;
+
+/**
+ * Redis (RESP2) tối giản cho test: string, set, sorted set, TTL.
+ * Chỉ hỗ trợ các lệnh mà code đang dùng; lệnh khác trả lỗi.
+ * Không chạy Lua: script được test đăng ký kèm bản Java tương đương (script(...)), gọi lại lệnh qua call(...).
+ */
+class RedisStub implements Closeable {
+
+    private final Map<String, Object> data = new HashMap<>();
+    private final Map<String, Long> expireAt = new HashMap<>();
+    final Map<String, Integer> commands = new ConcurrentHashMap<>();
+    private final Map<String, BiFunction<List<String>, List<String>, Object>> scripts = new ConcurrentHashMap<>();
+
+    private final ServerSocket server;
+    private final ExecutorService pool = Executors.newCachedThreadPool();
+    private LettuceConnectionFactory factory;
+
+    RedisStub() throws IOException {
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        pool.execute(() -> {
+            while (!server.isClosed()) {
+                try {
+                    Socket s = server.accept();
+                    pool.execute(() -> session(s));
+                } catch (IOException ignore) {
+                    return;
+                }
+            }
+        });
+    }
+
+    StringRedisTemplate template() {
+        factory = new LettuceConnectionFactory(new RedisStandaloneConfiguration("127.0.0.1", server.getLocalPort()));
+        factory.afterPropertiesSet();
+        factory.start();
+        return new StringRedisTemplate(factory);
+    }
+
+    synchronized boolean exists(String key) {
+        return live(key) != null;
+    }
+
+    /** Đăng ký cách chạy 1 Lua script (keys, args) → reply */
+    void script(String lua, BiFunction<List<String>, List<String>, Object> handler) {
+        scripts.put(lua, handler);
+    }
+
+    /** Chạy 1 lệnh (dùng trong handler script) */
+    synchronized Object call(String... cmd) {
+        return execute(List.of(cmd));
+    }
+
+    // ------------------------------------------------------------------
+
+    private void session(Socket s) {
+        try (s;
+             InputStream in = new BufferedInputStream(s.getInputStream());
+             OutputStream out = new BufferedOutputStream(s.getOutputStream())) {
+            List<String> cmd;
+            while ((cmd = read(in)) != null) {
+                commands.merge(cmd.get(0).toUpperCase(), 1, Integer::sum);
+                Object reply;
+                synchronized (this) {
+                    reply = execute(cmd);
+                }
+                write(out, reply);
+                out.flush();
+            }
+        } catch (IOException ignore) {
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object execute(List<String> c) {
+        String name = c.get(0).toUpperCase();
+        switch (name) {
+            case "PING": return new Status("PONG");
+            case "SELECT", "CLIENT": return new Status("OK");
+            case "SET": {
+                data.put(c.get(1), c.get(2));
+                expireAt.remove(c.get(1));
+                for (int i = 3; i + 1 < c.size(); i++) {
+                    String opt = c.get(i).toUpperCase();
+                    if (opt.equals("EX")) expire(c.get(1), Long.parseLong(c.get(i + 1)) * 1000);
+                    if (opt.equals("PX")) expire(c.get(1), Long.parseLong(c.get(i + 1)));
+                }
+                return new Status("OK");
+            }
+            case "SETEX": data.put(c.get(1), c.get(3)); expire(c.get(1), Long.parseLong(c.get(2)) * 1000); return new Status("OK");
+            case "PSETEX": data.put(c.get(1), c.get(3)); expire(c.get(1), Long.parseLong(c.get(2))); return new Status("OK");
+            case "GET": return live(c.get(1)) instanceof String v ? v : null;
+            case "MGET": {
+                List<Object> r = new ArrayList<>();
+                for (String k : c.subList(1, c.size())) r.add(live(k) instanceof String v ? v : null);
+                return r;
+            }
+            case "INCR": {
+                long v = live(c.get(1)) instanceof String s ? Long.parseLong(s) + 1 : 1;
+                data.put(c.get(1), String.valueOf(v));
+                return v;
+            }
+            case "DEL", "UNLINK": {
+                long n = 0;
+                for (String k : c.subList(1, c.size())) {
+                    if (live(k) != null) n++;
+                    data.remove(k);
+                    expireAt.remove(k);
+                }
+                return n;
+            }
+            case "EXISTS": {
+                long n = 0;
+                for (String k : c.subList(1, c.size())) if (live(k) != null) n++;
+                return n;
+            }
+            case "EXPIRE": return live(c.get(1)) == null ? 0L : expire(c.get(1), Long.parseLong(c.get(2)) * 1000);
+            case "PEXPIRE": return live(c.get(1)) == null ? 0L : expire(c.get(1), Long.parseLong(c.get(2)));
+            case "PTTL": {
+                if (live(c.get(1)) == null) return -2L;
+                Long at = expireAt.get(c.get(1));
+                return at == null ? -1L : at - System.currentTimeMillis();
+            }
+            case "SADD": {
+                Set<String> set = (Set<String>) data.computeIfAbsent(c.get(1), k -> new LinkedHashSet<String>());
+                long n = 0;
+                for (String m : c.subList(2, c.size())) if (set.add(m)) n++;
+                return n;
+            }
+            case "SREM": {
+                if (!(live(c.get(1)) instanceof Set<?> set)) return 0L;
+                long n = 0;
+                for (String m : c.subList(2, c.size())) if (set.remove(m)) n++;
+                return n;
+            }
+            case "SMEMBERS": return live(c.get(1)) instanceof Set<?> set ? new ArrayList<>(set) : List.of();
+            case "ZADD": {
+                Map<String, Double> z = (Map<String, Double>) data.computeIfAbsent(c.get(1), k -> new HashMap<String, Double>());
+                long n = 0;
+                for (int i = 2; i + 1 < c.size(); i += 2) {
+                    if (z.put(c.get(i + 1), Double.parseDouble(c.get(i))) == null) n++;
+                }
+                return n;
+            }
+            case "ZREM": {
+                if (!(live(c.get(1)) instanceof Map<?, ?> z)) return 0L;
+                long n = 0;
+                for (String m : c.subList(2, c.size())) if (z.remove(m) != null) n++;
+                return n;
+            }
+            case "ZCARD": return live(c.get(1)) instanceof Map<?, ?> z ? (long) z.size() : 0L;
+            case "ZRANGE": {
+                List<String> sorted = sorted(c.get(1));
+                int size = sorted.size();
+                int from = index(Integer.parseInt(c.get(2)), size);
+                int to = Math.min(index(Integer.parseInt(c.get(3)), size), size - 1);
+                return from > to ? List.of() : new ArrayList<>(sorted.subList(from, to + 1));
+            }
+            case "ZREMRANGEBYSCORE": {
+                if (!(live(c.get(1)) instanceof Map<?, ?> z)) return 0L;
+                double min = score(c.get(2)), max = score(c.get(3));
+                long before = z.size();
+                z.values().removeIf(v -> (Double) v >= min && (Double) v <= max);
+                return before - z.size();
+            }
+            case "ZSCORE": {
+                Object z = live(c.get(1));
+                Double v = z instanceof Map<?, ?> m ? (Double) m.get(c.get(2)) : null;
+                return v == null ? null : String.valueOf(v);
+            }
+            case "ZRANGEBYSCORE": {
+                if (!(live(c.get(1)) instanceof Map<?, ?> z)) return List.of();
+                double min = score(c.get(2)), max = score(c.get(3));
+                return sorted(c.get(1)).stream().filter(m -> {
+                    double v = (Double) z.get(m);
+                    return v >= min && v <= max;
+                }).toList();
+            }
+            case "PUBLISH": return 0L;
+            case "EVALSHA": return new Error("NOSCRIPT No matching script.");
+            case "EVAL": {
+                var handler = scripts.get(c.get(1));
+                if (handler == null) return new Error("ERR script not registered in stub");
+                int numKeys = Integer.parseInt(c.get(2));
+                return handler.apply(c.subList(3, 3 + numKeys), c.subList(3 + numKeys, c.size()));
+            }
+            default: return new Error("ERR unknown command '" + name + "'");
+        }
+    }
+
+    private Object live(String key) {
+        Long at = expireAt.get(key);
+        if (at != null && at <= System.currentTimeMillis()) {
+            data.remove(key);
+            expireAt.remove(key);
+        }
+        Object v = data.get(key);
+        if (v instanceof Collection<?> col && col.isEmpty() || v instanceof Map<?, ?> m && m.isEmpty()) return null;
+        return v;
+    }
+
+    private long expire(String key, long ms) {
+        expireAt.put(key, System.currentTimeMillis() + ms);
+        return 1L;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<String> sorted(String key) {
+        if (!(live(key) instanceof Map<?, ?> z)) return List.of();
+        List<Map.Entry<String, Double>> entries = new ArrayList<>(((Map<String, Double>) z).entrySet());
+        entries.sort(Map.Entry.<String, Double>comparingByValue().thenComparing(Map.Entry.comparingByKey()));
+        return entries.stream().map(Map.Entry::getKey).toList();
+    }
+
+    private static int index(int i, int size) {
+        return i < 0 ? Math.max(0, size + i) : i;
+    }
+
+    private static double score(String s) {
+        if (s.equals("-inf")) return Double.NEGATIVE_INFINITY;
+        if (s.equals("+inf") || s.equals("inf")) return Double.POSITIVE_INFINITY;
+        return Double.parseDouble(s);
+    }
+
+    // ------------------------------------------------------------------
+    // RESP2
+    // ------------------------------------------------------------------
+
+    private record Status(String text) { }
+
+    private record Error(String text) { }
+
+    private static List<String> read(InputStream in) throws IOException {
+        String line = line(in);
+        if (line == null) return null;
+        if (line.charAt(0) != '*') return List.of(line.trim().split("\\s+")); // inline command
+        int n = Integer.parseInt(line.substring(1));
+        List<String> args = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            int len = Integer.parseInt(line(in).substring(1));
+            byte[] buf = in.readNBytes(len);
+            in.readNBytes(2);
+            args.add(new String(buf, StandardCharsets.UTF_8));
+        }
+        return args;
+    }
+
+    private static String line(InputStream in) throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\r') {
+                in.read();
+                return buf.toString(StandardCharsets.UTF_8);
+            }
+            buf.write(b);
+        }
+        return null;
+    }
+
+    private static void write(OutputStream out, Object reply) throws IOException {
+        if (reply == null) {
+            out.write("$-1\r\n".getBytes(StandardCharsets.US_ASCII));
+        } else if (reply instanceof Status s) {
+            out.write(("+" + s.text() + "\r\n").getBytes(StandardCharsets.UTF_8));
+        } else if (reply instanceof Error e) {
+            out.write(("-" + e.text() + "\r\n").getBytes(StandardCharsets.UTF_8));
+        } else if (reply instanceof Long l) {
+            out.write((":" + l + "\r\n").getBytes(StandardCharsets.US_ASCII));
+        } else if (reply instanceof String str) {
+            byte[] b = str.getBytes(StandardCharsets.UTF_8);
+            out.write(("$" + b.length + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.write(b);
+            out.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+        } else if (reply instanceof List<?> list) {
+            out.write(("*" + list.size() + "\r\n").getBytes(StandardCharsets.US_ASCII));
+            for (Object o : list) write(out, o);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (factory != null) factory.destroy();
+        server.close();
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,94 @@
+package com.hieunguyen.ManageContract.security.auth;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionRegistryTest {
+
+    private RedisStub redis;
+    private SessionRegistry sessions;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        redis = new RedisStub();
+        sessions = new SessionRegistry(redis.template());
+        ReflectionTestUtils.setField(sessions, "refreshTokenExpiration", 60_000L);
+        ReflectionTestUtils.setField(sessions, "maxPerAccount", 3);
+        redis.script(SessionRegistry.ROTATE_SCRIPT.getScriptAsString(), (keys, args) -> {
+            Object cur = redis.call("GET", keys.get(0));
+            if (cur == null) return 0L;
+            if (!cur.equals(args.get(0))) return -1L;
+            redis.call("SET", keys.get(0), args.get(1), "PX", args.get(2));
+            return 1L;
+        });
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        redis.close();
+    }
+
+    @Test
+    void multipleDevicesAndRevokeOne() {
+        sessions.register("a@test.local", "s1", "token-1");
+        sessions.register("a@test.local", "s2", "token-2");
+
+        assertTrue(sessions.isCurrent("s1", "token-1"));
+        assertTrue(sessions.isCurrent("s2", "token-2"));
+        assertFalse(sessions.isCurrent("s1", "token-2"));
+
+        sessions.revoke("a@test.local", "s1");
+        assertFalse(sessions.isCurrent("s1", "token-1"));
+        assertTrue(sessions.isCurrent("s2", "token-2"));
+        assertEquals(1, sessions.sessions("a@test.local").size());
+    }
+
+    @Test
+    void revokeAllTouchesOnlyTheAccountIndex() {
+        sessions.register("a@test.local", "s1", "token-1");
+        sessions.register("a@test.local", "s2", "token-2");
+        sessions.register("b@test.local", "s3", "token-3");
+
+        assertEquals(Set.of("s1", "s2"), sessions.revokeAll("a@test.local"));
+
+        assertFalse(sessions.exists("s1"));
+        assertFalse(sessions.exists("s2"));
+        assertTrue(sessions.isCurrent("s3", "token-3"));
+        assertNull(redis.commands.get("KEYS"));
+    }
+
+    @Test
+    void rotationInvalidatesOldTokenAndDetectsReuse() {
+        sessions.register("a@test.local", "s1", "token-1");
+
+        assertEquals(SessionRegistry.Rotation.ROTATED, sessions.rotate("a@test.local", "s1", "token-1", "token-2"));
+        assertTrue(sessions.isCurrent("s1", "token-2"));
+        assertFalse(sessions.isCurrent("s1", "token-1"));
+
+        // token-1 bị dùng lại sau khi đã xoay
+        assertEquals(SessionRegistry.Rotation.REUSED, sessions.rotate("a@test.local", "s1", "token-1", "token-3"));
+        assertTrue(sessions.isCurrent("s1", "token-2"));
+
+        sessions.revoke("a@test.local", "s1");
+        assertEquals(SessionRegistry.Rotation.UNKNOWN, sessions.rotate("a@test.local", "s1", "token-2", "token-4"));
+    }
+
+    @Test
+    void oldestSessionIsDroppedOverTheLimit() throws Exception {
+        Set<String> evicted = Set.of();
+        for (int i = 1; i <= 4; i++) {
+            evicted = sessions.register("a@test.local", "s" + i, "token-" + i);
+            Thread.sleep(2); // score khác nhau
+        }
+
+        assertEquals(Set.of("s1"), evicted);
+        assertFalse(sessions.exists("s1"));
+        assertEquals(3, sessions.sessions("a@test.local").size());
+    }
+}
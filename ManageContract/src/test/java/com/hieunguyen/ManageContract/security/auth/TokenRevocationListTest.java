@@ -0,0 +1,75 @@
+package com.hieunguyen.ManageContract.security.auth;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class TokenRevocationListTest {
+
+    private RedisStub redis;
+    private StringRedisTemplate template;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        redis = new RedisStub();
+        template = redis.template();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        redis.close();
+    }
+
+    @Test
+    void revokedSessionIsDeniedOthersAnsweredInMemory() {
+        TokenRevocationList list = newList();
+        list.revoke(Set.of("s1"));
+
+        assertTrue(list.isRevoked("s1"));
+        assertFalse(list.isRevoked(null));
+
+        int zscoreBefore = redis.commands.getOrDefault("ZSCORE", 0);
+        for (int i = 0; i < 1000; i++) assertFalse(list.isRevoked(UUID.randomUUID().toString()));
+        // bloom trả lời hầu hết trong bộ nhớ; chỉ false positive mới hỏi Redis
+        assertTrue(redis.commands.getOrDefault("ZSCORE", 0) - zscoreBefore < 10);
+    }
+
+    @Test
+    void newNodeLoadsRevocationsFromRedis() {
+        newList().revoke(Set.of("s1", "s2"));
+
+        TokenRevocationList other = newList();
+        assertTrue(other.isRevoked("s1"));
+        assertTrue(other.isRevoked("s2"));
+        assertFalse(other.isRevoked("s3"));
+    }
+
+    @Test
+    void bloomFilterFalsePositiveRateStaysNearTarget() {
+        BloomFilter filter = new BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) filter.put("in-" + i);
+        for (int i = 0; i < 10_000; i++) assertTrue(filter.mightContain("in-" + i));
+
+        int fp = 0;
+        for (int i = 0; i < 100_000; i++) if (filter.mightContain("out-" + i)) fp++;
+        assertTrue(fp < 2_000, "false positives: " + fp);
+    }
+
+    private TokenRevocationList newList() {
+        TokenRevocationList list = new TokenRevocationList(template, mock(RedisMessageListenerContainer.class));
+        ReflectionTestUtils.setField(list, "jwtExpiration", 60_000L);
+        ReflectionTestUtils.setField(list, "expectedEntries", 1_000L);
+        ReflectionTestUtils.setField(list, "fpp", 0.001);
+        list.init();
+        return list;
+    }
+}
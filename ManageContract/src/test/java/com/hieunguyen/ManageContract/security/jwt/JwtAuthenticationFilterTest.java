@@ -0,0 +1,106 @@
+package com.hieunguyen.ManageContract.security.jwt;
+
+import com.hieunguyen.ManageContract.security.auth.CustomUserDetails;
+import com.hieunguyen.ManageContract.security.auth.PermissionEpochService;
+import com.hieunguyen.ManageContract.security.auth.PrincipalCache;
+import com.hieunguyen.ManageContract.security.auth.TokenRevocationList;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class JwtAuthenticationFilterTest {
+
+    private PermissionEpochService epochs;
+    private PrincipalCache principalCache;
+    private TokenRevocationList revocations;
+    private JwtUtil jwtUtil;
+    private JwtAuthenticationFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        epochs = mock(PermissionEpochService.class);
+        when(epochs.current(7L)).thenReturn(5L);
+        principalCache = mock(PrincipalCache.class);
+        when(principalCache.getByAccountId(7L)).thenReturn(principal());
+
+        jwtUtil = new JwtUtil(epochs);
+        ReflectionTestUtils.setField(jwtUtil, "secret", "test-secret-test-secret-test-secret-0123456789");
+        ReflectionTestUtils.setField(jwtUtil, "jwtExpiration", 60_000L);
+        ReflectionTestUtils.setField(jwtUtil, "refreshTokenExpiration", 120_000L);
+        ReflectionTestUtils.setField(jwtUtil, "verifiedCacheSize", 100L);
+        jwtUtil.init();
+
+        revocations = mock(TokenRevocationList.class);
+        filter = new JwtAuthenticationFilter(jwtUtil, principalCache, epochs, revocations);
+        ReflectionTestUtils.setField(filter, "statelessAuth", true);
+    }
+
+    @AfterEach
+    void clear() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void statelessModeAuthenticatesFromClaims() throws Exception {
+        Authentication auth = run(token());
+
+        assertNotNull(auth);
+        assertEquals("a@test.local", auth.getName());
+        assertTrue(auth.getAuthorities().stream().anyMatch(a -> a.getAuthority().equals("contract.approve")));
+        assertEquals(3L, ((CustomUserDetails) auth.getPrincipal()).getEmployeeId());
+        verifyNoInteractions(principalCache);
+    }
+
+    @Test
+    void staleTokenFallsBackToPrincipalCache() throws Exception {
+        String token = token();
+        when(epochs.current(7L)).thenReturn(6L); // quyền đã đổi sau khi phát token
+
+        assertNotNull(run(token));
+        verify(principalCache).getByAccountId(7L);
+    }
+
+    @Test
+    void revokedSessionIsNotAuthenticated() throws Exception {
+        Map<String, Object> claims = jwtUtil.putPrincipalClaims(new HashMap<>(), principal());
+        claims.put(JwtUtil.CLAIM_SESSION_ID, "s1");
+        when(revocations.isRevoked("s1")).thenReturn(true);
+
+        assertNull(run(jwtUtil.generateTokenWithClaims("a@test.local", claims)));
+        verifyNoInteractions(principalCache);
+    }
+
+    @Test
+    void refreshTokenIsNotABearerToken() throws Exception {
+        assertNull(run(jwtUtil.generateRefreshToken("a@test.local", "s1")));
+        verifyNoInteractions(principalCache);
+    }
+
+    private Authentication run(String token) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("Authorization", "Bearer " + token);
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+
+    private String token() {
+        return jwtUtil.generateTokenWithClaims("a@test.local", jwtUtil.putPrincipalClaims(new HashMap<>(), principal()));
+    }
+
+    private static CustomUserDetails principal() {
+        return new CustomUserDetails(7L, 3L, "a@test.local", true, List.of("ROLE_ADMIN", "contract.approve"));
+    }
+}
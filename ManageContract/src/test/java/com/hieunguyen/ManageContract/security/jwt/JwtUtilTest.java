@@ -0,0 +1,140 @@
+package com.hieunguyen.ManageContract.security.jwt;
+
+import com.hieunguyen.ManageContract.security.auth.PermissionEpochService;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class JwtUtilTest {
+
+    private static final String SECRET = "test-secret-test-secret-test-secret-0123456789";
+
+    private JwtUtil jwtUtil;
+
+    @BeforeEach
+    void setUp() {
+        jwtUtil = jwtUtil(10_000L);
+    }
+
+    @Test
+    void verifyParsesOnceAndReusesVerifiedToken() {
+        String token = token();
+
+        VerifiedToken first = jwtUtil.verify(token);
+        VerifiedToken second = jwtUtil.verify(token);
+
+        assertNotNull(first);
+        assertSame(first, second);
+        assertEquals(7L, first.accountId());
+        assertEquals("a@test.local", first.email());
+    }
+
+    @Test
+    void cachedTokenIsNotServedPastItsExpiry() throws Exception {
+        String token = jwtUtil.generateTokenWithClaims("a@test.local", new HashMap<>(), 2);
+
+        assertNotNull(jwtUtil.verify(token));
+        assertSame(jwtUtil.verify(token), jwtUtil.verify(token));
+
+        Thread.sleep(3_100); // exp của JWT làm tròn theo giây
+        assertNull(jwtUtil.verify(token));
+    }
+
+    @Test
+    void rejectsTamperedAndExpiredTokens() {
+        String token = token();
+        String tampered = token.substring(0, token.length() - 2) + (token.endsWith("AA") ? "BB" : "AA");
+        assertNull(jwtUtil.verify(tampered));
+
+        String expired = jwtUtil.generateTokenWithClaims("a@test.local", new HashMap<>(), -1);
+        assertNull(jwtUtil.verify(expired));
+    }
+
+    @Test
+    void refreshTokenIsNotAcceptedAsAccessToken() {
+        String refresh = jwtUtil.generateRefreshToken("a@test.local", "s1");
+
+        assertTrue(jwtUtil.isRefreshToken(refresh));
+        assertNull(jwtUtil.verify(refresh));
+        assertFalse(jwtUtil.isRefreshToken(token()));
+    }
+
+    /**
+     * Đường filter trước (validateToken + extractEmail + extractAccountId, mỗi bước dựng key và parse lại)
+     * so với verify() sau (key dựng sẵn; parse 1 lần, và token gặp lại lấy từ cache).
+     * Chạy: mvn test -Dtest=JwtUtilTest -Dbenchmark=true [-Dbenchmark.rounds=20000]
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkFilterPath() {
+        int rounds = Integer.getInteger("benchmark.rounds", 20_000);
+        String token = token();
+        JwtUtil uncached = jwtUtil(0L);
+
+        // cùng kết quả trước/sau thì số đo mới so được
+        Claims legacy = legacyFilterPath(token);
+        VerifiedToken vt = jwtUtil.verify(token);
+        assertEquals(legacy.getSubject(), vt.email());
+        assertEquals(((Number) legacy.get(JwtUtil.CLAIM_ACCOUNT_ID)).longValue(), vt.accountId());
+
+        for (int i = 0; i < 2_000; i++) { legacyFilterPath(token); uncached.verify(token); jwtUtil.verify(token); }
+
+        double legacyUs = usPerOp(rounds, () -> legacyFilterPath(token));
+        double parseOnceUs = usPerOp(rounds, () -> uncached.verify(token));
+        double cachedUs = usPerOp(rounds, () -> jwtUtil.verify(token));
+
+        System.out.printf("[benchmark] JWT filter path: before=%.2f us/op parse-once=%.2f us/op cached=%.2f us/op%n",
+                legacyUs, parseOnceUs, cachedUs);
+        assertTrue(cachedUs < legacyUs, "verify() có cache phải nhanh hơn đường cũ");
+    }
+
+    // ------------------------------------------------------------------
+
+    /** Tái hiện đường filter cũ: 3 lần dựng key + parse + verify HMAC */
+    private static Claims legacyFilterPath(String token) {
+        Claims c = null;
+        for (int i = 0; i < 3; i++) {
+            c = Jwts.parserBuilder()
+                    .setSigningKey(Keys.hmacShaKeyFor(SECRET.getBytes(StandardCharsets.UTF_8)))
+                    .build()
+                    .parseClaimsJws(token)
+                    .getBody();
+        }
+        return c;
+    }
+
+    private static double usPerOp(int rounds, Runnable op) {
+        long t0 = System.nanoTime();
+        for (int i = 0; i < rounds; i++) op.run();
+        return (System.nanoTime() - t0) / 1e3 / rounds;
+    }
+
+    private String token() {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(JwtUtil.CLAIM_ACCOUNT_ID, 7L);
+        claims.put(JwtUtil.CLAIM_AUTHORITIES, List.of("ROLE_ADMIN", "contract.approve"));
+        return jwtUtil.generateTokenWithClaims("a@test.local", claims);
+    }
+
+    private static JwtUtil jwtUtil(long cacheSize) {
+        JwtUtil util = new JwtUtil(mock(PermissionEpochService.class));
+        ReflectionTestUtils.setField(util, "secret", SECRET);
+        ReflectionTestUtils.setField(util, "jwtExpiration", 3_600_000L);
+        ReflectionTestUtils.setField(util, "refreshTokenExpiration", 7_200_000L);
+        ReflectionTestUtils.setField(util, "verifiedCacheSize", cacheSize);
+        util.init();
+        return util;
+    }
+}
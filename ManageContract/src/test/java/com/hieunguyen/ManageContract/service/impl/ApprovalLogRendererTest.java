@@ -0,0 +1,301 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import com.hieunguyen.ManageContract.dto.approval.ApprovalLogRow;
+import com.hieunguyen.ManageContract.entity.AuthAccount;
+import com.hieunguyen.ManageContract.entity.ContractApproval;
+import com.hieunguyen.ManageContract.entity.Department;
+import com.hieunguyen.ManageContract.entity.Employee;
+import org.docx4j.XmlUtils;
+import org.docx4j.wml.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.lang.reflect.Method;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ApprovalLogRendererTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2025, 1, 2, 8, 30, 0);
+
+    @Test
+    void rowsFallBackLikeTheOldResolution() {
+        ApprovalLogRow named = new ApprovalLogRow(1L, 1, "Nguyễn Văn A", "a@test.local", "Phòng IT", null,
+                T0, T0.plusDays(1), "Đồng ý");
+        ApprovalLogRow emailOnly = new ApprovalLogRow(2L, 2, " ", "b@test.local", null, "Ban giám đốc",
+                null, T0, null);
+        ApprovalLogRow unassigned = new ApprovalLogRow(3L, 3, null, null, null, null, null, null, null);
+
+        assertEquals("Nguyễn Văn A", named.actor());
+        assertEquals("Phòng IT", named.orgUnit());
+        assertEquals(T0, named.timestamp());
+        assertEquals("b@test.local", emailOnly.actor());
+        assertEquals("Ban giám đốc", emailOnly.orgUnit());
+        assertEquals(T0, emailOnly.timestamp());
+        assertEquals("-", unassigned.actor());
+        assertEquals("-", unassigned.orgUnit());
+        assertEquals("", ApprovalLogRenderer.formatTs(unassigned.timestamp()));
+    }
+
+    @Test
+    void blockOrdersByStepThenTimeAndNumbersRows() {
+        List<ApprovalLogRow> rows = List.of(
+                new ApprovalLogRow(1L, null, "Cuối", null, null, null, null, null, null),
+                new ApprovalLogRow(2L, 2, "Hai muộn", null, null, null, T0.plusHours(2), null, null),
+                new ApprovalLogRow(3L, 2, "Hai sớm", null, null, null, T0, null, null),
+                new ApprovalLogRow(4L, 1, "Một", null, null, null, null, null, "Ok"));
+
+        SdtBlock sdt = ApprovalLogRenderer.block(rows, "APPROVAL_LOG");
+        assertEquals("APPROVAL_LOG", sdt.getSdtPr().getTag().getVal());
+        Tbl tbl = (Tbl) sdt.getSdtContent().getContent().get(3);
+        assertEquals(5, tbl.getContent().size());
+
+        assertEquals(List.of("1", "Một", "-", "", "Ok"), cells(tbl, 1));
+        assertEquals("Hai sớm", cells(tbl, 2).get(1));
+        assertEquals("02/01/2025 08:30:00", cells(tbl, 2).get(3));
+        assertEquals("Hai muộn", cells(tbl, 3).get(1));
+        assertEquals(List.of("4", "Cuối"), cells(tbl, 4).subList(0, 2));
+
+        assertNull(ApprovalLogRenderer.block(List.of(), "APPROVAL_LOG"));
+    }
+
+    @Test
+    void fiftyStepLogIsOneRowPerStepAndDeterministic() {
+        List<ApprovalLogRow> rows = new ArrayList<>(50);
+        for (int i = 49; i >= 0; i--) {
+            rows.add(new ApprovalLogRow((long) i, i + 1, "Người duyệt " + i, "u" + i + "@test.local",
+                    "Phòng " + (i % 5), i % 2 == 0 ? null : "Ban " + i, T0.plusMinutes(i), null, "Ý kiến " + i));
+        }
+
+        SdtBlock sdt = ApprovalLogRenderer.block(rows, "APPROVAL_LOG");
+        Tbl tbl = (Tbl) sdt.getSdtContent().getContent().get(3);
+        assertEquals(51, tbl.getContent().size()); // header + 50 bước
+        assertEquals("Người duyệt 0", cells(tbl, 1).get(1));
+        assertEquals("Người duyệt 49", cells(tbl, 50).get(1));
+
+        // dựng lại từ cùng dữ liệu cho ra đúng XML (không giữ trạng thái giữa các lần dựng)
+        assertEquals(XmlUtils.marshaltoString(sdt),
+                XmlUtils.marshaltoString(ApprovalLogRenderer.block(rows, "APPROVAL_LOG")));
+    }
+
+    /**
+     * Chi phí dựng trang nhật ký cho luồng 50 bước: đường cũ (dò getter bằng reflection trên entity rồi dựng bảng)
+     * so với ApprovalLogRenderer trên ApprovalLogRow đã chiếu sẵn.
+     * Chạy: mvn test -Dtest=ApprovalLogRendererTest -Dbenchmark=true [-Dbenchmark.steps=50 -Dbenchmark.rounds=2000]
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkFiftyStepLog() {
+        int steps = Integer.getInteger("benchmark.steps", 50);
+        int rounds = Integer.getInteger("benchmark.rounds", 2000);
+        List<ContractApproval> approvals = new ArrayList<>(steps);
+        List<ApprovalLogRow> rows = new ArrayList<>(steps);
+        for (int i = 0; i < steps; i++) {
+            Department own = new Department();
+            own.setName("Phòng " + (i % 5));
+            AuthAccount account = new AuthAccount();
+            account.setEmail("u" + i + "@test.local");
+            Employee approver = Employee.builder().id((long) i).fullName("Người duyệt " + i)
+                    .account(account).department(own).build();
+            Department assigned = null;
+            if (i % 2 == 1) {
+                assigned = new Department();
+                assigned.setName("Ban " + i);
+            }
+            approvals.add(ContractApproval.builder().id((long) i).stepOrder(i + 1).approver(approver)
+                    .department(assigned).approvedAt(T0.plusMinutes(i)).comment("Ý kiến " + i).build());
+            rows.add(new ApprovalLogRow((long) i, i + 1, approver.getFullName(), account.getEmail(), own.getName(),
+                    assigned != null ? assigned.getName() : null, T0.plusMinutes(i), null, "Ý kiến " + i));
+        }
+
+        // 2 đường dựng cùng 1 bảng thì số đo mới so được. Cột "Đơn vị" bỏ qua: đường cũ dò getter theo thứ tự
+        // getMethods() nên có thể vớ getApprovedAt ("approv") thay cho người duyệt và in "-"
+        Tbl legacy = (Tbl) LegacyReflectiveLog.block(approvals).getSdtContent().getContent().get(3);
+        Tbl projected = (Tbl) ApprovalLogRenderer.block(rows, "APPROVAL_LOG").getSdtContent().getContent().get(3);
+        assertEquals(steps + 1, legacy.getContent().size());
+        for (int i = 0; i <= steps; i++) {
+            List<String> before = new ArrayList<>(cells(legacy, i));
+            List<String> after = new ArrayList<>(cells(projected, i));
+            before.remove(2);
+            after.remove(2);
+            assertEquals(before, after, "dòng " + i);
+        }
+
+        for (int i = 0; i < 200; i++) {
+            LegacyReflectiveLog.block(approvals);
+            ApprovalLogRenderer.block(rows, "APPROVAL_LOG");
+        }
+
+        long t0 = System.nanoTime();
+        for (int i = 0; i < rounds; i++) LegacyReflectiveLog.block(approvals);
+        double legacyUs = (System.nanoTime() - t0) / 1e3 / rounds;
+
+        t0 = System.nanoTime();
+        for (int i = 0; i < rounds; i++) ApprovalLogRenderer.block(rows, "APPROVAL_LOG");
+        double projectedUs = (System.nanoTime() - t0) / 1e3 / rounds;
+
+        System.out.printf("[benchmark] approval log steps=%d reflective=%.1f us/op projection=%.1f us/op speedup=%.1fx%n",
+                steps, legacyUs, projectedUs, legacyUs / projectedUs);
+        assertTrue(projectedUs < legacyUs, "ApprovalLogRenderer phải nhanh hơn đường reflection cũ");
+    }
+
+    // ------------------------------------------------------------------
+
+    /**
+     * Tái hiện cách ContractFileServiceImpl.buildApprovalTable cũ lấy giá trị ô (extractActorName, extractOrgUnit,
+     * scanStringGetters, scanObjectGetters, deepName, invokeDate/invokeString) để làm mốc so sánh.
+     */
+    private static final class LegacyReflectiveLog {
+
+        static SdtBlock block(List<ContractApproval> approvals) {
+            List<ApprovalLogRow> resolved = new ArrayList<>(approvals.size());
+            for (ContractApproval a : approvals) {
+                LocalDateTime approvedAt = invokeDate(a, "getApprovedAt");
+                LocalDateTime ts = approvedAt != null ? approvedAt
+                        : invokeDate(a, "getUpdatedAt") != null ? invokeDate(a, "getUpdatedAt") : invokeDate(a, "getCreatedAt");
+                String note = firstNonBlank(
+                        safe(() -> invokeString(a, "getDecisionNote")),
+                        safe(() -> invokeString(a, "getComment")),
+                        safe(() -> invokeString(a, "getNote")),
+                        "");
+                resolved.add(new ApprovalLogRow(a.getId(), a.getStepOrder(), extractActorName(a), null, null,
+                        extractOrgUnit(a), ts, null, note));
+            }
+            return ApprovalLogRenderer.block(resolved, "APPROVAL_LOG");
+        }
+
+        private static String extractActorName(ContractApproval a) {
+            try {
+                if (a.getApprover() != null) {
+                    String n = deepName(a.getApprover());
+                    if (notBlank(n)) return n;
+                }
+            } catch (Throwable ignore) { }
+            String fromSelf = firstNonBlank(
+                    safe(() -> invokeString(a, "getApproverName")),
+                    safe(() -> invokeString(a, "getSignerName")),
+                    safe(() -> invokeString(a, "getActorName")));
+            if (notBlank(fromSelf)) return fromSelf;
+            String deep = deepName(scanObjectGetters(a, List.of("approv", "sign", "actor", "user", "employee", "account",
+                    "handler", "processor", "review", "creator", "created", "updater", "updated", "owner", "assign",
+                    "assignee", "assigned")));
+            return notBlank(deep) ? deep : "-";
+        }
+
+        private static String extractOrgUnit(Object a) {
+            String v = scanStringGetters(a,
+                    List.of("departmentname", "deptname", "orgname", "organizationname", "unitname", "phongban"),
+                    List.of("department", "dept", "org", "organization", "unit", "phong", "ban"));
+            if (notBlank(v)) return v;
+            String deep = deepName(scanObjectGetters(a, List.of("department", "dept", "org", "organization", "unit")));
+            if (notBlank(deep)) return deep;
+            Object actor = scanObjectGetters(a, List.of("approv", "sign", "actor", "user", "employee", "account",
+                    "assign", "assignee", "assigned", "creator", "created", "updater", "updated"));
+            if (actor != null) {
+                String viaActor = deepName(scanObjectGetters(actor, List.of("department", "dept", "organization", "unit")));
+                if (notBlank(viaActor)) return viaActor;
+            }
+            return "-";
+        }
+
+        private static String scanStringGetters(Object root, List<String> valueKeys, List<String> roleKeys) {
+            try {
+                for (Method m : root.getClass().getMethods()) {
+                    if (!m.getName().startsWith("get") || m.getParameterCount() != 0 || m.getReturnType() != String.class) continue;
+                    String lower = m.getName().toLowerCase(Locale.ROOT);
+                    if (valueKeys.stream().anyMatch(lower::contains) && roleKeys.stream().anyMatch(lower::contains)) {
+                        String v = (String) m.invoke(root);
+                        if (notBlank(v)) return v;
+                    }
+                }
+            } catch (Exception ignore) { }
+            return null;
+        }
+
+        private static Object scanObjectGetters(Object root, List<String> roleKeys) {
+            try {
+                for (Method m : root.getClass().getMethods()) {
+                    if (!m.getName().startsWith("get") || m.getParameterCount() != 0) continue;
+                    Class<?> rt = m.getReturnType();
+                    if (rt.isPrimitive() || rt == String.class) continue;
+                    String lower = m.getName().toLowerCase(Locale.ROOT);
+                    if (roleKeys.stream().anyMatch(lower::contains)) {
+                        Object o = m.invoke(root);
+                        if (o != null) return o;
+                    }
+                }
+            } catch (Exception ignore) { }
+            return null;
+        }
+
+        private static String deepName(Object o) {
+            if (o == null) return null;
+            try {
+                for (String g : List.of("getFullName", "getFullname", "getDisplayName", "getName",
+                        "getUsername", "getUserName", "getEmail", "getEmailAddress")) {
+                    try {
+                        Object v = o.getClass().getMethod(g).invoke(o);
+                        if (v instanceof String s && notBlank(s)) return s;
+                    } catch (NoSuchMethodException ignore) { }
+                }
+                for (String g : List.of("getUser", "getAccount", "getEmployee", "getPerson", "getOwner")) {
+                    try {
+                        String s = deepName(o.getClass().getMethod(g).invoke(o));
+                        if (notBlank(s)) return s;
+                    } catch (NoSuchMethodException ignore) { }
+                }
+                for (Method m : o.getClass().getMethods()) {
+                    if (!m.getName().startsWith("get") || m.getParameterCount() != 0 || m.getReturnType() != String.class) continue;
+                    if (m.getName().toLowerCase(Locale.ROOT).contains("name")) {
+                        String v = (String) m.invoke(o);
+                        if (notBlank(v)) return v;
+                    }
+                }
+                String ts = String.valueOf(o);
+                if (notBlank(ts) && !ts.matches(".+@\\p{XDigit}+")) return ts;
+            } catch (Exception ignore) { }
+            return null;
+        }
+
+        private static LocalDateTime invokeDate(ContractApproval a, String getter) {
+            try { return (LocalDateTime) ContractApproval.class.getMethod(getter).invoke(a); }
+            catch (Exception ignore) { return null; }
+        }
+
+        private static String invokeString(ContractApproval a, String getter) {
+            try {
+                Object v = ContractApproval.class.getMethod(getter).invoke(a);
+                return v != null ? v.toString() : null;
+            } catch (Exception ignore) { return null; }
+        }
+
+        private static String firstNonBlank(String... values) {
+            for (String s : values) if (notBlank(s)) return s;
+            return null;
+        }
+
+        private static String safe(Supplier<String> s) {
+            try { return s.get(); } catch (Exception e) { return null; }
+        }
+
+        private static boolean notBlank(String s) {
+            return s != null && !s.isBlank();
+        }
+    }
+
+    private static List<String> cells(Tbl tbl, int row) {
+        List<String> out = new ArrayList<>();
+        for (Object c : ((Tr) XmlUtils.unwrap(tbl.getContent().get(row))).getContent()) {
+            Tc tc = (Tc) XmlUtils.unwrap(c);
+            P p = (P) tc.getContent().get(0);
+            R r = (R) p.getContent().get(0);
+            out.add(((Text) XmlUtils.unwrap(r.getContent().get(0))).getValue());
+        }
+        return out;
+    }
+}
@@ -0,0 +1,105 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import com.hieunguyen.ManageContract.repository.*;
+import com.hieunguyen.ManageContract.security.auth.PermissionEpochService;
+import com.hieunguyen.ManageContract.security.auth.PrincipalCache;
+import com.hieunguyen.ManageContract.security.auth.SessionRegistry;
+import com.hieunguyen.ManageContract.security.auth.TokenRevocationList;
+import com.hieunguyen.ManageContract.security.jwt.JwtUtil;
+import com.hieunguyen.ManageContract.service.EmailService;
+import com.hieunguyen.ManageContract.service.OtpService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class AuthServiceImplTest {
+
+    private static final String EMAIL = "a@test.local";
+
+    private final SessionRegistry sessions = mock(SessionRegistry.class);
+    private final TokenRevocationList revocations = mock(TokenRevocationList.class);
+    private JwtUtil jwtUtil;
+    private AuthServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        jwtUtil = new JwtUtil(mock(PermissionEpochService.class));
+        ReflectionTestUtils.setField(jwtUtil, "secret", "test-secret-test-secret-test-secret-0123456789");
+        ReflectionTestUtils.setField(jwtUtil, "jwtExpiration", 60_000L);
+        ReflectionTestUtils.setField(jwtUtil, "refreshTokenExpiration", 120_000L);
+        ReflectionTestUtils.setField(jwtUtil, "verifiedCacheSize", 100L);
+        ReflectionTestUtils.invokeMethod(jwtUtil, "init");
+
+        service = new AuthServiceImpl(mock(AuthAccountRepository.class), mock(RoleRepository.class),
+                mock(UserRepository.class), mock(UserRoleRepository.class), mock(PasswordEncoder.class), jwtUtil,
+                mock(EmailService.class), mock(OtpService.class), mock(StringRedisTemplate.class),
+                mock(DepartmentRepository.class), mock(PositionRepository.class), mock(PrincipalCache.class),
+                sessions, revocations);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void logoutEverywhereTakesTheAccountFromTheAuthenticatedPrincipal() {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(EMAIL, null, List.of()));
+        when(sessions.revokeAll(EMAIL)).thenReturn(Set.of("s1", "s2"));
+
+        service.logoutCurrentAccount();
+
+        verify(sessions).revokeAll(EMAIL);
+        verify(revocations).revoke(Set.of("s1", "s2"));
+    }
+
+    @Test
+    void anonymousCallerCannotLogOutEverywhere() {
+        SecurityContextHolder.getContext().setAuthentication(new AnonymousAuthenticationToken(
+                "key", "anonymousUser", AuthorityUtils.createAuthorityList("ROLE_ANONYMOUS")));
+
+        assertThrows(RuntimeException.class, () -> service.logoutCurrentAccount());
+        verify(sessions, never()).revokeAll(anyString());
+        verifyNoInteractions(revocations);
+    }
+
+    @Test
+    void accessTokenPostedAsRefreshTokenDoesNotRevokeTheSession() {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(JwtUtil.CLAIM_SESSION_ID, "s1");
+        String access = jwtUtil.generateTokenWithClaims(EMAIL, claims);
+
+        assertThrows(RuntimeException.class, () -> service.refreshToken(access));
+        assertThrows(RuntimeException.class, () -> service.logoutSession(access));
+
+        verify(sessions, never()).rotate(anyString(), anyString(), anyString(), anyString());
+        verify(sessions, never()).revoke(anyString(), anyString());
+        verify(revocations, never()).revoke(any());
+    }
+
+    @Test
+    void refreshTokenStillRevokesItsOwnSession() {
+        service.logoutSession(jwtUtil.generateRefreshToken(EMAIL, "s1"));
+
+        verify(sessions).revoke(EMAIL, "s1");
+        verify(revocations).revoke(Set.of("s1"));
+    }
+}
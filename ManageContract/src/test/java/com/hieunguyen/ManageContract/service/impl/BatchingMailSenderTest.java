@@ -0,0 +1,86 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchingMailSenderTest {
+
+    private SmtpStub smtp;
+    private SimpleMeterRegistry registry;
+    private JavaMailSenderImpl sender;
+    private BatchingMailSender batching;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        smtp = new SmtpStub();
+        sender = new JavaMailSenderImpl();
+        sender.setHost("127.0.0.1");
+        sender.setPort(smtp.port());
+
+        registry = new SimpleMeterRegistry();
+        batching = new BatchingMailSender(sender, registry);
+        ReflectionTestUtils.setField(batching, "enabled", true);
+        ReflectionTestUtils.setField(batching, "windowMs", 200L);
+        ReflectionTestUtils.setField(batching, "maxBatch", 50);
+        ReflectionTestUtils.setField(batching, "queueCapacity", 100);
+        ReflectionTestUtils.setField(batching, "sendTimeoutMs", 5000L);
+        batching.init();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        batching.shutdown();
+        smtp.close();
+    }
+
+    @Test
+    void sharesOneSessionAndIsolatesBadRecipient() throws Exception {
+        List<CompletableFuture<Void>> results = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            results.add(batching.submit(message(i == 7 ? "bad@test.local" : "user" + i + "@test.local")));
+        }
+
+        for (int i = 0; i < results.size(); i++) {
+            if (i == 7) {
+                CompletionException e = assertThrows(CompletionException.class, results.get(i)::join);
+                assertInstanceOf(MailSendException.class, e.getCause());
+            } else {
+                results.get(i).join();
+            }
+        }
+        assertEquals(19, smtp.messages.size());
+        assertEquals(1, smtp.sessions.get());
+        assertEquals(19.0, registry.get("mail.sent").tag("result", "ok").counter().count());
+        assertEquals(1.0, registry.get("mail.sent").tag("result", "failed").counter().count());
+    }
+
+    @Test
+    void sendBlocksUntilDelivered() throws Exception {
+        batching.send(message("otp@test.local"));
+        assertEquals(1, smtp.messages.size());
+    }
+
+    private MimeMessage message(String to) throws Exception {
+        MimeMessage mime = sender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(mime, false, "UTF-8");
+        helper.setFrom("noreply@test.local");
+        helper.setTo(to);
+        helper.setSubject("Mã OTP xác thực");
+        helper.setText("123456", false);
+        return mime;
+    }
+}
@@ -0,0 +1,111 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import com.hieunguyen.ManageContract.common.constants.ApprovalAction;
+import com.hieunguyen.ManageContract.common.constants.ApprovalStatus;
+import com.hieunguyen.ManageContract.common.constants.ApproverType;
+import com.hieunguyen.ManageContract.common.constants.ContractStatus;
+import com.hieunguyen.ManageContract.dto.CursorPageResponse;
+import com.hieunguyen.ManageContract.dto.approval.PendingApprovalRow;
+import com.hieunguyen.ManageContract.dto.contract.ContractResponse;
+import com.hieunguyen.ManageContract.entity.Department;
+import com.hieunguyen.ManageContract.entity.Employee;
+import com.hieunguyen.ManageContract.entity.Position;
+import com.hieunguyen.ManageContract.repository.*;
+import com.hieunguyen.ManageContract.security.jwt.SecurityUtil;
+import com.hieunguyen.ManageContract.service.ContractFileService;
+import com.hieunguyen.ManageContract.service.ConversionJobService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Pageable;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ContractApprovalServiceImplTest {
+
+    private static final String EMAIL = "duyet@congty.vn";
+
+    private final ContractApprovalRepository approvals = mock(ContractApprovalRepository.class);
+    private final ContractVariableValueRepository variables = mock(ContractVariableValueRepository.class);
+    private final UserRepository users = mock(UserRepository.class);
+    private ContractApprovalServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        Department department = new Department();
+        department.setId(3L);
+        Position position = new Position();
+        position.setId(4L);
+        Employee me = Employee.builder().id(2L).department(department).position(position).build();
+        when(users.findByAccount_Email(EMAIL)).thenReturn(Optional.of(me));
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(EMAIL, null, List.of()));
+
+        service = new ContractApprovalServiceImpl(mock(ContractRepository.class), users,
+                mock(ApprovalFlowRepository.class), approvals, mock(ContractSignatureRepository.class),
+                mock(ContractFileService.class), mock(ConversionJobService.class), new SecurityUtil(),
+                new ContractListAssembler(variables), mock(ApplicationEventPublisher.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void pendingPageIsOneQueryForMyStepsAndCursorIsTheLastApprovalId() {
+        when(approvals.findPendingRowsFor(anyLong(), any(), any(), any(), any(), anyLong(), any()))
+                .thenReturn(List.of(
+                        row(90L, 30L, ApproverType.USER),
+                        row(80L, 20L, ApproverType.POSITION),
+                        row(70L, 10L, ApproverType.USER)));
+
+        CursorPageResponse<ContractResponse> page = service.getMyPendingContractsPage(null, 2, false);
+
+        // USER theo nhân viên, POSITION theo phòng ban + chức vụ; lấy thêm 1 dòng để biết còn trang sau
+        verify(approvals, times(1)).findPendingRowsFor(eq(2L), eq(3L), eq(4L), eq(ApprovalStatus.PENDING),
+                eq(ContractStatus.PENDING_APPROVAL), eq(Long.MAX_VALUE), eq(ContractListAssembler.limitFor(2)));
+        verifyNoInteractions(variables);
+
+        assertEquals(List.of(30L, 20L), page.getContent().stream().map(ContractResponse::getId).toList());
+        assertTrue(page.isHasMore());
+        assertEquals(80L, page.getNextCursor());
+
+        ContractResponse first = page.getContent().get(0);
+        assertEquals(90L, first.getCurrentStepId());
+        assertEquals("Người duyệt: Nguyễn Văn A", first.getCurrentStepName());
+        assertEquals(ApprovalAction.SIGN_ONLY.name(), first.getCurrentStepAction());
+        assertEquals("{{SIGN_1}}", first.getCurrentStepSignaturePlaceholder());
+        assertEquals("Vị trí: Pháp chế - Trưởng phòng", page.getContent().get(1).getCurrentStepName());
+    }
+
+    @Test
+    void nextPageStartsBelowTheCursorAndLastPageHasNoCursor() {
+        when(approvals.findPendingRowsFor(anyLong(), any(), any(), any(), any(), anyLong(), any()))
+                .thenReturn(List.of(row(70L, 10L, ApproverType.USER)));
+
+        CursorPageResponse<ContractResponse> page = service.getMyPendingContractsPage(80L, 2, false);
+
+        verify(approvals).findPendingRowsFor(anyLong(), any(), any(), any(), any(), eq(80L), any(Pageable.class));
+        assertEquals(1, page.getContent().size());
+        assertFalse(page.isHasMore());
+        assertNull(page.getNextCursor());
+    }
+
+    private static PendingApprovalRow row(long approvalId, long contractId, ApproverType type) {
+        return new PendingApprovalRow(approvalId, "{{SIGN_1}}", ApprovalAction.SIGN_ONLY, type,
+                "Nguyễn Văn A", "a@congty.vn", "Pháp chế", "Trưởng phòng",
+                contractId, "HD-" + contractId, "Contract " + contractId, ContractStatus.PENDING_APPROVAL,
+                null, 1L, "Template");
+    }
+}
@@ -0,0 +1,161 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ContractDocumentLocksTest {
+
+    @TempDir
+    Path tmp;
+
+    private StringRedisTemplate redis;
+    private ValueOperations<String, String> ops;
+    private ContractDocumentLocks locks;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redis = mock(StringRedisTemplate.class);
+        ops = mock(ValueOperations.class);
+        when(redis.opsForValue()).thenReturn(ops);
+        when(ops.setIfAbsent(anyString(), anyString(), any())).thenReturn(true);
+        locks = newLocks(false, 2_000L);
+    }
+
+    @Test
+    void sameContractIsSerializedAndDifferentStripesRunInParallel() throws Exception {
+        long a = 1L;
+        long b = 2L;
+        assertNotEquals(locks.stripe(a), locks.stripe(b));
+
+        AtomicInteger inside = new AtomicInteger();
+        AtomicInteger maxInside = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<?>> writers = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            writers.add(pool.submit(() -> locks.withLock(a, () -> {
+                maxInside.accumulateAndGet(inside.incrementAndGet(), Math::max);
+                Thread.sleep(5);
+                inside.decrementAndGet();
+                return null;
+            })));
+        }
+
+        // hợp đồng khác stripe không phải chờ
+        CountDownLatch holding = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?> slow = pool.submit(() -> locks.withLock(a, () -> { holding.countDown(); release.await(); return null; }));
+        holding.await(5, TimeUnit.SECONDS);
+        assertEquals("b", locks.withLock(b, () -> "b"));
+        release.countDown();
+
+        slow.get(5, TimeUnit.SECONDS);
+        for (Future<?> f : writers) f.get(5, TimeUnit.SECONDS);
+        pool.shutdown();
+        assertEquals(1, maxInside.get());
+    }
+
+    @Test
+    void nestedCallsAreReentrantAndRedisLockIsTakenOnce() throws Exception {
+        locks = newLocks(true, 2_000L);
+        String r = locks.withLock(7L, () -> locks.withLock(7L, () -> "ok"));
+
+        assertEquals("ok", r);
+        verify(ops, times(1)).setIfAbsent(eq("DOCX_LOCK:7"), anyString(), any());
+        verify(redis, times(1)).execute(eq(ContractDocumentLocks.RELEASE_SCRIPT), eq(List.of("DOCX_LOCK:7")), anyString());
+    }
+
+    @Test
+    void lockHeldOnAnotherNodeTimesOut() {
+        when(ops.setIfAbsent(anyString(), anyString(), any())).thenReturn(false);
+        locks = newLocks(true, 100L);
+
+        assertThrows(RuntimeException.class, () -> locks.withLock(9L, () -> "never"));
+        verify(redis, never()).execute(any(), anyList(), any());
+    }
+
+    @Test
+    void waitingForAnotherNodeDoesNotBlockContractsOnTheSameStripe() throws Exception {
+        locks = newLocks(true, 2_000L);
+        long busy = 3L;
+        long other = busy + 16; // 16 stripe → cùng stripe
+        assertEquals(locks.stripe(busy), locks.stripe(other));
+        when(ops.setIfAbsent(eq("DOCX_LOCK:" + busy), anyString(), any())).thenReturn(false);
+
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<?> waiting = pool.submit(() -> locks.withLock(busy, () -> "never"));
+        Thread.sleep(50); // đang poll lease của node khác
+
+        long start = System.nanoTime();
+        assertEquals("ok", locks.withLock(other, () -> "ok"));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 500);
+
+        assertThrows(ExecutionException.class, () -> waiting.get(5, TimeUnit.SECONDS));
+        pool.shutdown();
+    }
+
+    @Test
+    void leaseIsRenewedWhileHeldAndLossIsReported() throws Exception {
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        locks = newLocks(true, 2_000L, meters);
+        ReflectionTestUtils.setField(locks, "leaseMs", 60L);
+        when(redis.execute(eq(ContractDocumentLocks.RENEW_SCRIPT), anyList(), any(), any())).thenReturn(1L);
+
+        locks.withLock(5L, () -> { Thread.sleep(200); return null; });
+        verify(redis, atLeast(3)).execute(eq(ContractDocumentLocks.RENEW_SCRIPT), eq(List.of("DOCX_LOCK:5")), anyString(), eq("60"));
+
+        // node khác đã lấy khoá (lease hết hạn) → ngừng gia hạn, đếm lease mất
+        when(redis.execute(eq(ContractDocumentLocks.RENEW_SCRIPT), anyList(), any(), any())).thenReturn(0L);
+        locks.withLock(6L, () -> { Thread.sleep(200); return null; });
+        verify(redis, times(1)).execute(eq(ContractDocumentLocks.RENEW_SCRIPT), eq(List.of("DOCX_LOCK:6")), anyString(), eq("60"));
+        assertEquals(1.0, meters.counter("docx.lock.lease.lost").count());
+        locks.shutdown();
+    }
+
+    @Test
+    void atomicWriteKeepsOpenReadersOnTheOldVersion() throws Exception {
+        Path file = tmp.resolve("contract.docx");
+        AtomicFiles.write(file, "v1-full-content".getBytes());
+
+        try (InputStream reader = Files.newInputStream(file)) {
+            assertEquals('v', reader.read());
+            AtomicFiles.write(file, "v2".getBytes());
+            assertEquals("1-full-content", new String(reader.readAllBytes()));
+        }
+        assertEquals("v2", Files.readString(file));
+        try (var files = Files.list(tmp)) {
+            assertEquals(List.of(file), files.toList()); // không còn file tạm
+        }
+    }
+
+    private ContractDocumentLocks newLocks(boolean redisEnabled, long waitTimeoutMs) {
+        return newLocks(redisEnabled, waitTimeoutMs, new SimpleMeterRegistry());
+    }
+
+    private ContractDocumentLocks newLocks(boolean redisEnabled, long waitTimeoutMs, SimpleMeterRegistry meters) {
+        ContractDocumentLocks l = new ContractDocumentLocks(redis, meters);
+        ReflectionTestUtils.setField(l, "stripes", 16);
+        ReflectionTestUtils.setField(l, "waitTimeoutMs", waitTimeoutMs);
+        ReflectionTestUtils.setField(l, "redisEnabled", redisEnabled);
+        ReflectionTestUtils.setField(l, "leaseMs", 60_000L);
+        ReflectionTestUtils.setField(l, "pollMs", 10L);
+        l.init();
+        return l;
+    }
+}
@@ -0,0 +1,100 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import com.hieunguyen.ManageContract.entity.Contract;
+import com.hieunguyen.ManageContract.repository.ContractApprovalRepository;
+import com.hieunguyen.ManageContract.repository.ContractRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ContractFileServiceImplTest {
+
+    private static final long CONTRACT_ID = 987_654L;
+
+    private final Path dir = Paths.get("uploads", "contracts", String.valueOf(CONTRACT_ID));
+    private final Path docx = dir.resolve("contract.docx");
+    private final Path pdf = dir.resolve("contract.pdf");
+
+    private PdfRendererRouter renderers;
+    private ContractFileServiceImpl service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Files.createDirectories(dir);
+        WordprocessingMLPackage pkg = WordprocessingMLPackage.createPackage();
+        pkg.getMainDocumentPart().addParagraphOfText("HỢP ĐỒNG");
+        pkg.save(docx.toFile());
+
+        Contract contract = new Contract();
+        contract.setId(CONTRACT_ID);
+        ContractRepository contracts = mock(ContractRepository.class);
+        when(contracts.findWithVarsById(CONTRACT_ID)).thenReturn(Optional.of(contract));
+        when(contracts.findById(CONTRACT_ID)).thenReturn(Optional.of(contract));
+
+        SimpleMeterRegistry meters = new SimpleMeterRegistry();
+        PdfRenderSingleFlight flight = new PdfRenderSingleFlight(mock(StringRedisTemplate.class), meters,
+                mock(RedisMessageListenerContainer.class));
+        ReflectionTestUtils.setField(flight, "redisEnabled", false);
+        ContractDocumentLocks locks = new ContractDocumentLocks(mock(StringRedisTemplate.class), meters);
+        ReflectionTestUtils.setField(locks, "stripes", 4);
+        ReflectionTestUtils.setField(locks, "waitTimeoutMs", 5_000L);
+        locks.init();
+
+        renderers = mock(PdfRendererRouter.class);
+        service = new ContractFileServiceImpl(contracts, mock(ContractApprovalRepository.class),
+                mock(PdfRenderCache.class), renderers, mock(TemplatePackageCache.class), flight, locks);
+        ReflectionTestUtils.setField(service, "hostBaseUrl", "http://app");
+        ReflectionTestUtils.setField(service, "incrementalPatch", true);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    void signDuringRenderDiscardsTheStaleResultAndRendersAgain() throws Exception {
+        CompletableFuture<PdfRendererRouter.RenderedPdf> stale = new CompletableFuture<>();
+        CompletableFuture<PdfRendererRouter.RenderedPdf> fresh = new CompletableFuture<>();
+        when(renderers.render(any(), any(), any())).thenReturn(stale, fresh);
+
+        CompletableFuture<File> result = service.renderPdfAsync(CONTRACT_ID);
+        service.addApprovalText(docx.toString(), "Đồng ý"); // ký/ghi ý kiến trong lúc DS đang convert
+
+        stale.complete(new PdfRendererRouter.RenderedPdf("%PDF-old".getBytes(), OnlyOfficePdfRenderer.NAME));
+        assertFalse(Files.exists(pdf), "PDF dựng từ DOCX cũ không được ghi");
+        assertTrue(service.findRenderedPdf(CONTRACT_ID).isEmpty());
+        verify(renderers, times(2)).render(any(), any(), any());
+
+        fresh.complete(new PdfRendererRouter.RenderedPdf("%PDF-new".getBytes(), OnlyOfficePdfRenderer.NAME));
+        File file = result.get(5, TimeUnit.SECONDS);
+        assertEquals("%PDF-new", Files.readString(file.toPath(), StandardCharsets.UTF_8));
+        assertEquals(Optional.of(file), service.findRenderedPdf(CONTRACT_ID));
+
+        // node khác thay DOCX nhưng PDF cũ còn trên volume → người đọc không nhận bản cũ
+        AtomicFiles.copy(docx, docx);
+        assertTrue(service.findRenderedPdf(CONTRACT_ID).isEmpty());
+    }
+}
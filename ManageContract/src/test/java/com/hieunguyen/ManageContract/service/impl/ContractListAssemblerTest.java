@@ -0,0 +1,68 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import com.hieunguyen.ManageContract.common.constants.ContractStatus;
+import com.hieunguyen.ManageContract.dto.CursorPageResponse;
+import com.hieunguyen.ManageContract.dto.contract.ContractListRow;
+import com.hieunguyen.ManageContract.dto.contract.ContractResponse;
+import com.hieunguyen.ManageContract.dto.contract.ContractVariableRow;
+import com.hieunguyen.ManageContract.repository.ContractVariableValueRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ContractListAssemblerTest {
+
+    private final ContractVariableValueRepository variables = mock(ContractVariableValueRepository.class);
+    private final ContractListAssembler assembler = new ContractListAssembler(variables);
+
+    @Test
+    void extraRowMeansNextPageAndCursorIsLastIdOfThePage() {
+        List<ContractListRow> rows = List.of(row(30), row(20), row(10));
+
+        CursorPageResponse<ContractResponse> page = assembler.toPage(rows, 2, false);
+
+        assertEquals(List.of(30L, 20L), page.getContent().stream().map(ContractResponse::getId).toList());
+        assertTrue(page.isHasMore());
+        assertEquals(20L, page.getNextCursor());
+        assertNull(page.getContent().get(0).getVariables());
+        verifyNoInteractions(variables);
+
+        CursorPageResponse<ContractResponse> last = assembler.toPage(List.of(row(10)), 2, false);
+        assertFalse(last.isHasMore());
+        assertNull(last.getNextCursor());
+    }
+
+    @Test
+    void variablesOfTheWholePageComeFromOneQuery() {
+        when(variables.findRowsByContractIds(any())).thenReturn(List.of(
+                new ContractVariableRow(20L, "name", "A"),
+                new ContractVariableRow(20L, "amount", "100"),
+                new ContractVariableRow(30L, "name", "B")));
+
+        List<ContractResponse> res = assembler.toResponses(List.of(row(30), row(20), row(10)), true);
+
+        verify(variables, times(1)).findRowsByContractIds(List.of(30L, 20L, 10L));
+        assertEquals(1, res.get(0).getVariables().size());
+        assertEquals(List.of("name", "amount"),
+                res.get(1).getVariables().stream().map(ContractResponse.VariableValueResponse::getVarName).toList());
+        assertTrue(res.get(2).getVariables().isEmpty());
+        assertEquals("Template", res.get(0).getTemplateName());
+        assertEquals("DRAFT", res.get(0).getStatus());
+    }
+
+    @Test
+    void pageSizeIsBounded() {
+        assertEquals(ContractListAssembler.DEFAULT_PAGE_SIZE, ContractListAssembler.pageSize(0));
+        assertEquals(ContractListAssembler.MAX_PAGE_SIZE, ContractListAssembler.pageSize(10_000));
+        assertEquals(ContractListAssembler.MAX_PAGE_SIZE + 1, ContractListAssembler.limitFor(10_000).getPageSize());
+        assertEquals(Long.MAX_VALUE, ContractListAssembler.cursorOrFirst(null));
+    }
+
+    private static ContractListRow row(long id) {
+        return new ContractListRow(id, "HD-" + id, "Contract " + id, ContractStatus.DRAFT, null, 1L, "Template");
+    }
+}
@@ -0,0 +1,105 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import com.hieunguyen.ManageContract.common.constants.ConversionJobStatus;
+import com.hieunguyen.ManageContract.common.constants.RenderPriority;
+import com.hieunguyen.ManageContract.entity.ConversionJob;
+import com.hieunguyen.ManageContract.repository.ConversionJobRepository;
+import com.hieunguyen.ManageContract.service.ContractFileService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ConversionJobServiceImplTest {
+
+    private final Map<Long, ConversionJob> jobs = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+    private final List<Long> rendered = new CopyOnWriteArrayList<>();
+    private final CountDownLatch workerBusy = new CountDownLatch(1);
+    private final CountDownLatch releaseWorker = new CountDownLatch(1);
+
+    private ConversionJobRepository repo;
+    private ContractFileService files;
+    private ConversionJobServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        repo = mock(ConversionJobRepository.class);
+        when(repo.save(any())).thenAnswer(inv -> {
+            ConversionJob j = inv.getArgument(0);
+            if (j.getId() == null) j.setId(ids.incrementAndGet());
+            jobs.put(j.getId(), j);
+            return j;
+        });
+        when(repo.findById(anyLong())).thenAnswer(inv -> Optional.ofNullable(jobs.get((Long) inv.getArgument(0))));
+        when(repo.findFirstByContractIdAndStatusOrderByIdDesc(anyLong(), eq(ConversionJobStatus.PENDING)))
+                .thenAnswer(inv -> jobs.values().stream()
+                        .filter(j -> j.getContractId().equals(inv.getArgument(0)) && j.getStatus() == ConversionJobStatus.PENDING)
+                        .findFirst());
+        when(repo.claim(anyLong(), any())).thenAnswer(inv -> {
+            ConversionJob j = jobs.get((Long) inv.getArgument(0));
+            if (j.getStatus() != ConversionJobStatus.PENDING) return 0;
+            j.setStatus(ConversionJobStatus.RUNNING);
+            return 1;
+        });
+
+        files = mock(ContractFileService.class);
+        when(files.renderPdfAsync(anyLong())).thenAnswer(inv -> {
+            Long contractId = inv.getArgument(0);
+            rendered.add(contractId);
+            if (contractId == 1L) { // giữ worker duy nhất để các job sau nằm trong hàng đợi
+                workerBusy.countDown();
+                releaseWorker.await(5, TimeUnit.SECONDS);
+            }
+            return CompletableFuture.completedFuture(new File("contract.pdf"));
+        });
+
+        service = new ConversionJobServiceImpl(repo, files, mock(ApplicationEventPublisher.class));
+        ReflectionTestUtils.setField(service, "workers", 1);
+        ReflectionTestUtils.setField(service, "queueCapacity", 10);
+        ReflectionTestUtils.setField(service, "maxAttempts", 3);
+        ReflectionTestUtils.setField(service, "maxInFlight", 4);
+        service.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        releaseWorker.countDown();
+        service.shutdown();
+    }
+
+    @Test
+    void higherPriorityJobsRunFirstAndRaisingAPendingJobReordersIt() throws Exception {
+        service.enqueue(1L, RenderPriority.NORMAL);
+        assertTrue(workerBusy.await(5, TimeUnit.SECONDS));
+
+        service.enqueue(2L, RenderPriority.BACKGROUND);
+        service.enqueue(3L, RenderPriority.NORMAL);
+        service.enqueue(4L, RenderPriority.NEXT_APPROVER);
+        service.enqueue(2L, RenderPriority.VIEWER);   // có người mở /view → vượt lên đầu
+        service.enqueue(3L, RenderPriority.BACKGROUND); // không hạ priority
+
+        assertEquals(RenderPriority.VIEWER.level(), jobs.get(2L).getPriority());
+        assertEquals(RenderPriority.NORMAL.level(), jobs.get(3L).getPriority());
+        assertEquals(4, jobs.size()); // cùng hợp đồng dùng lại job PENDING
+
+        releaseWorker.countDown();
+        for (int i = 0; i < 100 && jobs.values().stream().anyMatch(j -> j.getStatus() != ConversionJobStatus.DONE); i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(List.of(1L, 2L, 4L, 3L), rendered);
+        verify(files, times(4)).renderPdfAsync(anyLong());
+    }
+}
@@ -0,0 +1,114 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.Mockito.*;
+
+class ConversionTrackerTest {
+
+    private static final String PENDING = "{\"endConvert\":false,\"percent\":40}";
+    private static final String READY = "{\"endConvert\":true,\"fileUrl\":\"http://ds/out.pdf\"}";
+    private static final byte[] PDF = "%PDF-1.7".getBytes();
+
+    private DocumentServerClient ds;
+    private ConversionTracker tracker;
+
+    @BeforeEach
+    void setUp() {
+        ds = mock(DocumentServerClient.class);
+        when(ds.download("http://ds/out.pdf")).thenReturn(PDF);
+
+        tracker = new ConversionTracker(ds, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(tracker, "initialDelayMs", 10L);
+        ReflectionTestUtils.setField(tracker, "maxDelayMs", 20L);
+        ReflectionTestUtils.setField(tracker, "timeoutMs", 5_000L);
+        ReflectionTestUtils.setField(tracker, "downloadThreads", 1);
+        ReflectionTestUtils.setField(tracker, "pollThreads", 2);
+        tracker.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        tracker.shutdown();
+    }
+
+    @Test
+    void pollsUntilReadyThenDownloads() throws Exception {
+        when(ds.convert(anyString())).thenReturn(PENDING, PENDING, READY);
+
+        assertArrayEquals(PDF, convert("k1").get(5, TimeUnit.SECONDS));
+        verify(ds, times(3)).convert(contains("\"async\":true"));
+        assertEquals(0, tracker.inFlightCount());
+    }
+
+    @Test
+    void errorCodeFailsWithoutPollingAgain() {
+        when(ds.convert(anyString())).thenReturn("{\"error\":-3}");
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> convert("k1").get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause().getMessage().contains("error code -3"));
+        verify(ds, times(1)).convert(anyString());
+    }
+
+    @Test
+    void transientFailuresAreRetriedButRejectionAndClientErrorsFailFast() throws Exception {
+        when(ds.convert(anyString()))
+                .thenThrow(new DocumentServerClient.DocumentServerException("HTTP 503", null, false, 503))
+                .thenReturn("not json")
+                .thenReturn(READY);
+        assertArrayEquals(PDF, convert("k1").get(5, TimeUnit.SECONDS));
+
+        reset(ds);
+        when(ds.convert(anyString())).thenThrow(new DocumentServerClient.DocumentServerException("open", null, true));
+        assertThrows(ExecutionException.class, () -> convert("k2").get(5, TimeUnit.SECONDS));
+        verify(ds, times(1)).convert(anyString());
+
+        reset(ds);
+        when(ds.convert(anyString())).thenThrow(new DocumentServerClient.DocumentServerException("HTTP 403", null, false, 403));
+        assertThrows(ExecutionException.class, () -> convert("k3").get(5, TimeUnit.SECONDS));
+        verify(ds, times(1)).convert(anyString());
+    }
+
+    @Test
+    void timesOutAtTheKeyDeadline() {
+        ReflectionTestUtils.setField(tracker, "timeoutMs", 150L);
+        when(ds.convert(anyString())).thenReturn(PENDING);
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> convert("k1").get(5, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, e.getCause());
+    }
+
+    @Test
+    void slowKeyDoesNotBlockOthers() throws Exception {
+        when(ds.convert(contains("slow"))).thenAnswer(inv -> {
+            Thread.sleep(1_000);
+            return READY;
+        });
+        when(ds.convert(contains("fast"))).thenReturn(READY);
+
+        CompletableFuture<byte[]> slow = convert("slow");
+        Thread.sleep(50); // lệnh poll của key chậm đã chiếm 1 thread
+        long start = System.nanoTime();
+        assertArrayEquals(PDF, convert("fast").get(5, TimeUnit.SECONDS));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 500);
+        assertFalse(slow.isDone());
+        assertArrayEquals(PDF, slow.get(5, TimeUnit.SECONDS));
+    }
+
+    private CompletableFuture<byte[]> convert(String key) {
+        return tracker.convert(Map.of("key", key, "outputtype", "pdf"));
+    }
+}
@@ -0,0 +1,177 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class DocumentServerClientTest {
+
+    private HttpServer server;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger fallbackHits = new AtomicInteger();
+    private volatile int status = 200;
+    private volatile long delayMs = 0;
+    private SimpleMeterRegistry registry;
+    private DocumentServerClient client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/ConvertService.ashx", ex -> {
+            hits.incrementAndGet();
+            try {
+                if (delayMs > 0) Thread.sleep(delayMs);
+            } catch (InterruptedException ignore) { }
+            byte[] body = "{\"endConvert\":true,\"fileUrl\":\"x\"}".getBytes(StandardCharsets.UTF_8);
+            ex.getResponseHeaders().add("Content-Type", "application/json");
+            ex.sendResponseHeaders(status, body.length);
+            ex.getResponseBody().write(body);
+            ex.close();
+        });
+        server.createContext("/ConvertService", ex -> {
+            fallbackHits.incrementAndGet();
+            byte[] body = "{\"endConvert\":true}".getBytes(StandardCharsets.UTF_8);
+            ex.sendResponseHeaders(200, body.length);
+            ex.getResponseBody().write(body);
+            ex.close();
+        });
+        server.start();
+
+        registry = new SimpleMeterRegistry();
+        client = new DocumentServerClient(registry);
+        ReflectionTestUtils.setField(client, "docServer", "http://127.0.0.1:" + server.getAddress().getPort());
+        ReflectionTestUtils.setField(client, "maxConnections", 4);
+        ReflectionTestUtils.setField(client, "connectTimeoutMs", 500);
+        ReflectionTestUtils.setField(client, "readTimeoutMs", 300);
+        ReflectionTestUtils.setField(client, "poolTimeoutMs", 500);
+        ReflectionTestUtils.setField(client, "maxConcurrent", 1);
+        ReflectionTestUtils.setField(client, "acquireTimeoutMs", 50L);
+        ReflectionTestUtils.setField(client, "failureThreshold", 2);
+        ReflectionTestUtils.setField(client, "openMs", 200L);
+        client.init();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        client.close();
+        server.stop(0);
+    }
+
+    @Test
+    void convertReturnsBodyAndRecordsLatency() {
+        String body = client.convert("{}");
+
+        assertTrue(body.contains("endConvert"));
+        assertEquals(1, registry.get("docserver.requests").tag("outcome", "success").timer().count());
+    }
+
+    @Test
+    void readTimeoutOpensCircuitAndFailsFast() {
+        delayMs = 1000;
+        assertThrows(DocumentServerClient.DocumentServerException.class, () -> client.postJson(url(), "{}"));
+        assertThrows(DocumentServerClient.DocumentServerException.class, () -> client.postJson(url(), "{}"));
+        int before = hits.get();
+
+        DocumentServerClient.DocumentServerException ex = assertThrows(
+                DocumentServerClient.DocumentServerException.class, () -> client.postJson(url(), "{}"));
+
+        assertTrue(ex.isRejected());
+        assertFalse(client.isAvailable());
+        assertEquals(before, hits.get(), "open circuit must not reach the server");
+        assertEquals(2, registry.get("docserver.requests").tag("outcome", "timeout").timer().count());
+    }
+
+    @Test
+    void halfOpenTrialClosesCircuitOnSuccess() throws Exception {
+        status = 503;
+        assertThrows(RuntimeException.class, () -> client.postJson(url(), "{}"));
+        assertThrows(RuntimeException.class, () -> client.postJson(url(), "{}"));
+        assertFalse(client.isAvailable());
+
+        status = 200;
+        Thread.sleep(250);
+
+        assertNotNull(client.postJson(url(), "{}"));
+        assertTrue(client.isAvailable());
+    }
+
+    @Test
+    void clientErrorsDoNotOpenCircuit() {
+        status = 404;
+        for (int i = 0; i < 3; i++) {
+            assertThrows(RuntimeException.class, () -> client.postJson(url(), "{}"));
+        }
+        assertTrue(client.isAvailable());
+    }
+
+    @Test
+    void bulkheadRejectsWhenSaturated() throws Exception {
+        delayMs = 200;
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        Future<String> first = pool.submit(() -> client.postJson(url(), "{}"));
+        Thread.sleep(50);
+
+        DocumentServerClient.DocumentServerException ex = assertThrows(
+                DocumentServerClient.DocumentServerException.class, () -> client.postJson(url(), "{}"));
+
+        assertTrue(ex.isRejected());
+        assertNotNull(first.get(2, TimeUnit.SECONDS));
+        assertEquals(1.0, registry.get("docserver.rejected").tag("reason", "bulkhead").counter().count());
+        pool.shutdown();
+    }
+
+    @Test
+    void convertTriesTheSecondEndpointOnlyOn404() {
+        status = 503;
+        assertThrows(DocumentServerClient.DocumentServerException.class, () -> client.convert("{}"));
+        assertEquals(0, fallbackHits.get(), "5xx must not be retried on /ConvertService");
+
+        status = 404;
+        assertTrue(client.convert("{}").contains("endConvert"));
+        assertEquals(1, fallbackHits.get());
+        assertTrue(client.isAvailable());
+    }
+
+    @Test
+    void uncheckedFailureOfTheTrialCallReopensInsteadOfStickingHalfOpen() throws Exception {
+        status = 503;
+        assertThrows(RuntimeException.class, () -> client.postJson(url(), "{}"));
+        assertThrows(RuntimeException.class, () -> client.postJson(url(), "{}"));
+        Thread.sleep(250);
+
+        Object http = ReflectionTestUtils.getField(client, "http");
+        CloseableHttpClient broken = mock(CloseableHttpClient.class);
+        when(broken.execute(any(HttpUriRequest.class))).thenThrow(new IllegalStateException("Connection pool shut down"));
+        ReflectionTestUtils.setField(client, "http", broken);
+        DocumentServerClient.DocumentServerException ex = assertThrows(
+                DocumentServerClient.DocumentServerException.class, () -> client.postJson(url(), "{}"));
+        assertFalse(ex.isRejected());
+        assertFalse(client.isAvailable());
+
+        // lượt thử đã kết thúc → hết open-ms lại được thử tiếp
+        ReflectionTestUtils.setField(client, "http", http);
+        status = 200;
+        Thread.sleep(250);
+        assertNotNull(client.postJson(url(), "{}"));
+        assertTrue(client.isAvailable());
+    }
+
+    private String url() {
+        return client.baseUrl() + "/ConvertService.ashx";
+    }
+}
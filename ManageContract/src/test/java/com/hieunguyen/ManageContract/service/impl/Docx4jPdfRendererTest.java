@@ -0,0 +1,60 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Docx4jPdfRendererTest {
+
+    @TempDir
+    Path dir;
+
+    private Docx4jPdfRenderer renderer;
+
+    @BeforeEach
+    void setUp() {
+        renderer = new Docx4jPdfRenderer(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(renderer, "enabled", true);
+        ReflectionTestUtils.setField(renderer, "threads", 1);
+        ReflectionTestUtils.setField(renderer, "queueCapacity", 4);
+        ReflectionTestUtils.setField(renderer, "fontRegex", "");
+        ReflectionTestUtils.setField(renderer, "warmUp", false);
+        ReflectionTestUtils.setField(renderer, "fopFactoryCacheSize", 4L);
+        renderer.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        renderer.shutdown();
+    }
+
+    @Test
+    void rendersDocxInProcessAndReusesTheFopFactory() throws Exception {
+        Path first = docx("a.docx", "HỢP ĐỒNG LAO ĐỘNG số 01");
+        Path second = docx("b.docx", "HỢP ĐỒNG LAO ĐỘNG số 02");
+
+        byte[] pdf = renderer.render("1", first, null).join();
+        assertEquals("%PDF", new String(pdf, 0, 4, StandardCharsets.US_ASCII));
+
+        renderer.render("2", second, null).join();
+        assertEquals(1, renderer.cachedFopFactories()); // cùng tập font → dùng lại FopFactory
+        assertTrue(renderer.isAvailable());
+    }
+
+    private Path docx(String name, String text) throws Exception {
+        WordprocessingMLPackage pkg = WordprocessingMLPackage.createPackage();
+        pkg.getMainDocumentPart().addParagraphOfText(text);
+        Path out = dir.resolve(name);
+        pkg.save(out.toFile());
+        return out;
+    }
+}
@@ -0,0 +1,196 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPartAbstractImage;
+import org.docx4j.wml.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DocxPatchEngineTest {
+
+    private static final ObjectFactory WML = new ObjectFactory();
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void insertsSignatureAboveNameAndCopiesOtherEntriesRaw() throws Exception {
+        Path docx = sampleDocx(tmp.resolve("c.docx"), 20);
+        ZipArchiveEntry stylesBefore = entry(docx, "word/styles.xml");
+
+        DocxPatchEngine patch = DocxPatchEngine.open(docx);
+        assertTrue(patch.insertImageAboveText("nguyen van a", png(), 1_714_500, 571_500));
+        patch.commit();
+
+        ZipArchiveEntry stylesAfter = entry(docx, "word/styles.xml");
+        assertEquals(stylesBefore.getCrc(), stylesAfter.getCrc());
+        assertEquals(stylesBefore.getCompressedSize(), stylesAfter.getCompressedSize());
+
+        WordprocessingMLPackage pkg = WordprocessingMLPackage.load(docx.toFile());
+        String xml = pkg.getMainDocumentPart().getXML();
+        assertTrue(xml.contains("w:drawing"));
+        assertEquals(1, pkg.getMainDocumentPart().getRelationshipsPart().getRelationships().getRelationship().stream()
+                .filter(r -> r.getType().endsWith("/image")).count());
+    }
+
+    @Test
+    void replacesTaggedBlockOnlyOnce() throws Exception {
+        Path docx = sampleDocx(tmp.resolve("log.docx"), 3);
+
+        for (int i = 0; i < 3; i++) {
+            DocxPatchEngine patch = DocxPatchEngine.open(docx);
+            patch.removeTaggedBlock("APPROVAL_LOG");
+            patch.appendBlock(taggedBlock("APPROVAL_LOG", "log " + i));
+            patch.commit();
+        }
+
+        String text = DocxPatchEngine.open(docx).text();
+        assertFalse(text.contains("log 1"));
+        assertTrue(text.contains("log 2"));
+    }
+
+    @Test
+    void repeatedSignsRewriteOnlyTheDocumentPartsTheyTouch() throws Exception {
+        Path docx = sampleDocx(tmp.resolve("big.docx"), 500);
+        Map<String, ZipArchiveEntry> before = entries(docx);
+
+        patchSign(docx, png());
+        patchSign(docx, png());
+
+        Map<String, ZipArchiveEntry> after = entries(docx);
+        for (Map.Entry<String, ZipArchiveEntry> e : before.entrySet()) {
+            String name = e.getKey();
+            if (name.equals("word/document.xml") || name.equals("word/_rels/document.xml.rels")
+                    || name.equals("[Content_Types].xml")) continue;
+            // entry không đổi được chép nguyên bytes nén, không giải nén/nén lại
+            assertEquals(e.getValue().getCrc(), after.get(name).getCrc(), name);
+            assertEquals(e.getValue().getCompressedSize(), after.get(name).getCompressedSize(), name);
+        }
+        assertEquals(2, after.keySet().stream().filter(n -> n.startsWith("word/media/")).count());
+    }
+
+    /**
+     * So sánh 1 lần ký: docx4j load → chèn ảnh → save vs DocxPatchEngine.
+     * Chạy: mvn test -Dtest=DocxPatchEngineTest -Dbenchmark=true [-Dbenchmark.paragraphs=3000 -Dbenchmark.rounds=20]
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void benchmarkAgainstDocx4jRoundTrip() throws Exception {
+        int paragraphs = Integer.getInteger("benchmark.paragraphs", 3000);
+        int rounds = Integer.getInteger("benchmark.rounds", 20);
+        byte[] img = png();
+
+        Path a = sampleDocx(tmp.resolve("docx4j.docx"), paragraphs);
+        Path b = Files.copy(a, tmp.resolve("patch.docx"));
+
+        for (int i = 0; i < 3; i++) { docx4jSign(a, img); patchSign(b, img); } // warm-up
+
+        long t0 = System.nanoTime();
+        for (int i = 0; i < rounds; i++) docx4jSign(a, img);
+        double docx4jMs = (System.nanoTime() - t0) / 1e6 / rounds;
+
+        t0 = System.nanoTime();
+        for (int i = 0; i < rounds; i++) patchSign(b, img);
+        double patchMs = (System.nanoTime() - t0) / 1e6 / rounds;
+
+        System.out.printf("[benchmark] sign paragraphs=%d docx4j=%.1f ms/op patch=%.1f ms/op speedup=%.1fx%n",
+                paragraphs, docx4jMs, patchMs, docx4jMs / patchMs);
+        // 2 đường cho cùng kết quả: mỗi lần ký thêm đúng 1 ảnh
+        assertEquals(imageCount(a), imageCount(b));
+        assertEquals(rounds + 3, imageCount(b));
+        assertTrue(patchMs < docx4jMs, "DocxPatchEngine phải nhanh hơn docx4j load/save");
+    }
+
+    // ------------------------------------------------------------------
+
+    /** Đường cũ: load cả package, chèn ảnh, save lại toàn bộ */
+    private static void docx4jSign(Path docx, byte[] img) throws Exception {
+        WordprocessingMLPackage pkg = WordprocessingMLPackage.load(docx.toFile());
+        var part = BinaryPartAbstractImage.createImagePart(pkg, img);
+        var inline = part.createImageInline("signature", "signature", 0, 1, 1_714_500, 571_500, false);
+        Drawing drawing = WML.createDrawing();
+        drawing.getAnchorOrInline().add(inline);
+        R r = WML.createR();
+        r.getContent().add(drawing);
+        P p = WML.createP();
+        p.getContent().add(r);
+        pkg.getMainDocumentPart().addObject(p);
+        pkg.save(docx.toFile());
+    }
+
+    private static long imageCount(Path docx) throws Exception {
+        return entries(docx).keySet().stream().filter(n -> n.startsWith("word/media/")).count();
+    }
+
+    private static void patchSign(Path docx, byte[] img) throws Exception {
+        DocxPatchEngine patch = DocxPatchEngine.open(docx);
+        patch.insertImageAboveText("Nguyễn Văn A", img, 1_714_500, 571_500);
+        patch.commit();
+    }
+
+    private static Path sampleDocx(Path out, int paragraphs) throws Exception {
+        WordprocessingMLPackage pkg = WordprocessingMLPackage.createPackage();
+        var mdp = pkg.getMainDocumentPart();
+        for (int i = 0; i < paragraphs; i++) {
+            mdp.addParagraphOfText("Điều " + i + ". Nội dung hợp đồng mẫu dùng để đo hiệu năng ký.");
+        }
+        mdp.addParagraphOfText("Đại diện bên A");
+        mdp.addParagraphOfText("Nguyễn Văn A");
+        pkg.save(out.toFile());
+        return out;
+    }
+
+    private static SdtBlock taggedBlock(String tagVal, String text) {
+        SdtBlock sdt = WML.createSdtBlock();
+        SdtPr pr = WML.createSdtPr();
+        Tag tag = WML.createTag();
+        tag.setVal(tagVal);
+        pr.setTag(tag);
+        sdt.setSdtPr(pr);
+        SdtContentBlock content = WML.createSdtContentBlock();
+        P p = WML.createP();
+        R r = WML.createR();
+        Text t = WML.createText();
+        t.setValue(text);
+        r.getContent().add(t);
+        p.getContent().add(r);
+        content.getContent().addAll(List.of(p));
+        sdt.setSdtContent(content);
+        return sdt;
+    }
+
+    private static Map<String, ZipArchiveEntry> entries(Path docx) throws Exception {
+        Map<String, ZipArchiveEntry> out = new HashMap<>();
+        try (ZipFile zf = new ZipFile(docx.toFile())) {
+            zf.getEntries().asIterator().forEachRemaining(e -> out.put(e.getName(), e));
+        }
+        return out;
+    }
+
+    private static ZipArchiveEntry entry(Path docx, String name) throws Exception {
+        try (ZipFile zf = new ZipFile(docx.toFile())) {
+            return zf.getEntry(name);
+        }
+    }
+
+    private static byte[] png() throws Exception {
+        BufferedImage img = new BufferedImage(4, 2, BufferedImage.TYPE_INT_ARGB);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ImageIO.write(img, "png", bos);
+        return bos.toByteArray();
+    }
+}
@@ -0,0 +1,86 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import com.hieunguyen.ManageContract.common.constants.VariableType;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DocxPlaceholderScannerTest {
+
+    private static final String W = "xmlns:w=\"http://schemas.openxmlformats.org/wordprocessingml/2006/main\"";
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void classifiesOncePerPlaceholderInDocumentOrder() throws Exception {
+        Path docx = docx(
+                "<w:document " + W + "><w:body>"
+                        + p("Bên A: ${ben_a} ngày ${ngay}")
+                        // placeholder bị tách thành nhiều run
+                        + "<w:p><w:r><w:t>${co_vat?</w:t></w:r><w:r><w:t>Có:Không}</w:t></w:r></w:p>"
+                        + p("${hinh_thuc|Chuyển khoản, Tiền mặt} ${table:hang_hoa} ${ben_a}")
+                        + p("${hang_hoa}")
+                        // text box lồng trong đoạn
+                        + "<w:p><w:r><w:t>Ghi chú </w:t></w:r><w:r><w:txbxContent>" + p("${ghi_chu}")
+                        + "</w:txbxContent></w:r></w:p>"
+                        + "</w:body></w:document>",
+                "<w:hdr " + W + ">" + p("Số: ${so_hd}") + "</w:hdr>");
+
+        List<DocxPlaceholderScanner.Placeholder> found = DocxPlaceholderScanner.scan(docx);
+
+        assertEquals(List.of("ben_a", "ngay", "co_vat", "hinh_thuc", "table_hang_hoa", "ghi_chu", "so_hd"),
+                found.stream().map(DocxPlaceholderScanner.Placeholder::name).toList());
+        assertEquals(VariableType.BOOLEAN, found.get(2).type());
+        assertEquals(List.of("Có", "Không"), found.get(2).args());
+        assertEquals(VariableType.DROPDOWN, found.get(3).type());
+        assertEquals(List.of("Chuyển khoản", "Tiền mặt"), found.get(3).args());
+        assertEquals(VariableType.TABLE, found.get(4).type());
+        assertEquals(VariableType.TEXT, found.get(6).type());
+    }
+
+    @Test
+    void tableFormWinsOverBareNameWhicheverComesFirst() throws Exception {
+        Path docx = docx(
+                "<w:document " + W + "><w:body>"
+                        + p("${hang_hoa} ${ngay}")
+                        + p("${table:hang_hoa} ${ngay} ${hang_hoa}")
+                        + "</w:body></w:document>",
+                "<w:hdr " + W + ">" + p("${table:dich_vu}") + p("${dich_vu}") + "</w:hdr>");
+
+        List<DocxPlaceholderScanner.Placeholder> found = DocxPlaceholderScanner.scan(docx);
+
+        assertEquals(List.of("table_hang_hoa", "ngay", "table_dich_vu"),
+                found.stream().map(DocxPlaceholderScanner.Placeholder::name).toList());
+        assertEquals(VariableType.TABLE, found.get(0).type());
+        assertEquals(VariableType.TABLE, found.get(2).type());
+    }
+
+    // ------------------------------------------------------------------
+
+    private static String p(String text) {
+        return "<w:p><w:r><w:t xml:space=\"preserve\">" + text + "</w:t></w:r></w:p>";
+    }
+
+    private Path docx(String document, String header) throws Exception {
+        Path out = tmp.resolve("t.docx");
+        try (OutputStream os = Files.newOutputStream(out); ZipOutputStream zos = new ZipOutputStream(os)) {
+            zos.putNextEntry(new ZipEntry("word/document.xml"));
+            zos.write(document.getBytes(StandardCharsets.UTF_8));
+            zos.closeEntry();
+            zos.putNextEntry(new ZipEntry("word/header1.xml"));
+            zos.write(header.getBytes(StandardCharsets.UTF_8));
+            zos.closeEntry();
+        }
+        return out;
+    }
+}
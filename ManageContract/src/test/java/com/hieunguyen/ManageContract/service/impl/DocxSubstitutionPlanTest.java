@@ -0,0 +1,79 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import org.docx4j.model.datastorage.migration.VariablePrepare;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DocxSubstitutionPlanTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void matchesDocx4jVariableReplace() throws Exception {
+        byte[] prepared = prepared(5);
+        Map<String, String> values = Map.of("ben_a", "Công ty A", "ngay", "01/01/2025");
+
+        Path out = tmp.resolve("plan.docx");
+        DocxSubstitutionPlan.compile(prepared).writeTo(values, out);
+
+        WordprocessingMLPackage expected = WordprocessingMLPackage.load(new ByteArrayInputStream(prepared));
+        expected.getMainDocumentPart().variableReplace(new HashMap<>(values));
+
+        String actual = WordprocessingMLPackage.load(out.toFile()).getMainDocumentPart().getXML();
+        assertEquals(expected.getMainDocumentPart().getXML(), actual);
+        assertFalse(actual.contains("${"));
+    }
+
+    @Test
+    void escapesValues() throws Exception {
+        Path out = tmp.resolve("esc.docx");
+        DocxSubstitutionPlan.compile(prepared(1)).writeTo(Map.of("ben_a", "A & B <C>", "ngay", "x"), out);
+
+        String text = DocxPatchEngine.open(out).text();
+        assertTrue(text.contains("A & B <C>"));
+    }
+
+    @Test
+    void compiledPlanIsReusedAcrossContracts() throws Exception {
+        byte[] prepared = prepared(50);
+        DocxSubstitutionPlan plan = DocxSubstitutionPlan.compile(prepared);
+
+        // 1 plan (biên dịch 1 lần/template) cho nhiều hợp đồng, mỗi lần chỉ ghi giá trị
+        String[] companies = {"Công ty A", "Công ty B"};
+        for (int i = 0; i < companies.length; i++) {
+            Map<String, String> values = Map.of("ben_a", companies[i], "ngay", "01/01/2025");
+            Path out = tmp.resolve("contract-" + i + ".docx");
+            plan.writeTo(values, out);
+
+            WordprocessingMLPackage expected = WordprocessingMLPackage.load(new ByteArrayInputStream(prepared));
+            expected.getMainDocumentPart().variableReplace(new HashMap<>(values));
+            assertEquals(expected.getMainDocumentPart().getXML(),
+                    WordprocessingMLPackage.load(out.toFile()).getMainDocumentPart().getXML());
+        }
+    }
+
+    // ------------------------------------------------------------------
+
+    private static byte[] prepared(int paragraphs) throws Exception {
+        WordprocessingMLPackage pkg = WordprocessingMLPackage.createPackage();
+        var mdp = pkg.getMainDocumentPart();
+        mdp.addParagraphOfText("Bên A: ${ben_a}, ký ngày ${ngay}");
+        for (int i = 0; i < paragraphs; i++) {
+            mdp.addParagraphOfText("Điều " + i + ". Bên A (${ben_a}) cam kết thực hiện hợp đồng.");
+        }
+        VariablePrepare.prepare(pkg);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        pkg.save(out);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,131 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import com.hieunguyen.ManageContract.common.constants.MailOutboxStatus;
+import com.hieunguyen.ManageContract.entity.MailOutbox;
+import com.hieunguyen.ManageContract.repository.MailOutboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class MailOutboxServiceImplTest {
+
+    private SmtpStub smtp;
+    private JavaMailSenderImpl sender;
+    private BatchingMailSender batching;
+    private MailOutboxRepository repo;
+    private MailOutboxServiceImpl outbox;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        smtp = new SmtpStub();
+        sender = new JavaMailSenderImpl();
+        sender.setHost("127.0.0.1");
+        sender.setPort(smtp.port());
+
+        repo = mock(MailOutboxRepository.class);
+        when(repo.save(any())).thenAnswer(inv -> inv.getArgument(0));
+
+        batching = new BatchingMailSender(sender, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(batching, "enabled", true);
+        ReflectionTestUtils.setField(batching, "windowMs", 20L);
+        ReflectionTestUtils.setField(batching, "maxBatch", 10);
+        ReflectionTestUtils.setField(batching, "queueCapacity", 100);
+        ReflectionTestUtils.setField(batching, "sendTimeoutMs", 5000L);
+        batching.init();
+
+        outbox = new MailOutboxServiceImpl(repo, sender, batching);
+        ReflectionTestUtils.setField(outbox, "fromEmail", "noreply@test.local");
+        ReflectionTestUtils.setField(outbox, "maxAttempts", 3);
+        ReflectionTestUtils.setField(outbox, "initialBackoffMs", 1000L);
+        ReflectionTestUtils.setField(outbox, "maxBackoffMs", 10_000L);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        batching.shutdown();
+        smtp.close();
+    }
+
+    @Test
+    void deliversAndMarksSent() {
+        MailOutbox m = claimed("creator@test.local", 1);
+        outbox.deliver(m).join();
+
+        assertEquals(MailOutboxStatus.SENT, m.getStatus());
+        assertNotNull(m.getSentAt());
+        assertEquals(1, smtp.messages.size());
+        assertTrue(smtp.messages.get(0).contains("Subject:"));
+    }
+
+    @Test
+    void rejectedRecipientIsDeadLetteredImmediately() {
+        MailOutbox m = claimed("bad@test.local", 1);
+        outbox.deliver(m).join();
+
+        assertEquals(MailOutboxStatus.DEAD, m.getStatus());
+        assertNotNull(m.getLastError());
+    }
+
+    @Test
+    void transientFailureBacksOffThenDies() throws Exception {
+        smtp.close(); // SMTP không kết nối được
+
+        MailOutbox m = claimed("creator@test.local", 1);
+        outbox.deliver(m).join();
+        assertEquals(MailOutboxStatus.PENDING, m.getStatus());
+        assertTrue(m.getNextAttemptAt().isAfter(LocalDateTime.now().plusNanos(700_000_000L)));
+
+        m.setAttempts(3);
+        outbox.deliver(m).join();
+        assertEquals(MailOutboxStatus.DEAD, m.getStatus());
+    }
+
+    @Test
+    void commitLandingAfterTheLastQueryIsDrainedWithoutWaitingForTheSweeper() {
+        ReflectionTestUtils.setField(outbox, "maxInFlight", 10);
+        ReflectionTestUtils.setField(outbox, "batchSize", 10);
+        outbox.init();
+        AtomicInteger queries = new AtomicInteger();
+        when(repo.findByStatusAndNextAttemptAtLessThanEqualOrderByIdAsc(any(), any(), any())).thenAnswer(inv -> {
+            // lượt đầu đã quét xong (chưa có gì) thì 1 commit khác ghi mail mới
+            if (queries.incrementAndGet() == 1) outbox.enqueue("late@test.local", "late", "body", false);
+            return List.of();
+        });
+
+        outbox.enqueue("first@test.local", "first", "body", false);
+
+        verify(repo, timeout(2000).times(2)).findByStatusAndNextAttemptAtLessThanEqualOrderByIdAsc(any(), any(), any());
+        verify(repo, after(200).times(2)).findByStatusAndNextAttemptAtLessThanEqualOrderByIdAsc(any(), any(), any());
+        outbox.shutdown();
+    }
+
+    @Test
+    void backoffGrowsAndIsCapped() {
+        assertTrue(outbox.backoffMs(1) <= 1200);
+        assertTrue(outbox.backoffMs(3) >= 3200);
+        assertTrue(outbox.backoffMs(30) <= 12_000);
+    }
+
+    private static MailOutbox claimed(String to, int attempts) {
+        return MailOutbox.builder()
+                .id(1L)
+                .recipient(to)
+                .subject("[Hợp đồng HĐ#1] đã được phê duyệt")
+                .body("<p>ok</p>")
+                .html(true)
+                .status(MailOutboxStatus.SENDING)
+                .attempts(attempts)
+                .build();
+    }
+}
@@ -0,0 +1,125 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import com.hieunguyen.ManageContract.common.constants.ConversionJobStatus;
+import com.hieunguyen.ManageContract.dto.conversion.ConversionJobResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class PdfReadyNotifierTest {
+
+    private final StringRedisTemplate redis = mock(StringRedisTemplate.class);
+    private final RedisMessageListenerContainer container = mock(RedisMessageListenerContainer.class);
+    private final List<RecordingEmitter> opened = new ArrayList<>();
+    private PdfReadyNotifier notifier;
+
+    @BeforeEach
+    void setUp() {
+        notifier = new PdfReadyNotifier(redis, container, new SimpleMeterRegistry()) {
+            @Override
+            SseEmitter newEmitter() {
+                RecordingEmitter emitter = new RecordingEmitter();
+                opened.add(emitter);
+                return emitter;
+            }
+        };
+        ReflectionTestUtils.setField(notifier, "redisEnabled", false);
+    }
+
+    @Test
+    void finishedJobIsPushedOnceToEveryWaitingClient() {
+        notifier.subscribe(7L, () -> pending(7L));
+        notifier.subscribe(7L, () -> pending(7L));
+        notifier.subscribe(8L, () -> pending(8L));
+        assertEquals(2, notifier.subscriberCount(7L));
+
+        notifier.publish(7L, 42L, ConversionJobStatus.DONE);
+        notifier.publish(7L, 42L, ConversionJobStatus.DONE);
+
+        assertEquals(1, opened.get(0).sent);
+        assertEquals(1, opened.get(1).sent);
+        assertTrue(opened.get(0).completed && opened.get(1).completed);
+        assertEquals(0, notifier.subscriberCount(7L));
+        // hợp đồng khác vẫn chờ
+        assertEquals(0, opened.get(2).sent);
+        assertEquals(1, notifier.subscriberCount(8L));
+    }
+
+    @Test
+    void alreadyFinishedPdfIsSentRightAwayWithoutWaiting() {
+        notifier.subscribe(7L, () -> ConversionJobResponse.builder()
+                .contractId(7L).status(ConversionJobStatus.FAILED.name()).build());
+
+        assertEquals(1, opened.get(0).sent);
+        assertTrue(opened.get(0).completed);
+        assertEquals(0, notifier.subscriberCount(7L));
+    }
+
+    @Test
+    void otherNodesHearTheResultThroughRedis() {
+        ReflectionTestUtils.setField(notifier, "redisEnabled", true);
+        ReflectionTestUtils.invokeMethod(notifier, "init");
+        ArgumentCaptor<MessageListener> listener = ArgumentCaptor.forClass(MessageListener.class);
+        verify(container).addMessageListener(listener.capture(), eq(new ChannelTopic(PdfReadyNotifier.CHANNEL)));
+        notifier.subscribe(7L, () -> null);
+
+        notifier.publish(7L, 42L, ConversionJobStatus.DONE);
+        // chưa gửi thẳng: chờ tin Redis quay về (kể cả node này)
+        verify(redis).convertAndSend(PdfReadyNotifier.CHANNEL, "7:42:DONE");
+        assertEquals(0, opened.get(0).sent);
+
+        listener.getValue().onMessage(new DefaultMessage(
+                PdfReadyNotifier.CHANNEL.getBytes(StandardCharsets.UTF_8),
+                "7:42:DONE".getBytes(StandardCharsets.UTF_8)), null);
+        assertEquals(1, opened.get(0).sent);
+        assertTrue(opened.get(0).completed);
+    }
+
+    @Test
+    void redisDownStillNotifiesClientsOnThisNode() {
+        ReflectionTestUtils.setField(notifier, "redisEnabled", true);
+        doThrow(new IllegalStateException("redis down")).when(redis).convertAndSend(anyString(), any());
+        notifier.subscribe(7L, () -> pending(7L));
+
+        notifier.publish(7L, 42L, ConversionJobStatus.DONE);
+
+        assertEquals(1, opened.get(0).sent);
+    }
+
+    private static ConversionJobResponse pending(Long contractId) {
+        return ConversionJobResponse.builder().contractId(contractId).status(ConversionJobStatus.PENDING.name()).build();
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+        int sent;
+        boolean completed;
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            sent++;
+        }
+
+        @Override
+        public synchronized void complete() {
+            completed = true;
+        }
+    }
+}
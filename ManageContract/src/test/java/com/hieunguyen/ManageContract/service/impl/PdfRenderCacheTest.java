@@ -0,0 +1,116 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PdfRenderCacheTest {
+
+    private static final int KB = 1024;
+
+    @TempDir
+    Path dir;
+
+    private SimpleMeterRegistry meters;
+    private PdfRenderCache cache;
+
+    @BeforeEach
+    void setUp() {
+        meters = new SimpleMeterRegistry();
+        cache = cache("onlyoffice-1");
+    }
+
+    @Test
+    void keyDependsOnContentAndConverterVersionOnly() throws Exception {
+        Path a = docx("a.docx", 1_000L, "word/document.xml", "<w:document/>", "word/styles.xml", "<w:styles/>");
+        // cùng nội dung, khác thứ tự entry và timestamp (docx4j/POI ghi lại mỗi lần save)
+        Path b = docx("b.docx", 9_000_000L, "word/styles.xml", "<w:styles/>", "word/document.xml", "<w:document/>");
+        Path c = docx("c.docx", 1_000L, "word/document.xml", "<w:document>x</w:document>", "word/styles.xml", "<w:styles/>");
+
+        String key = cache.keyOf(a);
+        assertEquals(64, key.length());
+        assertEquals(key, cache.keyOf(b));
+        assertNotEquals(key, cache.keyOf(c));
+        assertNotEquals(key, cache("onlyoffice-2").keyOf(a));
+    }
+
+    @Test
+    void readMissesThenHitsAfterPut() throws Exception {
+        String key = cache.keyOf(docx("a.docx", 1_000L, "word/document.xml", "<w:document/>"));
+
+        assertTrue(cache.read(key).isEmpty());
+        cache.put(key, "%PDF-1".getBytes());
+        assertArrayEquals("%PDF-1".getBytes(), cache.read(key).orElseThrow());
+
+        assertEquals(1.0, meters.get("pdf.render.cache").tag("result", "miss").counter().count());
+        assertEquals(1.0, meters.get("pdf.render.cache").tag("result", "hit").counter().count());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedWhenOverSize() throws Exception {
+        ReflectionTestUtils.setField(cache, "maxSizeMb", 1L);
+        String a = "aa" + "0".repeat(62);
+        String b = "bb" + "0".repeat(62);
+        String c = "cc" + "0".repeat(62);
+        cache.put(a, new byte[400 * KB]);
+        cache.put(b, new byte[400 * KB]);
+        age(a, 20_000);
+        age(b, 10_000);
+        assertTrue(cache.lookup(a).isPresent()); // hit → a thành mới nhất, b là cũ nhất
+
+        cache.put(c, new byte[400 * KB]); // 1200 KB > 1 MB → dọn tới ≤ 90%
+
+        assertTrue(cache.lookup(a).isPresent());
+        assertTrue(cache.lookup(b).isEmpty());
+        assertTrue(cache.lookup(c).isPresent());
+        assertEquals(1.0, meters.get("pdf.render.cache.evictions").counter().count());
+        try (Stream<Path> files = Files.walk(dir.resolve("cache"))) {
+            assertTrue(files.noneMatch(p -> p.toString().endsWith(".tmp")));
+        }
+    }
+
+    // ------------------------------------------------------------------
+
+    private PdfRenderCache cache(String converterVersion) {
+        PdfRenderCache c = new PdfRenderCache(meters);
+        ReflectionTestUtils.setField(c, "enabled", true);
+        ReflectionTestUtils.setField(c, "cacheDir", dir.resolve("cache").toString());
+        ReflectionTestUtils.setField(c, "maxSizeMb", 1024L);
+        ReflectionTestUtils.setField(c, "converterVersion", converterVersion);
+        c.init();
+        return c;
+    }
+
+    private void age(String key, long millis) throws Exception {
+        Path p = dir.resolve("cache").resolve(key.substring(0, 2)).resolve(key + ".pdf");
+        Files.setLastModifiedTime(p, FileTime.fromMillis(System.currentTimeMillis() - millis));
+    }
+
+    /** entries: tên, nội dung, tên, nội dung… */
+    private Path docx(String name, long entryTime, String... entries) throws Exception {
+        Path out = dir.resolve(name);
+        try (OutputStream os = Files.newOutputStream(out); ZipOutputStream zos = new ZipOutputStream(os)) {
+            for (int i = 0; i < entries.length; i += 2) {
+                ZipEntry e = new ZipEntry(entries[i]);
+                e.setTime(entryTime);
+                zos.putNextEntry(e);
+                zos.write(entries[i + 1].getBytes(StandardCharsets.UTF_8));
+                zos.closeEntry();
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,110 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class PdfRenderSingleFlightTest {
+
+    private static final File PDF = new File("contract.pdf");
+
+    private StringRedisTemplate redis;
+    private ValueOperations<String, String> ops;
+    private SimpleMeterRegistry meters;
+    private PdfRenderSingleFlight flight;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        redis = mock(StringRedisTemplate.class);
+        ops = mock(ValueOperations.class);
+        when(redis.opsForValue()).thenReturn(ops);
+        when(ops.setIfAbsent(anyString(), anyString(), any())).thenReturn(true);
+        meters = new SimpleMeterRegistry();
+        flight = new PdfRenderSingleFlight(redis, meters, mock(RedisMessageListenerContainer.class));
+        ReflectionTestUtils.setField(flight, "redisEnabled", true);
+        ReflectionTestUtils.setField(flight, "lockTtlMs", 60_000L);
+        ReflectionTestUtils.setField(flight, "pollMs", 10L);
+        ReflectionTestUtils.setField(flight, "waitTimeoutMs", 5_000L);
+    }
+
+    @Test
+    void concurrentViewersTriggerOneRender() throws Exception {
+        AtomicInteger renders = new AtomicInteger();
+        CompletableFuture<File> dsResult = new CompletableFuture<>();
+        int viewers = 16;
+        ExecutorService pool = Executors.newFixedThreadPool(viewers);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Future<CompletableFuture<File>>> calls = new ArrayList<>();
+        for (int i = 0; i < viewers; i++) {
+            calls.add(pool.submit(() -> {
+                go.await();
+                return flight.run(1L, () -> { renders.incrementAndGet(); return dsResult; }, Optional::empty);
+            }));
+        }
+        go.countDown();
+        List<CompletableFuture<File>> results = new ArrayList<>();
+        for (var c : calls) results.add(c.get(5, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        dsResult.complete(PDF);
+        for (var r : results) assertSame(PDF, r.get(5, TimeUnit.SECONDS));
+        assertEquals(1, renders.get());
+        assertEquals(viewers - 1, meters.get("pdf.render.coalesced").tag("scope", "local").counter().count());
+        verify(redis).execute(eq(PdfRenderSingleFlight.RELEASE_SCRIPT), eq(List.of("PDF_RENDER:1")), anyString());
+
+        // lượt đã xong không bị giữ lại → lần sau render mới
+        flight.run(1L, () -> { renders.incrementAndGet(); return CompletableFuture.completedFuture(PDF); }, Optional::empty)
+                .get(5, TimeUnit.SECONDS);
+        assertEquals(2, renders.get());
+    }
+
+    @Test
+    void otherNodeHoldingTheLockIsWaitedOnInsteadOfRenderingAgain() throws Exception {
+        when(ops.setIfAbsent(anyString(), anyString(), any())).thenReturn(false);
+        when(redis.hasKey("PDF_RENDER:2")).thenReturn(true);
+        AtomicInteger polls = new AtomicInteger();
+
+        File pdf = flight.run(2L,
+                () -> fail("must not render while another node holds the lock"),
+                () -> polls.incrementAndGet() < 3 ? Optional.empty() : Optional.of(PDF))
+                .get(5, TimeUnit.SECONDS);
+
+        assertSame(PDF, pdf);
+        assertEquals(1.0, meters.get("pdf.render.coalesced").tag("scope", "remote").counter().count());
+    }
+
+    @Test
+    void invalidatedFlightIsNotSharedAndNextRenderWaitsForIt() throws Exception {
+        CompletableFuture<File> first = new CompletableFuture<>();
+        List<String> order = new CopyOnWriteArrayList<>();
+        CompletableFuture<File> a = flight.run(3L, () -> { order.add("render-1"); return first; }, Optional::empty);
+
+        flight.invalidate(3L); // vừa ký → DOCX đổi
+        verify(redis).convertAndSend(PdfRenderSingleFlight.INVALIDATE_CHANNEL, "3"); // node khác cũng bỏ lượt cũ
+        File second = new File("second.pdf");
+        CompletableFuture<File> b = flight.run(3L,
+                () -> { order.add("render-2"); return CompletableFuture.completedFuture(second); }, Optional::empty);
+
+        assertNotSame(a, b);
+        assertEquals(List.of("render-1"), order); // không ghi file song song với lượt cũ
+        first.complete(PDF);
+        assertSame(second, b.get(5, TimeUnit.SECONDS));
+        assertEquals(List.of("render-1", "render-2"), order);
+    }
+}
@@ -0,0 +1,97 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class PdfRendererRouterTest {
+
+    private static final byte[] DS_PDF = "%PDF-ds".getBytes();
+    private static final byte[] LOCAL_PDF = "%PDF-local".getBytes();
+
+    @TempDir
+    Path dir;
+
+    private PdfRenderer ds;
+    private PdfRenderer local;
+    private SimpleMeterRegistry meters;
+    private PdfRendererRouter router;
+    private Path small;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ds = renderer(OnlyOfficePdfRenderer.NAME);
+        local = renderer(Docx4jPdfRenderer.NAME);
+        when(ds.render(any(), any(), any())).thenReturn(CompletableFuture.completedFuture(DS_PDF));
+        when(local.render(any(), any(), any())).thenReturn(CompletableFuture.completedFuture(LOCAL_PDF));
+
+        meters = new SimpleMeterRegistry();
+        router = new PdfRendererRouter(List.of(ds, local), meters);
+        ReflectionTestUtils.setField(router, "mode", "auto");
+        ReflectionTestUtils.setField(router, "fallbackEnabled", true);
+        ReflectionTestUtils.setField(router, "localMaxBytes", 1024L);
+        ReflectionTestUtils.setField(router, "dsSlowMs", 15000L);
+        ReflectionTestUtils.setField(router, "dsProbeMs", 30000L);
+        router.init();
+
+        small = Files.write(dir.resolve("small.docx"), new byte[100]);
+    }
+
+    @Test
+    void documentServerFailureFallsBackToLocalAndOnlyDsOutputIsCacheable() {
+        PdfRendererRouter.RenderedPdf ok = router.render("1", small, "http://app/1").join();
+        assertArrayEquals(DS_PDF, ok.bytes());
+        assertTrue(ok.cacheable());
+
+        when(ds.render(any(), any(), any()))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("DS 502")));
+        PdfRendererRouter.RenderedPdf fallback = router.render("1", small, "http://app/1").join();
+        assertArrayEquals(LOCAL_PDF, fallback.bytes());
+        assertFalse(fallback.cacheable());
+        assertEquals(1.0, meters.get("pdf.render.fallback").tag("reason", "error").counter().count());
+    }
+
+    @Test
+    void openCircuitGoesLocalButLargeFilesStayOnDocumentServer() throws Exception {
+        when(ds.isAvailable()).thenReturn(false);
+        assertEquals(Docx4jPdfRenderer.NAME, router.render("1", small, "u").join().renderer());
+        verify(ds, never()).render(any(), any(), any());
+
+        Path large = Files.write(dir.resolve("large.docx"), new byte[2048]);
+        assertEquals(List.of(ds), router.route(Files.size(large)));
+
+        ReflectionTestUtils.setField(router, "mode", OnlyOfficePdfRenderer.NAME);
+        assertEquals(List.of(ds), router.route(100));
+    }
+
+    @Test
+    void slowDocumentServerSendsSmallFilesLocalAndProbesPeriodically() {
+        router.render("1", small, "u").join(); // mẫu latency đầu tiên
+
+        ReflectionTestUtils.setField(router, "dsSlowMs", -1L);      // mọi latency đều "chậm"
+        ReflectionTestUtils.setField(router, "dsProbeMs", 60_000L); // vừa gửi DS xong → chưa tới lượt đo lại
+        assertEquals(List.of(local), router.route(100));
+        assertEquals(1.0, meters.get("pdf.render.fallback").tag("reason", "slow").counter().count());
+
+        ReflectionTestUtils.setField(router, "dsProbeMs", 0L);
+        assertEquals(List.of(ds, local), router.route(100));
+    }
+
+    private static PdfRenderer renderer(String name) {
+        PdfRenderer r = mock(PdfRenderer.class);
+        when(r.name()).thenReturn(name);
+        when(r.isAvailable()).thenReturn(true);
+        return r;
+    }
+}
@@ -0,0 +1,84 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SMTP server tối giản cho test: nhận mọi thư, từ chối (550) người nhận có chứa "bad".
+ * Ghi lại nội dung DATA và số phiên (kết nối) đã mở.
+ */
+class SmtpStub implements Closeable {
+
+    final List<String> messages = new CopyOnWriteArrayList<>();
+    final AtomicInteger sessions = new AtomicInteger();
+
+    private final ServerSocket server;
+    private final ExecutorService pool = Executors.newCachedThreadPool();
+
+    SmtpStub() throws IOException {
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        pool.execute(() -> {
+            while (!server.isClosed()) {
+                try {
+                    Socket s = server.accept();
+                    pool.execute(() -> session(s));
+                } catch (IOException ignore) {
+                    return;
+                }
+            }
+        });
+    }
+
+    int port() {
+        return server.getLocalPort();
+    }
+
+    private void session(Socket s) {
+        sessions.incrementAndGet();
+        try (s;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8)) {
+            reply(out, "220 stub ESMTP");
+            String line;
+            while ((line = in.readLine()) != null) {
+                String cmd = line.toUpperCase();
+                if (cmd.startsWith("EHLO") || cmd.startsWith("HELO")) {
+                    reply(out, "250 stub");
+                } else if (cmd.startsWith("RCPT")) {
+                    reply(out, cmd.contains("BAD") ? "550 no such user" : "250 ok");
+                } else if (cmd.startsWith("DATA")) {
+                    reply(out, "354 go ahead");
+                    StringBuilder data = new StringBuilder();
+                    while ((line = in.readLine()) != null && !line.equals(".")) data.append(line).append('\n');
+                    messages.add(data.toString());
+                    reply(out, "250 queued");
+                } else if (cmd.startsWith("QUIT")) {
+                    reply(out, "221 bye");
+                    return;
+                } else {
+                    reply(out, "250 ok"); // MAIL, RSET, NOOP
+                }
+            }
+        } catch (IOException ignore) {
+        }
+    }
+
+    private static void reply(Writer out, String line) throws IOException {
+        out.write(line + "\r\n");
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,199 @@
+package com.hieunguyen.ManageContract.service.impl;
+
+import com.hieunguyen.ManageContract.entity.ContractTemplate;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TemplatePackageCacheTest {
+
+    private static final Map<String, String> VALUES = Map.of("ben_a", "Công ty A");
+
+    @TempDir
+    Path tmp;
+
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    private final AtomicInteger compiles = new AtomicInteger();
+    // null → biên dịch ngay; khác null → chờ latch rồi mới biên dịch (hoặc ném lỗi)
+    private volatile CountDownLatch started;
+    private volatile CountDownLatch release;
+    private volatile Error failWith;
+    private TemplatePackageCache cache;
+    private Path templateFile;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        templateFile = tmp.resolve("template.docx");
+        WordprocessingMLPackage pkg = WordprocessingMLPackage.createPackage();
+        pkg.getMainDocumentPart().addParagraphOfText("Bên A: ${ben_a}");
+        pkg.save(templateFile.toFile());
+
+        cache = new TemplatePackageCache(meters) {
+            @Override
+            WordprocessingMLPackage prepare(Path templatePath) throws Exception {
+                compiles.incrementAndGet();
+                if (started != null) {
+                    started.countDown();
+                    release.await();
+                }
+                if (failWith != null) throw failWith;
+                return super.prepare(templatePath);
+            }
+        };
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "compiledPlan", true);
+        ReflectionTestUtils.setField(cache, "maxSizeMb", 64L);
+        ReflectionTestUtils.setField(cache, "expireAfterAccessMinutes", 120L);
+        ReflectionTestUtils.invokeMethod(cache, "init");
+    }
+
+    @Test
+    void changedFileGetsANewKeyAndTheOldEntryIsEvicted() throws Exception {
+        ContractTemplate template = template(1L);
+        Files.setLastModifiedTime(templateFile, FileTime.fromMillis(1_000_000L));
+        cache.render(template, VALUES, tmp.resolve("a.docx"));
+        cache.render(template, VALUES, tmp.resolve("b.docx"));
+        assertEquals(1, compiles.get());
+
+        Files.setLastModifiedTime(templateFile, FileTime.fromMillis(2_000_000L));
+        cache.render(template, VALUES, tmp.resolve("c.docx"));
+        assertEquals(2, compiles.get());
+        assertEquals(1.0, cachedEntries(), "bản theo mtime cũ phải bị bỏ");
+
+        // quay lại mtime cũ → không còn trong cache, phải biên dịch lại
+        Files.setLastModifiedTime(templateFile, FileTime.fromMillis(1_000_000L));
+        cache.render(template, VALUES, tmp.resolve("d.docx"));
+        assertEquals(3, compiles.get());
+    }
+
+    @Test
+    void invalidateDropsOnlyThatTemplate() throws Exception {
+        Path otherFile = Files.copy(templateFile, tmp.resolve("other.docx"));
+        ContractTemplate first = template(1L);
+        ContractTemplate other = ContractTemplate.builder().id(2L).filePath(otherFile.toString()).build();
+        cache.render(first, VALUES, tmp.resolve("a.docx"));
+        cache.render(other, VALUES, tmp.resolve("b.docx"));
+        assertEquals(2, compiles.get());
+
+        cache.invalidate(1L);
+        assertEquals(1.0, cachedEntries());
+
+        cache.render(other, VALUES, tmp.resolve("c.docx"));
+        assertEquals(2, compiles.get());
+        cache.render(first, VALUES, tmp.resolve("d.docx"));
+        assertEquals(3, compiles.get());
+    }
+
+    @Test
+    void concurrentMissesCompileOnce() throws Exception {
+        started = new CountDownLatch(1);
+        release = new CountDownLatch(1);
+        ContractTemplate template = template(1L);
+        ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<>();
+
+        List<Thread> callers = startCallers(8, i -> cache.render(template, VALUES, tmp.resolve("out-" + i + ".docx")), errors);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        awaitOthersWaiting(callers);
+        release.countDown();
+        joinAll(callers);
+
+        assertTrue(errors.isEmpty(), () -> "unexpected: " + errors);
+        assertEquals(1, compiles.get());
+        for (int i = 0; i < callers.size(); i++) {
+            assertTrue(DocxPatchEngine.open(tmp.resolve("out-" + i + ".docx")).text().contains("Công ty A"));
+        }
+    }
+
+    @Test
+    void failedCompileReleasesTheCallersWaitingOnIt() throws Exception {
+        started = new CountDownLatch(1);
+        release = new CountDownLatch(1);
+        failWith = new OutOfMemoryError("template too large");
+        ContractTemplate template = template(1L);
+        ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<>();
+
+        List<Thread> callers = startCallers(4, i -> cache.render(template, VALUES, tmp.resolve("out-" + i + ".docx")), errors);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        awaitOthersWaiting(callers);
+        release.countDown();
+        joinAll(callers);
+
+        // không ai treo: mọi người gọi đều nhận lỗi của lượt biên dịch hỏng
+        assertEquals(callers.size(), errors.size());
+        for (Throwable t : errors) {
+            Throwable root = t.getCause() != null ? t.getCause() : t;
+            assertSame(failWith, root);
+        }
+
+        // lượt hỏng không bị giữ lại → lần sau biên dịch bình thường
+        started = null;
+        failWith = null;
+        cache.render(template, VALUES, tmp.resolve("retry.docx"));
+        assertTrue(Files.exists(tmp.resolve("retry.docx")));
+    }
+
+    // ------------------------------------------------------------------
+
+    private interface Call {
+        void run(int i) throws Exception;
+    }
+
+    private ContractTemplate template(Long id) {
+        return ContractTemplate.builder().id(id).filePath(templateFile.toString()).build();
+    }
+
+    private double cachedEntries() {
+        return meters.get("cache.size").tag("cache", "docx.template.cache").gauge().value();
+    }
+
+    private static List<Thread> startCallers(int n, Call call, ConcurrentLinkedQueue<Throwable> errors) {
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            int index = i;
+            Thread t = new Thread(() -> {
+                try {
+                    call.run(index);
+                } catch (Throwable e) {
+                    errors.add(e);
+                }
+            }, "caller-" + i);
+            t.setDaemon(true); // lỡ treo thì không giữ JVM của surefire
+            t.start();
+            threads.add(t);
+        }
+        return threads;
+    }
+
+    /** Chờ tới khi mọi thread ngoài thread đang biên dịch đã đứng chờ future của nó */
+    private static void awaitOthersWaiting(List<Thread> threads) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (threads.stream().filter(t -> t.getState() == Thread.State.WAITING).count() < threads.size()) {
+            // thread biên dịch cũng WAITING (trên latch release) → đủ n thread là mọi người đã vào chờ
+            if (System.nanoTime() > deadline) fail("callers did not queue behind the compile");
+            Thread.sleep(5);
+        }
+    }
+
+    private static void joinAll(List<Thread> threads) throws InterruptedException {
+        for (Thread t : threads) {
+            t.join(TimeUnit.SECONDS.toMillis(10));
+            assertFalse(t.isAlive(), t.getName() + " still waiting");
+        }
+    }
+}